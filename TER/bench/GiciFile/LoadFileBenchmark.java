@@ -0,0 +1,143 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package GiciFile;
+
+import TER.TERbench.SyntheticImage;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * This class benchmarks {@link LoadFile#rawLoad} of a synthetic raw image, which is written to a temporary file.
+ * The image is loaded into the same buffer in each invocation, as TERcode does with a pool of buffers.
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LoadFileBenchmark{
+
+	/**
+	 * Number of components of the synthetic image.
+	 */
+	@Param({"8"})
+	public int zSize;
+
+	/**
+	 * Number of rows of the synthetic image.
+	 */
+	@Param({"512"})
+	public int ySize;
+
+	/**
+	 * Number of columns of the synthetic image.
+	 */
+	@Param({"512"})
+	public int xSize;
+
+	/**
+	 * Bits of each sample of the synthetic image.
+	 */
+	@Param({"8", "12", "16"})
+	public int bitDepth;
+
+	/**
+	 * True if the samples of the synthetic image are signed.
+	 */
+	@Param({"false", "true"})
+	public boolean signed;
+
+	/**
+	 * Content of the synthetic image, see {@link SyntheticImage#TYPES}.
+	 */
+	@Param({"textured"})
+	public String type;
+
+	/**
+	 * Raw file of the synthetic image.
+	 */
+	File rawFile = null;
+
+	/**
+	 * Sample type of {@link #rawFile}, see {@link SyntheticImage#getSampleType}.
+	 */
+	int sampleType;
+
+	/**
+	 * Buffer where the image is loaded, index meaning [z][y][x].
+	 */
+	float imageBuffer[][][] = null;
+
+	/**
+	 * Writes the synthetic image.
+	 *
+	 * @throws Exception when the image cannot be generated or written
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Exception{
+		SyntheticImage image = new SyntheticImage(zSize, ySize, xSize);
+		image.setParameters(type, bitDepth, signed, 1);
+		image.run();
+		rawFile = File.createTempFile("LoadFileBenchmark", ".raw");
+		image.write(rawFile.getPath());
+		sampleType = image.getSampleType();
+		imageBuffer = new float[zSize][ySize][xSize];
+	}
+
+	/**
+	 * Deletes the raw file.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown(){
+		rawFile.delete();
+	}
+
+	/**
+	 * Loads the raw image.
+	 *
+	 * @return the image
+	 *
+	 * @throws Exception when the image cannot be loaded
+	 */
+	@Benchmark
+	public float[][][] rawLoad() throws Exception{
+		LoadFile image = new LoadFile(imageBuffer);
+		image.setSignedPixels(sampleType, zSize);
+		image.rawLoad(rawFile.getPath(), zSize, ySize, xSize, LoadFile.getClass(sampleType), 0, false, 0);
+		return(image.getImage());
+	}
+
+}
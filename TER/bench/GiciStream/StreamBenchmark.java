@@ -0,0 +1,236 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package GiciStream;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * This class benchmarks the operations of {@link BitStream} and {@link ByteStream} that the coder and the decoder
+ * use most: adding and reading codewords of a few bits, concatenating streams, and adding and reading bytes. The
+ * codewords are deterministic, with lengths from 1 to 16 bits.
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class StreamBenchmark{
+
+	/**
+	 * Number of codewords (and of bytes for the byte streams).
+	 */
+	@Param({"1048576"})
+	public int words;
+
+	/**
+	 * Number of streams that are concatenated, as the packets of the gaggles in a layer.
+	 */
+	@Param({"1024"})
+	public int streams;
+
+	/**
+	 * Value of each codeword.
+	 */
+	int value[] = null;
+
+	/**
+	 * Length in bits of each codeword.
+	 */
+	int length[] = null;
+
+	/**
+	 * Bytes added to the byte streams.
+	 */
+	byte bytes[] = null;
+
+	/**
+	 * The {@link #bytes} split in as many chunks as {@link #streams}.
+	 */
+	byte chunks[][] = null;
+
+	/**
+	 * Codewords already coded, to be read.
+	 */
+	byte coded[] = null;
+
+	/**
+	 * Parts of the codewords, already coded, to be concatenated.
+	 */
+	BitStream parts[] = null;
+
+	/**
+	 * Byte stream with all the {@link #bytes}, to be read.
+	 */
+	ByteStream byteStream = null;
+
+	/**
+	 * Generates the codewords and the streams to be read.
+	 */
+	@Setup(Level.Trial)
+	public void setUp(){
+		Random random = new Random(1);
+		value = new int[words];
+		length = new int[words];
+		bytes = new byte[words];
+		random.nextBytes(bytes);
+		for(int word = 0; word < words; word++){
+			length[word] = 1 + random.nextInt(16);
+			value[word] = random.nextInt(1 << length[word]);
+		}
+		coded = addBits().getBitStream();
+		parts = new BitStream[streams];
+		for(int part = 0; part < streams; part++){
+			parts[part] = new BitStream();
+			for(int word = part; word < words; word += streams){
+				parts[part].addBits(value[word], length[word]);
+			}
+		}
+		byteStream = addByte();
+		int chunk = (words + streams - 1) / streams;
+		chunks = new byte[(words + chunk - 1) / chunk][];
+		for(int part = 0; part < chunks.length; part++){
+			chunks[part] = new byte[Math.min(chunk, words - part * chunk)];
+			System.arraycopy(bytes, part * chunk, chunks[part], 0, chunks[part].length);
+		}
+	}
+
+	/**
+	 * Adds the codewords to a bit stream.
+	 *
+	 * @return the bit stream
+	 */
+	@Benchmark
+	public BitStream addBits(){
+		BitStream bitStream = new BitStream();
+		for(int word = 0; word < words; word++){
+			bitStream.addBits(value[word], length[word]);
+		}
+		return(bitStream);
+	}
+
+	/**
+	 * Adds the codewords to a bit stream bit by bit, as the block coders do.
+	 *
+	 * @return the bit stream
+	 */
+	@Benchmark
+	public BitStream addBit(){
+		BitStream bitStream = new BitStream();
+		for(int word = 0; word < words; word++){
+			for(int bit = length[word] - 1; bit >= 0; bit--){
+				bitStream.addBit((value[word] >> bit) & 1);
+			}
+		}
+		return(bitStream);
+	}
+
+	/**
+	 * Reads the codewords from a bit stream.
+	 *
+	 * @return the sum of the codewords
+	 *
+	 * @throws Exception when the stream ends before the codewords
+	 */
+	@Benchmark
+	public long getBits() throws Exception{
+		BitStream bitStream = new BitStream(coded);
+		long sum = 0;
+		for(int word = 0; word < words; word++){
+			sum += bitStream.getBits(length[word]);
+		}
+		return(sum);
+	}
+
+	/**
+	 * Concatenates the parts of the codewords into a bit stream.
+	 *
+	 * @return the bit stream
+	 */
+	@Benchmark
+	public BitStream addBitStream(){
+		BitStream bitStream = new BitStream();
+		for(int part = 0; part < streams; part++){
+			bitStream.addBitStream(parts[part]);
+		}
+		return(bitStream);
+	}
+
+	/**
+	 * Adds the bytes to a byte stream one by one.
+	 *
+	 * @return the byte stream
+	 */
+	@Benchmark
+	public ByteStream addByte(){
+		ByteStream byteStream = new ByteStream();
+		for(int b = 0; b < words; b++){
+			byteStream.addByte(bytes[b]);
+		}
+		return(byteStream);
+	}
+
+	/**
+	 * Adds the bytes to a byte stream in chunks.
+	 *
+	 * @return the byte stream
+	 */
+	@Benchmark
+	public ByteStream addBytes(){
+		ByteStream byteStream = new ByteStream();
+		for(int part = 0; part < chunks.length; part++){
+			byteStream.addBytes(chunks[part], chunks[part].length);
+		}
+		return(byteStream);
+	}
+
+	/**
+	 * Reads the bytes of a byte stream one by one.
+	 *
+	 * @return the sum of the bytes
+	 *
+	 * @throws Exception when a byte is out of the stream
+	 */
+	@Benchmark
+	public long getByte() throws Exception{
+		long sum = 0;
+		int numBytes = byteStream.getNumBytes();
+		for(int b = 0; b < numBytes; b++){
+			sum += byteStream.getByte(b);
+		}
+		return(sum);
+	}
+
+}
@@ -0,0 +1,191 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package GiciTransform;
+
+import TER.TERbench.SyntheticImage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * This class benchmarks one level of the discrete wavelet transform cores, forward and inverse, for each transform
+ * and axis, over a synthetic image.
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DWTCoreBenchmark{
+
+	/**
+	 * Transform, see {@link ForwardDWTCore#WTTypes} (1 - 5/3, 2 - 9/7, 4 - integer 9/7M).
+	 */
+	@Param({"1", "2", "4"})
+	public int WTType;
+
+	/**
+	 * Axis, see {@link ForwardDWTCore#WTAxis}.
+	 */
+	@Param({"0", "1", "2"})
+	public int WTAxis;
+
+	/**
+	 * Number of components of the synthetic image.
+	 */
+	@Param({"8"})
+	public int zSize;
+
+	/**
+	 * Number of rows of the synthetic image.
+	 */
+	@Param({"512"})
+	public int ySize;
+
+	/**
+	 * Number of columns of the synthetic image.
+	 */
+	@Param({"512"})
+	public int xSize;
+
+	/**
+	 * Bits of each sample of the synthetic image.
+	 */
+	@Param({"12"})
+	public int bitDepth;
+
+	/**
+	 * Content of the synthetic image, see {@link SyntheticImage#TYPES}.
+	 */
+	@Param({"textured"})
+	public String type;
+
+	/**
+	 * Synthetic image, index meaning [z][y][x].
+	 */
+	float original[][][] = null;
+
+	/**
+	 * Original image transformed by the forward core.
+	 */
+	float transformed[][][] = null;
+
+	/**
+	 * Samples transformed by each invocation of {@link #forward}, which are restored before it.
+	 */
+	float samples[][][] = null;
+
+	/**
+	 * Samples transformed by each invocation of {@link #inverse}, which are restored before it.
+	 */
+	float transformedSamples[][][] = null;
+
+	/**
+	 * Generates the image and its transform.
+	 *
+	 * @throws Exception when the image cannot be generated or transformed
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Exception{
+		SyntheticImage image = new SyntheticImage(zSize, ySize, xSize);
+		image.setParameters(type, bitDepth, false, 1);
+		original = image.run();
+		samples = copy(original, null);
+		ForwardDWTCore fwt = new ForwardDWTCore(samples);
+		fwt.setParameters(WTType, WTAxis, 0, zSize - 1, 0, ySize - 1, 0, xSize - 1);
+		fwt.run();
+		transformed = copy(samples, null);
+		transformedSamples = copy(transformed, null);
+	}
+
+	/**
+	 * Restores the samples that are transformed in place. The transform of an image takes milliseconds, so that the
+	 * cost of a setup for each invocation is negligible.
+	 */
+	@Setup(Level.Invocation)
+	public void restoreSamples(){
+		copy(original, samples);
+		copy(transformed, transformedSamples);
+	}
+
+	/**
+	 * Applies one level of the forward transform to the whole image.
+	 *
+	 * @return the transformed image
+	 *
+	 * @throws Exception when the transform fails
+	 */
+	@Benchmark
+	public float[][][] forward() throws Exception{
+		ForwardDWTCore fwt = new ForwardDWTCore(samples);
+		fwt.setParameters(WTType, WTAxis, 0, zSize - 1, 0, ySize - 1, 0, xSize - 1);
+		fwt.run();
+		return(fwt.getImageSamples());
+	}
+
+	/**
+	 * Applies one level of the inverse transform to the whole image.
+	 *
+	 * @return the recovered image
+	 *
+	 * @throws Exception when the transform fails
+	 */
+	@Benchmark
+	public float[][][] inverse() throws Exception{
+		InverseDWTCore iwt = new InverseDWTCore(transformedSamples);
+		iwt.setParameters(WTType, WTAxis, 0, zSize - 1, 0, ySize - 1, 0, xSize - 1);
+		iwt.run();
+		return(iwt.getImageSamples());
+	}
+
+	/**
+	 * Copies an image.
+	 *
+	 * @param source the image
+	 * @param destination image with the same size where it is copied, or null to create it
+	 * @return the copy
+	 */
+	static float[][][] copy(float source[][][], float destination[][][]){
+		if(destination == null){
+			destination = new float[source.length][source[0].length][source[0][0].length];
+		}
+		for(int z = 0; z < source.length; z++){
+			for(int y = 0; y < source[z].length; y++){
+				System.arraycopy(source[z][y], 0, destination[z][y], 0, source[z][y].length);
+			}
+		}
+		return(destination);
+	}
+
+}
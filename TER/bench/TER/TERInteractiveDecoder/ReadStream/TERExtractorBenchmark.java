@@ -0,0 +1,166 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERInteractiveDecoder.ReadStream;
+
+import TER.TERbench.CodedFile;
+import TER.TERbench.CodedImage;
+import TER.TERbench.SyntheticImage;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * This class benchmarks the extraction of packets from a TER file ({@link TERExtractor}) for each progression order,
+ * for the whole image and for a window in its center, with all the layers and resolution levels.
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TERExtractorBenchmark{
+
+	/**
+	 * Progression order of the file.
+	 */
+	@Param({"1", "2", "3", "4", "5"})
+	public int progressionOrder;
+
+	/**
+	 * Layers of the file.
+	 */
+	@Param({"4"})
+	public int numberOfLayers;
+
+	/**
+	 * Rows and columns of the extracted window.
+	 */
+	@Param({"64"})
+	public int windowSize;
+
+	/**
+	 * Number of components of the synthetic image.
+	 */
+	@Param({"4"})
+	public int zSize;
+
+	/**
+	 * Number of rows of the synthetic image.
+	 */
+	@Param({"1024"})
+	public int ySize;
+
+	/**
+	 * Number of columns of the synthetic image.
+	 */
+	@Param({"1024"})
+	public int xSize;
+
+	/**
+	 * Bits of each sample of the synthetic image.
+	 */
+	@Param({"12"})
+	public int bitDepth;
+
+	/**
+	 * Content of the synthetic image, see {@link SyntheticImage#TYPES}.
+	 */
+	@Param({"textured"})
+	public String type;
+
+	/**
+	 * Encoded file of the synthetic image.
+	 */
+	File encodedFile = null;
+
+	/**
+	 * Opened {@link #encodedFile}.
+	 */
+	CodedFile codedFile = null;
+
+	/**
+	 * Generates and codes the image.
+	 *
+	 * @throws Exception when the image cannot be generated or coded
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Exception{
+		SyntheticImage image = new SyntheticImage(zSize, ySize, xSize);
+		image.setParameters(type, bitDepth, false, 1);
+		CodedImage codedImage = new CodedImage(image.run(), bitDepth, false);
+		codedImage.setParameters(4, 3, progressionOrder, numberOfLayers);
+		encodedFile = File.createTempFile("TERExtractorBenchmark", ".ter");
+		codedImage.write(encodedFile.getPath());
+		codedFile = new CodedFile(encodedFile.getPath());
+	}
+
+	/**
+	 * Closes and deletes the encoded file.
+	 *
+	 * @throws Exception when the file cannot be closed
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception{
+		codedFile.close();
+		encodedFile.delete();
+	}
+
+	/**
+	 * Extracts the packets of the whole image.
+	 *
+	 * @return the packets
+	 *
+	 * @throws Exception when the packets cannot be read
+	 */
+	@Benchmark
+	public byte[][][][][] extractImage() throws Exception{
+		codedFile.extract(0, ySize, 0, xSize);
+		return(codedFile.getPackets());
+	}
+
+	/**
+	 * Extracts the packets of a window in the center of the image.
+	 *
+	 * @return the packets
+	 *
+	 * @throws Exception when the packets cannot be read
+	 */
+	@Benchmark
+	public byte[][][][][] extractWindow() throws Exception{
+		codedFile.extract((ySize - windowSize) / 2, windowSize, (xSize - windowSize) / 2, windowSize);
+		return(codedFile.getPackets());
+	}
+
+}
@@ -0,0 +1,358 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERbench;
+
+
+/**
+ * Arguments parser for the throughput regression harness. This class analyses a string of arguments and extract and
+ * check its validity.
+ * Usage example:<br>
+ * &nbsp; construct<br>
+ * &nbsp; [showArgsInfo]<br>
+ * &nbsp; [get functions]<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class ArgsParserThroughput{
+
+	private void showVersion(){
+		System.out.println(" -------  help - version 1.0  ---------  ");
+	}
+
+	/**
+	 * Arguments specificiation. The array describes argument, explain what is used and its default parameters. First index of array is argument; second specifies:<br>
+	 *   <ul>
+	 *     <li> 0 - short argument specification (i.e. "-s")
+	 *     <li> 1 - long argument specification (i.e. "--size")
+	 *     <li> 2 - parsing specification of argument ({} indicates mandatority, [] optionality)
+	 *     <li> 3 - default values
+	 *     <li> 4 - mandatory argument ("1") or non mandatory argument ("0")
+	 *     <li> 5 - explanation
+	 *   </ul>
+	 * <p>
+	 * String arguments.
+	 */
+	String[][] argsSpecification = {
+		{"-h", "--help", "", "", "0",
+			"Displays this help and exits program."
+		},
+		{"-s", "--size", "{int int int}", "4 512 512", "0",
+			"Size of the synthetic images: number of components, rows and columns."
+		},
+		{"-ty", "--types", "{string[ string[ ...]]}", "smooth textured noise correlated", "0",
+			"Kinds of synthetic images of the corpus. Valid values are:\n    smooth- a few low frequency waves\n    textured- smooth content plus high frequency patterns, edges and some noise\n    noise- uniformly distributed samples\n    correlated- a textured scene with a smooth spectral response in each component, as in hyperspectral images"
+		},
+		{"-bd", "--bitDepths", "{int[ int[ ...]]}", "8 12 16", "0",
+			"Bits per sample of the synthetic images of the corpus (from 2 to 16)."
+		},
+		{"-sg", "--signed", "{int[ int]}", "0 1", "0",
+			"Signedness of the synthetic images of the corpus: 0 for unsigned images, 1 for signed images."
+		},
+		{"-r", "--repetitions", "{int}", "3", "0",
+			"Times that each image is coded and decoded. The highest throughput and the highest peak memory of the repetitions are kept."
+		},
+		{"-b", "--baselineFile", "{string}", "", "0",
+			"File with the results of a previous run (see \"-w\"). The run fails when the coding or decoding throughput of any case is lower than the one of the baseline by more than the tolerance (see \"-t\"). Cases that are not in the baseline are not compared. If not specified, results are not compared."
+		},
+		{"-w", "--resultsFile", "{string}", "", "0",
+			"File where the results are written in CSV, one line for each case with its name, coding and decoding throughput in MB/s, peak resident set size and peak heap of the coder and of the decoder in bytes, and 1 if the round trip is lossless (0 otherwise). It can be used as baseline of later runs. If not specified, results are only displayed."
+		},
+		{"-t", "--tolerance", "{float}", "10", "0",
+			"Percentage of throughput that a case can lose with respect to the baseline before the run fails."
+		},
+		{"-d", "--workDirectory", "{string}", "TERthroughput in the temporary directory", "0",
+			"Directory where the corpus, the encoded files and the recovered images are written."
+		},
+		{"-j", "--jvmOptions", "{string[ string[ ...]]}", "", "0",
+			"Options of the virtual machines that code and decode each image (i.e. \"-Xmx2g\"). Each coding and decoding is run in a new virtual machine so that its peak memory is measured alone."
+		},
+	};
+
+	//ARGUMENTS VARIABLES
+	int[] size = {4, 512, 512};
+	String[] types = SyntheticImage.TYPES;
+	int[] bitDepths = {8, 12, 16};
+	boolean[] signed = {false, true};
+	int repetitions = 3;
+	String baselineFile = null;
+	String resultsFile = null;
+	float tolerance = 10f;
+	String workDirectory = null;
+	String[] jvmOptions = {};
+
+	 /**
+	  * Class constructor that receives the arguments string and initializes all the arguments
+	  * 
+	  * @param args the array of strings passed at the command line
+	  * 
+	  * @throws Exception when an invalid parsing is detected or some problem with method invocation occurs
+	  */
+	public ArgsParserThroughput(String[] args) throws Exception{
+		int argNum = 0;
+		boolean[] argsFound = new boolean[argsSpecification.length];
+
+		//Arguments parsing
+		for(int i = 0; i < argsSpecification.length; i++){
+			argsFound[i] = false;
+		}
+		while(argNum < args.length){
+			int argFound = argFind(args[argNum]);
+			if(argFound != -1){
+				if(!argsFound[argFound]){
+					argsFound[argFound] = true;
+					int argOptions = argNum + 1;
+					while(argOptions < args.length){
+						if(argFind(args[argOptions]) != -1){
+							break;
+						}else{
+							argOptions++;
+						}
+					}
+					int numOptions = argOptions - argNum;
+					String[] options = new String[numOptions];
+					System.arraycopy(args, argNum, options, 0, numOptions);
+					argNum = argOptions;
+					switch(argFound){
+					case  0: //-h  --help
+						showVersion();
+						showArgsInfo();
+						System.exit(1);
+						break;
+					case  1: //-s  --size
+						size = parseIntegerArray(options);
+						if(size.length != 3){
+							throw new Exception("Argument \"" + options[0] + "\" takes three options. Try \"-h\" to display help.");
+						}
+						break;
+					case  2: //-ty  --types
+						types = parseStringArray(options);
+						break;
+					case  3: //-bd  --bitDepths
+						bitDepths = parseIntegerArray(options);
+						break;
+					case  4: //-sg  --signed
+						int[] signedValues = parseIntegerArray(options);
+						signed = new boolean[signedValues.length];
+						for(int i = 0; i < signedValues.length; i++){
+							signed[i] = signedValues[i] != 0;
+						}
+						break;
+					case  5: //-r  --repetitions
+						repetitions = parseIntegerPositive(options);
+						break;
+					case  6: //-b  --baselineFile
+						baselineFile = parseString(options);
+						break;
+					case  7: //-w  --resultsFile
+						resultsFile = parseString(options);
+						break;
+					case  8: //-t  --tolerance
+						tolerance = parseFloat(options);
+						break;
+					case  9: //-d  --workDirectory
+						workDirectory = parseString(options);
+						break;
+					case 10: //-j  --jvmOptions
+						jvmOptions = parseStringArray(options);
+						break;
+					}
+				}else{
+					throw new Exception("Argument \"" + args[argNum] + "\" repeated.");
+				}
+			}else{
+				throw new Exception("Argument \"" + args[argNum] + "\" unrecognized.");
+			}
+		}
+
+		//Check mandatory arguments
+		for(int i = 0; i < argsSpecification.length; i++){
+			if(argsSpecification[i][4].compareTo("1") == 0){
+				if(!argsFound[i]){
+					throw new Exception("Argument \"" + argsSpecification[i][0] + "\" is mandatory (\"-h\" displays help).");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the argument string in arguments specification array.
+	 *
+	 * @param arg argument to find out in argsSpecification
+	 * @return the argument index of argsSpecification (-1 if it doesn't exist)
+	 */
+	int argFind(String arg){
+		int argFound = 0;
+		boolean found = false;
+
+		while((argFound < argsSpecification.length) && !found){
+			if((arg.compareTo(argsSpecification[argFound][0]) == 0) || (arg.compareTo(argsSpecification[argFound][1]) == 0)){
+				found = true;
+			}else{
+				argFound++;
+			}
+		}
+		return(found ? argFound: -1);
+	}
+
+	/**
+	 * This function shows arguments information to console.
+	 */
+	public void showArgsInfo(){
+		System.out.println("Arguments specification: ");
+		for(int numArg = 0; numArg < argsSpecification.length; numArg++){
+			char beginMandatory = '{', endMandatory = '}';
+			if(argsSpecification[numArg][4].compareTo("0") == 0){
+				//No mandatory argument
+				beginMandatory = '[';
+				endMandatory = ']';
+			}
+			System.out.print("\n" + beginMandatory + " ");
+			System.out.print("{" + argsSpecification[numArg][0] + "|" + argsSpecification[numArg][1] + "} " + argsSpecification[numArg][2]);
+			System.out.println(" " + endMandatory);
+			System.out.println("  Explanation:\n    " + argsSpecification[numArg][5]);
+			System.out.println("  Default value: " + argsSpecification[numArg][3]);
+		}
+	}
+
+
+	/////////////////////
+	//PARSING FUNCTIONS//
+	/////////////////////
+	//These functions receives a string array that contains in first position the argument and then their options//
+
+	int parseIntegerPositive(String[] options) throws Exception{
+		int value = 0;
+
+		if(options.length == 2){
+			try{
+				value = Integer.parseInt(options[1]);
+				if(value < 0){
+					throw new Exception("\"" + options[1] + "\" of argument \"" + options[0] + "\" is must be a positive integer.");
+				}
+			}catch(NumberFormatException e){
+				throw new Exception("\"" + options[1] + "\" of argument \"" + options[0] + "\" is not a parsable integer.");
+			}
+		}else{
+			throw new Exception("Argument \"" + options[0] + "\" takes one option. Try \"-h\" to display help.");
+		}
+		return(value);
+	}
+
+	int[] parseIntegerArray(String[] options) throws Exception{
+		int[] value = null;
+
+		if(options.length >= 2){
+			value = new int[options.length - 1];
+			for(int numOption = 1; numOption < options.length; numOption++){
+				try{
+					value[numOption - 1] = Integer.parseInt(options[numOption]);
+				}catch(NumberFormatException e){
+					throw new Exception("\"" + options[numOption] + "\" of argument \"" + options[0] + "\" is not a parsable integer.");
+				}
+			}
+		}else{
+			throw new Exception("Argument \"" + options[0] + "\" takes one or more options. Try \"-h\" to display help.");
+		}
+		return(value);
+	}
+
+	float parseFloat(String[] options) throws Exception{
+		float value = 0;
+
+		if(options.length == 2){
+			try{
+				value = Float.parseFloat(options[1]);
+			}catch(NumberFormatException e){
+				throw new Exception("\"" + options[1] + "\" of argument \"" + options[0] + "\" is not a parsable float.");
+			}
+		}else{
+			throw new Exception("Argument \"" + options[0] + "\" takes one option. Try \"-h\" to display help.");
+		}
+		return(value);
+	}
+
+	String parseString(String[] options) throws Exception{
+		String value = "";
+
+		if(options.length == 2){
+			value = options[1];
+		}else{
+			throw new Exception("Argument \"" + options[0] + "\" takes one option. Try \"-h\" to display help.");
+		}
+		return(value);
+	}
+
+	String[] parseStringArray(String[] options) throws Exception{
+		String[] value = null;
+
+		if(options.length >= 2){
+			value = new String[options.length - 1];
+			System.arraycopy(options, 1, value, 0, value.length);
+		}else{
+			throw new Exception("Argument \"" + options[0] + "\" takes one or more options. Try \"-h\" to display help.");
+		}
+		return(value);
+	}
+
+
+	///////////////////////////
+	//ARGUMENTS GET FUNCTIONS//
+	///////////////////////////
+
+	public int[] getSize(){
+		return(size);
+	}
+	public String[] getTypes(){
+		return(types);
+	}
+	public int[] getBitDepths(){
+		return(bitDepths);
+	}
+	public boolean[] getSigned(){
+		return(signed);
+	}
+	public int getRepetitions(){
+		return(repetitions);
+	}
+	public String getBaselineFile(){
+		return(baselineFile);
+	}
+	public String getResultsFile(){
+		return(resultsFile);
+	}
+	public float getTolerance(){
+		return(tolerance);
+	}
+	public String getWorkDirectory(){
+		return(workDirectory);
+	}
+	public String[] getJvmOptions(){
+		return(jvmOptions);
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERbench;
+
+import GiciException.*;
+import TER.TERDefaultValues;
+import TER.TERInteractiveDecoder.ReadStream.DecodingOptions;
+import TER.TERInteractiveDecoder.ReadStream.TERExtractor;
+import TER.TERdecoder.BPEDecoder.DecodeAvailable;
+import TER.TERdecoder.ReadFile.ReadBufferedStream;
+import TER.TERdecoder.ReadFile.ReadTERHeader;
+
+
+/**
+ * This class opens a TER file and extracts and decodes its packets as the interactive decoder does, so that the
+ * stages of the decoder can be timed alone. It is the fixture of the benchmarks that need a coded file.<br>
+ * Usage example:<br>
+ * &nbsp; construct<br>
+ * &nbsp; extract<br>
+ * &nbsp; newDecodeAvailable<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class CodedFile{
+
+	/**
+	 * Stream of the file.
+	 */
+	ReadBufferedStream encodedStream = null;
+
+	/**
+	 * Header of the file.
+	 */
+	ReadTERHeader header = null;
+
+	/**
+	 * Index of the packets of the file.
+	 */
+	DecodingOptions options = null;
+
+	/**
+	 * Position of the first packet in the file.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	long initialStreamPosition;
+
+	/**
+	 * Packets of the last extraction, index meaning [z][segment][rLevel][gaggle].
+	 * <p>
+	 * Null until the first extraction.
+	 */
+	byte packets[][][][][] = null;
+
+	/**
+	 * Constructor that reads the header and the index of the packets.
+	 *
+	 * @param file name of a ".ter" file coded with a progression order from 1 to 5
+	 *
+	 * @throws Exception when the file cannot be read or it has not been coded with a progression order from 1 to 5
+	 */
+	public CodedFile(String file) throws Exception{
+		options = new DecodingOptions(file);
+		options.setParameters();
+		options.run();
+		encodedStream = options.getEncodedStream();
+		header = options.getTERHeader();
+		if(options.getInputFileType() != 1 || header.getProgressionOrder() == 0){
+			throw new ParameterException("Only the files coded with progression orders from 1 to 5 can be extracted.");
+		}
+		initialStreamPosition = options.getInitialStreamPosition();
+	}
+
+	/**
+	 * Extracts the packets of all the layers and resolution levels of all the components that are needed to recover
+	 * a window of the image (spatial extraction).
+	 *
+	 * @param yInit first row of the window
+	 * @param yLength rows of the window
+	 * @param xInit first column of the window
+	 * @param xLength columns of the window
+	 * @return the extractor, whose packets are given by {@link #getPackets}
+	 *
+	 * @throws Exception when the packets cannot be read
+	 */
+	public TERExtractor extract(int yInit, int yLength, int xInit, int xLength) throws Exception{
+		int zSize = header.getZSize();
+		int channelList[] = new int[zSize];
+		int WTLevels = 0;
+		for(int z = 0; z < zSize; z++){
+			channelList[z] = z;
+			WTLevels = Math.max(WTLevels, header.getWTLevels()[z]);
+		}
+		encodedStream.seek(initialStreamPosition);
+		TERExtractor extractor = new TERExtractor(encodedStream, header.getProgressionOrder(),
+				options.getLayerLocation(), options.getHeaderLengths(), options.getPacketLengths());
+		extractor.setParameters(zSize, header.getXSizes(), header.getLayers(),
+				header.getWTLevels(), header.getWTType(), header.getWTOrder(),
+				header.getCustomWtFlag(), header.getCustomWeight(),
+				header.getPadRows(), header.getImageExtensionType(), header.getTransposeImage(),
+				header.getSignedPixels(), header.getPixelBitDepth(),
+				header.getImageWidth(), null,
+				header.getBitDepthDC(), header.getBitDepthAC(),
+				header.getBlocksPerSegment(), header.getGaggleSizeDC(), header.getGaggleSizeAC(), header.getEntropyAC(),
+				1, channelList, yInit, yLength, xInit, xLength,
+				header.getLayers(), WTLevels, (int) encodedStream.getTotalBytes());
+		packets = extractor.run();
+		return(extractor);
+	}
+
+	/**
+	 * Creates the decoder of the packets of an extraction, as the interactive decoder does (whole extracted
+	 * components, with no region).
+	 *
+	 * @param extractor the extractor that has run
+	 * @param packets the packets returned by the extractor
+	 * @return the decoder, whose parameters are set
+	 */
+	public DecodeAvailable newDecodeAvailable(TERExtractor extractor, byte packets[][][][][]){
+		int zSize = extractor.getZSizeExtraction();
+		int WTLevels[] = extractor.getWTLevelsExtraction();
+		int resolutionLevels[] = new int[zSize];
+		int completionMode[] = new int[zSize];
+		float gammaValue[] = new float[zSize];
+		for(int z = 0; z < zSize; z++){
+			resolutionLevels[z] = WTLevels[z] + 1;
+			completionMode[z] = TERDefaultValues.completionMode;
+			gammaValue[z] = TERDefaultValues.gammaValue;
+		}
+		DecodeAvailable decode = new DecodeAvailable(packets, extractor.getPacketOffsets(), extractor.getPacketLengths());
+		decode.setParameters(zSize, extractor.getYSizeExtraction(), extractor.getXSizeExtraction(),
+				extractor.getImageExtensionTypeExtraction(), extractor.getWTTypeExtraction(), WTLevels, resolutionLevels,
+				extractor.getCustomWtFlagExtraction(), extractor.getCustomWeightExtraction(),
+				extractor.getBlocksPerSegmentExtraction(), extractor.getGaggleSizeDCExtraction(),
+				extractor.getGaggleSizeACExtraction(), extractor.getEntropyACExtraction(),
+				extractor.getBitDepthDCExtraction(), extractor.getBitDepthACExtraction(),
+				completionMode, gammaValue);
+		return(decode);
+	}
+
+	/**
+	 * @return the packets of the last extraction, index meaning [z][segment][rLevel][gaggle]
+	 */
+	public byte[][][][][] getPackets(){
+		return(packets);
+	}
+
+	/**
+	 * @return the header of the file
+	 */
+	public ReadTERHeader getHeader(){
+		return(header);
+	}
+
+	/**
+	 * Closes the file.
+	 *
+	 * @throws Exception when the file cannot be closed
+	 */
+	public void close() throws Exception{
+		encodedStream.close();
+	}
+
+}
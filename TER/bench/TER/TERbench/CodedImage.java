@@ -0,0 +1,252 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERbench;
+
+import GiciException.*;
+import TER.TERDefaultValues;
+import TER.TERcoder.Coder;
+import TER.TERcoder.WriteFile.WriteFile;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * This class codes an image with the default parameters of TERcode, except the ones that are given, and keeps the
+ * writer of the encoded file with the segments coded by the bit plane encoder, so that the stages that follow the
+ * bit plane encoder can be timed alone. It is the fixture of the benchmarks that need coded data.<br>
+ * Usage example:<br>
+ * &nbsp; construct<br>
+ * &nbsp; setParameters<br>
+ * &nbsp; run<br>
+ * &nbsp; getWriteFile / write<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class CodedImage{
+
+	/**
+	 * Samples of the image, index meaning [z][y][x]. They are not modified.
+	 */
+	float imageSamples[][][] = null;
+
+	/**
+	 * Bits of each sample.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	int bitDepth;
+
+	/**
+	 * True if the samples are signed.
+	 */
+	boolean signed;
+
+	/**
+	 * Definition in {@link TER.TERcoder.Coder#WTType}, for all the components.
+	 */
+	int WTType;
+
+	/**
+	 * Definition in {@link TER.TERcoder.Coder#WTLevels}, for all the components.
+	 */
+	int WTLevels;
+
+	/**
+	 * Definition in {@link TER.TERcoder.Coder#progressionOrder}.
+	 */
+	int progressionOrder;
+
+	/**
+	 * Definition in {@link TER.TERcoder.Coder#numberOfLayers}.
+	 */
+	int numberOfLayers;
+
+	/**
+	 * Writer of the encoded file kept from the last run.
+	 * <p>
+	 * Null until run.
+	 */
+	KeptWriteFile writeFile = null;
+
+	/**
+	 * To know if parameters are set.
+	 * <p>
+	 * True indicates that they are set otherwise false.
+	 */
+	boolean parametersSet = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param imageSamples definition in {@link #imageSamples}
+	 * @param bitDepth definition in {@link #bitDepth}
+	 * @param signed definition in {@link #signed}
+	 */
+	public CodedImage(float imageSamples[][][], int bitDepth, boolean signed){
+		this.imageSamples = imageSamples;
+		this.bitDepth = bitDepth;
+		this.signed = signed;
+	}
+
+	/**
+	 * Sets the parameters that are not the default ones of TERcode.
+	 *
+	 * @param WTType definition in {@link #WTType}
+	 * @param WTLevels definition in {@link #WTLevels}
+	 * @param progressionOrder definition in {@link #progressionOrder}
+	 * @param numberOfLayers definition in {@link #numberOfLayers}
+	 */
+	public void setParameters(int WTType, int WTLevels, int progressionOrder, int numberOfLayers){
+		this.WTType = WTType;
+		this.WTLevels = WTLevels;
+		this.progressionOrder = progressionOrder;
+		this.numberOfLayers = numberOfLayers;
+		parametersSet = true;
+	}
+
+	/**
+	 * Codes the image up to the bit plane encoder, keeping the writer of the encoded file.
+	 *
+	 * @return the writer, whose parameters are set (see {@link #getWriteFile})
+	 *
+	 * @throws Exception when the image cannot be coded
+	 */
+	public WriteFile run() throws Exception{
+		writeFile = new KeptWriteFile();
+		newCoder(writeFile).run(OutputStream.nullOutputStream());
+		return(writeFile);
+	}
+
+	/**
+	 * Codes the image to a file.
+	 *
+	 * @param file name of the encoded file
+	 *
+	 * @throws Exception when the image cannot be coded or the file cannot be written
+	 */
+	public void write(String file) throws Exception{
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+		try{
+			newCoder(null).run(out);
+		}finally{
+			out.close();
+		}
+	}
+
+	/**
+	 * Creates a coder of a copy of the image (the coder transforms the image in place).
+	 *
+	 * @param keptWriteFile writer used by the coder, or null to use its own
+	 * @return the coder, whose parameters are set
+	 *
+	 * @throws ParameterException when parameters are not set or they are not valid
+	 */
+	private Coder newCoder(final KeptWriteFile keptWriteFile) throws ParameterException{
+		if(!parametersSet){
+			throw new ParameterException("CodedImage cannot run if parameters are not set.");
+		}
+		int zSize = imageSamples.length;
+		float samples[][][] = new float[zSize][][];
+		Class types[] = new Class[zSize];
+		int pixelBitDepth[] = new int[zSize];
+		int signedPixels[] = new int[zSize];
+		int WTTypes[] = new int[zSize];
+		int WTLevelsZ[] = new int[zSize];
+		for(int z = 0; z < zSize; z++){
+			samples[z] = new float[imageSamples[z].length][];
+			for(int y = 0; y < imageSamples[z].length; y++){
+				samples[z][y] = imageSamples[z][y].clone();
+			}
+			types[z] = bitDepth <= 8 && !signed ? Byte.TYPE: Short.TYPE;
+			pixelBitDepth[z] = bitDepth;
+			signedPixels[z] = signed ? 1: 0;
+			WTTypes[z] = WTType;
+			WTLevelsZ[z] = WTLevels;
+		}
+		Coder coder = new Coder(samples, types, false){
+			protected WriteFile createWriteFile(){
+				return(keptWriteFile != null ? keptWriteFile: super.createWriteFile());
+			}
+		};
+		coder.setParameters("", 1, null, WTTypes, WTLevelsZ, null, null, null,
+				null, null, null, null, null, null, null, null, null, null, null,
+				signedPixels, null, null, pixelBitDepth,
+				null, null, null, null, null, null, null, null, null,
+				TERDefaultValues.CVerbose, null, null, null,
+				progressionOrder, TERDefaultValues.LSType, null, null, null,
+				null, null,
+				numberOfLayers, TERDefaultValues.layerCreationType,
+				TERDefaultValues.layerSizeType, null,
+				0, 0, 0,
+				TERDefaultValues.lowMemory, 1);
+		return(coder);
+	}
+
+	/**
+	 * @return the writer kept from the last {@link #run}, which writes to a stream that discards the data
+	 */
+	public WriteFile getWriteFile(){
+		return(writeFile);
+	}
+
+	/**
+	 * Writer whose first run, which is the one of the coder, does nothing.
+	 */
+	static class KeptWriteFile extends WriteFile{
+
+		/**
+		 * True until the first run.
+		 */
+		boolean kept = true;
+
+		/**
+		 * Constructor.
+		 */
+		KeptWriteFile(){
+			setOutputStream(OutputStream.nullOutputStream());
+		}
+
+		/**
+		 * Writes the encoded file, except the first time.
+		 *
+		 * @throws Exception when the file cannot be written
+		 */
+		public void run() throws Exception{
+			if(kept){
+				kept = false;
+			}else{
+				super.run();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERbench;
+
+import TER.TERcode;
+import TER.TERdecode;
+import TER.TERCommon.Metrics;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+
+/**
+ * Main class run by {@link ThroughputHarness} in a new virtual machine for each coding or decoding, so that the peak
+ * memory of each one is measured alone. It runs TERcode or TERdecode with the given arguments and prints a last line
+ * with the elapsed nanoseconds, the peak resident set size and the peak heap, in this order and separated by spaces,
+ * after the {@link #MARK}.
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class StageRunner{
+
+	/**
+	 * Beginning of the line with the measures.
+	 */
+	public static final String MARK = "StageRunner:";
+
+	/**
+	 * Main method. The first argument is the stage ("code" or "decode") and the rest are the arguments of TERcode or
+	 * TERdecode. The exit status is the one of TERcode or TERdecode when they fail.
+	 *
+	 * @param args an array of strings that contains the stage and its parameters
+	 */
+	public static void main(String[] args){
+		if(args.length == 0 || (!args[0].equals("code") && !args[0].equals("decode"))){
+			System.err.println("StageRunner : ARGUMENTS ERROR: the first argument must be \"code\" or \"decode\".");
+			System.exit(1);
+		}
+		String[] stageArgs = new String[args.length - 1];
+		System.arraycopy(args, 1, stageArgs, 0, stageArgs.length);
+
+		long start = System.nanoTime();
+		if(args[0].equals("code")){
+			int status = TERcode.code(stageArgs, null, null);
+			if(status != 0){
+				System.exit(status);
+			}
+		}else{
+			//TERdecode exits when it fails
+			TERdecode.main(stageArgs);
+		}
+		long nanos = System.nanoTime() - start;
+		System.out.println(MARK + " " + nanos + " " + getPeakRSS() + " " + Metrics.getPeakHeap());
+	}
+
+	/**
+	 * Reads the peak resident set size of the process (the high water mark of the Linux kernel).
+	 *
+	 * @return peak resident set size in bytes (-1 if it cannot be read)
+	 */
+	static long getPeakRSS(){
+		BufferedReader status = null;
+		try{
+			status = new BufferedReader(new FileReader("/proc/self/status"));
+			String line;
+			while((line = status.readLine()) != null){
+				if(line.startsWith("VmHWM:")){
+					String[] fields = line.substring(6).trim().split("\\s+");
+					return(Long.parseLong(fields[0]) * 1024);
+				}
+			}
+		}catch(IOException e){
+			//Not a Linux system
+		}catch(NumberFormatException e){
+			//Unknown format
+		}finally{
+			if(status != null){
+				try{
+					status.close();
+				}catch(IOException e){
+				}
+			}
+		}
+		return(-1);
+	}
+
+}
@@ -0,0 +1,332 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERbench;
+
+import GiciException.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+
+/**
+ * This class generates deterministic synthetic images, so that benchmarks and regression runs do not depend on any
+ * image file. The same parameters always give the same samples, in any platform (only {@link StrictMath} and a
+ * seeded {@link Random} are used).<br>
+ * Usage example:<br>
+ * &nbsp; construct<br>
+ * &nbsp; setParameters<br>
+ * &nbsp; run<br>
+ * &nbsp; write (optional)<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class SyntheticImage{
+
+	/**
+	 * Kinds of content that can be generated.
+	 * <p>
+	 * Valid values are:<br>
+	 *   <ul>
+	 *     <li> 0 - Smooth: a few low frequency waves
+	 *     <li> 1 - Textured: smooth content plus high frequency patterns, edges and some noise
+	 *     <li> 2 - Noise: uniformly distributed samples
+	 *     <li> 3 - Correlated: a textured scene seen through a smooth spectral response in each component, as in
+	 *              hyperspectral images
+	 *   </ul>
+	 */
+	public static final String[] TYPES = {"smooth", "textured", "noise", "correlated"};
+
+	/**
+	 * Image size, index meaning [0] - zSize, [1] - ySize, [2] - xSize.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	int size[] = null;
+
+	/**
+	 * Kind of content, see {@link #TYPES}.
+	 */
+	int type;
+
+	/**
+	 * Bits of each sample.
+	 * <p>
+	 * Values from 2 to 16 allowed.
+	 */
+	int bitDepth;
+
+	/**
+	 * True if the samples are signed, centered on 0.
+	 */
+	boolean signed;
+
+	/**
+	 * Seed of the random numbers.
+	 * <p>
+	 * Any value allowed.
+	 */
+	long seed;
+
+	/**
+	 * Generated samples, index meaning [z][y][x].
+	 * <p>
+	 * Null until run.
+	 */
+	float imageSamples[][][] = null;
+
+	/**
+	 * To know if parameters are set.
+	 * <p>
+	 * True indicates that they are set otherwise false.
+	 */
+	boolean parametersSet = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param zSize number of components
+	 * @param ySize number of rows
+	 * @param xSize number of columns
+	 */
+	public SyntheticImage(int zSize, int ySize, int xSize){
+		size = new int[]{zSize, ySize, xSize};
+	}
+
+	/**
+	 * Sets the content of the image.
+	 *
+	 * @param type definition in {@link #type}
+	 * @param bitDepth definition in {@link #bitDepth}
+	 * @param signed definition in {@link #signed}
+	 * @param seed definition in {@link #seed}
+	 *
+	 * @throws ParameterException when the parameters are not valid
+	 */
+	public void setParameters(int type, int bitDepth, boolean signed, long seed) throws ParameterException{
+		if(type < 0 || type >= TYPES.length){
+			throw new ParameterException("Unknown synthetic image type " + type + ".");
+		}
+		if(bitDepth < 2 || bitDepth > 16){
+			throw new ParameterException("Synthetic images must have from 2 to 16 bits per sample.");
+		}
+		if(size[0] <= 0 || size[1] <= 0 || size[2] <= 0){
+			throw new ParameterException("Synthetic image dimensions must be positive.");
+		}
+		this.type = type;
+		this.bitDepth = bitDepth;
+		this.signed = signed;
+		this.seed = seed;
+		imageSamples = null;
+		parametersSet = true;
+	}
+
+	/**
+	 * Sets the content of the image from the name of its type.
+	 *
+	 * @param type one of {@link #TYPES}
+	 * @param bitDepth definition in {@link #bitDepth}
+	 * @param signed definition in {@link #signed}
+	 * @param seed definition in {@link #seed}
+	 *
+	 * @throws ParameterException when the parameters are not valid
+	 */
+	public void setParameters(String type, int bitDepth, boolean signed, long seed) throws ParameterException{
+		int typeNum = -1;
+		for(int t = 0; t < TYPES.length; t++){
+			if(TYPES[t].equals(type)){
+				typeNum = t;
+			}
+		}
+		setParameters(typeNum, bitDepth, signed, seed);
+	}
+
+	/**
+	 * Generates the image.
+	 *
+	 * @return the samples, index meaning [z][y][x]
+	 *
+	 * @throws ParameterException when parameters are not set
+	 */
+	public float[][][] run() throws ParameterException{
+		if(!parametersSet){
+			throw new ParameterException("SyntheticImage cannot run if parameters are not set.");
+		}
+		int zSize = size[0], ySize = size[1], xSize = size[2];
+		float minValue = signed ? -(1 << (bitDepth - 1)): 0;
+		float maxValue = signed ? (1 << (bitDepth - 1)) - 1: (1 << bitDepth) - 1;
+		Random random = new Random(seed);
+
+		//Waves of the smooth content, with random phases so that the seed changes the image
+		double phase[] = new double[6];
+		for(int k = 0; k < phase.length; k++){
+			phase[k] = random.nextDouble() * 2 * Math.PI;
+		}
+
+		//Spatial field shared by the components of correlated images
+		float scene[][] = null;
+		if(type == 3){
+			scene = new float[ySize][xSize];
+			for(int y = 0; y < ySize; y++){
+				for(int x = 0; x < xSize; x++){
+					scene[y][x] = (float) textured(y, x, ySize, xSize, phase, random);
+				}
+			}
+		}
+
+		imageSamples = new float[zSize][ySize][xSize];
+		for(int z = 0; z < zSize; z++){
+			//Spectral response of the component, smooth along z
+			double gain = 0.6 + 0.3 * StrictMath.sin(2 * Math.PI * z / Math.max(zSize, 8) + phase[0]);
+			double offset = 0.15 + 0.1 * StrictMath.cos(Math.PI * z / Math.max(zSize, 8) + phase[1]);
+			for(int y = 0; y < ySize; y++){
+				for(int x = 0; x < xSize; x++){
+					double value;
+					switch(type){
+					case 0:
+						value = smooth(y + z, x + z, ySize, xSize, phase);
+						break;
+					case 1:
+						value = textured(y + z, x + z, ySize, xSize, phase, random);
+						break;
+					case 2:
+						value = random.nextDouble();
+						break;
+					default:
+						value = offset + gain * 0.8 * scene[y][x] + 0.01 * random.nextGaussian();
+						break;
+					}
+					value = Math.min(1, Math.max(0, value));
+					imageSamples[z][y][x] = (float) Math.round(minValue + value * (maxValue - minValue));
+				}
+			}
+		}
+		return(imageSamples);
+	}
+
+	/**
+	 * Smooth content, in [0, 1].
+	 *
+	 * @param y row
+	 * @param x column
+	 * @param ySize number of rows
+	 * @param xSize number of columns
+	 * @param phase phases of the waves
+	 * @return the value of the sample
+	 */
+	private static double smooth(int y, int x, int ySize, int xSize, double phase[]){
+		double fy = 2 * Math.PI * y / ySize;
+		double fx = 2 * Math.PI * x / xSize;
+		return(0.5 + 0.25 * StrictMath.sin(fx + phase[2]) * StrictMath.cos(fy + phase[3])
+				+ 0.15 * StrictMath.sin(2 * fx + 3 * fy + phase[4]) + 0.1 * StrictMath.cos(3 * fx - fy + phase[5]));
+	}
+
+	/**
+	 * Textured content, in [0, 1] before clipping.
+	 *
+	 * @param y row
+	 * @param x column
+	 * @param ySize number of rows
+	 * @param xSize number of columns
+	 * @param phase phases of the waves
+	 * @param random generator of the noise
+	 * @return the value of the sample
+	 */
+	private static double textured(int y, int x, int ySize, int xSize, double phase[], Random random){
+		double value = 0.7 * smooth(y, x, ySize, xSize, phase);
+		value += 0.12 * StrictMath.sin(0.9 * x + phase[2]) * StrictMath.sin(1.3 * y + phase[3]);
+		value += ((x / 16 + y / 16) % 2 == 0) ? 0.1: 0;
+		value += 0.04 * random.nextGaussian();
+		return(value + 0.05);
+	}
+
+	/**
+	 * Writes the generated image to a raw file in BSQ order and big endian, with the sample type given by
+	 * {@link #getSampleType}.
+	 *
+	 * @param file name of the file
+	 *
+	 * @throws WarningException when the image has not been generated or the file cannot be written
+	 */
+	public void write(String file) throws WarningException{
+		if(imageSamples == null){
+			throw new WarningException("SyntheticImage must run before it is written.");
+		}
+		int sampleType = getSampleType();
+		DataOutputStream out = null;
+		try{
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+			for(int z = 0; z < imageSamples.length; z++){
+				for(int y = 0; y < imageSamples[z].length; y++){
+					for(int x = 0; x < imageSamples[z][y].length; x++){
+						int sample = (int) imageSamples[z][y][x];
+						if(sampleType == 1){
+							out.writeByte(sample);
+						}else if(sampleType == 2){
+							out.writeChar(sample);
+						}else{
+							out.writeShort(sample);
+						}
+					}
+				}
+			}
+		}catch(IOException e){
+			throw new WarningException("Synthetic image \"" + file + "\" can not be written.");
+		}finally{
+			if(out != null){
+				try{
+					out.close();
+				}catch(IOException e){
+					throw new WarningException("Synthetic image \"" + file + "\" can not be written.");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Indicates the raw sample type used by {@link #write}, as given in the image geometry of the coder: 1 (byte)
+	 * for unsigned samples of up to 8 bits, 2 (char) for unsigned samples of more bits and 3 (short) for signed
+	 * samples.
+	 *
+	 * @return the sample type
+	 */
+	public int getSampleType(){
+		return(signed ? 3: bitDepth <= 8 ? 1: 2);
+	}
+
+	/**
+	 * @return the generated samples, index meaning [z][y][x] (null if the image has not been generated)
+	 */
+	public float[][][] getImageSamples(){
+		return(imageSamples);
+	}
+
+}
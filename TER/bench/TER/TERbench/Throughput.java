@@ -0,0 +1,80 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERbench;
+
+
+/**
+ * Main class of the throughput regression harness. It codes and decodes a corpus of synthetic images with TERcode and
+ * TERdecode (see {@link ThroughputHarness}) and exits with status 5 when any case is not lossless or its throughput
+ * has decreased with respect to the baseline.<br>
+ * Usage example (with the classes of TER and of the benchmarks in the class path):<br>
+ * &nbsp; java TER.TERbench.Throughput -w baseline.csv<br>
+ * &nbsp; java TER.TERbench.Throughput -b baseline.csv -t 10<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class Throughput{
+	/**
+	 * Main method of the throughput harness. It takes program arguments and runs the harness.
+	 *
+	 * @param args an array of strings that contains program parameters
+	 */
+	public static void main(String[] args){
+		//Parse arguments
+		ArgsParserThroughput argsParser = null;
+		try{
+			argsParser = new ArgsParserThroughput(args);
+		}catch(Exception e){
+			System.err.println("Throughput : ARGUMENTS ERROR: " +  e.getMessage());
+			System.exit(1);
+		}
+
+		ThroughputHarness harness = new ThroughputHarness();
+		try{
+			harness.setParameters(argsParser.getSize(), argsParser.getTypes(), argsParser.getBitDepths(),
+					argsParser.getSigned(), argsParser.getRepetitions(), argsParser.getBaselineFile(),
+					argsParser.getResultsFile(), argsParser.getTolerance(), argsParser.getWorkDirectory(),
+					argsParser.getJvmOptions());
+		}catch(Exception e){
+			System.err.println("Throughput PARAMETERS ERROR: " + e.getMessage());
+			System.exit(3);
+		}
+		int failures = 0;
+		try{
+			failures = harness.run();
+		}catch(Exception e){
+			e.printStackTrace();
+			System.err.println("Throughput RUNNING ERROR: " + e.getMessage());
+			System.exit(4);
+		}
+		if(failures > 0){
+			System.exit(5);
+		}
+	}
+}
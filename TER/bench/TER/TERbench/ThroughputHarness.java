@@ -0,0 +1,464 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERbench;
+
+import GiciException.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * This class runs TERcode and TERdecode end to end over a corpus of synthetic images (see {@link SyntheticImage}) with
+ * each file type and progression order, measuring the throughput and the peak memory of each coding and decoding. The
+ * results are compared with the ones of a baseline file, and the run fails when the throughput of any case has
+ * decreased by more than a tolerance or when any round trip is not lossless.<br>
+ * Each coding and decoding is run in a new virtual machine (see {@link StageRunner}), so the measures include loading
+ * and saving the files but not the start up of the virtual machine. Throughputs are given in MB/s (2^20 bytes) of the
+ * raw image.<br>
+ * Usage example:<br>
+ * &nbsp; construct<br>
+ * &nbsp; setParameters<br>
+ * &nbsp; run<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class ThroughputHarness{
+
+	/**
+	 * Configurations of the coder that are run for each image, index meaning [configuration][0] - outputFileType,
+	 * [configuration][1] - progressionOrder (see {@link TER.TERcoder.Coder}). The recommended file (outputFileType 0)
+	 * holds one component, so only the first component of the image is coded in it.
+	 */
+	static final int[][] CONFIGURATIONS = {{0, 0}, {1, 0}, {1, 1}, {1, 2}, {1, 3}, {1, 4}, {1, 5}};
+
+	/**
+	 * Header of the results files.
+	 */
+	static final String RESULTS_HEADER = "case,codeMBps,decodeMBps,codePeakRSS,decodePeakRSS,codePeakHeap,decodePeakHeap,lossless";
+
+	/**
+	 * Size of the images, index meaning [0] - zSize, [1] - ySize, [2] - xSize.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	int[] size = null;
+
+	/**
+	 * Kinds of images of the corpus, see {@link SyntheticImage#TYPES}.
+	 */
+	String[] types = null;
+
+	/**
+	 * Bits per sample of the images of the corpus.
+	 * <p>
+	 * Values from 2 to 16 allowed.
+	 */
+	int[] bitDepths = null;
+
+	/**
+	 * Signedness of the images of the corpus.
+	 */
+	boolean[] signed = null;
+
+	/**
+	 * Times that each image is coded and decoded.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	int repetitions;
+
+	/**
+	 * File with the results of a previous run.
+	 * <p>
+	 * Null if the results are not compared.
+	 */
+	String baselineFile = null;
+
+	/**
+	 * File where the results are written.
+	 * <p>
+	 * Null if the results are not written.
+	 */
+	String resultsFile = null;
+
+	/**
+	 * Percentage of throughput that a case can lose with respect to the baseline.
+	 * <p>
+	 * Only non negative values allowed.
+	 */
+	float tolerance;
+
+	/**
+	 * Directory where the corpus, the encoded files and the recovered images are written.
+	 */
+	File workDirectory = null;
+
+	/**
+	 * Options of the virtual machines that code and decode.
+	 */
+	String[] jvmOptions = null;
+
+	/**
+	 * Results of each case, in order of run, index meaning [0] - coding MB/s, [1] - decoding MB/s, [2] - coder peak
+	 * RSS, [3] - decoder peak RSS, [4] - coder peak heap, [5] - decoder peak heap (memory in bytes, -1 if not
+	 * measured), [6] - 1 if the round trip is lossless, 0 otherwise.
+	 */
+	LinkedHashMap<String, double[]> results = new LinkedHashMap<String, double[]>();
+
+	/**
+	 * To know if parameters are set.
+	 * <p>
+	 * True indicates that they are set otherwise false.
+	 */
+	boolean parametersSet = false;
+
+	/**
+	 * Sets the corpus and the comparison.
+	 *
+	 * @param size definition in {@link #size}
+	 * @param types definition in {@link #types}
+	 * @param bitDepths definition in {@link #bitDepths}
+	 * @param signed definition in {@link #signed}
+	 * @param repetitions definition in {@link #repetitions}
+	 * @param baselineFile definition in {@link #baselineFile}
+	 * @param resultsFile definition in {@link #resultsFile}
+	 * @param tolerance definition in {@link #tolerance}
+	 * @param workDirectory definition in {@link #workDirectory} (null to use a directory in the temporary directory)
+	 * @param jvmOptions definition in {@link #jvmOptions}
+	 *
+	 * @throws ParameterException when the parameters are not valid
+	 */
+	public void setParameters(int[] size, String[] types, int[] bitDepths, boolean[] signed, int repetitions,
+			String baselineFile, String resultsFile, float tolerance, String workDirectory, String[] jvmOptions)
+			throws ParameterException{
+		if(size == null || size.length != 3 || size[0] <= 0 || size[1] <= 0 || size[2] <= 0){
+			throw new ParameterException("Image size must have three positive values.");
+		}
+		for(String type: types){
+			if(!Arrays.asList(SyntheticImage.TYPES).contains(type)){
+				throw new ParameterException("Unknown synthetic image type \"" + type + "\".");
+			}
+		}
+		for(int bitDepth: bitDepths){
+			if(bitDepth < 2 || bitDepth > 16){
+				throw new ParameterException("Synthetic images must have from 2 to 16 bits per sample.");
+			}
+		}
+		if(repetitions <= 0){
+			throw new ParameterException("Repetitions must be positive.");
+		}
+		if(tolerance < 0){
+			throw new ParameterException("Tolerance cannot be negative.");
+		}
+		this.size = size;
+		this.types = types;
+		this.bitDepths = bitDepths;
+		this.signed = signed;
+		this.repetitions = repetitions;
+		this.baselineFile = baselineFile;
+		this.resultsFile = resultsFile;
+		this.tolerance = tolerance;
+		this.workDirectory = workDirectory != null ? new File(workDirectory): new File(System.getProperty("java.io.tmpdir"), "TERthroughput");
+		this.jvmOptions = jvmOptions;
+		parametersSet = true;
+	}
+
+	/**
+	 * Runs all the cases, displays their results, writes them to the results file and compares them with the baseline.
+	 *
+	 * @return the number of failed cases: cases that are not lossless or whose throughput has decreased
+	 *
+	 * @throws ParameterException when parameters are not set
+	 * @throws WarningException when an image cannot be coded or decoded, or the files cannot be read or written
+	 */
+	public int run() throws ParameterException, WarningException{
+		if(!parametersSet){
+			throw new ParameterException("ThroughputHarness cannot run if parameters are not set.");
+		}
+		LinkedHashMap<String, double[]> baseline = baselineFile != null ? readResults(baselineFile): null;
+		if(!workDirectory.isDirectory() && !workDirectory.mkdirs()){
+			throw new WarningException("Work directory \"" + workDirectory + "\" can not be created.");
+		}
+		results.clear();
+		int failures = 0;
+
+		for(String type: types){
+		for(int bitDepth: bitDepths){
+		for(boolean imageSigned: signed){
+			//Corpus image, and its first component for the recommended file (that holds one component)
+			String imageName = type + bitDepth + (imageSigned ? "s": "u");
+			File[] rawFiles = new File[2];
+			String[][] geometries = new String[2][];
+			for(int outputFileType = 0; outputFileType < 2; outputFileType++){
+				int zSize = outputFileType == 0 ? 1: size[0];
+				SyntheticImage syntheticImage = new SyntheticImage(zSize, size[1], size[2]);
+				syntheticImage.setParameters(type, bitDepth, imageSigned, bitDepth);
+				syntheticImage.run();
+				rawFiles[outputFileType] = new File(workDirectory, imageName + (outputFileType == 0 ? "z0": "") + ".raw");
+				syntheticImage.write(rawFiles[outputFileType].getPath());
+				geometries[outputFileType] = new String[]{Integer.toString(zSize), Integer.toString(size[1]),
+						Integer.toString(size[2]), Integer.toString(syntheticImage.getSampleType()), "0", "0"};
+			}
+
+			for(int[] configuration: CONFIGURATIONS){
+				String caseName = imageName + "-of" + configuration[0] + "-po" + configuration[1];
+				File rawFile = rawFiles[configuration[0]];
+				String[] geometry = geometries[configuration[0]];
+				double megabytes = rawFile.length() / (double) (1 << 20);
+				File codedBase = new File(workDirectory, imageName);
+				File codedFile = new File(workDirectory, imageName + (configuration[0] == 0 ? ".rec": ".ter"));
+				File recoveredFile = new File(workDirectory, imageName + ".rec.raw");
+
+				ArrayList<String> coderArgs = new ArrayList<String>();
+				coderArgs.addAll(Arrays.asList("-i", rawFile.getPath(), "-g"));
+				coderArgs.addAll(Arrays.asList(geometry));
+				coderArgs.addAll(Arrays.asList("-o", codedBase.getPath(), "-of", Integer.toString(configuration[0]),
+						"-po", Integer.toString(configuration[1])));
+				ArrayList<String> decoderArgs = new ArrayList<String>();
+				decoderArgs.addAll(Arrays.asList("-i", codedFile.getPath(), "-o", recoveredFile.getPath(), "-g"));
+				decoderArgs.addAll(Arrays.asList(geometry));
+
+				//Best throughput and highest memory of the repetitions
+				double[] result = new double[7];
+				Arrays.fill(result, 2, 6, -1);
+				for(int repetition = 0; repetition < repetitions; repetition++){
+					long[] coder = runStage("code", coderArgs, caseName);
+					long[] decoder = runStage("decode", decoderArgs, caseName);
+					result[0] = Math.max(result[0], megabytes / (coder[0] / 1e9));
+					result[1] = Math.max(result[1], megabytes / (decoder[0] / 1e9));
+					result[2] = Math.max(result[2], coder[1]);
+					result[3] = Math.max(result[3], decoder[1]);
+					result[4] = Math.max(result[4], coder[2]);
+					result[5] = Math.max(result[5], decoder[2]);
+				}
+				result[6] = sameContent(rawFile, recoveredFile) ? 1: 0;
+				codedFile.delete();
+				recoveredFile.delete();
+				results.put(caseName, result);
+
+				//Display and comparison with the baseline
+				System.out.println(String.format("%-26s code %8.2f MB/s  decode %8.2f MB/s  RSS %5d/%5d MB  heap %5d/%5d MB  %s",
+						caseName, result[0], result[1], toMB(result[2]), toMB(result[3]), toMB(result[4]), toMB(result[5]),
+						result[6] == 1 ? "lossless": "NOT LOSSLESS"));
+				boolean failed = result[6] != 1;
+				double[] base = baseline != null ? baseline.get(caseName): null;
+				if(base != null){
+					double minRatio = 1 - tolerance / 100;
+					if(result[0] < base[0] * minRatio){
+						System.out.println(String.format("  REGRESSION: coding %.2f MB/s, baseline %.2f MB/s (%.1f%%)",
+								result[0], base[0], 100 * (result[0] / base[0] - 1)));
+						failed = true;
+					}
+					if(result[1] < base[1] * minRatio){
+						System.out.println(String.format("  REGRESSION: decoding %.2f MB/s, baseline %.2f MB/s (%.1f%%)",
+								result[1], base[1], 100 * (result[1] / base[1] - 1)));
+						failed = true;
+					}
+				}
+				if(failed){
+					failures++;
+				}
+			}
+			rawFiles[0].delete();
+			rawFiles[1].delete();
+		}
+		}
+		}
+
+		if(resultsFile != null){
+			writeResults(resultsFile);
+		}
+		System.out.println(results.size() + " cases, " + failures + " failed" + (baseline == null ? " (no baseline)": ""));
+		return(failures);
+	}
+
+	/**
+	 * Codes or decodes in a new virtual machine.
+	 *
+	 * @param stage "code" or "decode"
+	 * @param args arguments of TERcode or TERdecode
+	 * @param caseName name of the case, for the error messages
+	 * @return the measures, index meaning [0] - elapsed nanoseconds, [1] - peak RSS, [2] - peak heap (in bytes, -1 if not measured)
+	 *
+	 * @throws WarningException when the virtual machine cannot be run or the stage fails
+	 */
+	long[] runStage(String stage, ArrayList<String> args, String caseName) throws WarningException{
+		ArrayList<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(Arrays.asList(jvmOptions));
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(StageRunner.class.getName());
+		command.add(stage);
+		command.addAll(args);
+
+		StringBuilder output = new StringBuilder();
+		long[] measures = null;
+		int status;
+		try{
+			Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+			BufferedReader processOutput = new BufferedReader(new InputStreamReader(process.getInputStream()));
+			String line;
+			while((line = processOutput.readLine()) != null){
+				if(line.startsWith(StageRunner.MARK)){
+					String[] fields = line.substring(StageRunner.MARK.length()).trim().split(" ");
+					measures = new long[]{Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2])};
+				}else{
+					output.append(line).append('\n');
+				}
+			}
+			processOutput.close();
+			status = process.waitFor();
+		}catch(IOException e){
+			throw new WarningException("Case " + caseName + " can not " + stage + ": " + e.getMessage());
+		}catch(InterruptedException e){
+			throw new WarningException("Case " + caseName + " interrupted while running " + stage + ".");
+		}
+		if(status != 0 || measures == null){
+			throw new WarningException("Case " + caseName + " fails to " + stage + " (exit status " + status + "):\n" + output);
+		}
+		return(measures);
+	}
+
+	/**
+	 * Compares the content of two files.
+	 *
+	 * @param original the original image
+	 * @param recovered the recovered image
+	 * @return true if both files have the same bytes
+	 *
+	 * @throws WarningException when a file cannot be read
+	 */
+	static boolean sameContent(File original, File recovered) throws WarningException{
+		try{
+			return(Arrays.equals(Files.readAllBytes(original.toPath()), Files.readAllBytes(recovered.toPath())));
+		}catch(IOException e){
+			throw new WarningException("Files \"" + original + "\" and \"" + recovered + "\" can not be compared.");
+		}
+	}
+
+	/**
+	 * Writes the results in CSV, with the header {@link #RESULTS_HEADER}.
+	 *
+	 * @param file name of the file
+	 *
+	 * @throws WarningException when the file cannot be written
+	 */
+	void writeResults(String file) throws WarningException{
+		PrintStream out = null;
+		try{
+			out = new PrintStream(new FileOutputStream(file));
+			out.println(RESULTS_HEADER);
+			for(Map.Entry<String, double[]> entry: results.entrySet()){
+				double[] result = entry.getValue();
+				out.println(entry.getKey() + String.format(",%.3f,%.3f,%d,%d,%d,%d,%d", result[0], result[1],
+						(long) result[2], (long) result[3], (long) result[4], (long) result[5], (long) result[6]));
+			}
+		}catch(IOException e){
+			throw new WarningException("Results file \"" + file + "\" can not be written.");
+		}finally{
+			if(out != null){
+				out.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads the results written by {@link #writeResults}.
+	 *
+	 * @param file name of the file
+	 * @return the results of each case, with the index meaning of {@link #results}
+	 *
+	 * @throws WarningException when the file cannot be read or its format is not valid
+	 */
+	static LinkedHashMap<String, double[]> readResults(String file) throws WarningException{
+		LinkedHashMap<String, double[]> fileResults = new LinkedHashMap<String, double[]>();
+		BufferedReader in = null;
+		try{
+			in = new BufferedReader(new FileReader(file));
+			String line = in.readLine();
+			if(line == null || !line.equals(RESULTS_HEADER)){
+				throw new WarningException("Baseline file \"" + file + "\" is not a results file.");
+			}
+			while((line = in.readLine()) != null){
+				if(line.trim().length() == 0){
+					continue;
+				}
+				String[] fields = line.split(",");
+				if(fields.length != 8){
+					throw new WarningException("Wrong line in baseline file \"" + file + "\": " + line);
+				}
+				double[] result = new double[7];
+				for(int field = 1; field < fields.length; field++){
+					result[field - 1] = Double.parseDouble(fields[field]);
+				}
+				fileResults.put(fields[0], result);
+			}
+		}catch(IOException e){
+			throw new WarningException("Baseline file \"" + file + "\" can not be read.");
+		}catch(NumberFormatException e){
+			throw new WarningException("Wrong number in baseline file \"" + file + "\": " + e.getMessage());
+		}finally{
+			if(in != null){
+				try{
+					in.close();
+				}catch(IOException e){
+				}
+			}
+		}
+		return(fileResults);
+	}
+
+	/**
+	 * @param bytes memory in bytes (-1 if not measured)
+	 * @return memory in MB (-1 if not measured)
+	 */
+	private static long toMB(double bytes){
+		return(bytes < 0 ? -1: Math.round(bytes / (1 << 20)));
+	}
+
+	/**
+	 * @return the results of the last run, with the index meaning of {@link #results}
+	 */
+	public LinkedHashMap<String, double[]> getResults(){
+		return(results);
+	}
+
+}
@@ -0,0 +1,246 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERcoder.SegmentCoder;
+
+import GiciStream.ByteStream;
+import GiciTransform.ForwardWaveletTransform;
+import TER.TERDefaultValues;
+import TER.TERbench.SyntheticImage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * This class benchmarks the block coder ({@link CodeBlockAC}) and the entropy coder of the gaggles
+ * ({@link EncodeGaggleAC}) over all the bitplanes of a segment with all the blocks of a synthetic band, transformed
+ * with the integer 9/7M DWT. Both are run as {@link SegmentCode2D} runs them, with one thread.
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BitPlaneEncoderBenchmark{
+
+	/**
+	 * Number of rows of the synthetic image.
+	 */
+	@Param({"512"})
+	public int ySize;
+
+	/**
+	 * Number of columns of the synthetic image.
+	 */
+	@Param({"512"})
+	public int xSize;
+
+	/**
+	 * Bits of each sample of the synthetic image.
+	 */
+	@Param({"8", "12", "16"})
+	public int bitDepth;
+
+	/**
+	 * Content of the synthetic image, see {@link SyntheticImage#TYPES}.
+	 */
+	@Param({"smooth", "textured", "noise"})
+	public String type;
+
+	/**
+	 * Definition in {@link EncodeGaggleAC#entropyAC} (0 - raw, 1 - CCSDS codes).
+	 */
+	@Param({"1"})
+	public int entropyAC;
+
+	/**
+	 * Levels of the DWT, that are also the resolution levels of the blocks.
+	 */
+	int WTLevels = TERDefaultValues.WTLevels;
+
+	/**
+	 * Blocks per gaggle.
+	 */
+	int gaggleSize = TERDefaultValues.gaggleACSize;
+
+	/**
+	 * Transformed band, index meaning [y][x].
+	 */
+	float coefficients[][] = null;
+
+	/**
+	 * Number of each block of the segment in the band.
+	 */
+	int blockInSegment[] = null;
+
+	/**
+	 * Bitplanes of each block, index meaning [gaggle][block].
+	 */
+	int bitDepthACBlock[][] = null;
+
+	/**
+	 * Bitplanes of the segment.
+	 */
+	int bitDepthAC;
+
+	/**
+	 * Definition in {@link CodeBlockAC#BP}.
+	 */
+	int BP[] = null;
+
+	/**
+	 * Output of the block coder kept for the entropy coder, index meaning [gaggle][bitplane][block].
+	 */
+	ByteStream sortingAC[][][][][][] = null;
+
+	/**
+	 * Symbol histogram of each gaggle in each bitplane, index meaning [gaggle][bitplane].
+	 */
+	int symbolHistogram[][][] = null;
+
+	/**
+	 * Generates and transforms the band and codes its blocks once, to know their bitplanes and to keep the output
+	 * of the block coder.
+	 *
+	 * @throws Exception when the band cannot be generated or coded
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Exception{
+		SyntheticImage image = new SyntheticImage(1, ySize, xSize);
+		image.setParameters(type, bitDepth, false, 1);
+		float band[][][] = image.run();
+		//Level shift, as done by the coder for unsigned samples
+		for(int y = 0; y < ySize; y++){
+			for(int x = 0; x < xSize; x++){
+				band[0][y][x] -= 1 << (bitDepth - 1);
+			}
+		}
+		ForwardWaveletTransform fwt = new ForwardWaveletTransform(band);
+		fwt.setParameters(new int[]{4}, new int[]{WTLevels});
+		coefficients = fwt.run()[0];
+
+		int blocks = (ySize >> WTLevels) * (xSize >> WTLevels);
+		blockInSegment = new int[blocks];
+		for(int block = 0; block < blocks; block++){
+			blockInSegment[block] = block;
+		}
+		SegmentCode2D sc2d = new SegmentCode2D(coefficients);
+		sc2d.setParameters(WTLevels, 4, WTLevels, 0, null,
+				new int[]{TERDefaultValues.optDCSelect}, new int[]{TERDefaultValues.optACSelect},
+				new int[]{TERDefaultValues.gaggleDCSize}, new int[]{gaggleSize},
+				new int[]{TERDefaultValues.idDC}, new int[]{TERDefaultValues.idAC},
+				new int[]{0}, new int[]{0}, new int[]{TERDefaultValues.stageStop}, new int[]{TERDefaultValues.segByteLimit},
+				0, TERDefaultValues.distortionMeasure, new int[]{entropyAC}, 1, false, 1);
+		sc2d.run(blockInSegment, 0);
+		bitDepthACBlock = sc2d.getBitDepthACBlock();
+		bitDepthAC = sc2d.getBitDepthAC();
+		BP = sc2d.getBP();
+
+		sortingAC = new ByteStream[bitDepthACBlock.length][bitDepthAC][][][][];
+		symbolHistogram = new int[bitDepthACBlock.length][bitDepthAC][];
+		codeBlocks(null);
+	}
+
+	/**
+	 * Codes all the bitplanes of all the blocks with the block coder.
+	 *
+	 * @param blackhole consumer of the output, or null to keep it in {@link #sortingAC} and {@link #symbolHistogram}
+	 *
+	 * @throws Exception when a block cannot be coded
+	 */
+	void codeBlocks(Blackhole blackhole) throws Exception{
+		CodeBlockAC codeAC = new CodeBlockAC(coefficients, WTLevels);
+		int gaggles = bitDepthACBlock.length;
+		byte blockStatus[][][][][][] = new byte[gaggles][gaggleSize][][][][];
+		byte Ds[][] = new byte[gaggles][gaggleSize];
+		byte D[][][] = new byte[gaggles][gaggleSize][3];
+		for(int bitplane = bitDepthAC - 1; bitplane >= 0; bitplane--){
+			for(int gaggle = 0; gaggle < gaggles; gaggle++){
+				ByteStream sortingACGaggle[][][][] = new ByteStream[bitDepthACBlock[gaggle].length][][][];
+				int histogram[] = null;
+				for(int block = 0; block < bitDepthACBlock[gaggle].length; block++){
+					if(bitDepthACBlock[gaggle][block] > bitplane){
+						codeAC.setParameters(WTLevels, WTLevels, blockInSegment[gaggle * gaggleSize + block],
+								blockStatus[gaggle][block], bitDepthACBlock[gaggle][block], entropyAC, BP, null,
+								Ds[gaggle][block], D[gaggle][block], histogram);
+						sortingACGaggle[block] = codeAC.run(bitplane);
+						blockStatus[gaggle][block] = codeAC.getBlockStatus();
+						Ds[gaggle][block] = codeAC.getDs();
+						D[gaggle][block] = codeAC.getD();
+						if(entropyAC == 1){
+							histogram = codeAC.getSymbolHistogram();
+						}
+					}
+				}
+				if(blackhole != null){
+					blackhole.consume(sortingACGaggle);
+				}else{
+					sortingAC[gaggle][bitplane] = sortingACGaggle;
+					symbolHistogram[gaggle][bitplane] = histogram;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Codes all the bitplanes of all the blocks of the segment with the block coder.
+	 *
+	 * @param blackhole consumer of the output
+	 *
+	 * @throws Exception when a block cannot be coded
+	 */
+	@Benchmark
+	public void codeBlockAC(Blackhole blackhole) throws Exception{
+		codeBlocks(blackhole);
+	}
+
+	/**
+	 * Entropy codes all the bitplanes of all the gaggles of the segment, from the output of the block coder.
+	 *
+	 * @param blackhole consumer of the output
+	 *
+	 * @throws Exception when a gaggle cannot be coded
+	 */
+	@Benchmark
+	public void encodeGaggleAC(Blackhole blackhole) throws Exception{
+		EncodeGaggleAC entropyGaggle = new EncodeGaggleAC();
+		for(int bitplane = bitDepthAC - 1; bitplane >= 0; bitplane--){
+			for(int gaggle = 0; gaggle < sortingAC.length; gaggle++){
+				entropyGaggle.setParameters(sortingAC[gaggle][bitplane], entropyAC, symbolHistogram[gaggle][bitplane], WTLevels);
+				blackhole.consume(entropyGaggle.run());
+			}
+		}
+	}
+
+}
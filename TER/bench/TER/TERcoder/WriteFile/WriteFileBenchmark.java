@@ -0,0 +1,148 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERcoder.WriteFile;
+
+import TER.TERbench.CodedImage;
+import TER.TERbench.SyntheticImage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * This class benchmarks the creation of the layers ({@link LayerCreation}) and the writing of the encoded file
+ * ({@link WriteFile}) for each progression order, from the segments of a synthetic image coded by the bit plane
+ * encoder. The file is written to a stream that discards it.
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class WriteFileBenchmark{
+
+	/**
+	 * Definition in {@link WriteFile#progressionOrder}.
+	 */
+	@Param({"1", "2", "3", "4", "5"})
+	public int progressionOrder;
+
+	/**
+	 * Definition in {@link WriteFile#numberOfLayers}.
+	 */
+	@Param({"1", "8"})
+	public int numberOfLayers;
+
+	/**
+	 * Number of components of the synthetic image.
+	 */
+	@Param({"4"})
+	public int zSize;
+
+	/**
+	 * Number of rows of the synthetic image.
+	 */
+	@Param({"512"})
+	public int ySize;
+
+	/**
+	 * Number of columns of the synthetic image.
+	 */
+	@Param({"512"})
+	public int xSize;
+
+	/**
+	 * Bits of each sample of the synthetic image.
+	 */
+	@Param({"12"})
+	public int bitDepth;
+
+	/**
+	 * Content of the synthetic image, see {@link SyntheticImage#TYPES}.
+	 */
+	@Param({"textured"})
+	public String type;
+
+	/**
+	 * Writer of the encoded file kept from the coder.
+	 */
+	WriteFile writeFile = null;
+
+	/**
+	 * Generates and codes the image, keeping the writer of the encoded file.
+	 *
+	 * @throws Exception when the image cannot be generated or coded
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Exception{
+		SyntheticImage image = new SyntheticImage(zSize, ySize, xSize);
+		image.setParameters(type, bitDepth, false, 1);
+		CodedImage codedImage = new CodedImage(image.run(), bitDepth, false);
+		codedImage.setParameters(4, 3, progressionOrder, numberOfLayers);
+		writeFile = codedImage.run();
+	}
+
+	/**
+	 * Creates the layers from the coded segments.
+	 *
+	 * @return the data of the layers, index meaning [z][segment][rLevel][gaggle]
+	 *
+	 * @throws Exception when the layers cannot be created
+	 */
+	@Benchmark
+	public byte[][][][][] layerCreation() throws Exception{
+		LayerCreation lc = new LayerCreation();
+		lc.setParameters(writeFile.initialCodedDC, writeFile.refinementDC,
+				writeFile.codedBitDepthACBlock, writeFile.sortingAC, writeFile.terRefinementAC,
+				writeFile.bitDepthDC, writeFile.bitDepthAC,
+				writeFile.zSize, writeFile.blocksPerSegment, writeFile.resolutionLevels, numberOfLayers,
+				writeFile.layerCreationType, writeFile.targetBytes, writeFile.layerSizeType, writeFile.layerBytes);
+		lc.run();
+		return(lc.getByteArrays());
+	}
+
+	/**
+	 * Writes the encoded file, creating its layers.
+	 *
+	 * @return the number of bytes written
+	 *
+	 * @throws Exception when the file cannot be written
+	 */
+	@Benchmark
+	public long writeFile() throws Exception{
+		writeFile.numberOfLayers = numberOfLayers;
+		writeFile.run();
+		return(writeFile.getBytesWritten());
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERdecoder.BPEDecoder;
+
+import TER.TERInteractiveDecoder.ReadStream.TERExtractor;
+import TER.TERbench.CodedFile;
+import TER.TERbench.CodedImage;
+import TER.TERbench.SyntheticImage;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * This class benchmarks the bit plane decoder over the packets of a whole synthetic image: the decoding of all
+ * its components ({@link DecodeAvailable}) and the entropy decoding of the AC packets ({@link ACEntropyDecoder}).
+ * The entropy decoder is driven by the decoder of the AC gaggles ({@link DecodeGaggleAC}), which gives the length of
+ * each word, as {@link DecodeAvailable} does.
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BitPlaneDecoderBenchmark{
+
+	/**
+	 * Number of components of the synthetic image.
+	 */
+	@Param({"4"})
+	public int zSize;
+
+	/**
+	 * Number of rows of the synthetic image.
+	 */
+	@Param({"512"})
+	public int ySize;
+
+	/**
+	 * Number of columns of the synthetic image.
+	 */
+	@Param({"512"})
+	public int xSize;
+
+	/**
+	 * Bits of each sample of the synthetic image.
+	 */
+	@Param({"8", "12", "16"})
+	public int bitDepth;
+
+	/**
+	 * Content of the synthetic image, see {@link SyntheticImage#TYPES}.
+	 */
+	@Param({"smooth", "textured", "noise"})
+	public String type;
+
+	/**
+	 * Encoded file of the synthetic image.
+	 */
+	File encodedFile = null;
+
+	/**
+	 * Opened {@link #encodedFile}.
+	 */
+	CodedFile codedFile = null;
+
+	/**
+	 * Extractor of all the packets of the file.
+	 */
+	TERExtractor extractor = null;
+
+	/**
+	 * Packets of the file, index meaning [z][segment][rLevel][gaggle].
+	 */
+	byte packets[][][][][] = null;
+
+	/**
+	 * Generates and codes the image, and extracts all its packets.
+	 *
+	 * @throws Exception when the image cannot be generated, coded or extracted
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Exception{
+		SyntheticImage image = new SyntheticImage(zSize, ySize, xSize);
+		image.setParameters(type, bitDepth, false, 1);
+		CodedImage codedImage = new CodedImage(image.run(), bitDepth, false);
+		codedImage.setParameters(4, 3, 1, 1);
+		encodedFile = File.createTempFile("BitPlaneDecoderBenchmark", ".ter");
+		codedImage.write(encodedFile.getPath());
+		codedFile = new CodedFile(encodedFile.getPath());
+		extractor = codedFile.extract(0, ySize, 0, xSize);
+		packets = codedFile.getPackets();
+	}
+
+	/**
+	 * Closes and deletes the encoded file.
+	 *
+	 * @throws Exception when the file cannot be closed
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception{
+		codedFile.close();
+		encodedFile.delete();
+	}
+
+	/**
+	 * Decodes all the components.
+	 *
+	 * @return the recovered coefficients, index meaning [z][y][x]
+	 *
+	 * @throws Exception when the packets cannot be decoded
+	 */
+	@Benchmark
+	public float[][][] decodeAvailable() throws Exception{
+		return(codedFile.newDecodeAvailable(extractor, packets).run());
+	}
+
+	/**
+	 * Entropy decodes all the AC packets of all the components.
+	 *
+	 * @param blackhole consumer of the output
+	 *
+	 * @throws Exception when the packets cannot be decoded
+	 */
+	@Benchmark
+	public void acEntropyDecoder(Blackhole blackhole) throws Exception{
+		//The parameters of the decoder give the size of the gaggles and of the bands
+		DecodeAvailable decode = codedFile.newDecodeAvailable(extractor, packets);
+		ACEntropyDecoder ea = new ACEntropyDecoder(packets, extractor.getPacketOffsets(), extractor.getPacketLengths());
+		for(int z = 0; z < decode.zSize; z++){
+			float recoveredImage[][][] = new float[decode.zSize][][];
+			recoveredImage[z] = new float[decode.bandSizes[z][0]][decode.bandSizes[z][1]];
+			DecodeGaggleAC ac = new DecodeGaggleAC(recoveredImage);
+			for(int segment = 0; segment < decode.blocksPerSegment[z].length; segment++){
+				if(packets[z] != null && packets[z][segment] != null && packets[z][segment].length > 1){
+					for(int gaggle = 0; gaggle < packets[z][segment][1].length; gaggle++){
+						ea.setParameters(z, segment, gaggle, decode.resolutionLevels[z], decode.entropyAC[z][segment]);
+						ac.setParameters(ea, z, segment, gaggle,
+								decode.gaggleSize[z][segment][1][gaggle], decode.gaggleSizeAC[z][segment],
+								decode.bitDepthAC[z][segment], decode.blocksPerSegment[z], decode.WTLevels[z],
+								decode.resolutionLevels[z], decode.BP[z], decode.gammaValue[z]);
+						ac.run();
+					}
+				}
+			}
+			blackhole.consume(ac.getRecoveredImage());
+		}
+	}
+
+}
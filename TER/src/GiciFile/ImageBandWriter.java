@@ -0,0 +1,71 @@
+/*
+ * GICI Library -
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * gici-info@deic.uab.es
+ */
+package GiciFile;
+
+import GiciException.*;
+
+
+/**
+ * This interface writes an image component by component, so that components can be saved (and freed) as soon
+ * as they are produced instead of holding the whole image in memory.<br>
+ * Usage example:<br>
+ * &nbsp; open<br>
+ * &nbsp; write (for each component)<br>
+ * &nbsp; close<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public interface ImageBandWriter{
+
+	/**
+	 * Opens the image before its components are written.
+	 *
+	 * @param imageGeometry geometry of the image: zSize, ySize, xSize, data type and byte order (see {@link SaveFile#SaveFileRaw})
+	 *
+	 * @throws WarningException when the image cannot be created
+	 */
+	void open(int[] imageGeometry) throws WarningException;
+
+	/**
+	 * Writes one component of the image. Components may be written in any order.
+	 *
+	 * @param z index of the component
+	 * @param band samples of the component (index meaning [y][x])
+	 *
+	 * @throws WarningException when the component cannot be written
+	 */
+	void write(int z, float[][] band) throws WarningException;
+
+	/**
+	 * Closes the image once all its components have been written.
+	 *
+	 * @throws WarningException when the image cannot be closed
+	 */
+	void close() throws WarningException;
+
+}
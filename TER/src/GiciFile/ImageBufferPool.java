@@ -0,0 +1,129 @@
+/*
+ * GICI Library -
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * gici-info@deic.uab.es
+ */
+package GiciFile;
+
+import java.util.LinkedList;
+
+
+/**
+ * This class keeps the sample buffers of images that are no longer used, so that the next images of the same size
+ * are loaded in them instead of allocating new buffers. It is shared by the jobs of a batch run in a single virtual
+ * machine, so its methods are synchronized.<br>
+ * Usage example:<br>
+ * &nbsp; construct<br>
+ * &nbsp; get<br>
+ * &nbsp; release<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class ImageBufferPool{
+
+	/**
+	 * Buffers released and not yet reused, from the oldest to the newest.
+	 * <p>
+	 * At most {@link #maxBuffers} buffers.
+	 */
+	LinkedList<float[][][]> buffers = new LinkedList<float[][][]>();
+
+	/**
+	 * Maximum number of buffers kept in the pool. When a buffer is released and the pool is full, the oldest
+	 * buffer is dropped.
+	 * <p>
+	 * Positive values allowed.
+	 */
+	int maxBuffers;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxBuffers maximum number of buffers kept in the pool
+	 */
+	public ImageBufferPool(int maxBuffers){
+		this.maxBuffers = maxBuffers;
+	}
+
+	/**
+	 * Takes a buffer of the given size from the pool.
+	 *
+	 * @param zSize image depth
+	 * @param ySize image height
+	 * @param xSize image width
+	 * @return a buffer with index meaning [z][y][x] and the given size, or null if there is none in the pool
+	 */
+	public synchronized float[][][] get(int zSize, int ySize, int xSize){
+		for(int buffer = buffers.size() - 1; buffer >= 0; buffer--){
+			if(hasSize(buffers.get(buffer), zSize, ySize, xSize)){
+				return(buffers.remove(buffer));
+			}
+		}
+		return(null);
+	}
+
+	/**
+	 * Returns a buffer to the pool. The samples of the buffer must not be used after releasing it.
+	 *
+	 * @param imageBuffer buffer with index meaning [z][y][x] (null is ignored)
+	 */
+	public synchronized void release(float[][][] imageBuffer){
+		if(imageBuffer == null || maxBuffers <= 0){
+			return;
+		}
+		if(buffers.size() >= maxBuffers){
+			buffers.removeFirst();
+		}
+		buffers.add(imageBuffer);
+	}
+
+	/**
+	 * Checks whether a buffer has exactly a given size. Every component and row is checked, since the coder may
+	 * replace components of the image by transposed ones.
+	 *
+	 * @param imageBuffer buffer with index meaning [z][y][x]
+	 * @param zSize image depth
+	 * @param ySize image height
+	 * @param xSize image width
+	 * @return true if the buffer is not null and it has the given size
+	 */
+	public static boolean hasSize(float[][][] imageBuffer, int zSize, int ySize, int xSize){
+		if(imageBuffer == null || imageBuffer.length != zSize){
+			return(false);
+		}
+		for(int z = 0; z < zSize; z++){
+			if(imageBuffer[z] == null || imageBuffer[z].length != ySize){
+				return(false);
+			}
+			for(int y = 0; y < ySize; y++){
+				if(imageBuffer[z][y] == null || imageBuffer[z][y].length != xSize){
+					return(false);
+				}
+			}
+		}
+		return(true);
+	}
+
+}
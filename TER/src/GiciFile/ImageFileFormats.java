@@ -0,0 +1,187 @@
+/*
+ * GICI Library -
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * gici-info@deic.uab.es
+ */
+package GiciFile;
+import GiciException.*;
+
+import java.util.HashMap;
+
+
+/**
+ * This class keeps the readers and writers of the image file formats, indexed by file extension.<br>
+ * Readers and writers are registered by class name and only loaded when a file of their format is used, so
+ * the JAI libraries, which handle all the formats without a dedicated reader or writer, are not loaded for
+ * raw, PGM or PPM files.<br>
+ * Usage example:<br>
+ * &nbsp; registerReader / registerWriter (optional)<br>
+ * &nbsp; getReader / getWriter<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class ImageFileFormats{
+
+	/**
+	 * Reader used for the extensions without a registered reader.
+	 * <p>
+	 * Name of a class that implements {@link ImageFileReader}.
+	 */
+	static final String DEFAULT_READER = "GiciFile.JAIFileReader";
+
+	/**
+	 * Writer used for the extensions without a registered writer.
+	 * <p>
+	 * Name of a class that implements {@link ImageFileWriter}.
+	 */
+	static final String DEFAULT_WRITER = "GiciFile.JAIFileWriter";
+
+	/**
+	 * Class name of the reader of each extension (in lower case).
+	 * <p>
+	 * Only names of classes that implement {@link ImageFileReader} allowed.
+	 */
+	static HashMap<String, String> readers = new HashMap<String, String>();
+
+	/**
+	 * Class name of the writer of each extension (in lower case).
+	 * <p>
+	 * Only names of classes that implement {@link ImageFileWriter} allowed.
+	 */
+	static HashMap<String, String> writers = new HashMap<String, String>();
+
+	static{
+		readers.put("pgm", "GiciFile.PNMFileReader");
+		readers.put("ppm", "GiciFile.PNMFileReader");
+		readers.put("pnm", "GiciFile.PNMFileReader");
+		writers.put("pgm", "GiciFile.PNMFileWriter");
+		writers.put("ppm", "GiciFile.PNMFileWriter");
+		writers.put("pnm", "GiciFile.PNMFileWriter");
+	}
+
+	/**
+	 * Registers the reader of a file extension, replacing the previous one.
+	 *
+	 * @param extension file extension (without the dot)
+	 * @param className name of a class that implements {@link ImageFileReader}
+	 */
+	public static synchronized void registerReader(String extension, String className){
+		readers.put(extension.toLowerCase(), className);
+	}
+
+	/**
+	 * Registers the writer of a file extension, replacing the previous one.
+	 *
+	 * @param extension file extension (without the dot)
+	 * @param className name of a class that implements {@link ImageFileWriter}
+	 */
+	public static synchronized void registerWriter(String extension, String className){
+		writers.put(extension.toLowerCase(), className);
+	}
+
+	/**
+	 * Returns the reader of a file extension.
+	 *
+	 * @param extension file extension (without the dot)
+	 * @return a new instance of the registered reader, or of the JAI reader if there is none
+	 *
+	 * @throws WarningException when the reader cannot be instantiated
+	 */
+	public static synchronized ImageFileReader getReader(String extension) throws WarningException{
+		String className = readers.get(extension.toLowerCase());
+		if(className == null){
+			className = DEFAULT_READER;
+		}
+		Object reader = newInstance(className);
+		if(!(reader instanceof ImageFileReader)){
+			throw new WarningException("Class \"" + className + "\" is not an image file reader.");
+		}
+		return((ImageFileReader) reader);
+	}
+
+	/**
+	 * Returns the writer of a file extension.
+	 *
+	 * @param extension file extension (without the dot)
+	 * @return a new instance of the registered writer, or of the JAI writer if there is none
+	 *
+	 * @throws WarningException when the writer cannot be instantiated
+	 */
+	public static synchronized ImageFileWriter getWriter(String extension) throws WarningException{
+		String className = writers.get(extension.toLowerCase());
+		if(className == null){
+			className = DEFAULT_WRITER;
+		}
+		Object writer = newInstance(className);
+		if(!(writer instanceof ImageFileWriter)){
+			throw new WarningException("Class \"" + className + "\" is not an image file writer.");
+		}
+		return((ImageFileWriter) writer);
+	}
+
+	/**
+	 * Loads a class and creates an instance of it.
+	 *
+	 * @param className name of the class
+	 * @return the new instance
+	 *
+	 * @throws WarningException when the class cannot be loaded or instantiated
+	 */
+	static Object newInstance(String className) throws WarningException{
+		try{
+			return(Class.forName(className).getDeclaredConstructor().newInstance());
+		}catch(ClassNotFoundException e){
+			throw new WarningException("Class \"" + className + "\" not found.");
+		}catch(LinkageError e){
+			throw new WarningException("Class \"" + className + "\" can not be loaded (" + e.getMessage() + ").");
+		}catch(ReflectiveOperationException e){
+			throw new WarningException("Class \"" + className + "\" can not be instantiated.");
+		}
+	}
+
+	/**
+	 * Returns the extension of a file name. For gzipped files (".gz") the previous extension is returned.
+	 *
+	 * @param imageFile file name
+	 * @return the extension, without the dot, or an empty string if the file has no extension
+	 */
+	public static String getExtension(String imageFile){
+		String extension = "";
+		int dotPos = imageFile.lastIndexOf(".");
+		
+		if(dotPos >= 0){
+			extension = imageFile.substring(dotPos + 1, imageFile.length());
+		} 
+		
+		// take into account a possible .gz extension
+		int secondToLastPos = imageFile.lastIndexOf(".", dotPos - 1);
+		
+		if (dotPos >= 0 && secondToLastPos >= 0 && extension.compareToIgnoreCase("gz") == 0){
+			extension = imageFile.substring(secondToLastPos + 1, dotPos);
+		}
+		return(extension);
+	}
+
+}
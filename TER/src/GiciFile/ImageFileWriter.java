@@ -0,0 +1,51 @@
+/*
+ * GICI Library -
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * gici-info@deic.uab.es
+ */
+package GiciFile;
+import GiciException.*;
+
+
+/**
+ * Interface of the writers of the image file formats that are registered in {@link ImageFileFormats}.<br>
+ * Implementations must have a constructor without parameters, since they are only instantiated when a file
+ * of their format is saved.
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public interface ImageFileWriter{
+
+	/**
+	 * Saves image samples in the format of the writer.
+	 *
+	 * @param imageSamples a 3D float array that contains image samples
+	 * @param imageFile file name where the image will be stored
+	 *
+	 * @throws WarningException when the file cannot be saved (incorrect number of components, etc.)
+	 */
+	public void write(float[][][] imageSamples, String imageFile) throws WarningException;
+
+}
@@ -0,0 +1,163 @@
+/*
+ * GICI Library -
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * gici-info@deic.uab.es
+ */
+package GiciFile;
+import GiciException.*;
+
+import javax.media.jai.*;
+import java.awt.image.*;
+
+
+/**
+ * This class loads the image formats supported by JAI (tiff, png, jpg, bmp, gif, fpx, ...). It is the reader
+ * used by {@link ImageFileFormats} for the extensions without a dedicated reader.
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class JAIFileReader implements ImageFileReader{
+
+	/**
+	 * Loads an image (JAI loading).
+	 *
+	 * @param imageFile an string that contains the name of the image file
+	 * @param image the image where the file is loaded
+	 *
+	 * @throws WarningException when the file cannot be load
+	 */
+	public void read(String imageFile, LoadFile image) throws WarningException{
+		//Image load with JAI
+		RenderedOp img = JAI.create("FileLoad", imageFile);
+		BufferedImage buffImage = img.getAsBufferedImage();
+
+		//Get size
+		int zSize = buffImage.getRaster().getNumBands();
+		int ySize = buffImage.getHeight();
+		int xSize = buffImage.getWidth();
+		
+		//Memory allocation
+		float[][][] imageSamples = new float[zSize][ySize][xSize];
+		Class[] samplesType = new Class[zSize];
+		boolean RGBComponents = false;
+		
+		//Sample type set
+		for(int z = 0; z < zSize; z++){
+			switch(buffImage.getType()){
+			case BufferedImage.TYPE_3BYTE_BGR:
+				samplesType[z] = Byte.TYPE;
+				RGBComponents = true;
+				break;
+			case BufferedImage.TYPE_4BYTE_ABGR:
+				samplesType[z] = Byte.TYPE;
+				break;
+			case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+				samplesType[z] = Byte.TYPE;
+				break;
+			case BufferedImage.TYPE_BYTE_BINARY:
+				samplesType[z] = Byte.TYPE;
+				break;
+			case BufferedImage.TYPE_BYTE_GRAY:
+				samplesType[z] = Byte.TYPE;
+				break;
+			case BufferedImage.TYPE_BYTE_INDEXED:
+				samplesType[z] = Byte.TYPE;
+				break;
+			case BufferedImage.TYPE_INT_ARGB:
+				samplesType[z] = Integer.TYPE;
+				break;
+			case BufferedImage.TYPE_INT_ARGB_PRE:
+				samplesType[z] = Integer.TYPE;
+				break;
+			case BufferedImage.TYPE_INT_BGR:
+				samplesType[z] = Integer.TYPE;
+				break;
+			case BufferedImage.TYPE_INT_RGB:
+				samplesType[z] = Integer.TYPE;
+				RGBComponents = true;
+				break;
+			case BufferedImage.TYPE_USHORT_555_RGB:
+				samplesType[z] = Short.TYPE;
+				RGBComponents = true;
+				break;
+			case BufferedImage.TYPE_USHORT_565_RGB:
+				samplesType[z] = Short.TYPE;
+				RGBComponents = true;
+				break;
+			case BufferedImage.TYPE_USHORT_GRAY:
+				samplesType[z] = Short.TYPE;
+				break;
+			case BufferedImage.TYPE_CUSTOM:
+			default:
+				int bitsPixel[] = buffImage.getColorModel().getComponentSize();
+			if(bitsPixel[z] <= 8){
+				samplesType[z] = Byte.TYPE;
+			}else{
+				if(bitsPixel[z] <= 16){
+					samplesType[z] = Short.TYPE;
+				}else{
+					if(bitsPixel[z] <= 32){
+						samplesType[z] = Integer.TYPE;
+					}else{
+						if(bitsPixel[z] <= 64){
+							samplesType[z] = Long.TYPE;
+						}else{
+							throw new WarningException("Unrecognized sample type loading " + imageFile + ".");
+						}
+					}
+				}
+			}
+			//Usually this is correct ;-)
+			if(zSize == 3){
+				RGBComponents = true;
+			}
+			}
+		}
+		
+		//Set the samples
+		float pixel[] = new float[zSize];
+		for(int y = buffImage.getMinY(); y < buffImage.getMinY() + ySize; y++){
+			for(int x = buffImage.getMinX(); x < buffImage.getMinX() + xSize; x++){
+				buffImage.getRaster().getPixel(x,y,pixel);
+				for(int z = 0; z < zSize; z++){
+					imageSamples[z][y][x] = pixel[z];
+				}
+			}
+		}
+		//Free JAI memory
+		buffImage.flush();
+		img.dispose();
+		buffImage = null;
+		img = null;
+
+		image.zSize = zSize;
+		image.ySize = ySize;
+		image.xSize = xSize;
+		image.imageSamples = imageSamples;
+		image.samplesType = samplesType;
+		image.RGBComponents = RGBComponents;
+	}
+
+}
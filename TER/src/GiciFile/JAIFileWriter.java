@@ -0,0 +1,135 @@
+/*
+ * GICI Library -
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * gici-info@deic.uab.es
+ */
+package GiciFile;
+import GiciException.*;
+
+import javax.media.jai.*;
+import java.awt.image.*;
+import java.awt.*;
+
+
+/**
+ * This class saves images in the formats supported by JAI (PNM, TIFF, PNG, JPEG and BMP). It is the writer
+ * used by {@link ImageFileFormats} for the extensions without a dedicated writer.
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class JAIFileWriter implements ImageFileWriter{
+
+	/**
+	 * Saves image samples using the format given by the file extension (see {@link SaveFile#getFormat}).
+	 *
+	 * @param imageSamples a 3D float array that contains image samples
+	 * @param imageFile file name where the image will be stored
+	 *
+	 * @throws WarningException when the file cannot be saved (incorrect number of components, file format unrecognized, etc.)
+	 */
+	public void write(float[][][] imageSamples, String imageFile) throws WarningException{
+		String extension = ImageFileFormats.getExtension(imageFile);
+		int format = -1;
+		if(extension.compareToIgnoreCase("pnm") == 0)       format = 0;
+		else if(extension.compareToIgnoreCase("pgm") == 0)  format = 0;
+		else if(extension.compareToIgnoreCase("ppm") == 0)  format = 0;
+		else if(extension.compareToIgnoreCase("tiff") == 0) format = 1;
+		else if(extension.compareToIgnoreCase("tif") == 0)  format = 1;
+		else if(extension.compareToIgnoreCase("png") == 0)  format = 2;
+		else if(extension.compareToIgnoreCase("jpg") == 0)  format = 3;
+		else if(extension.compareToIgnoreCase("jpeg") == 0) format = 3;
+		else if(extension.compareToIgnoreCase("bmp") == 0)  format = 4;
+		write(imageSamples, imageFile, format);
+	}
+
+	/**
+	 * Saves image samples using specified format using JAI. This function uses byte type to save image (because is the only allowed by JAI libraries) and it can manage only images with 1 or 3 components.
+	 *
+	 * @param imageSamples a 3D float array that contains image samples
+	 * @param imageFile file name where the image will be stored
+	 * @param format format type to save image (see {@link SaveFile#SaveFileFormat})
+	 *
+	 * @throws WarningException when the file cannot be saved (incorrect number of components, file format unrecognized, etc.)
+	 */
+	public void write(float[][][] imageSamples, String imageFile, int format) throws WarningException{
+		//Image sizes
+		int zSize = imageSamples.length;
+		int ySize = imageSamples[0].length;
+		int xSize = imageSamples[0][0].length;
+
+		//Construct some needed classes
+		SampleModel sm = RasterFactory.createBandedSampleModel(DataBuffer.TYPE_FLOAT, xSize, ySize, zSize);
+		float[][] imageBanks = new float[zSize][ySize*xSize];
+		for(int z = 0; z < zSize; z++){
+		for(int y = 0; y < ySize; y++){
+		for(int x = 0; x < xSize; x++){
+			imageBanks[z][(y*xSize) + x] = imageSamples[z][y][x];
+		}}}
+		java.awt.image.DataBufferFloat dbf = new java.awt.image.DataBufferFloat(imageBanks, ySize*xSize);
+		Raster r = RasterFactory.createRaster(sm, dbf, new Point(0,0));
+
+		//Construct buffered image
+		BufferedImage buffImage = null;
+		switch(zSize){
+		case 1:
+			buffImage = new BufferedImage(xSize, ySize, BufferedImage.TYPE_BYTE_GRAY);
+			break;
+		case 3:
+			buffImage = new BufferedImage(xSize, ySize, BufferedImage.TYPE_3BYTE_BGR);
+			break;
+		default:
+			throw new WarningException("This format only supports 1 or 3 components.");
+		}
+		buffImage.setData(r);
+
+		//File save with JAI
+		switch(format){
+		case 0: //PNM
+			JAI.create("filestore", buffImage, imageFile, "PNM");
+			break;
+		case 1: //TIFF
+			JAI.create("filestore", buffImage, imageFile, "TIFF");
+			break;
+		case 2: //PNG
+			JAI.create("filestore", buffImage, imageFile, "PNG");
+			break;
+		case 3: //JPEG
+			JAI.create("filestore", buffImage, imageFile, "JPEG");
+			break;
+		case 4: //BMP
+			JAI.create("filestore", buffImage, imageFile, "BMP");
+			break;
+		default:
+			throw new WarningException("Format file unrecognized.");
+		}
+
+		//Free memory
+		sm = null;
+		imageBanks = null;
+		dbf = null;
+		buffImage = null;
+	}
+
+}
@@ -29,9 +29,12 @@ import GiciException.*;
 
 import java.io.*;
 import java.nio.*;
-import java.util.zip.GZIPInputStream;
-import javax.media.jai.*;
-import java.awt.image.*;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
@@ -96,6 +99,13 @@ public class LoadFile{
 	 */
 	int[] signedPixels = null;
 	
+	/**
+	 * Size, in bytes, of the chunks of rows read at once when loading plain raw files.
+	 * <p>
+	 * Positive values allowed.
+	 */
+	static final int CHUNK_SIZE = 4 * 1024 * 1024;
+	
 	/**
 	 * Loads a pgm image.
 	 * 
@@ -104,296 +114,19 @@ public class LoadFile{
 	 * @throws WarningException when the file cannot be load 
 	 */
 	public void LoadPGM(String imageFile) throws WarningException{
-		try{
-			// test for .gz and read on the fly with GZIPInputStream
-			String extension = "";
-			int dotPos = imageFile.lastIndexOf(".");
-			
-			if(dotPos >= 0){
-				extension = imageFile.substring(dotPos + 1, imageFile.length());
-			} 
-			
-			BufferedReader br = null;
-
-			if (extension.compareToIgnoreCase("gz") == 0){
-				br = new BufferedReader(new InputStreamReader(
-						new GZIPInputStream(new FileInputStream(imageFile))));
-			} else {
-				br = new BufferedReader(new FileReader(imageFile));
-			}
-						
-			String pgmHeader = null;
-			String sizeHeader = null;
-			String classHeader = null;
-			int headerLength = 0;
-			
-			do {
-				pgmHeader = br.readLine();
-				headerLength += pgmHeader.length()+1;
-			} while(pgmHeader.startsWith("#"));
-			
-			if (!(pgmHeader.equals("P5") || pgmHeader.equals("P2"))){
-				throw new WarningException("File \"" + imageFile + "\" can not be loaded. Problems with the magic number"); 
-			}
-			
-			do{
-				sizeHeader = br.readLine();
-				headerLength += sizeHeader.length()+1;
-			} while(sizeHeader.startsWith("#"));
-			
-			String xS = sizeHeader.substring(0,sizeHeader.indexOf(" "));
-			String yS = sizeHeader.substring(sizeHeader.indexOf(" ") + 1, sizeHeader.length());
-			xSize = Integer.parseInt(xS); 
-			ySize = Integer.parseInt(yS);
-			zSize = 1;
-			do{
-				classHeader = br.readLine();
-				headerLength += classHeader.length()+1;
-			}while(classHeader.startsWith("#"));
-			int maxValue = Integer.parseInt(classHeader);
-			
-			imageSamples = new float[zSize][ySize][xSize];
-			samplesType = new Class[zSize];
-			if(maxValue<=255){
-				samplesType[0] = Byte.TYPE;
-			} else {
-				samplesType[0] = Short.TYPE;
-			}
-			
-			if (pgmHeader.equals("P5")){
-				DataInputStream dis = null;
-				
-				if (extension.compareToIgnoreCase("gz") == 0){
-					dis = new DataInputStream(new GZIPInputStream(new FileInputStream(imageFile)));
-				} else {
-					dis = new DataInputStream(new FileInputStream(imageFile));	
-				}
-				
-				for(int k=0;k<headerLength;k++){
-					dis.readByte();
-				}
-				if (samplesType[0]==Byte.TYPE){
-					ByteBuffer buffer = ByteBuffer.allocate(xSize);
-					for(int y=0;y<ySize;y++){
-						int bytes_read = 0;
-						int buffer_fill = 0;
-						
-						try{
-							// Keep trying till we get enough
-							byte[] b = buffer.array();
-							do {
-								buffer_fill += bytes_read;
-								bytes_read = dis.read(b, buffer_fill, xSize - buffer_fill);
-							} while (bytes_read >= 0 && bytes_read + buffer_fill < xSize);
-							
-							if (bytes_read >= 0) {
-								bytes_read += buffer_fill;
-							}
-						}catch(IOException e){
-							throw new WarningException("I/O file reading error.");
-						}
-						
-						if(bytes_read < 0) {
-							throw new WarningException("File reading error (end of file reached before the full file has been read).");
-						}
-						
-						if(bytes_read != xSize){
-							throw new WarningException("File reading error (" + bytes_read + " bytes read, but " + xSize + " needed).");
-						}
-						
-						for(int x=0;x<xSize;x++){
-							imageSamples[0][y][x] = buffer.get(x) & 0xff;
-						}
-						
-						buffer.clear();
-					}
-				} else {
-					//FIXME this is really slow! it must be as the byte case
-					
-					for(int y=0;y<ySize;y++){
-						for(int x=0;x<xSize;x++){							
-							imageSamples[0][y][x] = dis.readChar();
-						}
-					}
-				} 
-				dis = null;
-			} else {//pgm contains data stored in ascii
-				String line = br.readLine();
-				int[] integerArray = getIntegerArray(line);
-				int arrayPosition = 0;
-				for(int y=0;y<ySize;y++){
-					for(int x=0;x<xSize;x++){
-						if (arrayPosition==integerArray.length){
-							arrayPosition = 0;
-							line = br.readLine();
-							integerArray = getIntegerArray(line);
-						}
-						imageSamples[0][y][x] = integerArray[arrayPosition];
-						arrayPosition++;
-						
-					}
-				}
-				
-			}
-			
-			br = null;
-			this.signedPixels = new int[zSize];
-			for(int z=0;z<zSize;z++){
-				this.signedPixels[z] = 0;
-			}
-		} catch(Exception e){
-			throw new WarningException("File \"" + imageFile + "\" can not be loaded."); 
-		}
-	}
-	
-	/**
-	 * Receives a String that contains a sequence of integer numbers and returns an array with the integers in the String
-	 *  
-	 * @param line String containing integers separated by blank spaces
-	 * 
-	 * @return an array of integers containing the numbers of the String in the same order
-	 */
-	int[] getIntegerArray(String line){
-		int[] array=null;
-		if (line!=null){
-			
-			String values[] = line.split(" ");
-			array = new int[values.length];
-			for(int k=0;k<array.length;k++){
-				array[k] = Integer.parseInt(values[k]);
-			}
-		}
-		return array;
+		new PNMFileReader().read(imageFile, this);
 	}
 	
 	/**
-	 * Loads an image (JAI loading).
+	 * Loads an image with the reader registered in {@link ImageFileFormats} for its extension. Images
+	 * without a dedicated reader are loaded with JAI.
 	 *
 	 * @param imageFile an string that contains the name of the image file
 	 *
 	 * @throws WarningException when the file cannot be load
 	 */
 	public LoadFile(String imageFile) throws WarningException{
-		
-		String extension = "";
-		int dotPos = imageFile.lastIndexOf(".");
-		
-		if(dotPos >= 0){
-			extension = imageFile.substring(dotPos + 1, imageFile.length());
-		} 
-		
-		// take into account a possible .gz extension
-		int secondToLastPos = imageFile.lastIndexOf(".", dotPos - 1);
-		
-		if (secondToLastPos >= 0 && extension.compareToIgnoreCase("gz") == 0){
-			extension = imageFile.substring(secondToLastPos + 1, dotPos);
-		}
-		
-		if (extension.compareToIgnoreCase("pgm") != 0){
-			//Image load with JAI
-			RenderedOp img = JAI.create("FileLoad", imageFile);
-			BufferedImage buffImage = img.getAsBufferedImage();
-
-			//Get size
-			zSize = buffImage.getRaster().getNumBands();
-			ySize = buffImage.getHeight();
-			xSize = buffImage.getWidth();
-			
-			//Memory allocation
-			imageSamples = new float[zSize][ySize][xSize];
-			samplesType = new Class[zSize];
-			
-			//Sample type set
-			for(int z = 0; z < zSize; z++){
-				switch(buffImage.getType()){
-				case BufferedImage.TYPE_3BYTE_BGR:
-					this.samplesType[z] = Byte.TYPE;
-					RGBComponents = true;
-					break;
-				case BufferedImage.TYPE_4BYTE_ABGR:
-					this.samplesType[z] = Byte.TYPE;
-					break;
-				case BufferedImage.TYPE_4BYTE_ABGR_PRE:
-					this.samplesType[z] = Byte.TYPE;
-					break;
-				case BufferedImage.TYPE_BYTE_BINARY:
-					this.samplesType[z] = Byte.TYPE;
-					break;
-				case BufferedImage.TYPE_BYTE_GRAY:
-					this.samplesType[z] = Byte.TYPE;
-					break;
-				case BufferedImage.TYPE_BYTE_INDEXED:
-					this.samplesType[z] = Byte.TYPE;
-					break;
-				case BufferedImage.TYPE_INT_ARGB:
-					this.samplesType[z] = Integer.TYPE;
-					break;
-				case BufferedImage.TYPE_INT_ARGB_PRE:
-					this.samplesType[z] = Integer.TYPE;
-					break;
-				case BufferedImage.TYPE_INT_BGR:
-					this.samplesType[z] = Integer.TYPE;
-					break;
-				case BufferedImage.TYPE_INT_RGB:
-					this.samplesType[z] = Integer.TYPE;
-					RGBComponents = true;
-					break;
-				case BufferedImage.TYPE_USHORT_555_RGB:
-					this.samplesType[z] = Short.TYPE;
-					RGBComponents = true;
-					break;
-				case BufferedImage.TYPE_USHORT_565_RGB:
-					this.samplesType[z] = Short.TYPE;
-					RGBComponents = true;
-					break;
-				case BufferedImage.TYPE_USHORT_GRAY:
-					this.samplesType[z] = Short.TYPE;
-					break;
-				case BufferedImage.TYPE_CUSTOM:
-				default:
-					int bitsPixel[] = buffImage.getColorModel().getComponentSize();
-				if(bitsPixel[z] <= 8){
-					this.samplesType[z] = Byte.TYPE;
-				}else{
-					if(bitsPixel[z] <= 16){
-						this.samplesType[z] = Short.TYPE;
-					}else{
-						if(bitsPixel[z] <= 32){
-							this.samplesType[z] = Integer.TYPE;
-						}else{
-							if(bitsPixel[z] <= 64){
-								this.samplesType[z] = Long.TYPE;
-							}else{
-								throw new WarningException("Unrecognized sample type loading " + imageFile + ".");
-							}
-						}
-					}
-				}
-				//Usually this is correct ;-)
-				if(zSize == 3){
-					RGBComponents = true;
-				}
-				}
-			}
-			
-			//Set the samples
-			float pixel[] = new float[zSize];
-			for(int y = buffImage.getMinY(); y < buffImage.getMinY() + ySize; y++){
-				for(int x = buffImage.getMinX(); x < buffImage.getMinX() + xSize; x++){
-					buffImage.getRaster().getPixel(x,y,pixel);
-					for(int z = 0; z < zSize; z++){
-						imageSamples[z][y][x] = pixel[z];
-					}
-				}
-			}
-			//Free JAI memory
-			buffImage.flush();
-			img.dispose();
-			buffImage = null;
-			img = null;
-		} else {//the pgm is loaded
-			LoadPGM(imageFile);
-		}
+		ImageFileFormats.getReader(ImageFileFormats.getExtension(imageFile)).read(imageFile, this);
 	}
 
 	/**
@@ -414,6 +147,25 @@ public class LoadFile{
 		rawLoad(imageFile, zSize, ySize, xSize, getClass(sampleType), byteOrder,RGBComponents);
 	}
 
+	/**
+	 * Interface to call raw data image load of band interleaved files.
+	 *
+	 * @param imageFile an string that contains the name of the image file
+	 * @param zSize image depth
+	 * @param ySize image height
+	 * @param xSize image width
+	 * @param sampleType an integer representing the class of image samples type
+	 * @param byteOrder 0 if BIG_ENDIAN, 1 if LITTLE_ENDIAN
+	 * @param RGBComponents a boolean that indicates if the three first components are RGB (true, otherwise false)
+	 * @param sampleOrder 0 if BSQ (band sequential), 1 if BIL (band interleaved by line), 2 if BIP (band interleaved by pixel)
+	 *
+	 * @throws WarningException when the file cannot be load
+	 */
+	public LoadFile(String imageFile, int zSize, int ySize, int xSize, int sampleType, int byteOrder, boolean RGBComponents, int sampleOrder) throws WarningException{
+		setSignedPixels(sampleType,zSize);
+		rawLoad(imageFile, zSize, ySize, xSize, getClass(sampleType), byteOrder, RGBComponents, sampleOrder);
+	}
+
 	/**
 	 * Interface to call raw data image load.
 	 *
@@ -432,6 +184,16 @@ public class LoadFile{
 	}
 
 	
+	/**
+	 * Creates an image whose samples are loaded later with {@link #rawLoad}. The given buffer stores the samples
+	 * when it has the size of the image, so that buffers can be reused among images of the same size.
+	 *
+	 * @param imageBuffer buffer of samples with index meaning [z][y][x] (null to allocate a new one)
+	 */
+	public LoadFile(float[][][] imageBuffer){
+		imageSamples = imageBuffer;
+	}
+
 	/**
 	 * Indicates whether it is a header-less format or not.
 	 * This function is intended to help discern which of the constructors
@@ -459,13 +221,37 @@ public class LoadFile{
 	 * @throws WarningException when the file cannot be load
 	 */
 	public void rawLoad(String imageFile, int zSize, int ySize, int xSize, Class sampleType, int byteOrder, boolean RGBComponents) throws WarningException{
+		rawLoad(imageFile, zSize, ySize, xSize, sampleType, byteOrder, RGBComponents, 0);
+	}
+
+	/**
+	 * Loads a raw data image stored in any of the BSQ, BIL or BIP sample orders. Interleaved files are
+	 * de-interleaved while they are read, straight into the components of {@link #imageSamples}.
+	 *
+	 * @param imageFile an string that contains the name of the image file
+	 * @param zSize an integer of image depth
+	 * @param ySize an integer of image height
+	 * @param xSize an integer of image width
+	 * @param sampleType a Class of image samples type
+	 * @param byteOrder 0 if BIG_ENDIAN, 1 if LITTLE_ENDIAN
+	 * @param RGBComponents a boolean that indicates if the three first components are RGB (true, otherwise false)
+	 * @param sampleOrder 0 if BSQ (band sequential), 1 if BIL (band interleaved by line), 2 if BIP (band interleaved by pixel)
+	 *
+	 * @throws WarningException when the file cannot be load
+	 */
+	public void rawLoad(String imageFile, int zSize, int ySize, int xSize, Class sampleType, int byteOrder, boolean RGBComponents, int sampleOrder) throws WarningException{
+		if(sampleOrder < 0 || sampleOrder > 2){
+			throw new WarningException("Sample order unrecognized.");
+		}
 		//Size set
 		this.zSize = zSize;
 		this.ySize = ySize;
 		this.xSize = xSize;
 
-		//Memory allocation
-		imageSamples = new float[zSize][ySize][xSize];
+		//Memory allocation (all the samples are overwritten, so a buffer of the same size is reused)
+		if(!ImageBufferPool.hasSize(imageSamples, zSize, ySize, xSize)){
+			imageSamples = new float[zSize][ySize][xSize];
+		}
 		samplesType = new Class[zSize];
 
 		//Sample type set
@@ -482,151 +268,334 @@ public class LoadFile{
 			fileIsAGZ = imageFile.substring(dotPos + 1, imageFile.length()).compareToIgnoreCase("gz") == 0;
 		} 
 		
-		//Open file and loads it
-		InputStream fis = null;
-		try{
-			if (fileIsAGZ) {
-				fis = new GZIPInputStream(new FileInputStream(imageFile), 1024*1024);
-			} else {
-				fis = new BufferedInputStream(new FileInputStream(imageFile), 1024*1024);
-			}
-		}catch(FileNotFoundException e){
-			throw new WarningException("File \"" + imageFile + "\" not found.");
-		}catch(IOException e) {
-			throw new WarningException("File \"" + imageFile + "\" may be corrupted (or not in gzip format).");
-		}
-		
-		DataInputStream dis = new DataInputStream(fis);
-
-		//Buffer to perform data conversion
-		ByteBuffer buffer;
-		//Line size in bytes
-		int byte_xSize;
+		//Sample size in bytes
+		int sampleBytes;
 		int t = getType(sampleType.getName());
 
-		//Set correct line size
+		//Set correct sample size
 		switch(t){
 		case 0: //boolean - 1 byte
-			byte_xSize = xSize;
+			sampleBytes = 1;
 			break;
 		case 1: //byte
-			byte_xSize = xSize;
+			sampleBytes = 1;
 			break;
 		case 2: //char
-			byte_xSize = 2 * xSize;
+			sampleBytes = 2;
 			break;
 		case 3: //short
-			byte_xSize = 2 * xSize;
+			sampleBytes = 2;
 			break;
 		case 4: //int
-			byte_xSize = 4 * xSize;
+			sampleBytes = 4;
 			break;
 		case 5: //long
-			byte_xSize = 8 * xSize;
+			sampleBytes = 8;
 			break;
 		case 6: //float
-			byte_xSize = 4 * xSize;
+			sampleBytes = 4;
 			break;
 		case 7: //double
-			byte_xSize = 8 * xSize;
+			sampleBytes = 8;
 			break;
 		default:
 			throw new WarningException("Sample type unrecognized.");
 		}
-		buffer = ByteBuffer.allocate(byte_xSize);
+		//Line size in bytes (a line holds one row of one component in BSQ, and one row of all components otherwise)
+		int byte_lineSize = (sampleOrder == 0 ? 1 : zSize) * sampleBytes * xSize;
+		//Number of lines of the file
+		int lines = sampleOrder == 0 ? zSize * ySize : ySize;
 
+		ByteOrder order = ByteOrder.BIG_ENDIAN;
 		switch(byteOrder){
 		case 0: //BIG ENDIAN
-			buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+			order = ByteOrder.BIG_ENDIAN;
 			break;
 		case 1: //LITTLE ENDIAN
-			buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+			order = ByteOrder.LITTLE_ENDIAN;
 			break;
 		}
 
-		//Read image
-		//Further speed improvements can be achieved in the worst case where image width is little by fixing a min read size and not reading less than it
-		for(int z = 0; z < zSize; z++){
-			for(int y = 0; y < ySize; y++){
+		//Plain files are read with positional reads, gzipped ones are inflated in parallel (when possible) and converted sequentially
+		if (!fileIsAGZ){
+			channelLoad(imageFile, t, sampleBytes, order, sampleOrder);
+			return;
+		}
+
+		//Open file and loads it
+		InputStream fis = null;
+		try{
+			fis = new ParallelGZIPInputStream(imageFile, 1024*1024);
+		}catch(FileNotFoundException e){
+			throw new WarningException("File \"" + imageFile + "\" not found.");
+		}catch(IOException e) {
+			throw new WarningException("File \"" + imageFile + "\" may be corrupted (or not in gzip format).");
+		}
+		
+		DataInputStream dis = new DataInputStream(fis);
+
+		//Buffer to perform data conversion
+		ByteBuffer buffer = ByteBuffer.allocate(byte_lineSize).order(order);
+
+		try{
+			//Read image
+			for(int line = 0; line < lines; line++){
 
 				int bytes_read = 0;
 				int buffer_fill = 0;
-				
+			
 				try{
 					// Keep trying till we get enough
 					do {
 						buffer_fill += bytes_read;
-						bytes_read = dis.read(buffer.array(), buffer_fill, byte_xSize - buffer_fill);
-					} while (bytes_read >= 0 && bytes_read + buffer_fill < byte_xSize);
-					
+						bytes_read = dis.read(buffer.array(), buffer_fill, byte_lineSize - buffer_fill);
+					} while (bytes_read >= 0 && bytes_read + buffer_fill < byte_lineSize);
+				
 					if (bytes_read >= 0) {
 						bytes_read += buffer_fill;
 					}
 				}catch(IOException e){
 					throw new WarningException("I/O file reading error.");
 				}
-				
+			
 				if(bytes_read < 0) {
 					throw new WarningException("File reading error (end of file reached before the full file has been read).");
 				}
-				
-				if(bytes_read != byte_xSize){
-					throw new WarningException("File reading error (" + bytes_read + " bytes read, but " + byte_xSize + " needed).");
+			
+				if(bytes_read != byte_lineSize){
+					throw new WarningException("File reading error (" + bytes_read + " bytes read, but " + byte_lineSize + " needed).");
 				}
-				
-				switch(t){
-				case 0: //boolean (1 byte)
-					for(int x = 0; x < xSize; x++){
-						imageSamples[z][y][x] = buffer.get(x) == 0 ? 0.0F : 1.0F;
-					}
-					break;
-				case 1: //unsigned int (1 byte)
-					for(int x = 0; x < xSize; x++){
-						imageSamples[z][y][x] = buffer.get(x) & 0xff;
-					}
-					break;
-				case 2: //unsigned int (2 bytes)
-					CharBuffer cb = buffer.asCharBuffer();
-					for(int x = 0; x < xSize; x++){
-						imageSamples[z][y][x] = cb.get(x) & 0xffff;
-					}
-					break;
-				case 3: //signed short (2 bytes)
-					ShortBuffer sb = buffer.asShortBuffer();
-					for(int x = 0; x < xSize; x++){
-						imageSamples[z][y][x] = sb.get(x);
-					}
-					break;
-				case 4: //signed int (4 bytes)
-					IntBuffer ib = buffer.asIntBuffer();
-					for(int x = 0; x < xSize; x++){
-						imageSamples[z][y][x] = ib.get(x);
-					}
-					break;
-				case 5: //signed long (8 bytes)
-					LongBuffer lb = buffer.asLongBuffer();
-					for(int x = 0; x < xSize; x++){
-						imageSamples[z][y][x] = lb.get(x);
-					}
-					break;
-				case 6: //float (4 bytes)
-					buffer.asFloatBuffer().get(imageSamples[z][y]);
-					break;
-				case 7: //double (8 bytes) - lost of precision
-					DoubleBuffer db = buffer.asDoubleBuffer();
-					for(int x = 0; x < xSize; x++){
-						imageSamples[z][y][x] = (float) db.get(x);
-					}
-					break;
+			
+				if(sampleOrder == 0){
+					convertLines(buffer, line / ySize, line % ySize, line % ySize + 1, t, sampleBytes, sampleOrder);
+				} else {
+					convertLines(buffer, 0, line, line + 1, t, sampleBytes, sampleOrder);
 				}
 			}
+		} finally {
+			//Close .raw file
+			try{
+				fis.close();
+			}catch(IOException e){
+				throw new WarningException("Error closing file \"" + imageFile + "\".");
+			}
+		}
+	}
+
+	/**
+	 * Loads a plain (not gzipped) raw data image using positional reads of a {@link FileChannel}.
+	 * The image is split in chunks of rows of about {@link #CHUNK_SIZE} bytes (in BSQ each component
+	 * is split on its own, in BIL and BIP each chunk holds the rows of all components), and the chunks
+	 * are shared among the workers in an interleaved way, so several parts of the image are read and
+	 * converted at the same time. The image sizes must have been already set and {@link #imageSamples} allocated.
+	 *
+	 * @param imageFile an string that contains the name of the image file
+	 * @param t an integer representing the samples type (see {@link #getType})
+	 * @param sampleBytes size of one sample in the file, in bytes
+	 * @param order byte order of the samples in the file
+	 * @param sampleOrder 0 if BSQ (band sequential), 1 if BIL (band interleaved by line), 2 if BIP (band interleaved by pixel)
+	 *
+	 * @throws WarningException when the file cannot be load
+	 */
+	private void channelLoad(String imageFile, final int t, final int sampleBytes, final ByteOrder order, final int sampleOrder) throws WarningException{
+		RandomAccessFile raf = null;
+		try{
+			raf = new RandomAccessFile(imageFile, "r");
+		}catch(FileNotFoundException e){
+			throw new WarningException("File \"" + imageFile + "\" not found.");
 		}
+		final FileChannel channel = raf.getChannel();
+		//A closing error is only reported when the image has been loaded, not to hide the error of the load
+		boolean loaded = false;
 
-		//Close .raw file
 		try{
-			fis.close();
+			final int byte_lineSize = (sampleOrder == 0 ? 1 : zSize) * sampleBytes * xSize;
+			if(channel.size() < (long) byte_lineSize * ySize * (sampleOrder == 0 ? zSize : 1)){
+				throw new WarningException("File reading error (end of file reached before the full file has been read).");
+			}
+
+			final int chunkRows = byte_lineSize == 0 ? ySize : Math.max(1, Math.min(ySize, CHUNK_SIZE / byte_lineSize));
+			final int chunksBand = chunkRows == 0 ? 0 : (ySize + chunkRows - 1) / chunkRows;
+			final int chunks = sampleOrder == 0 ? zSize * chunksBand : chunksBand;
+			int workers = Runtime.getRuntime().availableProcessors();
+			if (workers > chunks){
+				workers = chunks;
+			}
+			if (workers <= 1){
+				loadChunks(channel, 0, 1, chunks, chunksBand, chunkRows, t, sampleBytes, order, sampleOrder);
+			} else {
+				ExecutorService loadPool = Executors.newFixedThreadPool(workers);
+				try{
+					Future<?> loadedChunks[] = new Future<?>[workers];
+					for(int worker = 0; worker < workers; worker++){
+						final int workerId = worker;
+						final int numWorkers = workers;
+						loadedChunks[worker] = loadPool.submit(new Callable<Object>(){
+							public Object call() throws Exception{
+								loadChunks(channel, workerId, numWorkers, chunks, chunksBand, chunkRows, t, sampleBytes, order, sampleOrder);
+								return null;
+							}
+						});
+					}
+					for(int worker = 0; worker < workers; worker++){
+						try{
+							loadedChunks[worker].get();
+						}catch(ExecutionException e){
+							if(e.getCause() instanceof WarningException){
+								throw (WarningException) e.getCause();
+							}
+							throw new WarningException("I/O file reading error: " + e.getCause().getMessage());
+						}catch(InterruptedException e){
+							for(Future<?> loadedChunk: loadedChunks){
+								loadedChunk.cancel(true);
+							}
+							Thread.currentThread().interrupt();
+							throw new WarningException("I/O file reading error (interrupted).");
+						}
+					}
+				} finally {
+					loadPool.shutdown();
+				}
+			}
+			loaded = true;
 		}catch(IOException e){
-			throw new WarningException("Error closing file \"" + imageFile + "\".");
+			throw new WarningException("I/O file reading error: " + e.getMessage());
+		} finally {
+			try{
+				raf.close();
+			}catch(IOException e){
+				if(loaded){
+					throw new WarningException("Error closing file \"" + imageFile + "\".");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads and converts the chunks firstChunk, firstChunk + step, firstChunk + 2*step, ... of a raw image.
+	 *
+	 * @param channel channel of the raw file
+	 * @param firstChunk first chunk to be loaded
+	 * @param step distance between the chunks to be loaded
+	 * @param chunks total number of chunks of the image
+	 * @param chunksBand number of chunks of each component (or of the image when it is interleaved)
+	 * @param chunkRows number of rows of each chunk (the last chunk of a component may have less)
+	 * @param t an integer representing the samples type (see {@link #getType})
+	 * @param sampleBytes size of one sample in the file, in bytes
+	 * @param order byte order of the samples in the file
+	 * @param sampleOrder 0 if BSQ (band sequential), 1 if BIL (band interleaved by line), 2 if BIP (band interleaved by pixel)
+	 *
+	 * @throws WarningException when the file cannot be load
+	 * @throws IOException when the channel cannot be read
+	 */
+	private void loadChunks(FileChannel channel, int firstChunk, int step, int chunks, int chunksBand, int chunkRows,
+			int t, int sampleBytes, ByteOrder order, int sampleOrder) throws WarningException, IOException{
+		int byte_lineSize = (sampleOrder == 0 ? 1 : zSize) * sampleBytes * xSize;
+		ByteBuffer buffer = ByteBuffer.allocate(chunkRows * byte_lineSize).order(order);
+		for(int chunk = firstChunk; chunk < chunks; chunk += step){
+			int z = chunk / chunksBand;
+			int yStart = (chunk % chunksBand) * chunkRows;
+			int yEnd = Math.min(yStart + chunkRows, ySize);
+			long position = ((long) z * ySize + yStart) * byte_lineSize;
+
+			buffer.clear();
+			buffer.limit((yEnd - yStart) * byte_lineSize);
+			while(buffer.hasRemaining()){
+				int bytes_read = channel.read(buffer, position + buffer.position());
+				if(bytes_read < 0){
+					throw new WarningException("File reading error (end of file reached before the full file has been read).");
+				}
+			}
+			convertLines(buffer, z, yStart, yEnd, t, sampleBytes, sampleOrder);
+		}
+	}
+
+	/**
+	 * Converts to float the lines of raw samples of a buffer and stores them in {@link #imageSamples}.
+	 * In BSQ the buffer holds the rows yStart to yEnd of component z, in BIL and BIP it holds the rows
+	 * yStart to yEnd of all components.
+	 *
+	 * @param buffer buffer that contains the raw samples, with the byte order of the file
+	 * @param z component of the rows in BSQ (ignored otherwise)
+	 * @param yStart first row of the buffer
+	 * @param yEnd row following the last row of the buffer
+	 * @param t an integer representing the samples type (see {@link #getType})
+	 * @param sampleBytes size of one sample in the file, in bytes
+	 * @param sampleOrder 0 if BSQ (band sequential), 1 if BIL (band interleaved by line), 2 if BIP (band interleaved by pixel)
+	 */
+	private void convertLines(ByteBuffer buffer, int z, int yStart, int yEnd, int t, int sampleBytes, int sampleOrder){
+		int byte_xSize = sampleBytes * xSize;
+		for(int y = yStart; y < yEnd; y++){
+			switch(sampleOrder){
+			case 0: //BSQ
+				convertRow(buffer, (y - yStart) * byte_xSize, sampleBytes, t, imageSamples[z][y]);
+				break;
+			case 1: //BIL
+				for(int band = 0; band < zSize; band++){
+					convertRow(buffer, ((y - yStart) * zSize + band) * byte_xSize, sampleBytes, t, imageSamples[band][y]);
+				}
+				break;
+			case 2: //BIP
+				for(int band = 0; band < zSize; band++){
+					convertRow(buffer, (y - yStart) * zSize * byte_xSize + band * sampleBytes, zSize * sampleBytes, t, imageSamples[band][y]);
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Converts one row of raw samples to float.
+	 *
+	 * @param buffer buffer that contains the raw samples, with the byte order of the file
+	 * @param offset position of the first byte of the row in the buffer
+	 * @param stride distance, in bytes, between two consecutive samples of the row in the buffer
+	 * @param t an integer representing the samples type (see {@link #getType})
+	 * @param row array where the converted samples are stored
+	 */
+	static void convertRow(ByteBuffer buffer, int offset, int stride, int t, float[] row){
+		int xSize = row.length;
+		switch(t){
+		case 0: //boolean (1 byte)
+			for(int x = 0; x < xSize; x++){
+				row[x] = buffer.get(offset + stride * x) == 0 ? 0.0F : 1.0F;
+			}
+			break;
+		case 1: //unsigned int (1 byte)
+			for(int x = 0; x < xSize; x++){
+				row[x] = buffer.get(offset + stride * x) & 0xff;
+			}
+			break;
+		case 2: //unsigned int (2 bytes)
+			for(int x = 0; x < xSize; x++){
+				row[x] = buffer.getChar(offset + stride * x) & 0xffff;
+			}
+			break;
+		case 3: //signed short (2 bytes)
+			for(int x = 0; x < xSize; x++){
+				row[x] = buffer.getShort(offset + stride * x);
+			}
+			break;
+		case 4: //signed int (4 bytes)
+			for(int x = 0; x < xSize; x++){
+				row[x] = buffer.getInt(offset + stride * x);
+			}
+			break;
+		case 5: //signed long (8 bytes)
+			for(int x = 0; x < xSize; x++){
+				row[x] = buffer.getLong(offset + stride * x);
+			}
+			break;
+		case 6: //float (4 bytes)
+			for(int x = 0; x < xSize; x++){
+				row[x] = buffer.getFloat(offset + stride * x);
+			}
+			break;
+		case 7: //double (8 bytes) - lost of precision
+			for(int x = 0; x < xSize; x++){
+				row[x] = (float) buffer.getDouble(offset + stride * x);
+			}
+			break;
 		}
 	}
 
@@ -665,25 +634,47 @@ public class LoadFile{
 	public int[] getPixelBitDepth(){
 		int[] pixelBitDepth = new int[zSize];
 		for(int z = 0; z < zSize; z++){
-			//int bitDepth=0;
-			if(samplesType[z] == Byte.TYPE)           pixelBitDepth[z] = 8;
-			else if(samplesType[z] == Character.TYPE) pixelBitDepth[z] = 16;
-			else if(samplesType[z] == Short.TYPE)     pixelBitDepth[z] = 16;
-			else if(samplesType[z] == Integer.TYPE)   pixelBitDepth[z] = 32;
-			else if(samplesType[z] == Long.TYPE)      pixelBitDepth[z] = 64;
-			else if(samplesType[z] == Float.TYPE)     pixelBitDepth[z] = 32;
-			else if(samplesType[z] == Double.TYPE)    pixelBitDepth[z] = 64;
+			pixelBitDepth[z] = getPixelBitDepth(samplesType[z]);
 		}
 		return(pixelBitDepth);
 	}
 
+	/**
+	 * Indicates the bit depth of a sample type.
+	 *
+	 * @param sampleType the class of the samples
+	 * @return the bit depth of the samples, 0 for the types without bit depth (boolean)
+	 */
+	static int getPixelBitDepth(Class sampleType){
+		int bitDepth = 0;
+		if(sampleType == Byte.TYPE)           bitDepth = 8;
+		else if(sampleType == Character.TYPE) bitDepth = 16;
+		else if(sampleType == Short.TYPE)     bitDepth = 16;
+		else if(sampleType == Integer.TYPE)   bitDepth = 32;
+		else if(sampleType == Long.TYPE)      bitDepth = 64;
+		else if(sampleType == Float.TYPE)     bitDepth = 32;
+		else if(sampleType == Double.TYPE)    bitDepth = 64;
+		return(bitDepth);
+	}
+
 	/**
 	 * Indicates if the loaded image has signed pixels.
 	 *
 	 * @return an integer array that indicates if the channel if signed
 	 */	
 	public void setSignedPixels(int sampleType,int zSize){
-		signedPixels = new int[zSize];
+		signedPixels = getSignedPixels(sampleType, zSize);
+	}
+
+	/**
+	 * Indicates if the samples of a raw sample type are signed.
+	 *
+	 * @param sampleType an integer representing the samples type (see {@link #getType})
+	 * @param zSize number of image components
+	 * @return an integer array that indicates, for each component, if it is signed (1) or not (0)
+	 */
+	static int[] getSignedPixels(int sampleType, int zSize){
+		int[] signedPixels = new int[zSize];
 		for(int z = 0; z < zSize; z++){
 			if(sampleType == 3 || sampleType == 4 || sampleType == 5 || 
 					sampleType == 6 || sampleType == 7 ){
@@ -692,6 +683,7 @@ public class LoadFile{
 				signedPixels[z] = 0;
 			}
 		}
+		return(signedPixels);
 	}
 	
 	/**
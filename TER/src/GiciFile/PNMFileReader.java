@@ -0,0 +1,175 @@
+/*
+ * GICI Library -
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * gici-info@deic.uab.es
+ */
+package GiciFile;
+import GiciException.*;
+
+import java.io.*;
+
+
+/**
+ * This class loads PGM and PPM images (binary and ASCII, with 8 or 16 bits per sample) without JAI.
+ * Gzipped files (".gz") are inflated on the fly.
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class PNMFileReader implements ImageFileReader{
+
+	/**
+	 * Loads a PGM or PPM image.
+	 *
+	 * @param imageFile an string that contains the name of the image file
+	 * @param image the image where the file is loaded
+	 *
+	 * @throws WarningException when the file cannot be load
+	 */
+	public void read(String imageFile, LoadFile image) throws WarningException{
+		InputStream is = null;
+		try{
+			if(imageFile.toLowerCase().endsWith(".gz")){
+				is = new ParallelGZIPInputStream(imageFile, 1024*1024);
+			}else{
+				is = new BufferedInputStream(new FileInputStream(imageFile), 1024*1024);
+			}
+			DataInputStream dis = new DataInputStream(is);
+
+			//Header
+			String magicNumber = nextToken(dis);
+			boolean binary;
+			int zSize;
+			if(magicNumber.equals("P5")){
+				binary = true;
+				zSize = 1;
+			}else if(magicNumber.equals("P6")){
+				binary = true;
+				zSize = 3;
+			}else if(magicNumber.equals("P2")){
+				binary = false;
+				zSize = 1;
+			}else if(magicNumber.equals("P3")){
+				binary = false;
+				zSize = 3;
+			}else{
+				throw new WarningException("File \"" + imageFile + "\" can not be loaded. Problems with the magic number");
+			}
+			int xSize = Integer.parseInt(nextToken(dis));
+			int ySize = Integer.parseInt(nextToken(dis));
+			int maxValue = Integer.parseInt(nextToken(dis));
+			if(maxValue <= 0 || maxValue > 65535){
+				throw new WarningException("File \"" + imageFile + "\" can not be loaded. Unsupported maximum value " + maxValue);
+			}
+
+			float[][][] imageSamples = new float[zSize][ySize][xSize];
+			Class[] samplesType = new Class[zSize];
+			int[] signedPixels = new int[zSize];
+			for(int z = 0; z < zSize; z++){
+				samplesType[z] = maxValue <= 255 ? Byte.TYPE : Short.TYPE;
+				signedPixels[z] = 0;
+			}
+
+			//Samples
+			if(binary){
+				//Samples of 2 bytes are big endian
+				int sampleBytes = maxValue <= 255 ? 1 : 2;
+				byte[] row = new byte[xSize * zSize * sampleBytes];
+				for(int y = 0; y < ySize; y++){
+					dis.readFully(row);
+					int index = 0;
+					for(int x = 0; x < xSize; x++){
+						for(int z = 0; z < zSize; z++){
+							if(sampleBytes == 1){
+								imageSamples[z][y][x] = row[index++] & 0xff;
+							}else{
+								imageSamples[z][y][x] = ((row[index] & 0xff) << 8) | (row[index + 1] & 0xff);
+								index += 2;
+							}
+						}
+					}
+				}
+			}else{
+				for(int y = 0; y < ySize; y++){
+					for(int x = 0; x < xSize; x++){
+						for(int z = 0; z < zSize; z++){
+							imageSamples[z][y][x] = Integer.parseInt(nextToken(dis));
+						}
+					}
+				}
+			}
+
+			image.zSize = zSize;
+			image.ySize = ySize;
+			image.xSize = xSize;
+			image.imageSamples = imageSamples;
+			image.samplesType = samplesType;
+			image.RGBComponents = zSize == 3;
+			image.signedPixels = signedPixels;
+		}catch(WarningException e){
+			throw e;
+		}catch(Exception e){
+			throw new WarningException("File \"" + imageFile + "\" can not be loaded.");
+		}finally{
+			if(is != null){
+				try{
+					is.close();
+				}catch(IOException e){
+					throw new WarningException("Error closing file \"" + imageFile + "\".");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the next token of a PNM file, skipping the white spaces and comments before it. The white
+	 * space that ends the token is also read, so after the maximum value the stream is at the first sample.
+	 *
+	 * @param dis stream of the file
+	 * @return the token
+	 *
+	 * @throws IOException when the end of the file is reached before any token
+	 */
+	static String nextToken(DataInputStream dis) throws IOException{
+		StringBuilder token = new StringBuilder();
+		int c = dis.read();
+		while(c >= 0 && (Character.isWhitespace((char) c) || c == '#')){
+			if(c == '#'){
+				while(c >= 0 && c != '\n' && c != '\r'){
+					c = dis.read();
+				}
+			}
+			c = dis.read();
+		}
+		while(c >= 0 && !Character.isWhitespace((char) c)){
+			token.append((char) c);
+			c = dis.read();
+		}
+		if(token.length() == 0){
+			throw new EOFException();
+		}
+		return(token.toString());
+	}
+
+}
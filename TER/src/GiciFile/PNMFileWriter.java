@@ -0,0 +1,104 @@
+/*
+ * GICI Library -
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * gici-info@deic.uab.es
+ */
+package GiciFile;
+import GiciException.*;
+
+import java.io.*;
+
+
+/**
+ * This class saves PGM (1 component) and PPM (3 components) binary images of 8 bits per sample without JAI.
+ * Samples are converted as done by the JAI writer, i.e., they are truncated to integer and only the lowest
+ * 8 bits are kept. Files with ".gz" extension are compressed in block gzip format.
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class PNMFileWriter implements ImageFileWriter{
+
+	/**
+	 * Saves image samples in a PGM or PPM file.
+	 *
+	 * @param imageSamples a 3D float array that contains image samples
+	 * @param imageFile file name where the image will be stored
+	 *
+	 * @throws WarningException when the file cannot be saved (incorrect number of components, etc.)
+	 */
+	public void write(float[][][] imageSamples, String imageFile) throws WarningException{
+		//Image sizes
+		int zSize = imageSamples.length;
+		int ySize = imageSamples[0].length;
+		int xSize = imageSamples[0][0].length;
+
+		String magicNumber;
+		switch(zSize){
+		case 1:
+			magicNumber = "P5";
+			break;
+		case 3:
+			magicNumber = "P6";
+			break;
+		default:
+			throw new WarningException("This format only supports 1 or 3 components.");
+		}
+		String header = magicNumber+"\n"+String.valueOf(xSize)+" "+String.valueOf(ySize)+"\n255\n";
+
+		OutputStream os = null;
+		try{
+			if(imageFile.toLowerCase().endsWith(".gz")){
+				os = new ParallelGZIPOutputStream(new FileOutputStream(imageFile));
+			}else{
+				os = new BufferedOutputStream(new FileOutputStream(imageFile), 1024*1024);
+			}
+		}catch(FileNotFoundException e){
+			throw new WarningException("File \"" + imageFile + "\" can not be open.");
+		}
+
+		try{
+			os.write(header.getBytes("ISO-8859-1"));
+			byte[] row = new byte[xSize * zSize];
+			for(int y = 0; y < ySize; y++){
+				int index = 0;
+				for(int x = 0; x < xSize; x++){
+					for(int z = 0; z < zSize; z++){
+						row[index++] = (byte) (int) imageSamples[z][y][x];
+					}
+				}
+				os.write(row);
+			}
+		}catch(IOException e){
+			throw new WarningException("I/O file writing error.");
+		}finally{
+			try{
+				os.close();
+			}catch(IOException e){
+				throw new WarningException("Error closing file \"" + imageFile + "\".");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,383 @@
+/*
+ * GICI Library -
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * gici-info@deic.uab.es
+ */
+package GiciFile;
+
+import java.io.*;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+
+/**
+ * This class reads a gzip file inflating its members in parallel.<br>
+ * Members can only be inflated independently when their compressed size is known before inflating them, so
+ * the parallel mode is used for block gzip files (BGZF, as produced by bgzip or {@link ParallelGZIPOutputStream}),
+ * whose members carry their size in a "BC" extra subfield. Any other gzip file is read with a single
+ * {@link GZIPInputStream}.<br>
+ * Usage example:<br>
+ * &nbsp; construct<br>
+ * &nbsp; read<br>
+ * &nbsp; close<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class ParallelGZIPInputStream extends InputStream{
+
+	/**
+	 * Number of gzip members inflated by each task.
+	 * <p>
+	 * Positive values allowed.
+	 */
+	static final int BLOCKS_TASK = 16;
+
+	/**
+	 * Length of the header of a member of a block gzip file.
+	 * <p>
+	 * Fixed by the BGZF format.
+	 */
+	static final int BGZF_HEADER_LENGTH = 18;
+
+	/**
+	 * Compressed file, read sequentially to split it in members.
+	 * <p>
+	 * Null when the file is read with {@link #singleStream}.
+	 */
+	DataInputStream blockStream = null;
+
+	/**
+	 * Stream used when the file is not a block gzip file.
+	 * <p>
+	 * Null when the file is read in parallel.
+	 */
+	GZIPInputStream singleStream = null;
+
+	/**
+	 * Number of workers that inflate members at the same time.
+	 * <p>
+	 * Positive values allowed.
+	 */
+	int workers;
+
+	/**
+	 * Pool where the members are inflated, null when there is only one worker.
+	 * <p>
+	 * Only initialized when there are more than one worker.
+	 */
+	ExecutorService inflatePool = null;
+
+	/**
+	 * Groups of members that have been submitted to be inflated, in file order.
+	 * <p>
+	 * At most 2 * {@link #workers} groups are pending.
+	 */
+	LinkedList<Future<byte[]>> pendingGroups = new LinkedList<Future<byte[]>>();
+
+	/**
+	 * Inflated data of the group of members being read.
+	 * <p>
+	 * Null before the first group is inflated.
+	 */
+	byte[] currentGroup = null;
+
+	/**
+	 * Position of the next byte to be read in {@link #currentGroup}.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	int currentPosition = 0;
+
+	/**
+	 * Indicates that all the members of the file have been submitted.
+	 * <p>
+	 * True or false.
+	 */
+	boolean endOfMembers = false;
+
+	/**
+	 * Opens a gzip file.
+	 *
+	 * @param gzipFile name of the gzip file
+	 * @param bufferSize size of the buffer used to read the file
+	 *
+	 * @throws IOException when the file cannot be opened or it is not in gzip format
+	 */
+	public ParallelGZIPInputStream(String gzipFile, int bufferSize) throws IOException{
+		BufferedInputStream in = new BufferedInputStream(new FileInputStream(gzipFile), bufferSize);
+		try{
+			in.mark(BGZF_HEADER_LENGTH);
+			byte[] header = new byte[BGZF_HEADER_LENGTH];
+			int headerLength = 0;
+			int bytesRead = 0;
+			while(bytesRead >= 0 && headerLength < header.length){
+				bytesRead = in.read(header, headerLength, header.length - headerLength);
+				if(bytesRead > 0){
+					headerLength += bytesRead;
+				}
+			}
+			in.reset();
+
+			if(headerLength == header.length && isBlockGZIP(header)){
+				blockStream = new DataInputStream(in);
+				workers = Runtime.getRuntime().availableProcessors();
+				if(workers > 1){
+					inflatePool = Executors.newFixedThreadPool(workers, new ThreadFactory(){
+						public Thread newThread(Runnable runnable){
+							//Daemon threads, so that a stream that is not closed does not keep the virtual machine alive
+							Thread thread = new Thread(runnable, "gzip inflate");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+				}
+			}else{
+				singleStream = new GZIPInputStream(in, bufferSize);
+			}
+		}catch(IOException e){
+			in.close();
+			throw e;
+		}catch(RuntimeException e){
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Indicates whether a member header is the header of a block gzip file, i.e., it has only the FEXTRA flag
+	 * and its extra field is the "BC" subfield with the size of the member.
+	 *
+	 * @param header the first {@link #BGZF_HEADER_LENGTH} bytes of the member
+	 * @return true if the member belongs to a block gzip file
+	 */
+	static boolean isBlockGZIP(byte[] header){
+		return((header[0] & 0xff) == 31 && (header[1] & 0xff) == 139 && header[2] == 8 && header[3] == 4
+				&& header[10] == 6 && header[11] == 0 && header[12] == 'B' && header[13] == 'C'
+				&& header[14] == 2 && header[15] == 0);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int read() throws IOException{
+		if(singleStream != null){
+			return(singleStream.read());
+		}
+		if(!fillGroup()){
+			return(-1);
+		}
+		return(currentGroup[currentPosition++] & 0xff);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int read(byte[] b, int off, int len) throws IOException{
+		if(singleStream != null){
+			return(singleStream.read(b, off, len));
+		}
+		if(len == 0){
+			return(0);
+		}
+		if(!fillGroup()){
+			return(-1);
+		}
+		int length = Math.min(len, currentGroup.length - currentPosition);
+		System.arraycopy(currentGroup, currentPosition, b, off, length);
+		currentPosition += length;
+		return(length);
+	}
+
+	/**
+	 * Makes sure that {@link #currentGroup} has data to be read, submitting new groups of members to be inflated
+	 * and waiting for the next one when needed.
+	 *
+	 * @return false when the end of the file has been reached
+	 *
+	 * @throws IOException when the file cannot be read or a member is corrupted
+	 */
+	boolean fillGroup() throws IOException{
+		while(currentGroup == null || currentPosition == currentGroup.length){
+			while(!endOfMembers && pendingGroups.size() < 2 * workers){
+				final byte[][] members = readMembers();
+				if(members == null){
+					endOfMembers = true;
+				}else{
+					Callable<byte[]> inflateGroup = new Callable<byte[]>(){
+						public byte[] call() throws Exception{
+							return(inflateMembers(members));
+						}
+					};
+					if(inflatePool == null){
+						FutureTask<byte[]> inflatedGroup = new FutureTask<byte[]>(inflateGroup);
+						inflatedGroup.run();
+						pendingGroups.add(inflatedGroup);
+					}else{
+						pendingGroups.add(inflatePool.submit(inflateGroup));
+					}
+				}
+			}
+			if(pendingGroups.isEmpty()){
+				//End of the file, the workers are no longer needed
+				if(inflatePool != null){
+					inflatePool.shutdown();
+					inflatePool = null;
+				}
+				return(false);
+			}
+			try{
+				currentGroup = pendingGroups.removeFirst().get();
+			}catch(ExecutionException e){
+				if(e.getCause() instanceof IOException){
+					throw (IOException) e.getCause();
+				}
+				throw new IOException("Error inflating gzip members.");
+			}catch(InterruptedException e){
+				throw new IOException("Error inflating gzip members.");
+			}
+			currentPosition = 0;
+		}
+		return(true);
+	}
+
+	/**
+	 * Reads the next {@link #BLOCKS_TASK} members of the file (or less at the end of the file).
+	 *
+	 * @return the compressed members, null if there are no more members
+	 *
+	 * @throws IOException when the file cannot be read or it is not a block gzip file
+	 */
+	byte[][] readMembers() throws IOException{
+		LinkedList<byte[]> members = new LinkedList<byte[]>();
+		byte[] header = new byte[BGZF_HEADER_LENGTH];
+		while(members.size() < BLOCKS_TASK){
+			int first = blockStream.read();
+			if(first < 0){
+				break;
+			}
+			header[0] = (byte) first;
+			blockStream.readFully(header, 1, header.length - 1);
+			if(!isBlockGZIP(header)){
+				throw new IOException("Gzip member without block size.");
+			}
+			int memberSize = ((header[16] & 0xff) | ((header[17] & 0xff) << 8)) + 1;
+			if(memberSize < BGZF_HEADER_LENGTH + 8){
+				throw new IOException("Corrupted gzip member.");
+			}
+			byte[] member = new byte[memberSize];
+			System.arraycopy(header, 0, member, 0, header.length);
+			blockStream.readFully(member, header.length, memberSize - header.length);
+			members.add(member);
+		}
+		return(members.isEmpty() ? null : members.toArray(new byte[members.size()][]));
+	}
+
+	/**
+	 * Inflates a group of members of a block gzip file checking their CRC and size.
+	 *
+	 * @param members the compressed members
+	 * @return the inflated data of all the members
+	 *
+	 * @throws IOException when a member is corrupted
+	 */
+	static byte[] inflateMembers(byte[][] members) throws IOException{
+		int length = 0;
+		for(int member = 0; member < members.length; member++){
+			length += getInt(members[member], members[member].length - 4);
+		}
+		byte[] data = new byte[length];
+		int offset = 0;
+		Inflater inflater = new Inflater(true);
+		CRC32 crc = new CRC32();
+		try{
+			for(int member = 0; member < members.length; member++){
+				byte[] compressed = members[member];
+				int size = getInt(compressed, compressed.length - 4);
+				inflater.reset();
+				inflater.setInput(compressed, BGZF_HEADER_LENGTH, compressed.length - BGZF_HEADER_LENGTH - 8);
+				int inflated = 0;
+				while(inflated < size && !inflater.finished()){
+					int bytes = inflater.inflate(data, offset + inflated, size - inflated);
+					if(bytes == 0 && (inflater.needsInput() || inflater.needsDictionary())){
+						break;
+					}
+					inflated += bytes;
+				}
+				crc.reset();
+				crc.update(data, offset, inflated);
+				if(inflated != size || (int) crc.getValue() != getInt(compressed, compressed.length - 8)){
+					throw new IOException("Corrupted gzip member.");
+				}
+				offset += size;
+			}
+		}catch(DataFormatException e){
+			throw new IOException("Corrupted gzip member.");
+		}finally{
+			inflater.end();
+		}
+		return(data);
+	}
+
+	/**
+	 * Reads a little endian integer.
+	 *
+	 * @param buffer the bytes
+	 * @param offset position of the first byte of the integer
+	 * @return the integer
+	 */
+	static int getInt(byte[] buffer, int offset){
+		return((buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8)
+				| ((buffer[offset + 2] & 0xff) << 16) | ((buffer[offset + 3] & 0xff) << 24));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void close() throws IOException{
+		if(inflatePool != null){
+			inflatePool.shutdownNow();
+			inflatePool = null;
+		}
+		pendingGroups.clear();
+		currentGroup = null;
+		if(singleStream != null){
+			singleStream.close();
+		}
+		if(blockStream != null){
+			blockStream.close();
+		}
+	}
+
+}
@@ -0,0 +1,355 @@
+/*
+ * GICI Library -
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * gici-info@deic.uab.es
+ */
+package GiciFile;
+
+import java.io.*;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+
+/**
+ * This class writes a block gzip file (BGZF), deflating its members in parallel.<br>
+ * The data is split in members of {@link #MEMBER_DATA} bytes whose size is stored in a "BC" extra subfield,
+ * so the file can be read by any gzip decompressor and inflated in parallel by {@link ParallelGZIPInputStream}.
+ * The file ends with an empty member, as done by bgzip.<br>
+ * Usage example:<br>
+ * &nbsp; construct<br>
+ * &nbsp; write<br>
+ * &nbsp; close<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class ParallelGZIPOutputStream extends OutputStream{
+
+	/**
+	 * Maximum number of bytes of data of each member, so that the member size fits in the "BC" subfield
+	 * even when the data cannot be compressed.
+	 * <p>
+	 * Fixed by the BGZF format.
+	 */
+	static final int MEMBER_DATA = 0xff00;
+
+	/**
+	 * Number of gzip members deflated by each task.
+	 * <p>
+	 * Positive values allowed.
+	 */
+	static final int BLOCKS_TASK = 16;
+
+	/**
+	 * Maximum size of a member of a block gzip file.
+	 * <p>
+	 * Fixed by the BGZF format.
+	 */
+	static final int MAX_MEMBER_SIZE = 65536;
+
+	/**
+	 * Empty member written at the end of the file.
+	 * <p>
+	 * Fixed by the BGZF format.
+	 */
+	static final byte[] EOF_MEMBER = {31, -117, 8, 4, 0, 0, 0, 0, 0, -1, 6, 0, 66, 67, 2, 0, 27, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+
+	/**
+	 * Stream where the deflated members are written.
+	 * <p>
+	 * Not null.
+	 */
+	OutputStream out;
+
+	/**
+	 * Compression level of the deflater.
+	 * <p>
+	 * Values from 0 to 9, or -1 for the default level.
+	 */
+	int level;
+
+	/**
+	 * Number of workers that deflate members at the same time.
+	 * <p>
+	 * Positive values allowed.
+	 */
+	int workers;
+
+	/**
+	 * Pool where the members are deflated, null when there is only one worker.
+	 * <p>
+	 * Only initialized when there are more than one worker.
+	 */
+	ExecutorService deflatePool = null;
+
+	/**
+	 * Groups of members that have been submitted to be deflated, in file order.
+	 * <p>
+	 * At most 2 * {@link #workers} groups are pending.
+	 */
+	LinkedList<Future<byte[]>> pendingGroups = new LinkedList<Future<byte[]>>();
+
+	/**
+	 * Data of the group of members being filled.
+	 * <p>
+	 * Its length is {@link #BLOCKS_TASK} * {@link #MEMBER_DATA}.
+	 */
+	byte[] currentGroup = new byte[BLOCKS_TASK * MEMBER_DATA];
+
+	/**
+	 * Number of bytes of {@link #currentGroup} that have been filled.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	int currentPosition = 0;
+
+	/**
+	 * Constructor that uses the default compression level.
+	 *
+	 * @param out stream where the block gzip file is written
+	 */
+	public ParallelGZIPOutputStream(OutputStream out){
+		this(out, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out stream where the block gzip file is written
+	 * @param level compression level, from 0 to 9, or -1 for the default level
+	 */
+	public ParallelGZIPOutputStream(OutputStream out, int level){
+		this.out = out;
+		this.level = level;
+		workers = Runtime.getRuntime().availableProcessors();
+		if(workers > 1){
+			deflatePool = Executors.newFixedThreadPool(workers, new ThreadFactory(){
+				public Thread newThread(Runnable runnable){
+					//Daemon threads, so that a stream that is not closed does not keep the virtual machine alive
+					Thread thread = new Thread(runnable, "gzip deflate");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void write(int b) throws IOException{
+		currentGroup[currentPosition++] = (byte) b;
+		if(currentPosition == currentGroup.length){
+			submitGroup();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void write(byte[] b, int off, int len) throws IOException{
+		while(len > 0){
+			int length = Math.min(len, currentGroup.length - currentPosition);
+			System.arraycopy(b, off, currentGroup, currentPosition, length);
+			currentPosition += length;
+			off += length;
+			len -= length;
+			if(currentPosition == currentGroup.length){
+				submitGroup();
+			}
+		}
+	}
+
+	/**
+	 * Submits the filled part of {@link #currentGroup} to be deflated, writing the groups that are
+	 * already deflated when there are too many pending.
+	 *
+	 * @throws IOException when the file cannot be written
+	 */
+	void submitGroup() throws IOException{
+		if(currentPosition == 0){
+			return;
+		}
+		final byte[] data = currentGroup;
+		final int length = currentPosition;
+		Callable<byte[]> deflateGroup = new Callable<byte[]>(){
+			public byte[] call() throws Exception{
+				return(deflateMembers(data, length, level));
+			}
+		};
+		if(deflatePool == null){
+			FutureTask<byte[]> deflatedGroup = new FutureTask<byte[]>(deflateGroup);
+			deflatedGroup.run();
+			pendingGroups.add(deflatedGroup);
+		}else{
+			pendingGroups.add(deflatePool.submit(deflateGroup));
+		}
+		currentGroup = new byte[BLOCKS_TASK * MEMBER_DATA];
+		currentPosition = 0;
+		while(pendingGroups.size() >= 2 * workers){
+			writeGroup();
+		}
+	}
+
+	/**
+	 * Waits for the first pending group to be deflated and writes it.
+	 *
+	 * @throws IOException when the file cannot be written
+	 */
+	void writeGroup() throws IOException{
+		try{
+			out.write(pendingGroups.removeFirst().get());
+		}catch(ExecutionException e){
+			throw new IOException("Error deflating gzip members.");
+		}catch(InterruptedException e){
+			throw new IOException("Error deflating gzip members.");
+		}
+	}
+
+	/**
+	 * Deflates some data in members of a block gzip file.
+	 *
+	 * @param data data to be deflated
+	 * @param length number of bytes of data to be deflated
+	 * @param level compression level
+	 * @return the deflated members, one for each {@link #MEMBER_DATA} bytes of data
+	 */
+	static byte[] deflateMembers(byte[] data, int length, int level){
+		ByteArrayOutputStream members = new ByteArrayOutputStream(length + length / 8 + 64);
+		byte[] member = new byte[MAX_MEMBER_SIZE];
+		Deflater deflater = new Deflater(level, true);
+		Deflater storer = null;
+		CRC32 crc = new CRC32();
+		try{
+			for(int offset = 0; offset < length; offset += MEMBER_DATA){
+				int dataLength = Math.min(MEMBER_DATA, length - offset);
+				deflater.reset();
+				deflater.setInput(data, offset, dataLength);
+				deflater.finish();
+				int maxLength = MAX_MEMBER_SIZE - ParallelGZIPInputStream.BGZF_HEADER_LENGTH - 8;
+				int compressedLength = deflater.deflate(member, ParallelGZIPInputStream.BGZF_HEADER_LENGTH, maxLength);
+				if(!deflater.finished()){
+					//Data that cannot be compressed is stored
+					if(storer == null){
+						storer = new Deflater(Deflater.NO_COMPRESSION, true);
+					}
+					storer.reset();
+					storer.setInput(data, offset, dataLength);
+					storer.finish();
+					compressedLength = storer.deflate(member, ParallelGZIPInputStream.BGZF_HEADER_LENGTH, maxLength);
+				}
+				int memberSize = ParallelGZIPInputStream.BGZF_HEADER_LENGTH + compressedLength + 8;
+				crc.reset();
+				crc.update(data, offset, dataLength);
+
+				//Header with the "BC" subfield
+				member[0] = 31;
+				member[1] = (byte) 139;
+				member[2] = 8;
+				member[3] = 4;
+				member[4] = member[5] = member[6] = member[7] = member[8] = 0;
+				member[9] = (byte) 255;
+				member[10] = 6;
+				member[11] = 0;
+				member[12] = 'B';
+				member[13] = 'C';
+				member[14] = 2;
+				member[15] = 0;
+				member[16] = (byte) (memberSize - 1);
+				member[17] = (byte) ((memberSize - 1) >>> 8);
+				//Trailer
+				putInt(member, memberSize - 8, (int) crc.getValue());
+				putInt(member, memberSize - 4, dataLength);
+				members.write(member, 0, memberSize);
+			}
+		}finally{
+			deflater.end();
+			if(storer != null){
+				storer.end();
+			}
+		}
+		return(members.toByteArray());
+	}
+
+	/**
+	 * Writes a little endian integer.
+	 *
+	 * @param buffer the bytes
+	 * @param offset position of the first byte of the integer
+	 * @param value the integer
+	 */
+	static void putInt(byte[] buffer, int offset, int value){
+		buffer[offset] = (byte) value;
+		buffer[offset + 1] = (byte) (value >>> 8);
+		buffer[offset + 2] = (byte) (value >>> 16);
+		buffer[offset + 3] = (byte) (value >>> 24);
+	}
+
+	/**
+	 * Deflates and writes all the data written so far. The members written are complete, so a flush
+	 * adds a member shorter than {@link #MEMBER_DATA}.
+	 *
+	 * @throws IOException when the file cannot be written
+	 */
+	public void flush() throws IOException{
+		submitGroup();
+		while(!pendingGroups.isEmpty()){
+			writeGroup();
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes the pending data and the end of file member and closes the stream.
+	 *
+	 * @throws IOException when the file cannot be written
+	 */
+	public void close() throws IOException{
+		if(currentGroup == null){
+			return;
+		}
+		try{
+			submitGroup();
+			while(!pendingGroups.isEmpty()){
+				writeGroup();
+			}
+			out.write(EOF_MEMBER);
+		}finally{
+			if(deflatePool != null){
+				deflatePool.shutdownNow();
+				deflatePool = null;
+			}
+			currentGroup = null;
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * GICI Library -
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * gici-info@deic.uab.es
+ */
+package GiciFile;
+
+import GiciException.*;
+
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * This class writes a raw image (BSQ sample order) component by component, each component at its position of the
+ * file. The samples are converted as in {@link SaveFile#SaveFileRaw}.<br>
+ * Usage example:<br>
+ * &nbsp; construct<br>
+ * &nbsp; open<br>
+ * &nbsp; write (for each component)<br>
+ * &nbsp; close<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class RawBandWriter implements ImageBandWriter{
+
+	/**
+	 * Name of the raw file.
+	 * <p>
+	 * Valid file name (with path).
+	 */
+	String imageFile;
+
+	/**
+	 * Raw file, open between {@link #open} and {@link #close}.
+	 * <p>
+	 * Null when the file is not open.
+	 */
+	RandomAccessFile file = null;
+
+	/**
+	 * Geometry of the image (see {@link ImageBandWriter#open}).
+	 * <p>
+	 * Set when the file is opened.
+	 */
+	int[] imageGeometry = null;
+
+	/**
+	 * Size of one sample in the file, in bytes.
+	 * <p>
+	 * Set when the file is opened.
+	 */
+	int sampleBytes;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param imageFile name of the raw file
+	 */
+	public RawBandWriter(String imageFile){
+		this.imageFile = imageFile;
+	}
+
+	/**
+	 * Indicates whether an image file can be written component by component by this class, i.e., it is a raw
+	 * file that is not compressed.
+	 *
+	 * @param imageFile name of the image file
+	 * @return true if the file is a plain raw file
+	 */
+	public static boolean isSupported(String imageFile){
+		return(imageFile.endsWith(".raw") || imageFile.endsWith(".img"));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void open(int[] imageGeometry) throws WarningException{
+		this.imageGeometry = imageGeometry;
+		sampleBytes = SaveFile.getSampleBytes(imageGeometry[3]);
+		File newFile = new File(imageFile);
+		try{
+			if(newFile.exists()){
+				newFile.delete();
+			}
+			file = new RandomAccessFile(newFile, "rw");
+			file.setLength((long) imageGeometry[0] * imageGeometry[1] * imageGeometry[2] * sampleBytes);
+		}catch(FileNotFoundException e){
+			throw new WarningException("File \"" + imageFile + "\" can not be open.");
+		}catch(IOException e){
+			throw new WarningException("I/O error saving file \"" + imageFile + "\".");
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void write(int z, float[][] band) throws WarningException{
+		int ySize = band.length;
+		int byte_xSize = ySize == 0 ? 0 : sampleBytes * band[0].length;
+		if(ySize != imageGeometry[1] || byte_xSize != sampleBytes * imageGeometry[2]){
+			throw new WarningException("Component " + z + " does not have the size of the image.");
+		}
+		int chunkRows = byte_xSize == 0 ? ySize : Math.max(1, Math.min(ySize, SaveFile.CHUNK_SIZE / byte_xSize));
+		int chunks = chunkRows == 0 ? 0 : (ySize + chunkRows - 1) / chunkRows;
+		FileChannel channel = file.getChannel();
+		try{
+			SaveFile.saveChunks(new float[][][]{band}, channel, (long) z * ySize * byte_xSize, 0, 1, chunks, chunks, chunkRows,
+					imageGeometry[3], sampleBytes, imageGeometry[4] == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+		}catch(IOException e){
+			throw new WarningException("I/O file writing error.");
+		}
+	}
+
+	/**
+	 * Writes some consecutive rows of all the components, so that an image can be written by tiles of rows.
+	 *
+	 * @param yStart first row of the tile
+	 * @param rows samples of the tile, index meaning [z][y - yStart][x]
+	 *
+	 * @throws WarningException when the tile does not fit in the image or the file cannot be written
+	 */
+	public void writeRows(int yStart, float[][][] rows) throws WarningException{
+		int tileRows = rows[0].length;
+		if(rows.length != imageGeometry[0] || yStart < 0 || yStart + tileRows > imageGeometry[1]
+				|| (tileRows > 0 && rows[0][0].length != imageGeometry[2])){
+			throw new WarningException("Tile out of the image.");
+		}
+		if(tileRows == 0){
+			return;
+		}
+		long byte_bandSize = (long) imageGeometry[1] * imageGeometry[2] * sampleBytes;
+		long byte_rowsStart = (long) yStart * imageGeometry[2] * sampleBytes;
+		FileChannel channel = file.getChannel();
+		try{
+			for(int z = 0; z < rows.length; z++){
+				SaveFile.saveChunks(new float[][][]{rows[z]}, channel, z * byte_bandSize + byte_rowsStart, 0, 1, 1, 1, tileRows,
+						imageGeometry[3], sampleBytes, imageGeometry[4] == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+			}
+		}catch(IOException e){
+			throw new WarningException("I/O file writing error.");
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void close() throws WarningException{
+		if(file != null){
+			try{
+				file.close();
+			}catch(IOException e){
+				throw new WarningException("Error closing file \"" + imageFile + "\".");
+			}
+			file = null;
+		}
+	}
+
+}
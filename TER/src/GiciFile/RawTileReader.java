@@ -0,0 +1,304 @@
+/*
+ * GICI Library -
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * gici-info@deic.uab.es
+ */
+package GiciFile;
+import GiciException.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * This class reads parts of a plain (not gzipped) raw image, so that images larger than the memory can be processed
+ * by tiles. Each tile holds some consecutive rows of some consecutive components, whole rows are always read.
+ * The samples are converted as in {@link LoadFile#rawLoad}.<br>
+ * Usage example:<br>
+ * &nbsp; construct<br>
+ * &nbsp; read (for each tile)<br>
+ * &nbsp; close<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class RawTileReader{
+
+	/**
+	 * Name of the raw file.
+	 * <p>
+	 * Valid file name (with path).
+	 */
+	String imageFile;
+
+	/**
+	 * Raw file, open until {@link #close}.
+	 * <p>
+	 * Null when the file is closed.
+	 */
+	RandomAccessFile file = null;
+
+	/**
+	 * Number of image components.
+	 * <p>
+	 * Positive values allowed.
+	 */
+	int zSize;
+
+	/**
+	 * Image height.
+	 * <p>
+	 * Positive values allowed.
+	 */
+	int ySize;
+
+	/**
+	 * Image width.
+	 * <p>
+	 * Positive values allowed.
+	 */
+	int xSize;
+
+	/**
+	 * Type of the samples in the file.
+	 * <p>
+	 * Values from 0 to 7 (see {@link LoadFile#getType}).
+	 */
+	int sampleType;
+
+	/**
+	 * Size of one sample in the file, in bytes.
+	 * <p>
+	 * Set from the sample type.
+	 */
+	int sampleBytes;
+
+	/**
+	 * Byte order of the samples in the file.
+	 * <p>
+	 * Big or little endian.
+	 */
+	ByteOrder order;
+
+	/**
+	 * Sample order of the file.
+	 * <p>
+	 * 0 if BSQ (band sequential), 1 if BIL (band interleaved by line), 2 if BIP (band interleaved by pixel).
+	 */
+	int sampleOrder;
+
+	/**
+	 * Opens a raw image.
+	 *
+	 * @param imageFile name of the raw file
+	 * @param zSize number of image components
+	 * @param ySize image height
+	 * @param xSize image width
+	 * @param sampleType an integer representing the samples type (see {@link LoadFile#getType})
+	 * @param byteOrder 0 if BIG_ENDIAN, 1 if LITTLE_ENDIAN
+	 * @param sampleOrder 0 if BSQ (band sequential), 1 if BIL (band interleaved by line), 2 if BIP (band interleaved by pixel)
+	 *
+	 * @throws WarningException when the file cannot be opened or it is shorter than the image
+	 */
+	public RawTileReader(String imageFile, int zSize, int ySize, int xSize, int sampleType, int byteOrder, int sampleOrder) throws WarningException{
+		if(sampleOrder < 0 || sampleOrder > 2){
+			throw new WarningException("Sample order unrecognized.");
+		}
+		this.imageFile = imageFile;
+		this.zSize = zSize;
+		this.ySize = ySize;
+		this.xSize = xSize;
+		this.sampleType = sampleType;
+		this.sampleBytes = SaveFile.getSampleBytes(sampleType);
+		this.order = byteOrder == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+		this.sampleOrder = sampleOrder;
+		try{
+			file = new RandomAccessFile(imageFile, "r");
+			if(file.length() < (long) zSize * ySize * xSize * sampleBytes){
+				close();
+				throw new WarningException("File reading error (end of file reached before the full file has been read).");
+			}
+		}catch(FileNotFoundException e){
+			throw new WarningException("File \"" + imageFile + "\" not found.");
+		}catch(IOException e){
+			throw new WarningException("I/O file reading error.");
+		}
+	}
+
+	/**
+	 * Indicates whether an image file can be read by tiles by this class, i.e., it is a raw file that is not compressed.
+	 *
+	 * @param imageFile name of the image file
+	 * @return true if the file is a plain raw file
+	 */
+	public static boolean isSupported(String imageFile){
+		return(imageFile.endsWith(".raw") || imageFile.endsWith(".img"));
+	}
+
+	/**
+	 * Reads the rows yStart to yEnd of the components zStart to zEnd. In BIL and BIP files the rows of all the
+	 * components are read, so tiles should hold all the components.
+	 *
+	 * @param zStart first component of the tile
+	 * @param zEnd component following the last component of the tile
+	 * @param yStart first row of the tile
+	 * @param yEnd row following the last row of the tile
+	 * @param tile array where the samples are stored, index meaning [z - zStart][y - yStart][x]. It is allocated when
+	 * it is null or it does not have the size of the tile.
+	 * @return the samples of the tile
+	 *
+	 * @throws WarningException when the file cannot be read
+	 */
+	public float[][][] read(int zStart, int zEnd, int yStart, int yEnd, float[][][] tile) throws WarningException{
+		if(zStart < 0 || zEnd > zSize || zStart > zEnd || yStart < 0 || yEnd > ySize || yStart > yEnd){
+			throw new WarningException("Tile out of the image.");
+		}
+		if(!ImageBufferPool.hasSize(tile, zEnd - zStart, yEnd - yStart, xSize)){
+			tile = new float[zEnd - zStart][yEnd - yStart][xSize];
+		}
+		int t = sampleType;
+		int byte_xSize = sampleBytes * xSize;
+		FileChannel channel = file.getChannel();
+		try{
+			if(sampleOrder == 0){
+				ByteBuffer buffer = ByteBuffer.allocate((yEnd - yStart) * byte_xSize).order(order);
+				for(int z = zStart; z < zEnd; z++){
+					readFully(channel, buffer, ((long) z * ySize + yStart) * byte_xSize);
+					for(int y = yStart; y < yEnd; y++){
+						LoadFile.convertRow(buffer, (y - yStart) * byte_xSize, sampleBytes, t, tile[z - zStart][y - yStart]);
+					}
+				}
+			} else {
+				ByteBuffer buffer = ByteBuffer.allocate(zSize * byte_xSize).order(order);
+				for(int y = yStart; y < yEnd; y++){
+					readFully(channel, buffer, (long) y * zSize * byte_xSize);
+					for(int z = zStart; z < zEnd; z++){
+						if(sampleOrder == 1){
+							LoadFile.convertRow(buffer, z * byte_xSize, sampleBytes, t, tile[z - zStart][y - yStart]);
+						} else {
+							LoadFile.convertRow(buffer, z * sampleBytes, zSize * sampleBytes, t, tile[z - zStart][y - yStart]);
+						}
+					}
+				}
+			}
+		}catch(IOException e){
+			throw new WarningException("I/O file reading error.");
+		}
+		return(tile);
+	}
+
+	/**
+	 * Fills a buffer with the bytes of the file that start at a position.
+	 *
+	 * @param channel channel of the raw file
+	 * @param buffer buffer to be filled
+	 * @param position position of the first byte in the file
+	 *
+	 * @throws WarningException when the end of the file is reached
+	 * @throws IOException when the channel cannot be read
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws WarningException, IOException{
+		buffer.clear();
+		while(buffer.hasRemaining()){
+			if(channel.read(buffer, position + buffer.position()) < 0){
+				throw new WarningException("File reading error (end of file reached before the full file has been read).");
+			}
+		}
+	}
+
+	/**
+	 * Closes the raw file.
+	 *
+	 * @throws WarningException when the file cannot be closed
+	 */
+	public void close() throws WarningException{
+		if(file != null){
+			try{
+				file.close();
+			}catch(IOException e){
+				throw new WarningException("Error closing file \"" + imageFile + "\".");
+			}
+			file = null;
+		}
+	}
+
+	/**
+	 * @return the number of image components
+	 */
+	public int getZSize(){
+		return(zSize);
+	}
+
+	/**
+	 * @return the image height
+	 */
+	public int getYSize(){
+		return(ySize);
+	}
+
+	/**
+	 * @return the image width
+	 */
+	public int getXSize(){
+		return(xSize);
+	}
+
+	/**
+	 * Returns the type of the image components.
+	 *
+	 * @return a Class array with the type of each component
+	 */
+	public Class[] getTypes(){
+		Class[] samplesType = new Class[zSize];
+		for(int z = 0; z < zSize; z++){
+			samplesType[z] = LoadFile.getClass(sampleType);
+		}
+		return(samplesType);
+	}
+
+	/**
+	 * Indicates the bit depth of the image.
+	 *
+	 * @return an integer array containing the bit depth of each component
+	 */
+	public int[] getPixelBitDepth(){
+		int[] pixelBitDepth = new int[zSize];
+		for(int z = 0; z < zSize; z++){
+			pixelBitDepth[z] = LoadFile.getPixelBitDepth(LoadFile.getClass(sampleType));
+		}
+		return(pixelBitDepth);
+	}
+
+	/**
+	 * Indicates if the image has signed pixels.
+	 *
+	 * @return an integer array that indicates if each component is signed
+	 */
+	public int[] getSignedPixels(){
+		return(LoadFile.getSignedPixels(sampleType, zSize));
+	}
+
+}
@@ -29,9 +29,12 @@ import GiciException.*;
 
 import java.io.*;
 import java.nio.*;
-import javax.media.jai.*;
-import java.awt.image.*;
-import java.awt.*;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
@@ -42,6 +45,13 @@ import java.awt.*;
  */
 public class SaveFile{
 
+	/**
+	 * Size, in bytes, of the chunks of rows converted and written at once when saving raw files.
+	 * <p>
+	 * Positive values allowed.
+	 */
+	static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
 	/**
 	 * Saves image samples using specified format using JAI. This function uses byte type to save image (because is the only allowed by JAI libraries) and it can manage only images with 1 or 3 components. File extension is added automatically depending on the format.
 	 *
@@ -59,66 +69,12 @@ public class SaveFile{
 	 * @throws WarningException when the file cannot be saved (incorrect number of components, file format unrecognized, etc.)
 	 */
 	public static void SaveFileFormat(float[][][] imageSamples, String imageFile, int format) throws WarningException{
-		//Image sizes
-		int zSize = imageSamples.length;
-		int ySize = imageSamples[0].length;
-		int xSize = imageSamples[0][0].length;
-
-		//Construct some needed classes
-		SampleModel sm = RasterFactory.createBandedSampleModel(DataBuffer.TYPE_FLOAT, xSize, ySize, zSize);
-		float[][] imageBanks = new float[zSize][ySize*xSize];
-		for(int z = 0; z < zSize; z++){
-		for(int y = 0; y < ySize; y++){
-		for(int x = 0; x < xSize; x++){
-			imageBanks[z][(y*xSize) + x] = imageSamples[z][y][x];
-		}}}
-		java.awt.image.DataBufferFloat dbf = new java.awt.image.DataBufferFloat(imageBanks, ySize*xSize);
-		Raster r = RasterFactory.createRaster(sm, dbf, new Point(0,0));
-
-		//Construct buffered image
-		BufferedImage buffImage = null;
-		switch(zSize){
-		case 1:
-			buffImage = new BufferedImage(xSize, ySize, BufferedImage.TYPE_BYTE_GRAY);
-			break;
-		case 3:
-			buffImage = new BufferedImage(xSize, ySize, BufferedImage.TYPE_3BYTE_BGR);
-			break;
-		default:
-			throw new WarningException("This format only supports 1 or 3 components.");
-		}
-		buffImage.setData(r);
-
-		//File save with JAI
-		switch(format){
-		case 0: //PNM
-			JAI.create("filestore", buffImage, imageFile, "PNM");
-			break;
-		case 1: //TIFF
-			JAI.create("filestore", buffImage, imageFile, "TIFF");
-			break;
-		case 2: //PNG
-			JAI.create("filestore", buffImage, imageFile, "PNG");
-			break;
-		case 3: //JPEG
-			JAI.create("filestore", buffImage, imageFile, "JPEG");
-			break;
-		case 4: //BMP
-			JAI.create("filestore", buffImage, imageFile, "BMP");
-			break;
-		default:
-			throw new WarningException("Format file unrecognized.");
-		}
-
-		//Free memory
-		sm = null;
-		imageBanks = null;
-		dbf = null;
-		buffImage = null;
+		new JAIFileWriter().write(imageSamples, imageFile, format);
 	}
 
 	/**
-	 * Saves image samples in raw data.
+	 * Saves image samples in raw data. When the file name ends with ".gz" the file is compressed in block gzip
+	 * format (see {@link ParallelGZIPOutputStream}).
 	 *
 	 * @param imageSamples a 3D float array that contains image samples
 	 * @param imageFile file name where raw data will be stored
@@ -137,11 +93,24 @@ public class SaveFile{
 	 *
 	 * @throws WarningException when the file cannot be saved (incorrect number of components, file format unrecognized, etc.)
 	 */
-	public static void SaveFileRaw(float[][][] imageSamples, String imageFile, int sampleType, int byteOrder) throws WarningException{
+	public static void SaveFileRaw(final float[][][] imageSamples, String imageFile, final int sampleType, int byteOrder) throws WarningException{
 		//Image sizes
-		int zSize = imageSamples.length;
-		int ySize = imageSamples[0].length;
-		int xSize = imageSamples[0][0].length;
+		final int zSize = imageSamples.length;
+		final int ySize = imageSamples[0].length;
+		final int xSize = imageSamples[0][0].length;
+
+		//Sample size in bytes
+		final int sampleBytes = getSampleBytes(sampleType);
+
+		ByteOrder order = ByteOrder.BIG_ENDIAN;
+		switch(byteOrder){
+		case 0: //BIG ENDIAN
+			order = ByteOrder.BIG_ENDIAN;
+			break;
+		case 1: //LITTLE ENDIAN
+			order = ByteOrder.LITTLE_ENDIAN;
+			break;
+		}
 
 		//Open file
 		File newFile = new File(imageFile);
@@ -157,142 +126,252 @@ public class SaveFile{
 		}catch(IOException e){
 			throw new WarningException("I/O error saving file \"" + imageFile + "\".");
 		}
+		final FileChannel channel = fos.getChannel();
+		ParallelGZIPOutputStream gzos = null;
+		//A closing error is only reported when the image has been saved, not to hide the error of the save
+		boolean saved = false;
 
-		DataOutputStream dos = new DataOutputStream(fos);
+		try{
+			String extension = "";
+			int dotPos = imageFile.lastIndexOf(".");
+			
+			if(dotPos >= 0){
+				extension = imageFile.substring(imageFile.lastIndexOf(".") + 1, imageFile.length());
+			} 
 
-		String extension = "";
-		int dotPos = imageFile.lastIndexOf(".");
-		
-		if(dotPos >= 0){
-			extension = imageFile.substring(imageFile.lastIndexOf(".") + 1, imageFile.length());
-		} 
+			//Files with .gz extension are written in block gzip format, the file type is given by the previous extension
+			boolean fileIsAGZ = extension.compareToIgnoreCase("gz") == 0;
+			if(fileIsAGZ){
+				int secondToLastPos = imageFile.lastIndexOf(".", dotPos - 1);
+				extension = secondToLastPos >= 0 ? imageFile.substring(secondToLastPos + 1, dotPos) : "";
+			}
+
+			byte[] header = new byte[0];
+			if (extension.compareToIgnoreCase("pgm") == 0){
+				String pgmHeader = "P5\n"+String.valueOf(xSize)+" "+String.valueOf(ySize)+"\n";
+				if (sampleType==1){
+					pgmHeader = pgmHeader+"255\n";
+				} else {
+					pgmHeader = pgmHeader+"65535\n";
+				}
+				header = pgmHeader.getBytes("ISO-8859-1");
+			}
+
+			//Each component is split in chunks of rows
+			final int byte_xSize = sampleBytes * xSize;
+			final int chunkRows = byte_xSize == 0 ? ySize : Math.max(1, Math.min(ySize, CHUNK_SIZE / byte_xSize));
+			final int chunksBand = chunkRows == 0 ? 0 : (ySize + chunkRows - 1) / chunkRows;
+			final int chunks = zSize * chunksBand;
+
+			if(fileIsAGZ){
+				//Chunks are converted in order and deflated in parallel by the stream
+				gzos = new ParallelGZIPOutputStream(fos);
+				gzos.write(header);
+				ByteBuffer buffer = ByteBuffer.allocate(chunkRows * byte_xSize).order(order);
+				for(int chunk = 0; chunk < chunks; chunk++){
+					int z = chunk / chunksBand;
+					int yStart = (chunk % chunksBand) * chunkRows;
+					int yEnd = Math.min(yStart + chunkRows, ySize);
+					for(int y = yStart; y < yEnd; y++){
+						convertRow(imageSamples[z][y], buffer, (y - yStart) * byte_xSize, sampleType);
+					}
+					gzos.write(buffer.array(), 0, (yEnd - yStart) * byte_xSize);
+				}
+				gzos.close();
+				saved = true;
+				return;
+			}
 
-		if (extension.compareToIgnoreCase("pgm") == 0){
-			String header = "P5\n"+String.valueOf(xSize)+" "+String.valueOf(ySize)+"\n";
-			if (sampleType==1){
-				header = header+"255\n";
+			//Position of the first sample in the file
+			long dataStart = header.length;
+			ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+			while(headerBuffer.hasRemaining()){
+				channel.write(headerBuffer, headerBuffer.position());
+			}
+
+			//Save image, chunks are converted and written by the workers
+			int workers = Runtime.getRuntime().availableProcessors();
+			if (workers > chunks){
+				workers = chunks;
+			}
+			if (workers <= 1){
+				saveChunks(imageSamples, channel, dataStart, 0, 1, chunks, chunksBand, chunkRows, sampleType, sampleBytes, order);
 			} else {
-				header = header+"65535\n";
+				ExecutorService savePool = Executors.newFixedThreadPool(workers);
+				try{
+					Future<?> savedChunks[] = new Future<?>[workers];
+					for(int worker = 0; worker < workers; worker++){
+						final long start = dataStart;
+						final int workerId = worker;
+						final int numWorkers = workers;
+						final ByteOrder bufferOrder = order;
+						savedChunks[worker] = savePool.submit(new Callable<Object>(){
+							public Object call() throws Exception{
+								saveChunks(imageSamples, channel, start, workerId, numWorkers, chunks, chunksBand, chunkRows, sampleType, sampleBytes, bufferOrder);
+								return null;
+							}
+						});
+					}
+					for(int worker = 0; worker < workers; worker++){
+						try{
+							savedChunks[worker].get();
+						}catch(ExecutionException e){
+							throw new WarningException("I/O file writing error: " + e.getCause().getMessage());
+						}catch(InterruptedException e){
+							for(Future<?> savedChunk: savedChunks){
+								savedChunk.cancel(true);
+							}
+							Thread.currentThread().interrupt();
+							throw new WarningException("I/O file writing error (interrupted).");
+						}
+					}
+				} finally {
+					savePool.shutdown();
+				}
 			}
+			saved = true;
+		}catch(IOException e){
+			throw new WarningException("I/O file writing error: " + e.getMessage());
+		} finally {
+			//Close file (and the deflate pool of the gzip stream when writing has failed)
 			try{
-				dos.writeBytes(header);
+				if(gzos != null){
+					gzos.close();
+				}
+				fos.close();
 			}catch(IOException e){
-				throw new WarningException("I/O error saving file \"" + imageFile + "\".");
+				if(saved){
+					throw new WarningException("Error closing file \"" + imageFile + "\".");
+				}
 			}
 		}
-		
-		//Buffer to perform data conversion
-		ByteBuffer buffer;
-		//Line size in bytes
-		int byte_xSize;
-		//Set correct line size
+	}
+
+	/**
+	 * Gets the size in bytes of a raw sample type.
+	 *
+	 * @param sampleType an integer representing the class of image samples type (see {@link #SaveFileRaw})
+	 * @return the size of one sample in bytes
+	 *
+	 * @throws WarningException when the sample type is unrecognized
+	 */
+	static int getSampleBytes(int sampleType) throws WarningException{
 		switch(sampleType){
 		case 0: //boolean - 1 byte
-			byte_xSize = xSize;
-			break;
+			return(1);
 		case 1: //byte
-			byte_xSize = xSize;
-			break;
+			return(1);
 		case 2: //char
-			byte_xSize = 2 * xSize;
-			break;
+			return(2);
 		case 3: //short
-			byte_xSize = 2 * xSize;
-			break;
+			return(2);
 		case 4: //int
-			byte_xSize = 4 * xSize;
-			break;
+			return(4);
 		case 5: //long
-			byte_xSize = 8 * xSize;
-			break;
+			return(8);
 		case 6: //float
-			byte_xSize = 4 * xSize;
-			break;
+			return(4);
 		case 7: //double
-			byte_xSize = 8 * xSize;
-			break;
+			return(8);
 		default:
 			throw new WarningException("Sample type unrecognized.");
 		}
-		buffer = ByteBuffer.allocate(byte_xSize);
-
-		switch(byteOrder){
-		case 0: //BIG ENDIAN
-			buffer = buffer.order(ByteOrder.BIG_ENDIAN);
-			break;
-		case 1: //LITTLE ENDIAN
-			buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
-			break;
-		}
-
-		//Save image
-		//Further speed improvements can be achieved in the worst case where image width is little by fixing a min read size and not reading less than it
-		for(int z = 0; z < zSize; z++){
-			for(int y = 0; y < ySize; y++){
-
-				switch(sampleType){
-				case 0: //boolean (1 byte)
-					for(int x = 0; x < xSize; x++){
-						buffer.put(x, (byte)(imageSamples[z][y][x] == 0 ? 0 : 1));
-					}
-					break;
-				case 1: //unsigned int (1 byte)
-					for(int x = 0; x < xSize; x++){
-						byte out = (byte) (Math.max(Math.min(imageSamples[z][y][x], 255), 0));
-						buffer.put(x, out);
-					}
-					break;
-				case 2: //unsigned int (2 bytes)
-					CharBuffer cb = buffer.asCharBuffer();
-					for(int x = 0; x < xSize; x++){
-						char out = (char) Math.max(Math.min(imageSamples[z][y][x], Character.MAX_VALUE), Character.MIN_VALUE);
-						cb.put(x, out);
-					}
-					break;
-				case 3: //signed short (2 bytes)
-					ShortBuffer sb = buffer.asShortBuffer();
-					for(int x = 0; x < xSize; x++){
-						short out = (short) Math.max(Math.min(imageSamples[z][y][x], Short.MAX_VALUE), Short.MIN_VALUE);
-						sb.put(x, out);
-					}
-					break;
-				case 4: //signed int (4 bytes)
-					IntBuffer ib = buffer.asIntBuffer();
-					for(int x = 0; x < xSize; x++){
-						ib.put(x, (int)imageSamples[z][y][x]);
-					}
-					break;
-				case 5: //signed long (8 bytes)
-					LongBuffer lb = buffer.asLongBuffer();
-					for(int x = 0; x < xSize; x++){
-						lb.put(x, (long)imageSamples[z][y][x]);
-					}
-					break;
-				case 6: //float (4 bytes)
-					buffer.asFloatBuffer().put(imageSamples[z][y]);
-					break;
-				case 7: //double (8 bytes) - lost of precision
-					DoubleBuffer db = buffer.asDoubleBuffer();
-					for(int x = 0; x < xSize; x++){
-						db.put(x, (double)imageSamples[z][y][x]);
-					}
-					break;
-				}
+	}
 
-				try{
-					dos.write(buffer.array(), 0, byte_xSize);
-				}catch(IOException e){
-					throw new WarningException("I/O file writing error.");
-				}
+	/**
+	 * Converts and writes the chunks firstChunk, firstChunk + step, firstChunk + 2*step, ... of a raw image.
+	 * Chunk c holds the rows (c % chunksBand) * chunkRows, ... of the component c / chunksBand.
+	 *
+	 * @param imageSamples a 3D float array that contains image samples
+	 * @param channel channel of the raw file
+	 * @param dataStart position of the first sample in the file
+	 * @param firstChunk first chunk to be saved
+	 * @param step distance between the chunks to be saved
+	 * @param chunks total number of chunks of the image
+	 * @param chunksBand number of chunks of each component
+	 * @param chunkRows number of rows of each chunk (the last chunk of a component may have less)
+	 * @param sampleType an integer representing the class of image samples type (see {@link #SaveFileRaw})
+	 * @param sampleBytes size of one sample in the file, in bytes
+	 * @param order byte order of the samples in the file
+	 *
+	 * @throws IOException when the channel cannot be written
+	 */
+	static void saveChunks(float[][][] imageSamples, FileChannel channel, long dataStart, int firstChunk, int step,
+			int chunks, int chunksBand, int chunkRows, int sampleType, int sampleBytes, ByteOrder order) throws IOException{
+		int ySize = imageSamples[0].length;
+		int byte_xSize = sampleBytes * imageSamples[0][0].length;
+		ByteBuffer buffer = ByteBuffer.allocateDirect(chunkRows * byte_xSize).order(order);
+		for(int chunk = firstChunk; chunk < chunks; chunk += step){
+			int z = chunk / chunksBand;
+			int yStart = (chunk % chunksBand) * chunkRows;
+			int yEnd = Math.min(yStart + chunkRows, ySize);
+			long position = dataStart + ((long) z * ySize + yStart) * byte_xSize;
 
+			buffer.clear();
+			for(int y = yStart; y < yEnd; y++){
+				convertRow(imageSamples[z][y], buffer, (y - yStart) * byte_xSize, sampleType);
+			}
+			buffer.limit((yEnd - yStart) * byte_xSize);
+			while(buffer.hasRemaining()){
+				channel.write(buffer, position + buffer.position());
 			}
 		}
+	}
 
-		//Close file
-		try{
-			fos.close();
-		}catch(IOException e){
-			throw new WarningException("Error closing file \"" + imageFile + "\".");
+	/**
+	 * Converts one row of samples to the raw sample type.
+	 *
+	 * @param row samples of the row
+	 * @param buffer buffer where the raw samples are stored, with the byte order of the file
+	 * @param offset position of the first byte of the row in the buffer
+	 * @param sampleType an integer representing the class of image samples type (see {@link #SaveFileRaw})
+	 */
+	private static void convertRow(float[] row, ByteBuffer buffer, int offset, int sampleType){
+		int xSize = row.length;
+		switch(sampleType){
+		case 0: //boolean (1 byte)
+			for(int x = 0; x < xSize; x++){
+				buffer.put(offset + x, (byte)(row[x] == 0 ? 0 : 1));
+			}
+			break;
+		case 1: //unsigned int (1 byte)
+			for(int x = 0; x < xSize; x++){
+				byte out = (byte) (Math.max(Math.min(row[x], 255), 0));
+				buffer.put(offset + x, out);
+			}
+			break;
+		case 2: //unsigned int (2 bytes)
+			for(int x = 0; x < xSize; x++){
+				char out = (char) Math.max(Math.min(row[x], Character.MAX_VALUE), Character.MIN_VALUE);
+				buffer.putChar(offset + 2 * x, out);
+			}
+			break;
+		case 3: //signed short (2 bytes)
+			for(int x = 0; x < xSize; x++){
+				short out = (short) Math.max(Math.min(row[x], Short.MAX_VALUE), Short.MIN_VALUE);
+				buffer.putShort(offset + 2 * x, out);
+			}
+			break;
+		case 4: //signed int (4 bytes)
+			for(int x = 0; x < xSize; x++){
+				buffer.putInt(offset + 4 * x, (int)row[x]);
+			}
+			break;
+		case 5: //signed long (8 bytes)
+			for(int x = 0; x < xSize; x++){
+				buffer.putLong(offset + 8 * x, (long)row[x]);
+			}
+			break;
+		case 6: //float (4 bytes)
+			for(int x = 0; x < xSize; x++){
+				buffer.putFloat(offset + 4 * x, row[x]);
+			}
+			break;
+		case 7: //double (8 bytes) - lost of precision
+			for(int x = 0; x < xSize; x++){
+				buffer.putDouble(offset + 8 * x, (double)row[x]);
+			}
+			break;
 		}
 	}
 
@@ -353,7 +432,7 @@ public class SaveFile{
 				imageSamplesTMP[z][y][x] = (float) Math.round(imageSamples[z][y][x]);
 			}}}
 			//Save
-			SaveFileFormat(imageSamplesTMP, imageFile, fileFormat);
+			ImageFileFormats.getWriter(extension).write(imageSamplesTMP, imageFile);
 		}else{
 			//Integer representations
 			if(imageGeometry[0] < 6){
@@ -392,7 +471,7 @@ public class SaveFile{
 					throw new WarningException("PGM, PNM and PPM format only support 8 bits per pixel.");
 				}
 			}
-			SaveFileFormat(imageSamples, imageFile, format);
+			ImageFileFormats.getWriter(ImageFileFormats.getExtension(imageFile)).write(imageSamples, imageFile);
 		}else{
 			if(format == 5){
 				if(imageGeometry == null){
@@ -426,6 +505,15 @@ public class SaveFile{
 
 		if(dotPos >= 0){
 			extension = imageFile.substring(imageFile.lastIndexOf(".") + 1, imageFile.length());
+			//gzipped raw files
+			int secondToLastPos = imageFile.lastIndexOf(".", dotPos - 1);
+			if(extension.compareToIgnoreCase("gz") == 0 && secondToLastPos >= 0){
+				extension = imageFile.substring(secondToLastPos + 1, dotPos);
+				if(extension.compareToIgnoreCase("pgm") != 0 && extension.compareToIgnoreCase("raw") != 0
+						&& extension.compareToIgnoreCase("img") != 0){
+					extension = "";
+				}
+			}
 			if(extension.compareToIgnoreCase("pnm") == 0)       fileFormat = 0;
 			else if(extension.compareToIgnoreCase("pgm") == 0)  fileFormat = 5;//0;
 			else if(extension.compareToIgnoreCase("ppm") == 0)  fileFormat = 0;
@@ -95,6 +95,12 @@ public class ImageExtension{
 	 */
 	int[] padRows = null;
 	
+	/**
+	 * Value substracted from the samples of each component while they are copied to the extended image, null if no 
+	 * level shift has to be applied. Definition in {@link GiciTransform.LevelShift#LSSubsValues}
+	 */
+	int[] levelShift = null;
+	
 	/**
 	 * Constructor that receives the original image samples.
 	 *
@@ -216,32 +222,45 @@ public class ImageExtension{
 			extendedImage[z] = new float[extendedySize][extendedxSize];
 						
 			//extension
+			int shift = levelShift != null ? levelShift[z] : 0;
 			for(int y=0; y < ySize ; y++ ) {
-				for (int x=0; x < xSize ; x++ ){
-					extendedImage[z][y][x] = imageSamples[z][y][x];
+				float row[] = imageSamples[z][y];
+				float extendedRow[] = extendedImage[z][y];
+				if (shift != 0){
+					for (int x=0; x < xSize ; x++ ){
+						extendedRow[x] = row[x] - shift;
+					}
+				} else {
+					System.arraycopy(row, 0, extendedRow, 0, xSize);
 				}
 	
 				//horizontal extension
 				
 				for(int x=xSize ; x < extendedxSize ; x++ ){
 					int index = getExtendedIndex(x, xSize, imageExtensionType[z]);
-					extendedImage[z][y][x] = imageSamples[z][y][index];											
+					extendedRow[x] = extendedRow[index];
 				}
 			}
 					
-			//vertical extension
+			//vertical extension (rows already extended horizontally are copied)
 			for(int y=ySize; y < extendedySize ; y++ ) {
-				for(int x=0 ; x < extendedxSize ; x++ ){
-					int indexX = getExtendedIndex(x, xSize, imageExtensionType[z]);
-					int indexY = getExtendedIndex(y, ySize, imageExtensionType[z]);
-					extendedImage[z][y][x] = imageSamples[z][indexY][indexX];											
-				}
+				int indexY = getExtendedIndex(y, ySize, imageExtensionType[z]);
+				System.arraycopy(extendedImage[z][indexY], 0, extendedImage[z][y], 0, extendedxSize);
 			}
 		}
 	
 		return(extendedImage);
 	}
 
+	/**
+	 * Makes the extension also apply the level shift, so that no other pass over the image is needed.
+	 *
+	 * @param levelShift definition in {@link #levelShift}
+	 */
+	public void setLevelShift(int[] levelShift){
+		this.levelShift = levelShift;
+	}
+
 	/**
 	 * @return an integer array that indicates how many rows have been added for each channel
 	 */
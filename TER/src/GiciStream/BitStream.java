@@ -158,8 +158,21 @@ public class BitStream{
 	 * @param length a integer that indicates the number of bits to take into account
 	 */
 	public void addBits(int bits, int length){
-		for(int mask = length-1; mask >= 0; mask--){
-			addBit(bits & (1 << mask));
+		//Bits are written in chunks that fill the current byte
+		while(length > 0){
+			int freeBits = 8 - (int) (numBits % 8);
+			int chunkLength = length < freeBits ? length : freeBits;
+			int chunk = (bits >>> (length - chunkLength)) & ((1 << chunkLength) - 1);
+			bitBuffer[(int) (numBits/8)] |= (byte) (chunk << (freeBits - chunkLength));
+			numBits += chunkLength;
+			length -= chunkLength;
+			
+			//Buffer reaches its capcaity
+			if(numBits/8 == bitBuffer.length){
+				byte[] bitBufferTMP = new byte[bitBuffer.length + buffAllocation];
+				System.arraycopy(bitBuffer, 0, bitBufferTMP, 0, bitBuffer.length);
+				bitBuffer = bitBufferTMP;
+			}
 		}
 	}
 	
@@ -177,6 +177,28 @@ public class BufferedDataInputStream implements DataInput {
 		readFromFile = false;
 	}
 
+	/**
+	 * Reads a part of a buffer without copying it.
+	 * 
+	 * @param buf the buffer
+	 * @param offset position of the first byte to be read
+	 * @param length number of bytes that can be read
+	 */
+	public BufferedDataInputStream(byte[] buf, int offset, int length) {
+		if (buf == null) {
+			throw new NullPointerException();
+		}
+		if ((offset < 0) || (length < 0) || (offset + length > buf.length)) {
+			throw new IndexOutOfBoundsException();
+		}
+		this.buf = buf;
+		count = offset + length;
+		this.offset = offset;
+		filePos = 0;
+		pos = offset;
+		readFromFile = false;
+	}
+
 	/**
 	 * 
 	 * @param name
@@ -288,6 +310,20 @@ public class BufferedDataInputStream implements DataInput {
 			} else {
 				if (EOFInBuffer) {
 					throw new EOFException();
+				} else if (readFromFile && len >= buf.length) {
+					// Large reads go directly from the file to the destination
+					filePos += count;
+					offset = 0;
+					pos = 0;
+					count = 0;
+					file.seek(filePos);
+					tempCount = file.read(b, off, len);
+					if (tempCount <= 0) {
+						throw new EOFException();
+					}
+					filePos += tempCount;
+					off += tempCount;
+					len -= tempCount;
 				} else {
 					readBuffer();
 				}
@@ -104,43 +104,48 @@ public class CoefficientsApproximation{
 		
 		int zSize = this.imageSamples.length;
 		for(int z=0; z<zSize ; z++){
-			
-				int ySize = imageSamples[z].length;
-				int xSize = imageSamples[z][0].length;
-				if (this.approximationTypes[z]==0){
-					// values are casted to an integer value
-					for(int y=0; y<ySize ; y++){
-						for(int x=0; x<xSize ; x++){
-							imageSamples[z][y][x]= (float) (int)(imageSamples[z][y][x]);
-						}
-					}
-				} else if (this.approximationTypes[z]==1){
-					// values are rounded to the nearest integer value
-					for(int y=0; y<ySize ; y++){
-						for(int x=0; x<xSize ; x++){
-							imageSamples[z][y][x]= (float) Math.round(imageSamples[z][y][x]);
-						}
-					}
-				} else if (this.approximationTypes[z]==2){
-					//values are floored to the largest integer smaller than the value
-					for(int y=0; y<ySize ; y++){
-						for(int x=0; x<xSize ; x++){
-							imageSamples[z][y][x]= (float) Math.floor(imageSamples[z][y][x]);
-						}
-					}	
-				} else if (this.approximationTypes[z]==3){
-					//values are ceiled to the smallest integer larger than the value
-					for(int y=0; y<ySize ; y++){
-						for(int x=0; x<xSize ; x++){
-							imageSamples[z][y][x]= (float) Math.ceil(imageSamples[z][y][x]);
-						}
-					}	
-				}
-			
+			int ySize = imageSamples[z].length;
+			int xSize = imageSamples[z][0].length;
+			for(int y=0; y<ySize ; y++){
+				approximate(imageSamples[z][y], 0, xSize, approximationTypes[z]);
+			}
 		}
 		return imageSamples;
 	}
 	
+	/**
+	 * Approximates a run of samples of a row. It is also used by the weighting stage to approximate the 
+	 * coefficients while they are in cache.
+	 * 
+	 * @param samples the row to be approximated
+	 * @param xStart first sample to be approximated
+	 * @param xEnd sample following the last one to be approximated
+	 * @param approximationType approximation to be applied, definition in {@link #approximationTypes}
+	 */
+	public static void approximate(float[] samples, int xStart, int xEnd, int approximationType){
+		if (approximationType==0){
+			// values are casted to an integer value
+			for(int x=xStart; x<xEnd ; x++){
+				samples[x]= (float) (int)(samples[x]);
+			}
+		} else if (approximationType==1){
+			// values are rounded to the nearest integer value
+			for(int x=xStart; x<xEnd ; x++){
+				samples[x]= (float) Math.round(samples[x]);
+			}
+		} else if (approximationType==2){
+			//values are floored to the largest integer smaller than the value
+			for(int x=xStart; x<xEnd ; x++){
+				samples[x]= (float) Math.floor(samples[x]);
+			}
+		} else if (approximationType==3){
+			//values are ceiled to the smallest integer larger than the value
+			for(int x=xStart; x<xEnd ; x++){
+				samples[x]= (float) Math.ceil(samples[x]);
+			}
+		}
+	}
+	
 	/**
 	 * States if approximation is needed according to the user specifications and the requirements of the TER software 
 	 * 
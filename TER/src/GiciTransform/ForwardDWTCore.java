@@ -121,6 +121,13 @@ public class ForwardDWTCore{
 	 * True indicates that they are set otherwise false.
 	 */
 	boolean parametersSet = false;
+	
+	/**
+	 * Number of columns that are filtered at once when the transform is applied over the Y or Z axis.
+	 * <p>
+	 * Positive values only.
+	 */
+	static final int STRIP_WIDTH = 256;
 
 
 	/**
@@ -213,6 +220,16 @@ public class ForwardDWTCore{
 				break;
 
 			case 1: //Over the Y axis.
+				if(rowsFilteringAllowed(ySize)){
+					for( int z = 0; z < zSize; z++ ){
+						float lines[][] = new float[ySize][];
+						for(int y = 0; y < ySize; y++){
+							lines[y] = imageSamples[z+WTZRegionStart][y+WTYRegionStart];
+						}
+						rowsFiltering(lines,WTTypes,WTYRegionStart,WTXRegionStart,xSize);
+					}
+					break;
+				}
 				for( int z = 0; z < zSize; z++ ){
 					for(int x = 0; x < xSize; x++){
 						float currentLine[] = new float[ySize];
@@ -229,6 +246,16 @@ public class ForwardDWTCore{
 				break;
 
 			case 2: //Over the Z axis.
+				if(rowsFilteringAllowed(zSize)){
+					for( int y = 0; y < ySize; y++ ){
+						float lines[][] = new float[zSize][];
+						for(int z = 0; z < zSize; z++){
+							lines[z] = imageSamples[z+WTZRegionStart][y+WTYRegionStart];
+						}
+						rowsFiltering(lines,WTTypes,WTZRegionStart,WTXRegionStart,xSize);
+					}
+					break;
+				}
 				for( int y = 0; y < ySize; y++ ){
 					for(int x = 0; x < xSize; x++){
 						float currentLine[] = new float[zSize];
@@ -705,6 +732,590 @@ public class ForwardDWTCore{
 		
 	}
 	
+	/**
+	 * Tells whether a line of the given length can be transformed with {@link #rowsFiltering}. Lines of length 1 and 
+	 * 9/7M lines shorter than 6 (which need {@link #coefExpansion}) are left to {@link #filtering}.
+	 *
+	 * @param lineLength length of the lines to transform
+	 * @return true if {@link #rowsFiltering} can be used
+	 */
+	private boolean rowsFilteringAllowed(int lineLength){
+		return(lineLength > 1 && !(WTTypes == 4 && lineLength < 6));
+	}
+
+	/**
+	 * Applies the filter to many lines at once. Line k is made of the samples of lines[k][xStart .. xStart+xSize-1], 
+	 * i.e. the lines run across the rows, which is the case of the Y and Z axis. Columns are processed in strips of 
+	 * {@link #STRIP_WIDTH}, and each lifting step runs over a whole strip row, which is contiguous in memory. The 
+	 * arithmetic of every sample is the same as in {@link #filtering}, so results are identical.
+	 *
+	 * @param lines the rows, one for each sample of the lines to transform
+	 * @param WTTypes Filter to apply
+	 * @param WTLRegionStart The starting coordinate of the original line to transform, used to determine the starting phase.
+	 * @param xStart first column of the rows to transform
+	 * @param xSize number of columns of the rows to transform
+	 *
+	 * @throws ErrorException when wavelet type is unrecognized
+	 */
+	private void rowsFiltering(float[][] lines, int WTTypes, int WTLRegionStart, int xStart, int xSize) throws ErrorException{
+		int lineLength = lines.length;
+		int lowCount = (lineLength + 1) / 2;
+		float strip[][] = new float[lineLength][Math.min(STRIP_WIDTH, xSize)];
+		for(int x0 = 0; x0 < xSize; x0 += STRIP_WIDTH){
+			int width = Math.min(STRIP_WIDTH, xSize - x0);
+			for(int k = 0; k < lineLength; k++){
+				System.arraycopy(lines[k], xStart+x0, strip[k], 0, width);
+			}
+			if(lineLength%2 == 0 && WTLRegionStart%2 == 0 ){
+				evenEvenRowsFiltering(strip, WTTypes, width);
+			}else if(lineLength%2 == 0 && WTLRegionStart%2 == 1 ){
+				evenOddRowsFiltering(strip, WTTypes, width);
+			}else if(lineLength%2 == 1 && WTLRegionStart%2 == 0 ){
+				oddEvenRowsFiltering(strip, WTTypes, width);
+			}else{
+				oddOddRowsFiltering(strip, WTTypes, width);
+			}
+			//DE_INTERLEAVE
+			for(int k = 0; k < lowCount; k++){
+				System.arraycopy(strip[2*k], 0, lines[k], xStart+x0, width);
+			}
+			for(int k = 0; k < lineLength/2; k++){
+				System.arraycopy(strip[2*k+1], 0, lines[lowCount+k], xStart+x0, width);
+			}
+		}
+	}
+
+	/**
+	 * Row version of {@link #evenEvenFiltering}: applies the same lifting steps to every column of src, so the inner 
+	 * loops run over contiguous samples. The result is not deinterleaved.
+	 *
+	 * @param src a float array of rows of the image samples
+	 * @param WTTypes Filter to apply
+	 * @param width number of columns of each row to be filtered
+	 *
+	 * @throws ErrorException when wavelet type is unrecognized
+	 */
+	private void evenEvenRowsFiltering(float[][] src, int WTTypes, int width) throws ErrorException{
+		//Subband size
+		int subbandSize = src.length;
+
+		switch(WTTypes){
+		case 1: // 5/3 DWT
+			for(int k = 1; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] - (float) (Math.floor(((src[k-1][x]+src[k+1][x])/2)));
+				}
+			}
+			for(int x = 0; x < width; x++){
+				src[subbandSize-1][x] = src[subbandSize-1][x] - (float) (Math.floor((src[subbandSize-2][x]+src[subbandSize-2][x])/2));
+			}
+			for(int x = 0; x < width; x++){
+				src[0][x] = src[0][x] + (float) (Math.floor(((src[1][x]+src[1][x]+2)/4)));
+			}
+			for (int k = 2; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + (float) (Math.floor(((src[k-1][x]+src[k+1][x]+2)/4)));
+				}
+			}
+			break;
+		case 2: // 9/7 DWT
+		case 3:
+			final float alfa_97 = -1.586134342059924F;
+			final float beta_97 = -0.052980118572961F;
+			final float gamma_97 = 0.882911075530934F;
+			final float delta_97 = 0.443506852043971F;
+			final float nh_97, nl_97;
+			if ( WTTypes == 2 ){// Isorange
+				nh_97 = 1.230174104914001F; //with this weights the range is mantained
+				nl_97 = 1F / nh_97;
+			} else {// Isonorm
+				nl_97 = 1.14960430535816F; //with this weights the norm is nearly mantained
+				nh_97 = -1F / nl_97;
+			}
+
+			for(int k = 1; k < subbandSize-2; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + alfa_97 * (src[k-1][x]+src[k+1][x]);
+				}
+			}
+			for(int x = 0; x < width; x++){
+				src[subbandSize-1][x] = src[subbandSize-1][x] + alfa_97 * (src[subbandSize-2][x]+src[subbandSize-2][x]);
+			}
+
+			for(int x = 0; x < width; x++){
+				src[0][x] = src[0][x] + beta_97 * (src[1][x]+src[1][x]);
+			}
+			for(int k = 2; k < subbandSize; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + beta_97 * (src[k-1][x]+src[k+1][x]);
+				}
+			}
+
+			for(int k = 1; k < subbandSize-2; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + gamma_97 * (src[k-1][x]+src[k+1][x]);
+				}
+			}
+			for(int x = 0; x < width; x++){
+				src[subbandSize-1][x] = src[subbandSize-1][x] + gamma_97 * (src[subbandSize-2][x]+src[subbandSize-2][x]);
+			}
+
+			for(int x = 0; x < width; x++){
+				src[0][x] = src[0][x] + delta_97 * (src[1][x]+src[1][x]);
+			}
+			for(int k = 2; k < subbandSize; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + delta_97 * (src[k-1][x]+src[k+1][x]);
+				}
+			}
+
+			for(int k = 0; k < subbandSize; k+= 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] * nl_97;
+				}
+				for(int x = 0; x < width; x++){
+					src[k+1][x] = src[k+1][x] * nh_97;
+				}
+			}
+			break;
+		case 4:
+			// Integer 9/7 M (CCSDS Recommended )
+			if ( subbandSize >=6 ){
+				final float alfa1 = (9F/16F);
+				final float alfa2 = (1F/16F);
+				final float beta = (1F/4F);
+
+				for(int x = 0; x < width; x++){
+					src[1][x]=src[1][x] - (float) (Math.floor( alfa1*(src[0][x]+src[2][x])-alfa2*(src[2][x]+src[4][x])+0.5F ) );
+				}
+				for (int k=3; k<subbandSize-3; k+=2){
+					for(int x = 0; x < width; x++){
+						src[k][x]=src[k][x] - (float) (Math.floor( alfa1*(src[k-1][x]+src[k+1][x])-alfa2*(src[k-3][x]+src[k+3][x])+0.5F ) );
+					}
+				}
+				for(int x = 0; x < width; x++){
+					src[subbandSize-3][x]=src[subbandSize-3][x] - (float) (Math.floor( alfa1*(src[subbandSize-4][x]+src[subbandSize-2][x])- alfa2*(src[subbandSize-6][x]+src[subbandSize-2][x]) + 0.5F ) );
+				}
+				for(int x = 0; x < width; x++){
+					src[subbandSize-1][x]=src[subbandSize-1][x] - (float) (Math.floor( alfa1*(src[subbandSize-2][x]+src[subbandSize-2][x])- alfa2*(src[subbandSize-4][x]+src[subbandSize-4][x]) + 0.5F ) );
+				}
+				for(int x = 0; x < width; x++){
+					src[0][x]=src[0][x] -  (float) ( Math.floor(-beta*(src[1][x]+src[1][x])+0.5F) );
+				}
+				for (int k=2; k<subbandSize; k+=2){
+					for(int x = 0; x < width; x++){
+						src[k][x]=src[k][x] - (float) (Math.floor(-beta*(src[k-1][x]+src[k+1][x])+0.5F) );
+					}
+				}
+			} else {
+				throw new ErrorException("Size should be greater or equal than 6 in order to perform 9/7M");
+			}
+			break;
+		default:
+			throw new ErrorException("Unrecognized wavelet transform type.");
+		}
+	}
+
+	/**
+	 * Row version of {@link #evenOddFiltering}: applies the same lifting steps to every column of src, so the inner 
+	 * loops run over contiguous samples. The result is not deinterleaved.
+	 *
+	 * @param src a float array of rows of the image samples
+	 * @param WTTypes Filter to apply
+	 * @param width number of columns of each row to be filtered
+	 *
+	 * @throws ErrorException when wavelet type is unrecognized
+	 */
+	private void evenOddRowsFiltering(float[][] src, int WTTypes, int width) throws ErrorException{
+		//Subband size
+		int subbandSize = src.length;
+
+		switch(WTTypes){
+		case 1: // 5/3 DWT
+			for(int x = 0; x < width; x++){
+				src[0][x] = src[0][x] - (float) (Math.floor(((src[1][x]+src[1][x])/2)));
+			}
+			for (int k = 2; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] - (float) (Math.floor(((src[k-1][x]+src[k+1][x])/2)));
+				}
+			}
+
+			for(int x = 0; x < width; x++){
+				src[subbandSize-1][x] = src[subbandSize-1][x] + (float) (Math.floor((src[subbandSize-2][x]+src[subbandSize-2][x]+2)/4));
+			}
+
+			for(int k = 1; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + (float) (Math.floor(((src[k-1][x]+src[k+1][x]+2)/4)));
+				}
+			}
+			break;
+
+		case 2: // 9/7 DWT
+		case 3:
+			final float alfa_97 = -1.586134342059924F;
+			final float beta_97 = -0.052980118572961F;
+			final float gamma_97 = 0.882911075530934F;
+			final float delta_97 = 0.443506852043971F;
+			final float nh_97, nl_97;
+			if ( WTTypes == 2 ){// Isorange
+				nh_97 = 1.230174104914001F; //with this weights the range is mantained
+				nl_97 = 1F / nh_97;
+			} else {// Isonorm
+				nl_97 = 1.14960430535816F; //with this weights the norm is nearly mantained
+				nh_97 = -1F / nl_97;
+			}
+			for(int x = 0; x < width; x++){
+				src[0][x] = src[0][x] + alfa_97 * (src[1][x]+src[1][x]);
+			}
+			for(int k = 2; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + alfa_97 * (src[k-1][x]+src[k+1][x]);
+				}
+			}
+
+			for(int k = 1; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + beta_97 * (src[k-1][x]+src[k+1][x]);
+				}
+			}
+			for(int x = 0; x < width; x++){
+				src[subbandSize-1][x] = src[subbandSize-1][x] + beta_97 * (src[subbandSize-2][x]+src[subbandSize-2][x]);
+			}
+
+			for(int x = 0; x < width; x++){
+				src[0][x] = src[0][x] + gamma_97 * (src[1][x]+src[1][x]);
+			}
+			for(int k = 2; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + gamma_97 * (src[k-1][x]+src[k+1][x]);
+				}
+			}
+
+			for(int x = 0; x < width; x++){
+				src[subbandSize-1][x] = src[subbandSize-1][x] + delta_97 * (src[subbandSize-2][x]+src[subbandSize-2][x]);
+			}
+			for(int k = 1; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + delta_97 * (src[k-1][x]+src[k+1][x]);
+				}
+			}
+
+			for(int k = 0; k < subbandSize; k+= 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] * nh_97;
+				}
+				for(int x = 0; x < width; x++){
+					src[k+1][x] = src[k+1][x] * nl_97;
+				}
+			}
+			break;
+		case 4:
+			// Integer 9/7 M (CCSDS Recommended )
+			if ( subbandSize >=6 ){
+				final float alfa1 = (9F/16F);
+				final float alfa2 = (1F/16F);
+				final float beta = (1F/4F);	
+				for(int x = 0; x < width; x++){
+					src[1][x]=src[1][x] - (float) (Math.floor( alfa1*(src[0][x]+src[2][x])-alfa2*(src[2][x]+src[4][x])+0.5F ) );
+				}
+				for (int k=3; k<subbandSize-3; k+=2){
+					for(int x = 0; x < width; x++){
+						src[k][x]=src[k][x] - (float) (Math.floor( alfa1*(src[k-1][x]+src[k+1][x])-alfa2*(src[k-3][x]+src[k+3][x])+0.5F ) );
+					}
+				}
+				for(int x = 0; x < width; x++){
+					src[subbandSize-3][x]=src[subbandSize-3][x] - (float) (Math.floor( alfa1*(src[subbandSize-4][x]+src[subbandSize-2][x])- alfa2*(src[subbandSize-6][x]+src[subbandSize-2][x]) + 0.5F ) );
+				}
+				for(int x = 0; x < width; x++){
+					src[subbandSize-1][x]=src[subbandSize-1][x] - (float) (Math.floor( alfa1*(src[subbandSize-2][x]+src[subbandSize-2][x])- alfa2*(src[subbandSize-4][x]+src[subbandSize-4][x]) + 0.5F ) );
+				}
+				for(int x = 0; x < width; x++){
+					src[0][x]=src[0][x] -  (float) ( Math.floor(-beta*(src[1][x]+src[1][x])+0.5F) );
+				}
+				for (int k=2; k<subbandSize; k+=2){
+					for(int x = 0; x < width; x++){
+						src[k][x]=src[k][x] - (float) (Math.floor(-beta*(src[k-1][x]+src[k+1][x])+0.5F) );
+					}
+				}
+			} else {
+				throw new ErrorException("Size should be greater or equal than 6 in order to perform 9/7M");
+			}
+			break;
+		default:
+			throw new ErrorException("Unrecognized wavelet transform type.");
+		}
+	}
+
+	/**
+	 * Row version of {@link #oddEvenFiltering}: applies the same lifting steps to every column of src, so the inner 
+	 * loops run over contiguous samples. The result is not deinterleaved.
+	 *
+	 * @param src a float array of rows of the image samples
+	 * @param WTTypes Filter to apply
+	 * @param width number of columns of each row to be filtered
+	 *
+	 * @throws ErrorException when wavelet type is unrecognized
+	 */
+	private void oddEvenRowsFiltering(float[][] src, int WTTypes, int width) throws ErrorException{
+		//Subband size
+		int subbandSize = src.length;
+
+		switch(WTTypes){
+		case 1: // 5/3 DWT
+			for(int k = 1; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] - (float) (Math.floor(((src[k-1][x]+src[k+1][x])/2)));
+				}
+			}
+			for(int x = 0; x < width; x++){
+				src[0][x] = src[0][x] + (float) (Math.floor(((src[1][x]+src[1][x]+2)/4)));
+			}
+			for (int k = 2; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + (float) (Math.floor(((src[k-1][x]+src[k+1][x]+2)/4)));
+				}
+			}
+			for(int x = 0; x < width; x++){
+				src[subbandSize-1][x] = src[subbandSize-1][x] + (float) (Math.floor(((src[subbandSize-2][x]+src[subbandSize-2][x]+2)/4)));
+			}
+			break;
+		case 2: // 9/7 DWT
+		case 3:
+			final float alfa_97 = -1.586134342059924F;
+			final float beta_97 = -0.052980118572961F;
+			final float gamma_97 = 0.882911075530934F;
+			final float delta_97 = 0.443506852043971F;
+			final float nh_97, nl_97;
+			if ( WTTypes == 2 ){// Isorange
+				nh_97 = 1.230174104914001F; //with this weights the range is mantained
+				nl_97 = 1F / nh_97;
+			} else {// Isonorm
+				nl_97 = 1.14960430535816F; //with this weights the norm is nearly mantained
+				nh_97 = -1F / nl_97;
+			}
+			for(int k = 1; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + alfa_97 * (src[k-1][x]+src[k+1][x]);
+				}
+			}
+
+			for(int x = 0; x < width; x++){
+				src[0][x] = src[0][x] + beta_97 * (src[1][x]+src[1][x]);
+			}
+			for(int k = 2; k < subbandSize-1 ; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + beta_97 * (src[k-1][x]+src[k+1][x]);
+				}
+			}
+			for(int x = 0; x < width; x++){
+				src[subbandSize-1][x] = src[subbandSize-1][x] + beta_97 * (src[subbandSize-2][x]+src[subbandSize-2][x]);
+			}
+
+			for(int k = 1; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + gamma_97 * (src[k-1][x]+src[k+1][x]);
+				}
+			}
+
+			for(int x = 0; x < width; x++){
+				src[0][x] = src[0][x] + delta_97 * (src[1][x]+src[1][x]);
+			}
+			for(int k = 2; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + delta_97 * (src[k-1][x]+src[k+1][x]);
+				}
+			}
+			for(int x = 0; x < width; x++){
+				src[subbandSize-1][x] = src[subbandSize-1][x] + delta_97 * (src[subbandSize-2][x]+src[subbandSize-2][x]);
+			}
+
+			for(int k = 0; k < subbandSize-1; k+= 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] * nl_97;
+				}
+				for(int x = 0; x < width; x++){
+					src[k+1][x] = src[k+1][x] * nh_97;
+				}
+			}
+			for(int x = 0; x < width; x++){
+				src[subbandSize-1][x]=src[subbandSize-1][x]*nl_97;
+			}
+			break;
+		case 4:
+			// Integer 9/7 M (CCSDS Recommended )
+			if ( subbandSize >=6 ){
+				final float alfa1 = (9F/16F);
+				final float alfa2 = (1F/16F);
+				final float beta = (1F/4F);	
+				for(int x = 0; x < width; x++){
+					src[1][x]=src[1][x] - (float) (Math.floor( alfa1*(src[0][x]+src[2][x])-alfa2*(src[2][x]+src[4][x])+0.5 ) );
+				}
+				for (int k=3; k<subbandSize-3; k+=2){
+					for(int x = 0; x < width; x++){
+						src[k][x]=src[k][x] - (float) (Math.floor( alfa1*(src[k-1][x]+src[k+1][x])-alfa2*(src[k-3][x]+src[k+3][x])+0.5 ) );
+					}
+				}
+				for(int x = 0; x < width; x++){
+					src[subbandSize-2][x]=src[subbandSize-2][x] - (float) (Math.floor( alfa1*(src[subbandSize-3][x]+src[subbandSize-1][x])- alfa2*(src[subbandSize-5][x]+src[subbandSize-1][x]) + 0.5 ) );
+				}
+				for(int x = 0; x < width; x++){
+					src[0][x]=src[0][x] -  (float) ( Math.floor(-beta*(src[1][x]+src[1][x])+0.5) );
+				}
+				for (int k=2; k<subbandSize-1; k+=2){
+					for(int x = 0; x < width; x++){
+						src[k][x]=src[k][x] - (float) (Math.floor(-beta*(src[k-1][x]+src[k+1][x])+0.5) );
+					}
+				}
+				for(int x = 0; x < width; x++){
+					src[subbandSize-1][x]= src[subbandSize-1][x] - (float) (Math.floor(-beta*(src[subbandSize-2][x]+src[subbandSize-2][x])+0.5));
+				}
+			} else {
+				throw new ErrorException("Size should be greater or equal than 6 in order to perform 9/7M");
+			}
+			break;
+		default:
+			throw new ErrorException("Unrecognized wavelet transform type.");
+		}
+	}
+
+	/**
+	 * Row version of {@link #oddOddFiltering}: applies the same lifting steps to every column of src, so the inner 
+	 * loops run over contiguous samples. The result is not deinterleaved.
+	 *
+	 * @param src a float array of rows of the image samples
+	 * @param WTTypes Filter to apply
+	 * @param width number of columns of each row to be filtered
+	 *
+	 * @throws ErrorException when wavelet type is unrecognized
+	 */
+	private void oddOddRowsFiltering(float[][] src, int WTTypes, int width) throws ErrorException{
+		//Subband size
+		int subbandSize = src.length;
+
+		switch(WTTypes){
+		case 1: // 5/3 DWT
+			for (int k = 2; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] - (float) (Math.floor(((src[k-1][x]+src[k+1][x])/2)));
+				}
+			}
+			for(int x = 0; x < width; x++){
+				src[0][x] = src[0][x] - (float) (Math.floor(((src[1][x]+src[1][x])/2)));
+			}
+			for(int x = 0; x < width; x++){
+				src[subbandSize-1][x] = src[subbandSize-1][x] - (float) (Math.floor(((src[subbandSize-2][x]+src[subbandSize-2][x])/2)));
+			}
+
+			for(int k = 1; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + (float) (Math.floor(((src[k-1][x]+src[k+1][x]+2)/4)));
+				}
+			}
+			break;
+
+		case 2: // 9/7 DWT
+		case 3:
+			final float alfa_97 = -1.586134342059924F;
+			final float beta_97 = -0.052980118572961F;
+			final float gamma_97 = 0.882911075530934F;
+			final float delta_97 = 0.443506852043971F;
+			final float nh_97, nl_97;
+			if ( WTTypes == 2 ){// Isorange
+				nh_97 = 1.230174104914001F; //with this weights the range is mantained
+				nl_97 = 1F / nh_97;
+			} else {// Isonorm
+				nl_97 = 1.14960430535816F; //with this weights the norm is nearly mantained
+				nh_97 = -1F / nl_97;
+			}
+			for(int k = 2; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + alfa_97 * (src[k-1][x]+src[k+1][x]);
+				}
+			}
+			for(int x = 0; x < width; x++){
+				src[subbandSize-1][x] = src[subbandSize-1][x] + alfa_97 * (src[subbandSize-2][x]+src[subbandSize-2][x]);
+			}
+			for(int x = 0; x < width; x++){
+				src[0][x] = src[0][x] + alfa_97 * (src[1][x]+src[1][x]);
+			}
+
+			for(int k = 1; k < subbandSize-1 ; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + beta_97 * (src[k-1][x]+src[k+1][x]);
+				}
+			}
+
+			for(int k = 2; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + gamma_97 * (src[k-1][x]+src[k+1][x]);
+				}
+			}
+			for(int x = 0; x < width; x++){
+				src[subbandSize-1][x] = src[subbandSize-1][x] + gamma_97 * (src[subbandSize-2][x]+src[subbandSize-2][x]);
+			}
+			for(int x = 0; x < width; x++){
+				src[0][x] = src[0][x] + gamma_97 * (src[1][x]+src[1][x]);
+			}
+
+			for(int k = 1; k < subbandSize-1; k += 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] + delta_97 * (src[k-1][x]+src[k+1][x]);
+				}
+			}
+
+			for(int k = 0; k < subbandSize-1; k+= 2){
+				for(int x = 0; x < width; x++){
+					src[k][x] = src[k][x] * nh_97;
+				}
+				for(int x = 0; x < width; x++){
+					src[k+1][x] = src[k+1][x] * nl_97;
+				}
+			}
+			for(int x = 0; x < width; x++){
+				src[subbandSize-1][x]=src[subbandSize-1][x]*nh_97;
+			}
+			break;
+		case 4:
+			// Integer 9/7 M (CCSDS Recommended )
+			if ( subbandSize >=6 ){
+				final float alfa1 = (9F/16F);
+				final float alfa2 = (1F/16F);
+				final float beta = (1F/4F);
+
+				for(int x = 0; x < width; x++){
+					src[0][x]= src[0][x] - (float) (Math.floor( alfa1*(src[1][x]+src[1][x])-alfa2*(src[3][x]+src[3][x])+0.5 ));
+				}
+				for(int x = 0; x < width; x++){
+					src[2][x]= src[2][x] - (float) (Math.floor( alfa1*(src[1][x]+src[3][x])-alfa2*(src[1][x]+src[5][x])+0.5 ));
+				}
+				for (int k=4; k<subbandSize-3; k+=2){
+					for(int x = 0; x < width; x++){
+						src[k][x]=src[k][x] - (float) (Math.floor( alfa1*(src[k-1][x]+src[k+1][x])-alfa2*(src[k-3][x]+src[k+3][x])+0.5 ) );
+					}
+				}
+				for(int x = 0; x < width; x++){
+					src[subbandSize-3][x]= src[subbandSize-3][x] - (float) (Math.floor( alfa1*(src[subbandSize-4][x]+src[subbandSize-2][x])- alfa2*(src[subbandSize-6][x]+src[subbandSize-2][x]) + 0.5 ) );
+				}
+				for(int x = 0; x < width; x++){
+					src[subbandSize-1][x]= src[subbandSize-1][x] - (float) (Math.floor( alfa1*(src[subbandSize-2][x]+src[subbandSize-2][x])- alfa2*(src[subbandSize-4][x]+src[subbandSize-4][x]) + 0.5 ) );
+				}
+				for (int k=1; k<subbandSize; k+=2){
+					for(int x = 0; x < width; x++){
+						src[k][x]=src[k][x] - (float) (Math.floor(-beta*(src[k-1][x]+src[k+1][x])+0.5) );
+					}
+				}
+			} else {
+				throw new ErrorException("Size should be greater or equal than 6 in order to perform 9/7M");
+			}
+			break;
+
+		default:
+			throw new ErrorException("Unrecognized wavelet transform type.");
+		}
+	}
+
 	/**
 	 * This function expands the source array length to transform if it's length is less than 6.
 	 *
@@ -100,6 +100,21 @@ public class InverseWaveletTransform{
 	 */
 	boolean parametersSet = false;
 
+	/**
+	 * Region of the image that is reconstructed, index meaning [0 yStart, 1 yEnd, 2 xStart, 3 xEnd] (ends excluded).
+	 * <p>
+	 * Null when the whole image is reconstructed.
+	 */
+	int[] region = null;
+
+	/**
+	 * Number of samples added at each side of the samples that are reconstructed by a filtering, so that they do not
+	 * depend on the extension of the cut signal. The lifting steps of the supported filters reach 4 samples at most.
+	 * <p>
+	 * Even positive values allowed.
+	 */
+	static final int REGION_MARGIN = 8;
+
 	/**
 	 * Constructor that receives the original image samples and initializes default values.
 	 *
@@ -148,6 +163,21 @@ public class InverseWaveletTransform{
 		this.WTLevels = WTLevels;
 		this.WTOrder =WTOrder;
 	}
+	
+	/**
+	 * Sets a region of the image to be reconstructed, so that only the coefficients that lie in the support of the
+	 * filters of the region are transformed at each level. The region is the same for all the components. The result
+	 * is a new image with the region, and the samples of the given image are left undefined.
+	 *
+	 * @param yStart first row of the region
+	 * @param yEnd row after the last row of the region
+	 * @param xStart first column of the region
+	 * @param xEnd column after the last column of the region
+	 */
+	public void setRegion(int yStart, int yEnd, int xStart, int xEnd){
+		region = new int[]{yStart, yEnd, xStart, xEnd};
+	}
+
 	/**
 	 * Verify Parameters defined in this class
 	 *
@@ -184,6 +214,14 @@ public class InverseWaveletTransform{
 		if(!parametersSet){
 			throw new Exception("Discrete wavelet transform cannot run if parameters are not set.");
 		}
+		if(region != null){
+			//the given image keeps its components, so that its memory can be reused
+			float[][][] regionSamples = new float[zSize][][];
+			for(int z = 0; z < zSize; z++){
+				regionSamples[z] = regionTransform(z);
+			}
+			return(regionSamples);
+		}
 
 		//Apply DWT for each component
 		for(int z = 0; z < zSize; z++){
@@ -261,6 +299,229 @@ public class InverseWaveletTransform{
 		return(imageSamples);
 	}
 
+	/**
+	 * Reconstructs only the region of a component. The region needed at each level is found from the last level to the
+	 * first one: the samples filtered to reconstruct a window of a level are the window extended by REGION_MARGIN,
+	 * and its low-pass samples are the window that the previous level must reconstruct. Then the levels are applied
+	 * in order, filtering only those samples, which gives the same values as the whole transform inside the region.
+	 *
+	 * @param z the component
+	 * @return the samples of the region, index meaning [y][x]
+	 *
+	 * @throws ErrorException when unrecognized wavelet type is passed
+	 */
+	private float[][] regionTransform(int z) throws ErrorException{
+		ySize = imageSamples[z].length;
+		xSize = imageSamples[z][0].length;
+		int levels = (WTTypes[z] != 0) ? WTLevels[z] : 0;
+
+		int xSubBandSizes[] = subBandSizes(xSize, levels, true);
+		int ySubBandSizes[] = subBandSizes(ySize, levels, WTOrder[z] != 2);
+		int xWindows[][] = regionWindows(region[2], region[3], xSubBandSizes, true);
+		int yWindows[][] = regionWindows(region[0], region[1], ySubBandSizes, WTOrder[z] != 2);
+
+		for(int level = 0; level < levels; level++){
+			int xSubBandSize = xSubBandSizes[level];
+			int ySubBandSize = ySubBandSizes[level];
+			int[] xFiltered = filteredWindow(xWindows[level], xSubBandSize);
+			int[] yFiltered = filteredWindow(yWindows[level], ySubBandSize);
+			if(WTOrder[z] == 0){
+				//VER_SD on the columns used by HOR_SD, then HOR_SD on the rows of the window
+				int[] columns = subBandPositions(xFiltered, xSubBandSize);
+				for(int column: columns){
+					filterColumn(z, column, yFiltered, yWindows[level], ySubBandSize);
+				}
+				for(int y = yWindows[level][0]; y < yWindows[level][1]; y++){
+					filterRow(z, y, xFiltered, xWindows[level], xSubBandSize);
+				}
+			}else if(WTOrder[z] == 1){
+				//HOR_SD on the rows used by VER_SD, then VER_SD on the columns of the window
+				int[] rows = subBandPositions(yFiltered, ySubBandSize);
+				for(int row: rows){
+					filterRow(z, row, xFiltered, xWindows[level], xSubBandSize);
+				}
+				for(int x = xWindows[level][0]; x < xWindows[level][1]; x++){
+					filterColumn(z, x, yFiltered, yWindows[level], ySubBandSize);
+				}
+			}else{
+				//HOR_SD
+				for(int y = yWindows[level][0]; y < yWindows[level][1]; y++){
+					filterRow(z, y, xFiltered, xWindows[level], xSubBandSize);
+				}
+			}
+		}
+
+		float band[][] = new float[region[1] - region[0]][region[3] - region[2]];
+		for(int y = region[0]; y < region[1]; y++){
+			System.arraycopy(imageSamples[z][y], region[2], band[y - region[0]], 0, region[3] - region[2]);
+		}
+		return(band);
+	}
+
+	/**
+	 * Finds the coefficients of an image that are read by the transform of a region (see {@link #setRegion}), so that
+	 * the coefficients out of them need not be recovered.
+	 *
+	 * @param ySize image height
+	 * @param xSize image width
+	 * @param WTLevels number of levels of the transform
+	 * @param WTOrder order of the transform (see {@link #WTOrder})
+	 * @param region the region as {yStart, yEnd, xStart, xEnd}
+	 * @return for each level (from the coarsest one) the coefficients read as {yStart, yEnd, xStart, xEnd}, which are
+	 * positions both in the low-pass and in the high-pass half of the subband (rows are not halved when the columns
+	 * are not transformed)
+	 */
+	public static int[][] getRegionSupport(int ySize, int xSize, int WTLevels, int WTOrder, int[] region){
+		boolean yTransformed = WTOrder != 2;
+		int xSubBandSizes[] = subBandSizes(xSize, WTLevels, true);
+		int ySubBandSizes[] = subBandSizes(ySize, WTLevels, yTransformed);
+		int xWindows[][] = regionWindows(region[2], region[3], xSubBandSizes, true);
+		int yWindows[][] = regionWindows(region[0], region[1], ySubBandSizes, yTransformed);
+		int support[][] = new int[WTLevels][];
+		for(int level = 0; level < WTLevels; level++){
+			int[] xFiltered = filteredWindow(xWindows[level], xSubBandSizes[level]);
+			int[] yFiltered = yTransformed ? filteredWindow(yWindows[level], ySubBandSizes[level]) : yWindows[level];
+			support[level] = new int[]{
+				yTransformed ? yFiltered[0] / 2 : yFiltered[0], yTransformed ? (yFiltered[1] + 1) / 2 : yFiltered[1],
+				xFiltered[0] / 2, (xFiltered[1] + 1) / 2};
+		}
+		return(support);
+	}
+
+	/**
+	 * Gives the size of the subband transformed at each level in one dimension.
+	 *
+	 * @param size size of the image in this dimension
+	 * @param levels number of levels of the transform
+	 * @param decimated false if this dimension is not transformed, so that all levels have the whole size
+	 * @return the size for each level, from the coarsest one
+	 */
+	private static int[] subBandSizes(int size, int levels, boolean decimated){
+		int subBandSizes[] = new int[levels];
+		if(levels > 0){
+			subBandSizes[levels-1] = size;
+			for(int k = levels-2; k >= 0; k--){
+				subBandSizes[k] = decimated ? subBandSizes[k+1] / 2 + subBandSizes[k+1] % 2 : size;
+			}
+		}
+		return(subBandSizes);
+	}
+
+	/**
+	 * Finds, in one dimension, the window that each level must reconstruct so that the last level gives a region:
+	 * the low-pass samples of the samples filtered by the next level.
+	 *
+	 * @param start first sample of the region
+	 * @param end sample after the last one of the region
+	 * @param subBandSizes size of the subband of each level (see {@link #subBandSizes})
+	 * @param decimated false if this dimension is not transformed, so that all levels have the region as window
+	 * @return the window of each level as {start, end}, from the coarsest level
+	 */
+	private static int[][] regionWindows(int start, int end, int[] subBandSizes, boolean decimated){
+		int levels = subBandSizes.length;
+		int windows[][] = new int[levels][];
+		if(levels > 0){
+			windows[levels-1] = new int[]{start, end};
+		}
+		for(int level = levels-1; level > 0; level--){
+			if(decimated){
+				int[] filtered = filteredWindow(windows[level], subBandSizes[level]);
+				windows[level-1] = new int[]{filtered[0] / 2, (filtered[1] + 1) / 2};
+			}else{
+				windows[level-1] = windows[level];
+			}
+		}
+		return(windows);
+	}
+
+	/**
+	 * Finds the samples of a subband that must be filtered to reconstruct a window: the window extended by
+	 * REGION_MARGIN, starting at an even sample and with a length of the same parity as the subband, since some
+	 * filters depend on it.
+	 *
+	 * @param window first sample and sample after the last one of the window
+	 * @param subBandSize number of samples of the subband
+	 * @return first sample and sample after the last one to be filtered, in the interleaved (reconstructed) order
+	 */
+	private static int[] filteredWindow(int[] window, int subBandSize){
+		int start = Math.max(0, window[0] - REGION_MARGIN);
+		start -= start % 2;
+		int end = Math.min(subBandSize, window[1] + REGION_MARGIN);
+		if(end < subBandSize && (end - start) % 2 != subBandSize % 2){
+			end++;
+		}
+		return(new int[]{start, end});
+	}
+
+	/**
+	 * Gives the positions, in the low-pass and high-pass order of a subband, of the samples of a filtered window.
+	 *
+	 * @param filtered first sample and sample after the last one of the window, in the interleaved order
+	 * @param subBandSize number of samples of the subband
+	 * @return the positions of the low-pass samples followed by the positions of the high-pass samples
+	 */
+	private static int[] subBandPositions(int[] filtered, int subBandSize){
+		int lowSize = subBandSize / 2 + subBandSize % 2;
+		int lowStart = filtered[0] / 2;
+		int lowEnd = (filtered[1] + 1) / 2;
+		int highEnd = filtered[1] / 2;
+		int positions[] = new int[filtered[1] - filtered[0]];
+		int position = 0;
+		for(int k = lowStart; k < lowEnd; k++){
+			positions[position++] = k;
+		}
+		for(int k = lowStart; k < highEnd; k++){
+			positions[position++] = lowSize + k;
+		}
+		return(positions);
+	}
+
+	/**
+	 * Filters the samples of a row needed to reconstruct a window of it.
+	 *
+	 * @param z the component
+	 * @param y the row
+	 * @param filtered samples that are filtered, see {@link #filteredWindow}
+	 * @param window samples of the row that are reconstructed
+	 * @param subBandSize number of samples of the subband
+	 *
+	 * @throws ErrorException when unrecognized wavelet type is passed
+	 */
+	private void filterRow(int z, int y, int[] filtered, int[] window, int subBandSize) throws ErrorException{
+		int[] positions = subBandPositions(filtered, subBandSize);
+		float currentRow[] = new float[positions.length];
+		for(int k = 0; k < positions.length; k++){
+			currentRow[k] = imageSamples[z][y][positions[k]];
+		}
+		currentRow = filtering(currentRow, z);
+		for(int x = window[0]; x < window[1]; x++){
+			imageSamples[z][y][x] = currentRow[x - filtered[0]];
+		}
+	}
+
+	/**
+	 * Filters the samples of a column needed to reconstruct a window of it.
+	 *
+	 * @param z the component
+	 * @param x the column
+	 * @param filtered samples that are filtered, see {@link #filteredWindow}
+	 * @param window samples of the column that are reconstructed
+	 * @param subBandSize number of samples of the subband
+	 *
+	 * @throws ErrorException when unrecognized wavelet type is passed
+	 */
+	private void filterColumn(int z, int x, int[] filtered, int[] window, int subBandSize) throws ErrorException{
+		int[] positions = subBandPositions(filtered, subBandSize);
+		float currentColumn[] = new float[positions.length];
+		for(int k = 0; k < positions.length; k++){
+			currentColumn[k] = imageSamples[z][positions[k]][x];
+		}
+		currentColumn = filtering(currentColumn, z);
+		for(int y = window[0]; y < window[1]; y++){
+			imageSamples[z][y][x] = currentColumn[y - filtered[0]];
+		}
+	}
+
 	/**
 	 * This function selects the way to apply the filter
 	 * selected depending on the size of the source
@@ -151,60 +151,15 @@ public class LevelShift{
 		}
 
 		if(LSType != 0){
-			//Memory allocation
-			if(LSSubsValues == null){
-				LSSubsValues = new int[zSize];
-			}
-
-			ImageStatistical imageStatistics = null;
-
-			//Calculus of substracted values depending on the chosen method
-			switch(LSType){
-			case 0: //nothing
-				for(int z = 0; z < zSize; z++){
-					LSSubsValues[z] = 0;
-				}
-				break;
-			case 1: //BOI standard level shifting
-				for(int z = 0; z < zSize; z++){
-					LSSubsValues[z] = (int) Math.pow(2D, QComponentsBits[z] - 1);
-				}
-				break;
-			case 2: //Range center substract
-				imageStatistics = new ImageStatistical(imageSamples);
-				//float[][] minMax = imageStatistics.getMinMax();
-				//float[] average = imageStatistics.getAverage();
-				double[] centerRange = imageStatistics.getCenterRange();
-				for(int z = 0; z < zSize; z++){
-					LSSubsValues[z] = (int) Math.round(centerRange[z]);
-				}
-				break;
-			case 3: //Average substract
-				imageStatistics = new ImageStatistical(imageSamples);
-				//float[][] minMax = imageStatistics.getMinMax();
-				double[] average = imageStatistics.getAverage();
-				//float[] centerRange = imageStatistics.getCenterRange();
-				for(int z = 0; z < zSize; z++){
-					LSSubsValues[z] = (int) Math.round(average[z]);
-				}
-				break;
-			case 4: //Specific values substract
-				break;
-			default:
-				throw new ErrorException("Unrecognized level shift type.");
-			}
+			computeSubsValues();
 
 			//Apply shift
 			for(int z = 0; z < zSize; z++){
-				if(LSComponents[z]){
-					if(LSSubsValues[z] != 0){
-						for(int y = 0; y < ySize; y++){
-						for(int x = 0; x < xSize; x++){
-							imageSamples[z][y][x] -= LSSubsValues[z];
-						}}
-					}
-				}else{
-					LSSubsValues[z] = 0;
+				if(LSSubsValues[z] != 0){
+					for(int y = 0; y < ySize; y++){
+					for(int x = 0; x < xSize; x++){
+						imageSamples[z][y][x] -= LSSubsValues[z];
+					}}
 				}
 			}
 		}
@@ -213,6 +168,71 @@ public class LevelShift{
 		return(imageSamples);
 	}
 
+	/**
+	 * Computes the values to be substracted from each component without modifying the image. It allows a later 
+	 * stage that already traverses the image (e.g. {@link GiciImageExtension.ImageExtension}) to apply the shift.
+	 *
+	 * @return LSSubsValues definition in {@link #LSSubsValues}, 0 for the components not to be shifted
+	 *
+	 * @throws ErrorException when parameters are not set or unrecognized level shift type is passed
+	 */
+	public int[] computeSubsValues() throws ErrorException{
+		//If parameters are not set run cannot be executed
+		if(!parametersSet){
+			throw new ErrorException("Parameters not set.");
+		}
+
+		//Memory allocation
+		if(LSSubsValues == null){
+			LSSubsValues = new int[zSize];
+		}
+
+		ImageStatistical imageStatistics = null;
+
+		//Calculus of substracted values depending on the chosen method
+		switch(LSType){
+		case 0: //nothing
+			for(int z = 0; z < zSize; z++){
+				LSSubsValues[z] = 0;
+			}
+			break;
+		case 1: //BOI standard level shifting
+			for(int z = 0; z < zSize; z++){
+				LSSubsValues[z] = (int) Math.pow(2D, QComponentsBits[z] - 1);
+			}
+			break;
+		case 2: //Range center substract
+			imageStatistics = new ImageStatistical(imageSamples);
+			//float[][] minMax = imageStatistics.getMinMax();
+			//float[] average = imageStatistics.getAverage();
+			double[] centerRange = imageStatistics.getCenterRange();
+			for(int z = 0; z < zSize; z++){
+				LSSubsValues[z] = (int) Math.round(centerRange[z]);
+			}
+			break;
+		case 3: //Average substract
+			imageStatistics = new ImageStatistical(imageSamples);
+			//float[][] minMax = imageStatistics.getMinMax();
+			double[] average = imageStatistics.getAverage();
+			//float[] centerRange = imageStatistics.getCenterRange();
+			for(int z = 0; z < zSize; z++){
+				LSSubsValues[z] = (int) Math.round(average[z]);
+			}
+			break;
+		case 4: //Specific values substract
+			break;
+		default:
+			throw new ErrorException("Unrecognized level shift type.");
+		}
+
+		for(int z = 0; z < zSize; z++){
+			if(!LSComponents[z]){
+				LSSubsValues[z] = 0;
+			}
+		}
+		return(LSSubsValues);
+	}
+
 	/**
 	 * @return LSSubsValues definition in {@link #LSSubsValues}
 	 */
@@ -0,0 +1,89 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERCommon.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * Java Flight Recorder event of the entropy coding of one bitplane of an AC gaggle (see
+ * {@link TER.TERcoder.SegmentCoder.EncodeGaggleAC#run}).
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@Name("TER.GaggleEncoded")
+@Label("Gaggle Encoded")
+@Category({"TER", "Coder"})
+@Description("Entropy coding of one bitplane of an AC gaggle")
+@StackTrace(false)
+public class GaggleEncoded extends Event{
+
+	/**
+	 * Component of the gaggle.
+	 */
+	@Label("Channel")
+	public int channel;
+
+	/**
+	 * Segment of the gaggle.
+	 */
+	@Label("Segment")
+	public int segment;
+
+	/**
+	 * Index of the gaggle in the segment.
+	 */
+	@Label("Gaggle")
+	public int gaggle;
+
+	/**
+	 * Coded bitplane.
+	 */
+	@Label("Bitplane")
+	public int bitplane;
+
+	/**
+	 * Number of blocks of the gaggle.
+	 */
+	@Label("Blocks")
+	public int blocks;
+
+	/**
+	 * Bytes produced for the sorting passes of the gaggle.
+	 */
+	@Label("Bytes")
+	@DataAmount
+	public long bytes;
+}
@@ -0,0 +1,90 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERCommon.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * Java Flight Recorder event of the decoding of the packets of a gaggle (see
+ * {@link TER.TERdecoder.BPEDecoder.DecodeAvailable}). The DC packets of a gaggle are decoded at once and so are the
+ * AC packets of all its resolution levels.
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@Name("TER.PacketDecoded")
+@Label("Packet Decoded")
+@Category({"TER", "Decoder"})
+@Description("Decoding of the DC or AC packets of a gaggle")
+@StackTrace(false)
+public class PacketDecoded extends Event{
+
+	/**
+	 * Component of the gaggle.
+	 */
+	@Label("Channel")
+	public int channel;
+
+	/**
+	 * Segment of the gaggle.
+	 */
+	@Label("Segment")
+	public int segment;
+
+	/**
+	 * Index of the gaggle in the segment.
+	 */
+	@Label("Gaggle")
+	public int gaggle;
+
+	/**
+	 * True for the AC packets and false for the DC packet.
+	 */
+	@Label("AC")
+	public boolean ac;
+
+	/**
+	 * Bytes of the decoded packets.
+	 */
+	@Label("Bytes")
+	@DataAmount
+	public long bytes;
+
+	/**
+	 * AC blocks that have only been parsed, since they are not needed to recover the requested region.
+	 */
+	@Label("Skipped Blocks")
+	public int skippedBlocks;
+}
@@ -0,0 +1,89 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERCommon.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * Java Flight Recorder event of the writing of a packet to the encoded file (see
+ * {@link TER.TERcoder.WriteFile.WriteFile}).
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@Name("TER.PacketWritten")
+@Label("Packet Written")
+@Category({"TER", "Coder"})
+@Description("Writing of a packet to the encoded file")
+@StackTrace(false)
+public class PacketWritten extends Event{
+
+	/**
+	 * Component of the packet.
+	 */
+	@Label("Channel")
+	public int channel;
+
+	/**
+	 * Segment of the packet.
+	 */
+	@Label("Segment")
+	public int segment;
+
+	/**
+	 * Resolution level of the packet.
+	 */
+	@Label("Resolution Level")
+	public int resolutionLevel;
+
+	/**
+	 * Gaggle of the packet.
+	 */
+	@Label("Gaggle")
+	public int gaggle;
+
+	/**
+	 * Layer of the packet.
+	 */
+	@Label("Layer")
+	public int layer;
+
+	/**
+	 * Bytes of the packet data, without its header.
+	 */
+	@Label("Bytes")
+	@DataAmount
+	public long bytes;
+}
@@ -0,0 +1,107 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERCommon.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * Java Flight Recorder event of the extraction of the packets of a region for the interactive decoder (see
+ * {@link TER.TERInteractiveDecoder.ReadStream.TERExtractor}).
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@Name("TER.RegionExtracted")
+@Label("Region Extracted")
+@Category({"TER", "Interactive Decoder"})
+@Description("Extraction of the packets of a region")
+@StackTrace(false)
+public class RegionExtracted extends Event{
+
+	/**
+	 * First row of the region.
+	 */
+	@Label("Y Init")
+	public int yInit;
+
+	/**
+	 * Rows of the region.
+	 */
+	@Label("Y Length")
+	public int yLength;
+
+	/**
+	 * First column of the region.
+	 */
+	@Label("X Init")
+	public int xInit;
+
+	/**
+	 * Columns of the region.
+	 */
+	@Label("X Length")
+	public int xLength;
+
+	/**
+	 * Number of extracted components.
+	 */
+	@Label("Components")
+	public int components;
+
+	/**
+	 * Number of extracted layers.
+	 */
+	@Label("Layers")
+	public int layers;
+
+	/**
+	 * Number of packets of the extraction.
+	 */
+	@Label("Packets")
+	public int packets;
+
+	/**
+	 * Number of packets taken from the prefetcher instead of the file.
+	 */
+	@Label("Prefetched Packets")
+	public int prefetchedPackets;
+
+	/**
+	 * Bytes read from the file, including the packet headers and the gaps between packets read together.
+	 */
+	@Label("Bytes Read")
+	@DataAmount
+	public long bytesRead;
+}
@@ -0,0 +1,84 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERCommon.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * Java Flight Recorder event of the bit plane encoding of a segment (see
+ * {@link TER.TERcoder.SegmentCoder.SegmentCode2D#run}). As every event, it is only committed while a recording that
+ * enables it is running; otherwise its cost is negligible.
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@Name("TER.SegmentEncoded")
+@Label("Segment Encoded")
+@Category({"TER", "Coder"})
+@Description("Bit plane encoding of a segment")
+@StackTrace(false)
+public class SegmentEncoded extends Event{
+
+	/**
+	 * Component of the segment.
+	 */
+	@Label("Channel")
+	public int channel;
+
+	/**
+	 * Index of the segment in the component.
+	 */
+	@Label("Segment")
+	public int segment;
+
+	/**
+	 * Number of blocks of the segment.
+	 */
+	@Label("Blocks")
+	public int blocks;
+
+	/**
+	 * Number of AC bitplanes that have been coded.
+	 */
+	@Label("Bitplanes")
+	public int bitplanes;
+
+	/**
+	 * Bytes produced by the bit plane encoder for the segment, before interleaving.
+	 */
+	@Label("Bytes")
+	@DataAmount
+	public long bytes;
+}
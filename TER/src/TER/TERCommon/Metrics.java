@@ -0,0 +1,303 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERCommon;
+
+import GiciException.*;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * This class collects the metrics of a coding or decoding: for each stage its wall time, CPU time and allocated
+ * bytes, and some counters (bytes in and out, packets, bits of each bitplane...). Stages are identified by their
+ * name and may be nested or run several times, in which case they are accumulated. The metrics are taken from the
+ * management beans of the virtual machine, whose cost is some microseconds per stage, so they can be collected in
+ * production runs. They are dumped in JSON or CSV.<br>
+ * Usage example:<br>
+ * &nbsp; construct<br>
+ * &nbsp; start / stop (for each stage)<br>
+ * &nbsp; add (for each counter)<br>
+ * &nbsp; write<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class Metrics{
+
+	/**
+	 * Accumulated values of each stage, in order of first start. Index meaning [0] - times run, [1] - wall time in
+	 * nanoseconds, [2] - CPU time in nanoseconds, [3] - allocated bytes, [4] - CPU time of the process in nanoseconds.
+	 * <p>
+	 * CPU time and allocated bytes are the ones of the thread that runs the stage. The CPU time of the process also
+	 * includes the work of thread pools (i.e. the gaggles coded in parallel), but it is usually measured with a
+	 * precision of some milliseconds. Values are -1 if the virtual machine does not measure them.
+	 */
+	LinkedHashMap<String, long[]> stages = new LinkedHashMap<String, long[]>();
+
+	/**
+	 * Values taken when each running stage was started, with the same index meaning of {@link #stages}.
+	 * <p>
+	 * Only running stages.
+	 */
+	HashMap<String, long[]> started = new HashMap<String, long[]>();
+
+	/**
+	 * Counters, in order of first addition.
+	 * <p>
+	 * Any value allowed.
+	 */
+	LinkedHashMap<String, Long> counters = new LinkedHashMap<String, Long>();
+
+	/**
+	 * Bean that measures the CPU time of a thread.
+	 * <p>
+	 * Null if the virtual machine does not measure it.
+	 */
+	ThreadMXBean threadBean = null;
+
+	/**
+	 * Bean that measures the allocated bytes of a thread.
+	 * <p>
+	 * Null if the virtual machine does not measure them.
+	 */
+	com.sun.management.ThreadMXBean allocationBean = null;
+
+	/**
+	 * Bean that measures the CPU time of the process.
+	 * <p>
+	 * Null if the virtual machine does not measure it.
+	 */
+	com.sun.management.OperatingSystemMXBean cpuBean = null;
+
+	/**
+	 * Constructor.
+	 */
+	public Metrics(){
+		threadBean = ManagementFactory.getThreadMXBean();
+		if(threadBean instanceof com.sun.management.ThreadMXBean){
+			allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+			if(!allocationBean.isThreadAllocatedMemorySupported()){
+				allocationBean = null;
+			}else if(!allocationBean.isThreadAllocatedMemoryEnabled()){
+				allocationBean.setThreadAllocatedMemoryEnabled(true);
+			}
+		}
+		if(!threadBean.isCurrentThreadCpuTimeSupported()){
+			threadBean = null;
+		}else if(!threadBean.isThreadCpuTimeEnabled()){
+			threadBean.setThreadCpuTimeEnabled(true);
+		}
+		OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+		if(osBean instanceof com.sun.management.OperatingSystemMXBean){
+			cpuBean = (com.sun.management.OperatingSystemMXBean) osBean;
+		}
+	}
+
+	/**
+	 * Starts a stage.
+	 *
+	 * @param stage name of the stage
+	 */
+	public synchronized void start(String stage){
+		if(!stages.containsKey(stage)){
+			stages.put(stage, new long[5]);
+		}
+		started.put(stage, sample());
+	}
+
+	/**
+	 * Stops a stage and accumulates its values. Stages that have not been started are ignored.
+	 *
+	 * @param stage name of the stage
+	 */
+	public synchronized void stop(String stage){
+		long[] start = started.remove(stage);
+		if(start == null){
+			return;
+		}
+		long[] end = sample();
+		long[] values = stages.get(stage);
+		values[0]++;
+		for(int value = 1; value < values.length; value++){
+			values[value] = start[value] < 0 || values[value] < 0 ? -1: values[value] + end[value] - start[value];
+		}
+	}
+
+	/**
+	 * Adds a value to a counter, which is created with 0 if it does not exist.
+	 *
+	 * @param counter name of the counter
+	 * @param value value added
+	 */
+	public synchronized void add(String counter, long value){
+		Long previous = counters.get(counter);
+		counters.put(counter, previous == null ? value: previous + value);
+	}
+
+	/**
+	 * @param stage name of the stage
+	 * @return accumulated values of the stage with the index meaning of {@link #stages}, or null if it has never been started
+	 */
+	public synchronized long[] getStage(String stage){
+		long[] values = stages.get(stage);
+		return(values == null ? null: values.clone());
+	}
+
+	/**
+	 * @param counter name of the counter
+	 * @return value of the counter (0 if it does not exist)
+	 */
+	public synchronized long getCounter(String counter){
+		Long value = counters.get(counter);
+		return(value == null ? 0: value);
+	}
+
+	/**
+	 * Computes the peak heap of the virtual machine, as the sum of the peaks of its heap memory pools (which may have
+	 * not been reached at the same time).
+	 *
+	 * @return peak heap in bytes since the virtual machine was started
+	 */
+	public static long getPeakHeap(){
+		long peakHeap = 0;
+		for(MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()){
+			if(pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null){
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+		return(peakHeap);
+	}
+
+	/**
+	 * Writes the metrics to a file, in CSV when its name ends with ".csv" and in JSON otherwise.
+	 *
+	 * @param file name of the file
+	 *
+	 * @throws WarningException when the file cannot be written
+	 */
+	public void write(String file) throws WarningException{
+		PrintStream out = null;
+		try{
+			out = new PrintStream(new FileOutputStream(file));
+			if(file.endsWith(".csv")){
+				writeCSV(out);
+			}else{
+				writeJSON(out);
+			}
+		}catch(IOException e){
+			throw new WarningException("Metrics file \"" + file + "\" can not be written.");
+		}finally{
+			if(out != null){
+				out.close();
+			}
+		}
+	}
+
+	/**
+	 * Writes the metrics in JSON: an object with the peak heap, the stages (name, count, wallNanos, cpuNanos,
+	 * allocatedBytes, processCpuNanos) and the counters.
+	 *
+	 * @param out stream where the metrics are written
+	 */
+	public synchronized void writeJSON(PrintStream out){
+		out.println("{");
+		out.println("  \"peakHeapBytes\": " + getPeakHeap() + ",");
+		out.println("  \"stages\": [");
+		Iterator<Map.Entry<String, long[]>> stage = stages.entrySet().iterator();
+		while(stage.hasNext()){
+			Map.Entry<String, long[]> entry = stage.next();
+			long[] values = entry.getValue();
+			out.println("    {\"name\": \"" + escape(entry.getKey()) + "\", \"count\": " + values[0]
+					+ ", \"wallNanos\": " + values[1] + ", \"cpuNanos\": " + values[2]
+					+ ", \"allocatedBytes\": " + values[3] + ", \"processCpuNanos\": " + values[4] + "}"
+					+ (stage.hasNext() ? ",": ""));
+		}
+		out.println("  ],");
+		out.println("  \"counters\": {");
+		Iterator<Map.Entry<String, Long>> counter = counters.entrySet().iterator();
+		while(counter.hasNext()){
+			Map.Entry<String, Long> entry = counter.next();
+			out.println("    \"" + escape(entry.getKey()) + "\": " + entry.getValue() + (counter.hasNext() ? ",": ""));
+		}
+		out.println("  }");
+		out.println("}");
+	}
+
+	/**
+	 * Writes the metrics in CSV, one line for each stage and counter, and a last line with the peak heap.
+	 *
+	 * @param out stream where the metrics are written
+	 */
+	public synchronized void writeCSV(PrintStream out){
+		out.println("kind,name,count,wallNanos,cpuNanos,allocatedBytes,processCpuNanos,value");
+		for(Map.Entry<String, long[]> entry: stages.entrySet()){
+			long[] values = entry.getValue();
+			out.println("stage," + entry.getKey() + "," + values[0] + "," + values[1] + "," + values[2] + "," + values[3] + "," + values[4] + ",");
+		}
+		for(Map.Entry<String, Long> entry: counters.entrySet()){
+			out.println("counter," + entry.getKey() + ",,,,,," + entry.getValue());
+		}
+		out.println("counter,peakHeapBytes,,,,,," + getPeakHeap());
+	}
+
+	/**
+	 * Takes the current values that are accumulated for the stages.
+	 *
+	 * @return the values with the index meaning of {@link #stages} (position 0 is not used)
+	 */
+	private long[] sample(){
+		long[] values = new long[5];
+		values[1] = System.nanoTime();
+		values[2] = threadBean == null ? -1: threadBean.getCurrentThreadCpuTime();
+		values[3] = allocationBean == null ? -1: allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		values[4] = cpuBean == null ? -1: cpuBean.getProcessCpuTime();
+		return(values);
+	}
+
+	/**
+	 * Escapes a name to be written as a JSON string.
+	 *
+	 * @param name the name
+	 * @return the escaped name
+	 */
+	private static String escape(String name){
+		return(name.replace("\\", "\\\\").replace("\"", "\\\""));
+	}
+
+}
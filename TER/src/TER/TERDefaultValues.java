@@ -261,6 +261,31 @@ public class TERDefaultValues{
 	 
 	 public static boolean rangeRecoveredPixels = false;
 	 
+	 /**
+	  * Definition in {@link TER.TERcoder.SegmentCoder.SegmentCode2D#lowMemory}
+	  */
+	 public static boolean lowMemory = false;
+	 
+	 /**
+	  * Definition in {@link TER.TERcoder.SegmentCoder.SegmentCode2D#threads}
+	  */
+	 public static int threads = 0;
+	 
+	 /**
+	  * Definition in {@link TER.TERcoder.Coder#tileRows}, 0 when the image is not coded by tiles.
+	  */
+	 public static int test3dTileRows = 0;
+
+	 /**
+	  * Definition in {@link TER.TERbatcher.BatchCoder#jobs}
+	  */
+	 public static int batchJobs = 0;
+
+	 /**
+	  * Definition in {@link TER.TERbatcher.BatchCoder#pollInterval}
+	  */
+	 public static int batchPollInterval = 1000;
+	 
 	 /**
 	  * This function converts an array of integer that represents components (p.e. if array is 0,2 indicates component 0 and 2) to an array of booleans that indicates if a component is marked or not (p.e. 0,2,4 is true,false,true,false,true) .
 	  *
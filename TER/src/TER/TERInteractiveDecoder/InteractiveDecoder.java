@@ -28,8 +28,10 @@
 package TER.TERInteractiveDecoder;
 
 import java.io.EOFException;
+import java.io.IOException;
 
 import GiciException.ParameterException;
+import GiciFile.ImageBufferPool;
 import GiciImageExtension.ImageDeExtension;
 import GiciTransform.InverseWaveletTransform;
 import GiciTransform.LevelUnshift;
@@ -37,6 +39,7 @@ import GiciTransform.TransposeImage;
 import TER.TERDefaultValues;
 import TER.TERCommon.ParameterTools;
 import TER.TERInteractiveDecoder.ReadStream.DecodingOptions;
+import TER.TERInteractiveDecoder.ReadStream.PacketPrefetcher;
 import TER.TERInteractiveDecoder.ReadStream.RecommendedExtractor;
 import TER.TERInteractiveDecoder.ReadStream.TERExtractor;
 import TER.TERcoder.Weighting.ForwardWeighting;
@@ -182,6 +185,8 @@ public class InteractiveDecoder{
 
 	
 	long[][][][][] layerLocation = null;
+	int[][][][][] headerLengths = null;
+	int[][][][][] packetLengths = null;
 	DecodingOptions dOptions = null;
 	
 	long initialStreamPosition;
@@ -202,12 +207,51 @@ public class InteractiveDecoder{
 	int xLength;
 	int extractionType;
 	
+	/**
+	 * Samples of the extracted area that belong to the required window, as {yStart, yEnd, xStart, xEnd}.
+	 * <p>
+	 * Null when the whole extracted area is recovered.
+	 */
+	int[] regionExtraction = null;
+	
+	/**
+	 * Number of AC blocks of the last run that have been only parsed, since they are out of the required window.
+	 */
+	int skippedBlocks = 0;
+	
+	/**
+	 * Name of the file of the encoded stream.
+	 */
+	String inputFile;
+	
+	/**
+	 * Prefetcher that reads in background the packets that the next run will likely need.
+	 * <p>
+	 * Null when prefetching is disabled.
+	 */
+	PacketPrefetcher prefetcher = null;
+	
+	/**
+	 * Pool of the images of the runs that are no longer used, where the coefficients of the next runs are decoded.
+	 * <p>
+	 * It can be shared by several decoders (see {@link #setImageBufferPool}). Null decodes each run in new images.
+	 */
+	ImageBufferPool imageBuffers = new ImageBufferPool(2);
+	
+	/**
+	 * Array where the packets of the last spatial extraction were kept, reused by the next one.
+	 * <p>
+	 * Null before the first spatial extraction.
+	 */
+	byte[] packetBuffer = null;
+	
 	/**
 	 * Constructor of Interactive decoder
 	 * 
 	 * @param inputFile
 	 */
 	public InteractiveDecoder(String inputFile)  throws Exception{ 
+		this.inputFile = inputFile;
 		dOptions = new DecodingOptions(inputFile);
 		dOptions.setParameters();
 		dOptions.run();
@@ -256,6 +300,8 @@ public class InteractiveDecoder{
 				numLayers = dOptions.getTERHeader().getLayers();
 				
 				layerLocation = dOptions.getLayerLocation();
+				headerLengths = dOptions.getHeaderLengths();
+				packetLengths = dOptions.getPacketLengths();
 			}
 			
 		} else {
@@ -354,6 +400,8 @@ public class InteractiveDecoder{
 		}
 		
 		recoveredImage = null;
+		regionExtraction = null;
+		skippedBlocks = 0;
 		if (inputFileType == 0){
 			encodedStream.seek(0);
 			recommendedDecoding();
@@ -463,7 +511,9 @@ public class InteractiveDecoder{
 		
 		
 	
-		TERExtractor extractor = new TERExtractor(encodedStream, progressionOrder,layerLocation);
+		TERExtractor extractor = new TERExtractor(encodedStream, progressionOrder,layerLocation,headerLengths,packetLengths);
+		extractor.setPrefetcher(prefetcher);
+		extractor.setPacketBuffer(packetBuffer);
 		
 		extractor.setParameters(zSize, xSizes, numLayers, 
 				WTLevels, WTType, WTOrder,
@@ -476,8 +526,11 @@ public class InteractiveDecoder{
 				extractionType, channelList, yInit, yLength, xInit, xLength, 
 				numLayersExtraction, requiredLevels, targetBytes);
 		byte byteStream[][][][][] = extractor.run(); 
+		packetBuffer = extractor.getPacketBuffer();
+		//the packets of the next run are read while this one is decoded
+		extractor.prefetchNext();
 		
-		DecodeAvailable decode = new DecodeAvailable(byteStream);
+		DecodeAvailable decode = new DecodeAvailable(byteStream, extractor.getPacketOffsets(), extractor.getPacketLengths());
 		setExtractionParameters(extractor);
 		decode.setParameters(zSizeExtraction, ySizeExtraction,xSizeExtraction,
 				imageExtensionTypeExtraction, WTTypeExtraction, WTLevelsExtraction,resolutionLevels,
@@ -485,9 +538,62 @@ public class InteractiveDecoder{
 				blocksPerSegmentExtraction,gaggleSizeDCExtraction,gaggleSizeACExtraction, entropyACExtraction,
 				bitDepthDCExtraction, bitDepthACExtraction,
 				completionMode, gammaValue);
+		decode.setImageBufferPool(imageBuffers);
+		regionExtraction = extractor.getRegionExtraction();
+		int[] region = getTransformRegion();
+		if (region!=null){
+			decode.setRegion(region, WTOrderExtraction);
+		}
 		recoveredImage = decode.run();
+		skippedBlocks = decode.getSkippedBlocks();
 		
-		
+	}
+	
+	/**
+	 * Enables reading in background, after each spatial extraction, the packets of the same window with one more
+	 * layer and the packets of the adjacent segments, so that the next run finds them in memory if it needs them.
+	 * 
+	 * @param maxBytes maximum number of bytes kept in memory, 0 to disable the prefetching
+	 * 
+	 * @throws IOException when the file cannot be opened for the background reads
+	 */
+	public void setPrefetch(long maxBytes) throws IOException{
+		closePrefetch();
+		if (maxBytes>0 && inputFileType==1 && progressionOrder!=0){
+			prefetcher = new PacketPrefetcher(inputFile, maxBytes);
+		}
+	}
+	
+	/**
+	 * Sets the pool where the images are decoded, so that several decoders share the memory of the images that are
+	 * no longer used.
+	 * 
+	 * @param imageBuffers definition in {@link #imageBuffers}
+	 */
+	public void setImageBufferPool(ImageBufferPool imageBuffers){
+		this.imageBuffers = imageBuffers;
+	}
+	
+	/**
+	 * Returns an image given by {@link #run} once it is no longer used, so that the next runs decode in its memory
+	 * instead of allocating a new image. The image must not be used after releasing it.
+	 * 
+	 * @param image the image, index meaning [z][y][x]
+	 */
+	public void release(float[][][] image){
+		if (imageBuffers!=null){
+			imageBuffers.release(image);
+		}
+	}
+	
+	/**
+	 * Stops the prefetching and releases its memory and file.
+	 */
+	public void closePrefetch(){
+		if (prefetcher!=null){
+			prefetcher.close();
+			prefetcher = null;
+		}
 	}
 	
 	private void setExtractionParameters(TERExtractor extractor) throws ParameterException{
@@ -539,8 +645,6 @@ public class InteractiveDecoder{
 			iwg.setParameters(customWtFlagExtraction,WTTypeExtraction,WTLevelsExtraction,customWeightExtraction);
 			recoveredImage = iwg.run();
 			iwg = null;
-			System.gc();
-			
 		}
 		
 		//we check if all the DWT levels are performed, if not, a quantization stage must be applied
@@ -560,10 +664,59 @@ public class InteractiveDecoder{
 		//Inverse Wavelet transform
 		InverseWaveletTransform iwt = new InverseWaveletTransform(recoveredImage);
 		iwt.setParameters(WTTypeExtraction,WTLevelsExtraction,WTOrderExtraction);
+		int[] region = getTransformRegion();
+		if (region!=null){
+			iwt.setRegion(region[0],region[1],region[2],region[3]);
+		}
+		float coefficients[][][] = recoveredImage;
 		recoveredImage = iwt.run();
 		iwt = null;
-		
-		System.gc();
+		if (region!=null){
+			if (imageBuffers!=null){
+				imageBuffers.release(coefficients);
+			}
+			//the recovered image is now the window, which does not contain padding rows nor columns
+			ySizeExtraction = region[1] - region[0];
+			xSizeExtraction = region[3] - region[2];
+			xSizesExtraction = new int[zSizeExtraction];
+			imageWidthExtraction = new int[zSizeExtraction];
+			padRowsExtraction = new int[zSizeExtraction];
+			for(int z=0;z<zSizeExtraction;z++){
+				xSizesExtraction[z] = xSizeExtraction;
+				imageWidthExtraction[z] = xSizeExtraction;
+			}
+			if (imageGeometryExtraction!=null){
+				imageGeometryExtraction[1] = ySizeExtraction;
+				imageGeometryExtraction[2] = xSizeExtraction;
+			}
+		}
+	}
+	
+	/**
+	 * Finds the part of the extracted area that the inverse DWT has to recover, i.e., the required window without
+	 * the padding rows removed later by the de-extension.
+	 *
+	 * @return the region as {yStart, yEnd, xStart, xEnd}, or null when the whole extracted area must be recovered
+	 */
+	private int[] getTransformRegion(){
+		if (regionExtraction==null || padRowsExtraction==null || TransposeImage.needTranspose(transposeImgExtraction)){
+			return null;
+		}
+		int maxPadRows = 0;
+		for(int z=0;z<zSizeExtraction;z++){
+			if (imageWidthExtraction[z]!=xSizesExtraction[z]){
+				return null;
+			}
+			maxPadRows = Math.max(maxPadRows, padRowsExtraction[z]);
+		}
+		int yEnd = Math.min(regionExtraction[1], ySizeExtraction - maxPadRows);
+		if (regionExtraction[0]>=yEnd){
+			return null;
+		}
+		if (regionExtraction[0]==0 && yEnd==ySizeExtraction && regionExtraction[2]==0 && regionExtraction[3]==xSizeExtraction){
+			return null;
+		}
+		return new int[]{regionExtraction[0], yEnd, regionExtraction[2], regionExtraction[3]};
 	}
 	
 	private void postProcessing() throws Exception{
@@ -585,7 +738,11 @@ public class InteractiveDecoder{
 		if (needDeExtension){
 			ImageDeExtension ide = new ImageDeExtension(recoveredImage);
 			ide.setParameters(imageWidthExtraction,this.padRowsExtraction);
+			float extendedImage[][][] = recoveredImage;
 			recoveredImage = ide.run();
+			if (imageBuffers!=null){
+				imageBuffers.release(extendedImage);
+			}
 			//Free unused memory
 			ide = null;
 		}
@@ -668,4 +825,19 @@ public class InteractiveDecoder{
 	public long getStreamLength(){
 		return encodedStream.getTotalBytes();
 	}
+	
+	/**
+	 * @return definition in {@link #skippedBlocks}
+	 */
+	public int getSkippedBlocks(){
+		return skippedBlocks;
+	}
+	
+	/**
+	 * @return the fraction of the packets read by the runs that had been prefetched (see {@link #setPrefetch}), 0
+	 * when prefetching is disabled
+	 */
+	public double getPrefetchHitRate(){
+		return prefetcher==null ? 0 : prefetcher.getHitRate();
+	}
 }
\ No newline at end of file
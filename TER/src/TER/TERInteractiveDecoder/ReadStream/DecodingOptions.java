@@ -45,6 +45,8 @@ public class DecodingOptions{
 	boolean layerScalable;
 	
 	long layerLocation[][][][][] = null;
+	int headerLengths[][][][][] = null;
+	int packetLengths[][][][][] = null;
 	long initialStreamPosition;
 	
 	ReadTERHeader TERheader = null;
@@ -105,6 +107,8 @@ public class DecodingOptions{
 				ti.setParameters(TERheader.getZSize(),TERheader.getProgressionOrder(),TERheader.getLayers(),TERheader.getWTLevels(),
 						TERheader.getBlocksPerSegment(),TERheader.getGaggleSizeDC(),TERheader.getGaggleSizeAC());
 				layerLocation = ti.run();
+				headerLengths = ti.getHeaderLengths();
+				packetLengths = ti.getPacketLengths();
 			}
 			
 		}
@@ -134,6 +138,14 @@ public class DecodingOptions{
 		return layerLocation;
 	}
 	
+	public int[][][][][] getHeaderLengths(){
+		return headerLengths;
+	}
+	
+	public int[][][][][] getPacketLengths(){
+		return packetLengths;
+	}
+	
 	public long getInitialStreamPosition(){
 		return initialStreamPosition;
 	}
@@ -0,0 +1,269 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERInteractiveDecoder.ReadStream;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import TER.TERdecoder.ReadFile.ReadBufferedStream;
+
+/**
+ * This class plans the reading of the packets selected by an extraction. The packets are collected in extraction order
+ * with their location in the file, they are sorted by location and the packets that are close in the file are read
+ * together, so that the file is read with a few large sequential reads instead of one seek for each packet.<br>
+ * Usage example:<br>
+ * &nbsp; construct<br>
+ * &nbsp; addPacket (for each selected packet, in extraction order)<br>
+ * &nbsp; run<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class ExtractionPlanner{
+
+	/**
+	 * Maximum number of bytes between two packets that are read together, since reading them is cheaper than a seek.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	static final int MERGE_GAP = 4096;
+
+	/**
+	 * Maximum number of bytes read at once, unless a single packet is larger.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	static final int MAX_READ = 1 << 20;
+
+	/**
+	 * Number of packets added to the plan.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	int numPackets = 0;
+
+	/**
+	 * Location of the header of each packet in the file.
+	 * <p>
+	 * Only the first numPackets positions are used.
+	 */
+	long location[] = new long[64];
+
+	/**
+	 * Length of the header of each packet, in bytes.
+	 * <p>
+	 * Only the first numPackets positions are used.
+	 */
+	int headerLength[] = new int[64];
+
+	/**
+	 * Length of the data of each packet, in bytes.
+	 * <p>
+	 * Only the first numPackets positions are used.
+	 */
+	int packetLength[] = new int[64];
+
+	/**
+	 * Position where the data of each packet is copied, index meaning [packet][component, segment, resolution level,
+	 * gaggle, offset].
+	 * <p>
+	 * Only the first numPackets positions are used.
+	 */
+	int destination[][] = new int[64][];
+
+	/**
+	 * Prefetcher where the packets are looked for before reading them from the file.
+	 * <p>
+	 * Null when packets are always read from the file.
+	 */
+	PacketPrefetcher prefetcher = null;
+
+	/**
+	 * Number of packets taken from {@link #prefetcher} by the last run.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	int prefetchedPackets = 0;
+
+	/**
+	 * Number of bytes read from the file by the last run, including packet headers and the gaps between packets read
+	 * together.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	long bytesRead = 0;
+
+	/**
+	 * Sets a prefetcher, so that the packets that it has read in background are not read again.
+	 *
+	 * @param prefetcher definition in {@link #prefetcher}
+	 */
+	public void setPrefetcher(PacketPrefetcher prefetcher){
+		this.prefetcher = prefetcher;
+	}
+
+	/**
+	 * Adds a packet to the plan. Packets must be added in extraction order.
+	 *
+	 * @param location location of the packet header in the file
+	 * @param headerLength length of the packet header, in bytes
+	 * @param packetLength length of the packet data, in bytes
+	 * @param z component where the data is copied
+	 * @param segment segment where the data is copied
+	 * @param rLevel resolution level where the data is copied
+	 * @param gaggle gaggle where the data is copied
+	 * @param offset position of the gaggle bytes where the data is copied
+	 */
+	public void addPacket(long location, int headerLength, int packetLength, int z, int segment, int rLevel, int gaggle, int offset){
+		if(numPackets == this.location.length){
+			int newLength = 2 * numPackets;
+			this.location = Arrays.copyOf(this.location, newLength);
+			this.headerLength = Arrays.copyOf(this.headerLength, newLength);
+			this.packetLength = Arrays.copyOf(this.packetLength, newLength);
+			destination = Arrays.copyOf(destination, newLength);
+		}
+		this.location[numPackets] = location;
+		this.headerLength[numPackets] = headerLength;
+		this.packetLength[numPackets] = packetLength;
+		destination[numPackets] = new int[]{z, segment, rLevel, gaggle, offset};
+		numPackets++;
+	}
+
+	/**
+	 * Reads the data of the packets of the plan. When the file is truncated, the packet that is cut keeps the bytes
+	 * available and the packets that come after it in extraction order are not read, as done when the packets are
+	 * read one after the other.
+	 *
+	 * @param encodedStream the file, which is left at an undefined position
+	 * @param packet where the data is copied, index meaning [z][segment][rLevel][gaggle][byte]
+	 * @param packetOffset position of the data of each gaggle in its array of packet, index meaning
+	 * [z][segment][rLevel][gaggle], or null when each gaggle has its own array
+	 *
+	 * @throws IOException when the file cannot be read
+	 */
+	public void run(ReadBufferedStream encodedStream, byte[][][][][] packet, int[][][][] packetOffset) throws IOException{
+		long fileLength = encodedStream.getTotalBytes();
+		prefetchedPackets = 0;
+		bytesRead = 0;
+
+		//Packets cut by the end of the file
+		int availablePackets = 0;
+		while(availablePackets < numPackets
+				&& location[availablePackets] + headerLength[availablePackets] + packetLength[availablePackets] <= fileLength){
+			availablePackets++;
+		}
+		if(availablePackets < numPackets && location[availablePackets] + headerLength[availablePackets] < fileLength){
+			availablePackets++;
+		}
+
+		//Packets that are not in the prefetcher
+		int pendingPackets = 0;
+		Integer order[] = new Integer[availablePackets];
+		for(int index = 0; index < availablePackets; index++){
+			if(prefetcher != null){
+				int availableLength = (int) (Math.min(fileLength, location[index] + headerLength[index] + packetLength[index]) - location[index]);
+				byte prefetched[] = prefetcher.getPacket(location[index], availableLength);
+				if(prefetched != null){
+					int[] target = destination[index];
+					int gaggleOffset = packetOffset == null ? 0 : packetOffset[target[0]][target[1]][target[2]][target[3]];
+					System.arraycopy(prefetched, headerLength[index], packet[target[0]][target[1]][target[2]][target[3]],
+							gaggleOffset + target[4], availableLength - headerLength[index]);
+					prefetchedPackets++;
+					continue;
+				}
+			}
+			order[pendingPackets++] = index;
+		}
+		availablePackets = pendingPackets;
+		Arrays.sort(order, 0, availablePackets, new Comparator<Integer>(){
+			public int compare(Integer a, Integer b){
+				long difference = location[a] - location[b];
+				return(difference < 0 ? -1 : (difference > 0 ? 1 : 0));
+			}
+		});
+
+		byte buffer[] = new byte[0];
+		int first = 0;
+		while(first < availablePackets){
+			//Packets read together
+			long readStart = location[order[first]];
+			long readEnd = Math.min(fileLength, readStart + headerLength[order[first]] + packetLength[order[first]]);
+			int last = first + 1;
+			while(last < availablePackets){
+				long nextStart = location[order[last]];
+				long nextEnd = Math.min(fileLength, nextStart + headerLength[order[last]] + packetLength[order[last]]);
+				if(nextStart - readEnd > MERGE_GAP || nextEnd - readStart > MAX_READ){
+					break;
+				}
+				readEnd = Math.max(readEnd, nextEnd);
+				last++;
+			}
+
+			int readLength = (int) (readEnd - readStart);
+			if(buffer.length < readLength){
+				buffer = new byte[readLength];
+			}
+			encodedStream.seek(readStart);
+			encodedStream.readFully(buffer, 0, readLength);
+			bytesRead += readLength;
+
+			for(int index = first; index < last; index++){
+				int p = order[index];
+				int dataStart = (int) (location[p] - readStart) + headerLength[p];
+				int dataLength = Math.min(packetLength[p], readLength - dataStart);
+				int[] target = destination[p];
+				int gaggleOffset = packetOffset == null ? 0 : packetOffset[target[0]][target[1]][target[2]][target[3]];
+				System.arraycopy(buffer, dataStart, packet[target[0]][target[1]][target[2]][target[3]], gaggleOffset + target[4], dataLength);
+			}
+			first = last;
+		}
+	}
+
+	/**
+	 * @return the number of packets added to the plan
+	 */
+	public int getNumPackets(){
+		return(numPackets);
+	}
+
+	/**
+	 * @return definition in {@link #prefetchedPackets}
+	 */
+	public int getPrefetchedPackets(){
+		return(prefetchedPackets);
+	}
+
+	/**
+	 * @return definition in {@link #bytesRead}
+	 */
+	public long getBytesRead(){
+		return(bytesRead);
+	}
+
+}
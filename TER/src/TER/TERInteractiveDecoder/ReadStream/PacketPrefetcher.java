@@ -0,0 +1,250 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERInteractiveDecoder.ReadStream;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class reads in background the packets that the next extraction of an interactive session will likely need, so
+ * that they are taken from memory instead of the file. The packets are read with their own file handle by a single
+ * background thread, and they are kept until the next prediction replaces them or the memory limit is reached.<br>
+ * Usage example:<br>
+ * &nbsp; construct<br>
+ * &nbsp; prefetch (after each extraction, with the packets predicted for the next one)<br>
+ * &nbsp; getPacket (for each packet read by the next extraction)<br>
+ * &nbsp; close<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class PacketPrefetcher{
+
+	/**
+	 * File where the packets are read, only used by the background thread.
+	 * <p>
+	 * Open until close is called.
+	 */
+	RandomAccessFile file;
+
+	/**
+	 * Length of the file, in bytes.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	long fileLength;
+
+	/**
+	 * Single thread where the packets are read.
+	 * <p>
+	 * Daemon thread, so that it does not keep the application alive.
+	 */
+	ExecutorService prefetchThread;
+
+	/**
+	 * Maximum number of bytes kept in memory.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	long maxBytes;
+
+	/**
+	 * Packets read for the current prediction, the key is the location of the packet header in the file and the value
+	 * is the header followed by the data of the packet.
+	 * <p>
+	 * Access synchronized on this object.
+	 */
+	HashMap<Long, byte[]> packets = new HashMap<Long, byte[]>();
+
+	/**
+	 * Number of bytes of the packets kept in memory.
+	 * <p>
+	 * Only positive values allowed, not greater than maxBytes.
+	 */
+	long packetsBytes = 0;
+
+	/**
+	 * Number of the current prediction. A new prediction cancels the reading of the previous one, which stops
+	 * before its next packet.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	volatile int prediction = 0;
+
+	/**
+	 * Number of packets asked with getPacket.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	long requests = 0;
+
+	/**
+	 * Number of packets asked with getPacket that were in memory.
+	 * <p>
+	 * Only positive values allowed, not greater than requests.
+	 */
+	long hits = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param inputFile file of the encoded stream, opened again for the background reads
+	 * @param maxBytes maximum number of bytes kept in memory
+	 *
+	 * @throws IOException when the file cannot be opened
+	 */
+	public PacketPrefetcher(String inputFile, long maxBytes) throws IOException{
+		file = new RandomAccessFile(inputFile, "r");
+		fileLength = file.length();
+		this.maxBytes = maxBytes;
+		prefetchThread = Executors.newSingleThreadExecutor(new ThreadFactory(){
+			public Thread newThread(Runnable runnable){
+				Thread thread = new Thread(runnable, "TER packet prefetch");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Starts reading the packets of a new prediction, in the given order, and releases the packets of the previous
+	 * one. The reading stops when the memory limit is reached or a new prediction is made.
+	 *
+	 * @param location location of the header of each packet in the file
+	 * @param length length of the header and the data of each packet, in bytes
+	 * @param numPackets number of packets of the prediction
+	 */
+	public void prefetch(final long location[], final int length[], final int numPackets){
+		final int current;
+		synchronized(this){
+			current = ++prediction;
+			packets.clear();
+			packetsBytes = 0;
+		}
+		Runnable read = new Runnable(){
+			public void run(){
+				for(int index = 0; index < numPackets && prediction == current; index++){
+					int readLength = (int) Math.min(length[index], fileLength - location[index]);
+					if(readLength <= 0){
+						continue;
+					}
+					synchronized(PacketPrefetcher.this){
+						if(packets.containsKey(location[index])){
+							continue;
+						}
+						if(packetsBytes + readLength > maxBytes){
+							return;
+						}
+					}
+					byte data[] = new byte[readLength];
+					try{
+						file.seek(location[index]);
+						file.readFully(data);
+					}catch(IOException e){
+						//the prediction is only an optimization, the packets are read again when they are needed
+						return;
+					}
+					synchronized(PacketPrefetcher.this){
+						if(prediction != current){
+							return;
+						}
+						packets.put(location[index], data);
+						packetsBytes += readLength;
+					}
+				}
+			}
+		};
+		try{
+			prefetchThread.execute(read);
+		}catch(RejectedExecutionException e){
+			//the prefetcher is being closed, the prediction is only a hint and it is dropped
+		}
+	}
+
+	/**
+	 * Gives a packet if it has been read in background.
+	 *
+	 * @param location location of the packet header in the file
+	 * @param length number of bytes needed from the location
+	 * @return the header followed by the data of the packet (it must not be modified), or null when the packet is not
+	 * in memory
+	 */
+	public synchronized byte[] getPacket(long location, int length){
+		requests++;
+		byte data[] = packets.get(location);
+		if(data == null || data.length < length){
+			return(null);
+		}
+		hits++;
+		return(data);
+	}
+
+	/**
+	 * Stops the background thread and closes the file.
+	 */
+	public void close(){
+		synchronized(this){
+			prediction++;
+			packets.clear();
+			packetsBytes = 0;
+		}
+		prefetchThread.shutdownNow();
+		try{
+			file.close();
+		}catch(IOException e){
+			//nothing more can be done
+		}
+	}
+
+	/**
+	 * @return the number of packets asked with getPacket
+	 */
+	public synchronized long getRequests(){
+		return(requests);
+	}
+
+	/**
+	 * @return the number of packets asked with getPacket that were in memory
+	 */
+	public synchronized long getHits(){
+		return(hits);
+	}
+
+	/**
+	 * @return the fraction of the packets asked with getPacket that were in memory, 0 when none has been asked
+	 */
+	public synchronized double getHitRate(){
+		return(requests == 0 ? 0 : (double) hits / requests);
+	}
+
+}
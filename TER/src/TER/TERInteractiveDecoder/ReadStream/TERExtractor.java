@@ -27,14 +27,15 @@
  */
 package TER.TERInteractiveDecoder.ReadStream;
 
-import java.io.EOFException;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 import GiciException.ParameterException;
 import TER.TERCommon.GaggleUtilities;
 import TER.TERCommon.GetMax;
 import TER.TERCommon.GetMin;
-import TER.TERCommon.ReadPacketHeader;
 import TER.TERCommon.SearchTools;
+import TER.TERCommon.Events.RegionExtracted;
 import TER.TERdecoder.ReadFile.ReadBufferedStream;
 import TER.TERdecoder.ReadFile.ReadFile;
 
@@ -46,8 +47,20 @@ public class TERExtractor{
 	
 	int progressionOrder;
 	long[][][][][] layerLocation = null;
+	int[][][][][] headerLengths = null;
+	int[][][][][] packetLengths = null;
 	
 	byte[][][][][] packet = null;
+	int[][][][] packetOffset = null;
+	int[][][][] packetLength = null;
+	
+	/**
+	 * Array where the data of all the packets of a spatial extraction is kept, each gaggle at its packetOffset. It
+	 * can be given by the previous extraction, so that its memory is reused.
+	 * <p>
+	 * Null until a spatial extraction is run, when no array is given.
+	 */
+	byte[] packetBuffer = null;
 	
 	int requiredTargetBytes;
 	int zSize;
@@ -124,10 +137,27 @@ public class TERExtractor{
 
 	int numLayerExtraction;
 	
-	public TERExtractor(ReadBufferedStream encodedStream, int progressionOrder, long[][][][][] layerLocation){
+	/**
+	 * Position in the original image of the first sample of the extracted area, index meaning [y, x].
+	 * <p>
+	 * Set by the spatial extraction (extractionType 1).
+	 */
+	int[] originExtraction = null;
+	
+	/**
+	 * Prefetcher that keeps the packets read in background (see {@link PacketPrefetcher}).
+	 * <p>
+	 * Null when the packets are only read from the encoded stream.
+	 */
+	PacketPrefetcher prefetcher = null;
+	
+	public TERExtractor(ReadBufferedStream encodedStream, int progressionOrder, long[][][][][] layerLocation,
+			int[][][][][] headerLengths, int[][][][][] packetLengths){
 		this.encodedStream = encodedStream;
 		this.progressionOrder = progressionOrder;
 		this.layerLocation = layerLocation;
+		this.headerLengths = headerLengths;
+		this.packetLengths = packetLengths;
 	}
 	
 	
@@ -374,6 +404,7 @@ public class TERExtractor{
 		int x1Extraction = pixelPosition%xSizes[channelList[0]] + blockSide;
 		int y1Extraction = (pixelPosition/xSizes[channelList[0]])*blockSide + blockSide;
 		int resolutionReduction = 1 << (WTLevels[channelList[0]]-WTLevelsExtraction[0]);
+		originExtraction = new int[]{y0Extraction, x0Extraction};
 		xSizeExtraction = (x1Extraction - x0Extraction)/resolutionReduction;
 		ySizeExtraction = (y1Extraction - y0Extraction)/resolutionReduction;
 		
@@ -419,6 +450,8 @@ public class TERExtractor{
 		}
 		
 		
+		packetOffset = null;
+		packetLength = null;
 		if (extractionType==0){
 			targetByteExtract();
 		} else if (extractionType==1){
@@ -437,108 +470,158 @@ public class TERExtractor{
 		ReadFile rf = new ReadFile(new ReadBufferedStream(byteArray));
 		rf.setParameters(zSize, progressionOrder, numLayers, 
 				WTLevels, blocksPerSegment, gaggleSizeDC, gaggleSizeAC);
+		//the packets are given as slices of byteArray instead of being copied again
+		rf.setPacketSlices(byteArray);
 		rf.run();
 		
 		packet = rf.getPackets();
+		packetOffset = rf.getPacketOffsets();
+		packetLength = rf.getPacketLengths();
 	}
 	
 	private void extractSelection() throws Exception{
+		RegionExtracted event = new RegionExtracted();
+		event.begin();
 		
 		int gaggleSize[][][][] = initGaggleSize();
 		
-		ReadPacketHeader packetHeader = new ReadPacketHeader();
-		packetHeader.setParameters(encodedStream);
+		//the packets are located with the index, and then they are read sorted by their location in the file
+		ExtractionPlanner planner = new ExtractionPlanner();
+		planner.setPrefetcher(prefetcher);
 		
 		int targetBytes = requiredTargetBytes;
 		int maxWTLevels = GetMax.resolutionLevels(WTLevelsExtraction);
 		
-		try{
-			
-			for(int layer=0;layer<numLayerExtraction;layer++){
-				for(int rLevel=0;rLevel<maxWTLevels+1 && targetBytes>0;rLevel++){
-					for(int z=0;z<zSizeExtraction && targetBytes>0;z++){
-						for(int segment=0;segment<blocksPerSegment[channelList[z]].length && targetBytes>0;segment++){
-							int sCount=0;
-							if (segmentExtraction[z][segment] && rLevel<WTLevelsExtraction[z]+1){
-								int gaggleNum = 0;
-								int gCount = 0;
-								if (rLevel==0){
-									gaggleNum = GaggleUtilities.getGagglesPerSegment(z,segment,gaggleSizeDC[z][segment],blocksPerSegment);
-								} else {
-									gaggleNum = GaggleUtilities.getGagglesPerSegment(z,segment,gaggleSizeAC[z][segment],blocksPerSegment);
-								}
-								for(int gaggle = 0;gaggle<gaggleNum && targetBytes>0;gaggle++){	
-									if (gaggleExtraction[z][segment][gaggle]){
-										encodedStream.seek(layerLocation[channelList[z]][segment][rLevel][gaggle][layer]);
-										int packetLength = packetHeader.readPacketHeader();
-										gaggleSize[z][sCount][rLevel][gCount] += packetLength;
-										targetBytes -= packetLength;
-										gCount++;
+		planning:
+		for(int layer=0;layer<numLayerExtraction;layer++){
+			for(int rLevel=0;rLevel<maxWTLevels+1 && targetBytes>0;rLevel++){
+				for(int z=0;z<zSizeExtraction && targetBytes>0;z++){
+					for(int segment=0;segment<blocksPerSegment[channelList[z]].length && targetBytes>0;segment++){
+						int sCount=0;
+						if (segmentExtraction[z][segment] && rLevel<WTLevelsExtraction[z]+1){
+							int gaggleNum = 0;
+							int gCount = 0;
+							if (rLevel==0){
+								gaggleNum = GaggleUtilities.getGagglesPerSegment(z,segment,gaggleSizeDC[z][segment],blocksPerSegment);
+							} else {
+								gaggleNum = GaggleUtilities.getGagglesPerSegment(z,segment,gaggleSizeAC[z][segment],blocksPerSegment);
+							}
+							for(int gaggle = 0;gaggle<gaggleNum && targetBytes>0;gaggle++){	
+								if (gaggleExtraction[z][segment][gaggle]){
+									int headerLength = headerLengths[channelList[z]][segment][rLevel][gaggle][layer];
+									if (headerLength==0){
+										//the file ends before this packet
+										break planning;
 									}
+									int packetLength = packetLengths[channelList[z]][segment][rLevel][gaggle][layer];
+									planner.addPacket(layerLocation[channelList[z]][segment][rLevel][gaggle][layer], headerLength, packetLength,
+											z, sCount, rLevel, gCount, gaggleSize[z][sCount][rLevel][gCount]);
+									gaggleSize[z][sCount][rLevel][gCount] += packetLength;
+									targetBytes -= packetLength;
+									gCount++;
 								}
-								sCount++;
 							}
+							sCount++;
 						}
 					}
 				}
 			}
-		} catch (EOFException e){
-			
-		} 
+		}
 		
-		targetBytes = requiredTargetBytes;
 		initPackets(gaggleSize);
-		gaggleSize = resetGaggleSize(gaggleSize);
-		try{		
-			for(int layer=0;layer<numLayerExtraction;layer++){
-				for(int rLevel=0;rLevel<maxWTLevels+1 && targetBytes>0;rLevel++){
-					for(int z=0;z<zSizeExtraction && targetBytes>0;z++){
-						for(int segment=0;segment<blocksPerSegment[channelList[z]].length && targetBytes>0;segment++){
-							int sCount=0;
-							if (segmentExtraction[z][segment] && rLevel<WTLevelsExtraction[z]+1){
-								int gaggleNum = 0;
-								int gCount = 0;
-								if (rLevel==0){
-									gaggleNum = GaggleUtilities.getGagglesPerSegment(z,segment,gaggleSizeDC[z][segment],blocksPerSegment);
-								} else {
-									gaggleNum = GaggleUtilities.getGagglesPerSegment(z,segment,gaggleSizeAC[z][segment],blocksPerSegment);
-								}
-								for(int gaggle = 0;gaggle<gaggleNum && targetBytes>0;gaggle++){	
-									if (gaggleExtraction[z][segment][gaggle]){
-										encodedStream.seek(layerLocation[channelList[z]][segment][rLevel][gaggle][layer]);
-										int packetLength = packetHeader.readPacketHeader();
-										encodedStream.readFully(packet[z][sCount][rLevel][gCount],gaggleSize[z][sCount][rLevel][gCount],packetLength);
-										gaggleSize[z][sCount][rLevel][gCount] += packetLength;
-										targetBytes -= packetLength;
-										gCount++;
-									}
-								}
-								sCount++;
-							}
-						}
+		planner.run(encodedStream, packet, packetOffset);
+		
+		if (event.shouldCommit()){
+			event.yInit = yInit;
+			event.yLength = yLength;
+			event.xInit = xInit;
+			event.xLength = xLength;
+			event.components = zSizeExtraction;
+			event.layers = numLayerExtraction;
+			event.packets = planner.getNumPackets();
+			event.prefetchedPackets = planner.getPrefetchedPackets();
+			event.bytesRead = planner.getBytesRead();
+			event.commit();
+		}
+	}
+
+	/**
+	 * Sets a prefetcher, so that the packets that it has already read are not read again from the encoded stream.
+	 * 
+	 * @param prefetcher definition in {@link #prefetcher}
+	 */
+	public void setPrefetcher(PacketPrefetcher prefetcher){
+		this.prefetcher = prefetcher;
+	}
+	
+	/**
+	 * Starts reading in background the packets that the next spatial extraction will likely need: first the next
+	 * layer of the selected gaggles, and then the layers extracted of the segments next to the selected ones. Must
+	 * be called after the parameters are set.
+	 */
+	public void prefetchNext(){
+		if (prefetcher==null || extractionType!=1){
+			return;
+		}
+		ArrayList<Long> locations = new ArrayList<Long>();
+		ArrayList<Integer> lengths = new ArrayList<Integer>();
+		
+		//the same region with one more layer
+		if (numLayerExtraction<numLayers){
+			for(int z=0;z<zSizeExtraction;z++){
+				for(int segment=0;segment<blocksPerSegment[channelList[z]].length;segment++){
+					if (segmentExtraction[z][segment]){
+						addPrefetchPackets(locations, lengths, z, segment, gaggleExtraction[z][segment], numLayerExtraction, numLayerExtraction+1);
 					}
 				}
 			}
-		} catch (EOFException e){
-			
 		}
-	}
-	
-	private int[][][][]  resetGaggleSize(int[][][][] gaggleSize){
-		
+		//the adjacent segments
+		for(int z=0;z<zSizeExtraction;z++){
+			int segments = blocksPerSegment[channelList[z]].length;
+			for(int segment=0;segment<segments;segment++){
+				if (!segmentExtraction[z][segment] && ((segment>0 && segmentExtraction[z][segment-1])
+						|| (segment<segments-1 && segmentExtraction[z][segment+1]))){
+					addPrefetchPackets(locations, lengths, z, segment, null, 0, numLayerExtraction);
+				}
+			}
+		}
 		
-		for(int z=0;z<zSizeExtraction;z++){	
-			for(int segment=0;segment<blocksPerSegmentExtraction[z].length;segment++){			
-				for(int rLevel=0;rLevel<WTLevelsExtraction[z]+1;rLevel++){
-					for(int gaggle=0;gaggle<gaggleSize[z][segment][rLevel].length;gaggle++){
-						gaggleSize[z][segment][rLevel][gaggle] = 0;
-					}				
+		long location[] = new long[locations.size()];
+		int length[] = new int[lengths.size()];
+		for(int index=0;index<location.length;index++){
+			location[index] = locations.get(index);
+			length[index] = lengths.get(index);
+		}
+		prefetcher.prefetch(location, length, location.length);
+	}
+	
+	/**
+	 * Adds the packets of some layers of a segment to a prefetch, only those that are available in the index.
+	 * 
+	 * @param locations location of the header of each packet
+	 * @param lengths length of the header and the data of each packet
+	 * @param z the component in the extraction
+	 * @param segment the segment
+	 * @param gaggles the gaggles whose packets are added, null for all of them
+	 * @param firstLayer first layer added
+	 * @param lastLayer layer after the last one added
+	 */
+	private void addPrefetchPackets(ArrayList<Long> locations, ArrayList<Integer> lengths,
+			int z, int segment, boolean gaggles[], int firstLayer, int lastLayer){
+		int channel = channelList[z];
+		for(int layer=firstLayer;layer<lastLayer;layer++){
+			for(int rLevel=0;rLevel<WTLevelsExtraction[z]+1 && rLevel<layerLocation[channel][segment].length;rLevel++){
+				for(int gaggle=0;gaggle<layerLocation[channel][segment][rLevel].length;gaggle++){
+					if ((gaggles==null || (gaggle<gaggles.length && gaggles[gaggle])) && headerLengths[channel][segment][rLevel][gaggle][layer]!=0){
+						locations.add(layerLocation[channel][segment][rLevel][gaggle][layer]);
+						lengths.add(headerLengths[channel][segment][rLevel][gaggle][layer] + packetLengths[channel][segment][rLevel][gaggle][layer]);
+					}
 				}
 			}
 		}
-		return gaggleSize;
 	}
-
+	
 	private int[][][][]  initGaggleSize(){
 		
 		int gaggleSize[][][][] = new int[zSize][][][];
@@ -564,15 +647,44 @@ public class TERExtractor{
 		return gaggleSize;
 	}
 	
+	/**
+	 * Places the data of each gaggle in packetBuffer, one gaggle after the other, and clears the space used.
+	 * 
+	 * @param gaggleSize number of bytes of each gaggle, index meaning [z][segment][rLevel][gaggle]
+	 */
 	private void initPackets(int gaggleSize[][][][]){
 		packet = new byte[zSize][][][][];
+		packetOffset = new int[zSize][][][];
+		packetLength = new int[zSize][][][];
+		
+		int bufferLength = 0;
+		for(int z=0;z<zSizeExtraction;z++){
+			for(int segment=0;segment<gaggleSize[z].length;segment++){
+				for(int rLevel=0;rLevel<gaggleSize[z][segment].length;rLevel++){
+					for(int gaggle=0;gaggle<gaggleSize[z][segment][rLevel].length;gaggle++){
+						bufferLength += gaggleSize[z][segment][rLevel][gaggle];
+					}
+				}
+			}
+		}
+		if (packetBuffer==null || packetBuffer.length<bufferLength){
+			packetBuffer = new byte[bufferLength];
+		} else {
+			//the bytes of the packets cut by the end of the file must be 0
+			Arrays.fill(packetBuffer, 0, bufferLength, (byte) 0);
+		}
 		
+		int offset = 0;
 		for(int z=0;z<zSizeExtraction;z++){	
 			
 			packet[z] = new byte[blocksPerSegmentExtraction[z].length][][][];
+			packetOffset[z] = new int[blocksPerSegmentExtraction[z].length][][];
+			packetLength[z] = new int[blocksPerSegmentExtraction[z].length][][];
 			for(int segment=0;segment<blocksPerSegmentExtraction[z].length;segment++){
 				
 				packet[z][segment] = new byte[WTLevelsExtraction[z]+1][][];
+				packetOffset[z][segment] = new int[WTLevelsExtraction[z]+1][];
+				packetLength[z][segment] = new int[WTLevelsExtraction[z]+1][];
 				for(int rLevel=0;rLevel<WTLevelsExtraction[z]+1;rLevel++){
 					int gaggleNum = 0;
 					if (rLevel==0){
@@ -581,8 +693,13 @@ public class TERExtractor{
 						gaggleNum = GaggleUtilities.getGagglesPerSegment(z,segment,gaggleSizeACExtraction[z][segment],blocksPerSegmentExtraction);
 					}
 					packet[z][segment][rLevel] = new byte[gaggleNum][];
+					packetOffset[z][segment][rLevel] = new int[gaggleNum];
+					packetLength[z][segment][rLevel] = new int[gaggleNum];
 					for(int gaggle=0;gaggle<gaggleNum;gaggle++){
-						packet[z][segment][rLevel][gaggle] = new byte[gaggleSize[z][segment][rLevel][gaggle]];
+						packet[z][segment][rLevel][gaggle] = packetBuffer;
+						packetOffset[z][segment][rLevel][gaggle] = offset;
+						packetLength[z][segment][rLevel][gaggle] = gaggleSize[z][segment][rLevel][gaggle];
+						offset += gaggleSize[z][segment][rLevel][gaggle];
 					}
 					
 				}
@@ -590,10 +707,43 @@ public class TERExtractor{
 		}	
 	}
 	
+	/**
+	 * Gives an array to keep the data of the packets of the next spatial extraction, which is used if it is large
+	 * enough.
+	 * 
+	 * @param packetBuffer definition in {@link #packetBuffer}
+	 */
+	public void setPacketBuffer(byte[] packetBuffer){
+		this.packetBuffer = packetBuffer;
+	}
+	
+	/**
+	 * @return definition in {@link #packetBuffer}
+	 */
+	public byte[] getPacketBuffer(){
+		return packetBuffer;
+	}
+	
 	
 	///////////////////
 	///GET FUNCTIONS///
 	///////////////////
+	
+	/**
+	 * @return the position of the data of each gaggle in its array of the packets given by run, index meaning
+	 * [z][segment][rLevel][gaggle], or null when each gaggle has its own array
+	 */
+	public int[][][][] getPacketOffsets(){
+		return packetOffset;
+	}
+	
+	/**
+	 * @return the number of bytes of the data of each gaggle given by run, or null when each gaggle has its own array
+	 */
+	public int[][][][] getPacketLengths(){
+		return packetLength;
+	}
+	
 	public int[][] getBitDepthDCExtraction(){
 		return this.bitDepthDCExtraction;
 	}
@@ -662,6 +812,28 @@ public class TERExtractor{
 		imageWidthExtraction = this.xSizesExtraction;
 		return imageWidthExtraction;
 	}
+	/**
+	 * Finds the samples of the extracted area that belong to the window required by a spatial extraction, at the
+	 * resolution of the extraction.
+	 *
+	 * @return the window as {yStart, yEnd, xStart, xEnd} (ends excluded), or null when there is no spatial
+	 * extraction or the window does not intersect the extracted area
+	 */
+	public int[] getRegionExtraction(){
+		if (extractionType!=1 || originExtraction==null){
+			return null;
+		}
+		int resolutionReduction = 1 << (WTLevels[channelList[0]]-WTLevelsExtraction[0]);
+		int yStart = Math.max(yInit - originExtraction[0], 0) / resolutionReduction;
+		int yEnd = Math.min((yInit + yLength - originExtraction[0] + resolutionReduction - 1) / resolutionReduction, ySizeExtraction);
+		int xStart = Math.max(xInit - originExtraction[1], 0) / resolutionReduction;
+		int xEnd = Math.min((xInit + xLength - originExtraction[1] + resolutionReduction - 1) / resolutionReduction, xSizeExtraction);
+		if (yStart>=yEnd || xStart>=xEnd){
+			return null;
+		}
+		return new int[]{yStart, yEnd, xStart, xEnd};
+	}
+	
 	public int[] getImageGeometryExtraction(){
 		if (imageGeometry!=null){
 			imageGeometryExtraction = new int[6];
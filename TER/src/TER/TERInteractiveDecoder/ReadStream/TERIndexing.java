@@ -60,6 +60,20 @@ public class TERIndexing{
 		
 	long layersLocation[][][][][] = null;
 	
+	/**
+	 * Length of the header of each packet, in bytes, with the same indices as layersLocation.
+	 * <p>
+	 * 0 for the packets that are not available in the file.
+	 */
+	int headerLengths[][][][][] = null;
+	
+	/**
+	 * Length of the data of each packet (without its header), in bytes, with the same indices as layersLocation.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	int packetLengths[][][][][] = null;
+	
 	ReadBufferedStream encodedStream = null;
 	
 	ReadPacketHeader packetHeader= null;
@@ -98,23 +112,54 @@ public class TERIndexing{
 
 	private void initLayersLocation(){
 		layersLocation = new long[zSize][][][][];
+		headerLengths = new int[zSize][][][][];
+		packetLengths = new int[zSize][][][][];
 		for(int z=0;z<zSize;z++){	
 			layersLocation[z] = new long[blocksPerSegment[z].length][][][];
+			headerLengths[z] = new int[blocksPerSegment[z].length][][][];
+			packetLengths[z] = new int[blocksPerSegment[z].length][][][];
 			for(int segment=0;segment<blocksPerSegment[z].length;segment++){
 				layersLocation[z][segment] = new long[WTLevels[z]+1][][];
+				headerLengths[z][segment] = new int[WTLevels[z]+1][][];
+				packetLengths[z][segment] = new int[WTLevels[z]+1][][];
 				for(int rLevel=0;rLevel<WTLevels[z]+1;rLevel++){
+					int gaggleNum = 0;
 					if (rLevel==0){
-						int gaggleNum = GaggleUtilities.getGagglesPerSegment(z,segment,gaggleSizeDC[z][segment],blocksPerSegment);
-						layersLocation[z][segment][rLevel] = new long[gaggleNum][numLayers];
+						gaggleNum = GaggleUtilities.getGagglesPerSegment(z,segment,gaggleSizeDC[z][segment],blocksPerSegment);
 					} else {
-						int gaggleNum = GaggleUtilities.getGagglesPerSegment(z,segment,gaggleSizeAC[z][segment],blocksPerSegment);
-						layersLocation[z][segment][rLevel] = new long[gaggleNum][numLayers];
+						gaggleNum = GaggleUtilities.getGagglesPerSegment(z,segment,gaggleSizeAC[z][segment],blocksPerSegment);
 					}
+					layersLocation[z][segment][rLevel] = new long[gaggleNum][numLayers];
+					headerLengths[z][segment][rLevel] = new int[gaggleNum][numLayers];
+					packetLengths[z][segment][rLevel] = new int[gaggleNum][numLayers];
 				}
 			}
 		}
 	}
 	
+	/**
+	 * Records the location and the lengths of the packet that starts at the current position of the stream and
+	 * skips it.
+	 * 
+	 * @param z component of the packet
+	 * @param segment segment of the packet
+	 * @param rLevel resolution level of the packet
+	 * @param gaggle gaggle of the packet
+	 * @param layer layer of the packet
+	 * 
+	 * @throws Exception when the packet header cannot be read
+	 */
+	private void indexPacket(int z, int segment, int rLevel, int gaggle, int layer) throws Exception{
+		long location = encodedStream.getPos();
+		layersLocation[z][segment][rLevel][gaggle][layer] = location;
+		int packetLength= packetHeader.readPacketHeader();
+		headerLengths[z][segment][rLevel][gaggle][layer] = (int) (encodedStream.getPos() - location);
+		packetLengths[z][segment][rLevel][gaggle][layer] = packetLength;
+		if (encodedStream.getRemaniningBytes()>packetLength){
+			encodedStream.skipBytes(packetLength);
+		}
+	}
+	
 	public long[][][][][] run() throws Exception{
 		//If parameters are not set run cannot be executed
 		if(!parametersSet){
@@ -148,11 +193,7 @@ public class TERIndexing{
 						for(int segment=0;segment<blocksPerSegment[z].length;segment++){
 							if (rLevel<= WTLevels[z]){
 								for(int gaggle = 0;gaggle<layersLocation[z][segment][rLevel].length;gaggle++){
-									layersLocation[z][segment][rLevel][gaggle][layer] = encodedStream.getPos();
-									int packetLength= packetHeader.readPacketHeader();
-									if (encodedStream.getRemaniningBytes()>packetLength){
-										encodedStream.skipBytes(packetLength);
-									}
+									indexPacket(z,segment,rLevel,gaggle,layer);
 								}					
 							}
 						}
@@ -175,11 +216,7 @@ public class TERIndexing{
 						for(int segment=0;segment<blocksPerSegment[z].length;segment++){
 							if (rLevel<= WTLevels[z]){
 								for(int gaggle = 0;gaggle<layersLocation[z][segment][rLevel].length;gaggle++){		
-									layersLocation[z][segment][rLevel][gaggle][layer] = encodedStream.getPos();
-									int packetLength= packetHeader.readPacketHeader();
-									if (encodedStream.getRemaniningBytes()>packetLength){
-										encodedStream.skipBytes(packetLength);
-									}
+									indexPacket(z,segment,rLevel,gaggle,layer);
 								}
 							}
 						}
@@ -210,11 +247,7 @@ public class TERIndexing{
 									if (layersLocation[z][segment]!=null){
 										if (gaggle<layersLocation[z][segment][rLevel].length){										
 											for(int layer = 0;layer<numLayers;layer++){
-												layersLocation[z][segment][rLevel][gaggle][layer] = encodedStream.getPos();
-												int packetLength= packetHeader.readPacketHeader();
-												if (encodedStream.getRemaniningBytes()>packetLength){
-													encodedStream.skipBytes(packetLength);
-												}
+												indexPacket(z,segment,rLevel,gaggle,layer);
 											}
 										}
 									}
@@ -243,11 +276,7 @@ public class TERIndexing{
 							if (segment<layersLocation[z].length){
 								for(int layer = 0;layer<numLayers;layer++){
 									if (gaggle<layersLocation[z][segment][rLevel].length){
-										layersLocation[z][segment][rLevel][gaggle][layer] = encodedStream.getPos();
-										int packetLength= packetHeader.readPacketHeader();
-										if (encodedStream.getRemaniningBytes()>packetLength){
-											encodedStream.skipBytes(packetLength);
-										}
+										indexPacket(z,segment,rLevel,gaggle,layer);
 									}
 								}
 							}
@@ -272,11 +301,7 @@ public class TERIndexing{
 						for(int rLevel=0;rLevel<=WTLevels[z];rLevel++){
 							for(int layer = 0;layer<numLayers;layer++){
 								if (gaggle<layersLocation[z][segment][rLevel].length){
-									layersLocation[z][segment][rLevel][gaggle][layer] = encodedStream.getPos();
-									int packetLength= packetHeader.readPacketHeader();
-									if (encodedStream.getRemaniningBytes()>packetLength){
-										encodedStream.skipBytes(packetLength);
-									}
+									indexPacket(z,segment,rLevel,gaggle,layer);
 								}
 							}
 						}
@@ -287,4 +312,18 @@ public class TERIndexing{
 			
 		}
 	}
+	
+	/**
+	 * @return the length of the header of each packet, 0 for the packets that are not available
+	 */
+	public int[][][][][] getHeaderLengths(){
+		return headerLengths;
+	}
+	
+	/**
+	 * @return the length of the data of each packet
+	 */
+	public int[][][][][] getPacketLengths(){
+		return packetLengths;
+	}
 }
\ No newline at end of file
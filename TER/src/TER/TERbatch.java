@@ -0,0 +1,72 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER;
+
+import TER.TERbatcher.*;
+
+/**
+ * Main class of TERbatch application. TERbatch codes many images with TERcode in the same virtual machine, taking
+ * the jobs from a manifest file or from a spool directory.
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class TERbatch{
+	/**
+	 * Main method of TERbatch application. It takes program arguments and runs the batch coder.
+	 *
+	 * @param args an array of strings that contains program parameters
+	 */
+	public static void main(String[] args){
+		//Parse arguments
+		ArgsParserBatch argsParser = null;
+		try{
+			argsParser = new ArgsParserBatch(args);
+		}catch(Exception e){
+			System.err.println("TERbatch : ARGUMENTS ERROR: " +  e.getMessage());
+			System.exit(1);
+		}
+
+		BatchCoder batchCoder = new BatchCoder();
+		try{
+			batchCoder.setParameters(argsParser.getManifestFile(), argsParser.getSpoolDirectory(), argsParser.getJobs(),
+					argsParser.getTimingsFile(), argsParser.getPollInterval());
+		}catch(Exception e){
+			System.err.println("TERbatch PARAMETERS ERROR: " + e.getMessage());
+			System.exit(3);
+		}
+		try{
+			batchCoder.run();
+		}catch(Exception e){
+			e.printStackTrace();
+			System.err.println("TERbatch RUNNING ERROR: " + e.getMessage());
+			System.exit(4);
+		}
+	}
+}
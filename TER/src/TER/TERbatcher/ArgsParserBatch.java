@@ -0,0 +1,287 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERbatcher;
+
+import TER.TERDefaultValues;
+
+
+/**
+ * Arguments parser for TER batch coder. This class analyses a string of arguments and extract and check its validity.
+ * Usage example:<br>
+ * &nbsp; construct<br>
+ * &nbsp; [showArgsInfo]<br>
+ * &nbsp; [get functions]<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class ArgsParserBatch{
+
+	private void showVersion(){
+		System.out.println(" -------  help - version 1.0  ---------  ");
+	}
+
+	/**
+	 * Arguments specificiation. The array describes argument, explain what is used and its default parameters. First index of array is argument; second specifies:<br>
+	 *   <ul>
+	 *     <li> 0 - short argument specification (i.e. "-j")
+	 *     <li> 1 - long argument specification (i.e. "--jobs")
+	 *     <li> 2 - parsing specification of argument ({} indicates mandatority, [] optionality)
+	 *     <li> 3 - default values
+	 *     <li> 4 - mandatory argument ("1") or non mandatory argument ("0")
+	 *     <li> 5 - explanation
+	 *   </ul>
+	 * <p>
+	 * String arguments.
+	 */
+	String[][] argsSpecification = {
+		{"-h", "--help", "", "", "0",
+			"Displays this help and exits program."
+		},
+		{"-m", "--manifest", "{string}", "", "0",
+			"File with the jobs to be coded, one per line. Each job is the list of TERcode arguments of one image (\"-i\", \"-g\", \"-o\", ...). Empty lines and lines starting with \"#\" are skipped. Either \"-m\" or \"-s\" must be specified."
+		},
+		{"-s", "--spoolDirectory", "{string}", "", "0",
+			"Directory watched for jobs. Each file with extension \".job\" contains the TERcode arguments of one image; it is renamed to \".running\" while the image is coded and to \".done\" or \".failed\" when it finishes. The program waits for the running jobs and ends when a file named \"stop\" is created in the directory (the file is removed). Either \"-m\" or \"-s\" must be specified."
+		},
+		{"-j", "--jobs", "{int}", TERDefaultValues.batchJobs + "", "0",
+			"Number of images coded at the same time. Each image is loaded and coded with its own threads (see the \"-nt\" argument of TERcode); jobs that do not give \"-nt\" share the available processors among the jobs. 0 uses as many jobs as available processors."
+		},
+		{"-t", "--timingsFile", "{string}", "standard output", "0",
+			"File where a timing record is appended when each job finishes. The record has the job name, its exit status (0 if the image has been coded, see TERcode exit statuses otherwise) and the milliseconds spent loading the image, coding it and in total, separated by tabs."
+		},
+		{"-p", "--pollInterval", "{int}", TERDefaultValues.batchPollInterval + "", "0",
+			"Milliseconds waited between two searches of new jobs in the spool directory."
+		},
+	};
+
+	//ARGUMENTS VARIABLES
+	String manifestFile = null;
+	String spoolDirectory = null;
+	int jobs = TERDefaultValues.batchJobs;
+	String timingsFile = null;
+	int pollInterval = TERDefaultValues.batchPollInterval;
+
+	 /**
+	  * Class constructor that receives the arguments string and initializes all the arguments
+	  * 
+	  * @param args the array of strings passed at the command line
+	  * 
+	  * @throws Exception when an invalid parsing is detected or some problem with method invocation occurs
+	  */
+	public ArgsParserBatch(String[] args) throws Exception{
+		int argNum = 0;
+		boolean[] argsFound = new boolean[argsSpecification.length];
+
+		//Arguments parsing
+		for(int i = 0; i < argsSpecification.length; i++){
+			argsFound[i] = false;
+		}
+		while(argNum < args.length){
+			int argFound = argFind(args[argNum]);
+			if(argFound != -1){
+				if(!argsFound[argFound]){
+					argsFound[argFound] = true;
+					int argOptions = argNum + 1;
+					while(argOptions < args.length){
+						if(argFind(args[argOptions]) != -1){
+							break;
+						}else{
+							argOptions++;
+						}
+					}
+					int numOptions = argOptions - argNum;
+					String[] options = new String[numOptions];
+					System.arraycopy(args, argNum, options, 0, numOptions);
+					argNum = argOptions;
+					switch(argFound){
+					case  0: //-h  --help
+						showVersion();
+						showArgsInfo();
+						System.exit(1);
+						break;
+					case  1: //-m  --manifest
+						manifestFile = parseString(options);
+						break;
+					case  2: //-s  --spoolDirectory
+						spoolDirectory = parseString(options);
+						break;
+					case  3: //-j  --jobs
+						jobs = parseIntegerPositive(options);
+						break;
+					case  4: //-t  --timingsFile
+						timingsFile = parseString(options);
+						break;
+					case  5: //-p  --pollInterval
+						pollInterval = parseIntegerPositive(options);
+						break;
+					}
+				}else{
+					throw new Exception("Argument \"" + args[argNum] + "\" repeated.");
+				}
+			}else{
+				throw new Exception("Argument \"" + args[argNum] + "\" unrecognized.");
+			}
+		}
+
+		//Check mandatory arguments
+		for(int i = 0; i < argsSpecification.length; i++){
+			if(argsSpecification[i][4].compareTo("1") == 0){
+				if(!argsFound[i]){
+					throw new Exception("Argument \"" + argsSpecification[i][0] + "\" is mandatory (\"-h\" displays help).");
+				}
+			}
+		}
+		if((manifestFile == null) == (spoolDirectory == null)){
+			throw new Exception("Either argument \"-m\" or \"-s\" must be specified (\"-h\" displays help).");
+		}
+	}
+
+	/**
+	 * Finds the argument string in arguments specification array.
+	 *
+	 * @param arg argument to find out in argsSpecification
+	 * @return the argument index of argsSpecification (-1 if it doesn't exist)
+	 */
+	int argFind(String arg){
+		int argFound = 0;
+		boolean found = false;
+
+		while((argFound < argsSpecification.length) && !found){
+			if((arg.compareTo(argsSpecification[argFound][0]) == 0) || (arg.compareTo(argsSpecification[argFound][1]) == 0)){
+				found = true;
+			}else{
+				argFound++;
+			}
+		}
+		return(found ? argFound: -1);
+	}
+
+	/**
+	 * This function shows arguments information to console.
+	 */
+	public void showArgsInfo(){
+		System.out.println("Arguments specification: ");
+		for(int numArg = 0; numArg < argsSpecification.length; numArg++){
+			char beginMandatory = '{', endMandatory = '}';
+			if(argsSpecification[numArg][4].compareTo("0") == 0){
+				//No mandatory argument
+				beginMandatory = '[';
+				endMandatory = ']';
+			}
+			System.out.print("\n" + beginMandatory + " ");
+			System.out.print("{" + argsSpecification[numArg][0] + "|" + argsSpecification[numArg][1] + "} " + argsSpecification[numArg][2]);
+			System.out.println(" " + endMandatory);
+			System.out.println("  Explanation:\n    " + argsSpecification[numArg][5]);
+			System.out.println("  Default value: " + argsSpecification[numArg][3]);
+		}
+	}
+
+
+	/////////////////////
+	//PARSING FUNCTIONS//
+	/////////////////////
+	//These functions receives a string array that contains in first position the argument and then their options//
+
+	int parseIntegerPositive(String[] options) throws Exception{
+		int value = 0;
+
+		if(options.length == 2){
+			try{
+				value = Integer.parseInt(options[1]);
+				if(value < 0){
+					throw new Exception("\"" + options[1] + "\" of argument \"" + options[0] + "\" is must be a positive integer.");
+				}
+			}catch(NumberFormatException e){
+				throw new Exception("\"" + options[1] + "\" of argument \"" + options[0] + "\" is not a parsable integer.");
+			}
+		}else{
+			throw new Exception("Argument \"" + options[0] + "\" takes one option. Try \"-h\" to display help.");
+		}
+		return(value);
+	}
+
+	String parseString(String[] options) throws Exception{
+		String value = "";
+
+		if(options.length == 2){
+			value = options[1];
+		}else{
+			throw new Exception("Argument \"" + options[0] + "\" takes one option. Try \"-h\" to display help.");
+		}
+		return(value);
+	}
+
+
+	///////////////////////////
+	//ARGUMENTS GET FUNCTIONS//
+	///////////////////////////
+
+	public String getManifestFile(){
+		return(manifestFile);
+	}
+	public String getSpoolDirectory(){
+		return(spoolDirectory);
+	}
+	public int getJobs(){
+		return(jobs);
+	}
+	public String getTimingsFile(){
+		return(timingsFile);
+	}
+	public int getPollInterval(){
+		return(pollInterval);
+	}
+
+	/**
+	 * This function shows arguments information to console using a formatted table in latex (useful to write manuals in latex).
+	 */
+	public void showArgsInfoLatexTable(){
+		for(int numArg = 0; numArg < argsSpecification.length; numArg++){
+			System.out.println("\\begin{center}\\begin{tabular}{|rr|rlrl|}");
+			String longParam = argsSpecification[numArg][1].replace("-","$-$");
+			String shortParam = argsSpecification[numArg][0].replace("-","$-$");
+			String paramArguments = argsSpecification[numArg][2].replace("{","$\\{$").replace("}","$\\}$").replace("[","$[$").replace("]","$]$");
+			String paramMandatory;
+			if(argsSpecification[numArg][4].compareTo("0") == 0){
+				paramMandatory = "No";
+			}else{
+				paramMandatory = "Yes";
+			}
+
+			String paramExplanation = argsSpecification[numArg][5].replace("\n","\\newline").replace("\t","\\hspace*{0.5truecm}").replace("    "," ").replace("_","\\_");
+			String paramDefault = argsSpecification[numArg][3];
+
+			System.out.println("\\hline\n\\multicolumn{2}{|l|}{\\textbf{" + longParam + "}} & \\multicolumn{4}{|l|}{" + paramArguments + "} \\\\\n\\cline{3-6}");
+			System.out.println("\\multicolumn{2}{|l|}{\\textbf{" + shortParam + "}} & \\emph{Mandatory:} & " + paramMandatory + " & &  \\\\\n\\hline");
+			System.out.println("\\emph{Explanation:} & \\multicolumn{5}{|p{12cm}|}{" + paramExplanation + "} \\\\\n\\hline");
+			System.out.println("\\emph{Default:} & \\multicolumn{5}{|p{12cm}|}{" + paramDefault + "} \\\\\n\\hline");
+			System.out.println("\\end{tabular}\\end{center}");
+		}
+	}
+}
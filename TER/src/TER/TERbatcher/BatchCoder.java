@@ -0,0 +1,405 @@
+/*
+ * TER Software - More than an implementation of CCSDS Recommendation for Image Data Compression
+ * Copyright (C) 2007  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/ter
+ * gici-info@deic.uab.es
+ */
+package TER.TERbatcher;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.StringTokenizer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import GiciException.ParameterException;
+import GiciException.WarningException;
+import GiciFile.ImageBufferPool;
+import TER.TERcode;
+
+
+/**
+ * This class codes many images in the same virtual machine, so that the start up of the virtual machine and the
+ * compilation of the coder are paid only once. The jobs are read from a manifest file or taken from a spool
+ * directory, and they are coded by a bounded pool of workers that share the buffers of the loaded images.<br>
+ * Usage example:<br>
+ * &nbsp; construct<br>
+ * &nbsp; setParameters<br>
+ * &nbsp; run<br>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class BatchCoder{
+
+	/**
+	 * Extension of the job files of the spool directory.
+	 * <p>
+	 * Fixed value.
+	 */
+	static final String JOB_EXTENSION = ".job";
+
+	/**
+	 * Name of the file that ends the watch of the spool directory.
+	 * <p>
+	 * Fixed value.
+	 */
+	static final String STOP_FILE = "stop";
+
+	/**
+	 * To know if parameters are set.
+	 * <p>
+	 * True indicates that they are set otherwise false.
+	 */
+	boolean parametersSet = false;
+
+	/**
+	 * File with one job per line.
+	 * <p>
+	 * Null if the jobs are taken from {@link #spoolDirectory}.
+	 */
+	String manifestFile = null;
+
+	/**
+	 * Directory watched for job files.
+	 * <p>
+	 * Null if the jobs are read from {@link #manifestFile}.
+	 */
+	String spoolDirectory = null;
+
+	/**
+	 * Number of images coded at the same time.
+	 * <p>
+	 * Positive values allowed, 0 uses as many jobs as available processors.
+	 */
+	int jobs;
+
+	/**
+	 * File where the timing records are appended.
+	 * <p>
+	 * Null writes them to the standard output.
+	 */
+	String timingsFile = null;
+
+	/**
+	 * Milliseconds waited between two searches of new jobs in the spool directory.
+	 * <p>
+	 * Positive values allowed.
+	 */
+	int pollInterval;
+
+	/**
+	 * Stream where the timing records are written.
+	 * <p>
+	 * Only used while running.
+	 */
+	PrintStream timings = null;
+
+	/**
+	 * Threads used by each job to code its gaggles when the job does not give them (TERcode "-nt" argument): the
+	 * available processors are divided among the jobs coded at the same time.
+	 * <p>
+	 * Only used while running, positive values.
+	 */
+	int jobThreads = 1;
+
+	/**
+	 * Set the parameters of the batch coder.
+	 *
+	 * @param manifestFile definition in {@link #manifestFile}
+	 * @param spoolDirectory definition in {@link #spoolDirectory}
+	 * @param jobs definition in {@link #jobs}
+	 * @param timingsFile definition in {@link #timingsFile}
+	 * @param pollInterval definition in {@link #pollInterval}
+	 *
+	 * @throws ParameterException when an invalid parameter is detected
+	 */
+	public void setParameters(String manifestFile, String spoolDirectory, int jobs, String timingsFile, int pollInterval) throws ParameterException{
+		if((manifestFile == null) == (spoolDirectory == null)){
+			throw new ParameterException("Either a manifest file or a spool directory must be given.");
+		}
+		if(jobs < 0){
+			throw new ParameterException("The number of jobs must be positive.");
+		}
+		if(pollInterval < 0){
+			throw new ParameterException("The poll interval must be positive.");
+		}
+		this.manifestFile = manifestFile;
+		this.spoolDirectory = spoolDirectory;
+		this.jobs = jobs;
+		this.timingsFile = timingsFile;
+		this.pollInterval = pollInterval;
+		parametersSet = true;
+	}
+
+	/**
+	 * Codes all the jobs of the manifest file, or the jobs of the spool directory until it is stopped, and waits for
+	 * the jobs to finish.
+	 *
+	 * @throws Exception when the jobs cannot be read or the timings file cannot be written
+	 */
+	public void run() throws Exception{
+		if(!parametersSet){
+			throw new Exception("Parameters not set.");
+		}
+		int workers = jobs > 0 ? jobs : Runtime.getRuntime().availableProcessors();
+		ExecutorService jobPool = Executors.newFixedThreadPool(workers);
+		//A job is only taken when a worker is free, so that other batch coders can share the spool directory
+		Semaphore freeWorkers = new Semaphore(workers);
+		ImageBufferPool imageBuffers = new ImageBufferPool(workers);
+		jobThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / workers);
+
+		if(timingsFile == null){
+			timings = System.out;
+		}else{
+			try{
+				timings = new PrintStream(new FileOutputStream(timingsFile, true));
+			}catch(FileNotFoundException e){
+				throw new WarningException("Timings file \"" + timingsFile + "\" cannot be opened.");
+			}
+		}
+		try{
+			if(manifestFile != null){
+				runManifest(jobPool, freeWorkers, imageBuffers);
+			}else{
+				runSpool(jobPool, freeWorkers, imageBuffers);
+			}
+			jobPool.shutdown();
+			jobPool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+		}finally{
+			jobPool.shutdown();
+			if(timings != System.out){
+				timings.close();
+			}
+		}
+	}
+
+	/**
+	 * Submits the jobs of the manifest file.
+	 *
+	 * @param jobPool pool where the jobs are coded
+	 * @param freeWorkers permits of the workers that are not coding
+	 * @param imageBuffers buffers shared by the jobs
+	 *
+	 * @throws Exception when the manifest file cannot be read
+	 */
+	void runManifest(ExecutorService jobPool, Semaphore freeWorkers, ImageBufferPool imageBuffers) throws Exception{
+		BufferedReader manifest = null;
+		try{
+			manifest = new BufferedReader(new FileReader(manifestFile));
+		}catch(FileNotFoundException e){
+			throw new WarningException("Manifest file \"" + manifestFile + "\" not found.");
+		}
+		try{
+			String line;
+			int lineNumber = 0;
+			while((line = manifest.readLine()) != null){
+				lineNumber++;
+				String[] args = getArguments(line);
+				if(args.length > 0){
+					freeWorkers.acquire();
+					submitJob(jobPool, freeWorkers, imageBuffers, manifestFile + ":" + lineNumber, args, null);
+				}
+			}
+		}catch(IOException e){
+			throw new WarningException("I/O error reading manifest file \"" + manifestFile + "\".");
+		}finally{
+			manifest.close();
+		}
+	}
+
+	/**
+	 * Submits the jobs of the spool directory, checking for new job files until the stop file is found.
+	 *
+	 * @param jobPool pool where the jobs are coded
+	 * @param freeWorkers permits of the workers that are not coding
+	 * @param imageBuffers buffers shared by the jobs
+	 *
+	 * @throws Exception when the spool directory cannot be read
+	 */
+	void runSpool(ExecutorService jobPool, Semaphore freeWorkers, ImageBufferPool imageBuffers) throws Exception{
+		File directory = new File(spoolDirectory);
+		if(!directory.isDirectory()){
+			throw new WarningException("Spool directory \"" + spoolDirectory + "\" not found.");
+		}
+		File stopFile = new File(directory, STOP_FILE);
+		FilenameFilter jobFilter = new FilenameFilter(){
+			public boolean accept(File dir, String name){
+				return(name.endsWith(JOB_EXTENSION));
+			}
+		};
+
+		while(!stopFile.exists()){
+			String[] jobNames = directory.list(jobFilter);
+			if(jobNames == null){
+				throw new WarningException("Spool directory \"" + spoolDirectory + "\" cannot be read.");
+			}
+			Arrays.sort(jobNames);
+			int jobsTaken = 0;
+			for(int job = 0; job < jobNames.length && !stopFile.exists(); job++){
+				freeWorkers.acquire();
+				String jobName = jobNames[job].substring(0, jobNames[job].length() - JOB_EXTENSION.length());
+				File runningFile = new File(directory, jobName + ".running");
+				//The job may have been taken by another batch coder
+				if(!new File(directory, jobNames[job]).renameTo(runningFile)){
+					freeWorkers.release();
+					continue;
+				}
+				jobsTaken++;
+				String[] args = null;
+				try{
+					args = getArguments(runningFile);
+				}catch(IOException e){
+					args = new String[0];
+				}
+				submitJob(jobPool, freeWorkers, imageBuffers, jobName, args, runningFile);
+			}
+			if(jobsTaken == 0 && !stopFile.exists()){
+				Thread.sleep(pollInterval);
+			}
+		}
+		stopFile.delete();
+	}
+
+	/**
+	 * Submits a job to the pool. The permit of the worker, which must have been acquired, is released when the job finishes.
+	 *
+	 * @param jobPool pool where the job is coded
+	 * @param freeWorkers permits of the workers that are not coding
+	 * @param imageBuffers buffers shared by the jobs
+	 * @param jobName name of the job written in its timing record
+	 * @param args TERcode arguments of the job
+	 * @param runningFile job file of the spool directory, renamed when the job finishes (null for manifest jobs)
+	 */
+	void submitJob(ExecutorService jobPool, final Semaphore freeWorkers, final ImageBufferPool imageBuffers,
+			final String jobName, String[] jobArgs, final File runningFile){
+		final String[] args = withThreads(jobArgs);
+		jobPool.execute(new Runnable(){
+			public void run(){
+				long[] times = new long[2];
+				long start = System.nanoTime();
+				int status = 1;
+				try{
+					if(args.length > 0){
+						status = TERcode.code(args, imageBuffers, times);
+					}else{
+						System.err.println("TERbatch : job \"" + jobName + "\" has no arguments.");
+					}
+				}catch(Throwable e){
+					e.printStackTrace();
+					System.err.println("TERbatch : job \"" + jobName + "\" RUNNING ERROR: " + e.getMessage());
+					status = 4;
+				}finally{
+					freeWorkers.release();
+				}
+				long total = System.nanoTime() - start;
+				if(runningFile != null){
+					String finishedName = runningFile.getName().replaceFirst("\\.running$", status == 0 ? ".done" : ".failed");
+					runningFile.renameTo(new File(runningFile.getParentFile(), finishedName));
+				}
+				writeTiming(jobName, status, times[0], times[1], total);
+			}
+		});
+	}
+
+	/**
+	 * Adds the threads of the job ({@link #jobThreads}) to its arguments, unless they are already given.
+	 *
+	 * @param args TERcode arguments of the job
+	 * @return the arguments with the "-nt" argument
+	 */
+	String[] withThreads(String[] args){
+		if(args.length == 0){
+			return(args);
+		}
+		for(String arg: args){
+			if(arg.equals("-nt") || arg.equals("--threads")){
+				return(args);
+			}
+		}
+		String[] threadArgs = new String[args.length + 2];
+		System.arraycopy(args, 0, threadArgs, 0, args.length);
+		threadArgs[args.length] = "-nt";
+		threadArgs[args.length + 1] = Integer.toString(jobThreads);
+		return(threadArgs);
+	}
+
+	/**
+	 * Writes the timing record of a job.
+	 *
+	 * @param jobName name of the job
+	 * @param status exit status of the job
+	 * @param loadTime nanoseconds spent loading the image
+	 * @param codeTime nanoseconds spent coding the image
+	 * @param totalTime nanoseconds spent by the whole job
+	 */
+	synchronized void writeTiming(String jobName, int status, long loadTime, long codeTime, long totalTime){
+		timings.println(jobName + "\t" + status + "\t" + loadTime / 1000000 + "\t" + codeTime / 1000000 + "\t" + totalTime / 1000000);
+		timings.flush();
+	}
+
+	/**
+	 * Splits a line of a manifest in arguments.
+	 *
+	 * @param line the line
+	 * @return the arguments separated by white spaces (empty for empty lines and lines starting with "#")
+	 */
+	static String[] getArguments(String line){
+		if(line.trim().startsWith("#")){
+			return(new String[0]);
+		}
+		StringTokenizer tokens = new StringTokenizer(line);
+		String[] args = new String[tokens.countTokens()];
+		for(int arg = 0; arg < args.length; arg++){
+			args[arg] = tokens.nextToken();
+		}
+		return(args);
+	}
+
+	/**
+	 * Reads the arguments of a job file, which may span many lines.
+	 *
+	 * @param jobFile the job file
+	 * @return the arguments of all the lines of the file
+	 *
+	 * @throws IOException when the file cannot be read
+	 */
+	static String[] getArguments(File jobFile) throws IOException{
+		ArrayList<String> args = new ArrayList<String>();
+		BufferedReader job = new BufferedReader(new FileReader(jobFile));
+		try{
+			String line;
+			while((line = job.readLine()) != null){
+				args.addAll(Arrays.asList(getArguments(line)));
+			}
+		}finally{
+			job.close();
+		}
+		return(args.toArray(new String[args.size()]));
+	}
+
+}
@@ -27,9 +27,13 @@
  */
 package TER;
 
+import GiciException.WarningException;
 import GiciFile.*;
+import TER.TERCommon.Metrics;
 import TER.TERcoder.*;
 
+import java.io.File;
+
 /**
  * Main class of TERcode application. TERcode is a coder of the Recommended Standard CCSDS 122.0-B-1 Blue Book.
  * <p>
@@ -44,21 +48,46 @@ public class TERcode{
 	 * @param args an array of strings that contains program parameters
 	 */
 	public static void main(String[] args){
+		int status = code(args, null, null);
+		if(status != 0){
+			System.exit(status);
+		}
+	}
+
+	/**
+	 * Codes an image as the TERcode application does, returning its exit status instead of exiting, so that many
+	 * images can be coded in the same virtual machine (see {@link TER.TERbatch}).
+	 *
+	 * @param args an array of strings that contains program parameters
+	 * @param imageBuffers pool where the buffers of raw images are taken from, and where the image buffer is returned to after coding (null to allocate a new buffer)
+	 * @param times if not null, the nanoseconds spent loading the image and coding it are stored in positions 0 and 1
+	 * @return 0 if the image has been coded, 1 if the arguments are wrong, 2 if the image cannot be loaded, 3 if the coder parameters are wrong and 4 if coding fails
+	 */
+	public static int code(String[] args, ImageBufferPool imageBuffers, long[] times){
+		long loadStart = System.nanoTime();
 		//Parse arguments
 		ArgsParserCoder argsParser = null;
 		try{
 			argsParser = new ArgsParserCoder(args);
 		}catch(Exception e){
 			System.err.println("TERcode : ARGUMENTS ERROR: " +  e.getMessage());
-			System.exit(1);
+			return(1);
+		}
+		
+		//Metrics are collected only when they are written
+		Metrics metrics = argsParser.getMetricsFile() != null ? new Metrics() : null;
+		if(metrics != null){
+			metrics.start("load");
 		}
 		
 		//Image load
 		String imageFile = argsParser.getImageFile();
 		LoadFile image = null;
+		RawTileReader tileReader = null;
 		int[] imageGeometry = null;
+		float[][][] imageBuffer = null;
 		try{
-			if(imageFile.endsWith(".raw") || imageFile.endsWith(".img")){
+			if(LoadFile.isRaw(imageFile)){
 				imageGeometry = argsParser.getImageGeometry();
 				
 				//Check parameters of image geometry
@@ -74,13 +103,34 @@ public class TERcode{
 				if((imageGeometry[5] != 0) && (imageGeometry[5] != 1)){
 					throw new Exception("Image RGB specification in \".raw\" or \".img\" data must be between 0 or 1 (\"-h\" displays help).");
 				}
-				image = new LoadFile(imageFile, imageGeometry[0], imageGeometry[1], imageGeometry[2], imageGeometry[3], imageGeometry[4], imageGeometry[5] == 0 ? false: true);
+				int sampleOrder = imageGeometry.length > 6 ? imageGeometry[6] : 0;
+				if((sampleOrder < 0) || (sampleOrder > 2)){
+					throw new Exception("Image sample order in \".raw\" or \".img\" data must be 0 (BSQ), 1 (BIL) or 2 (BIP) (\"-h\" displays help).");
+				}
+				if(argsParser.getTest3dTileRows() > 0 && RawTileReader.isSupported(imageFile)){
+					//The image is read by tiles while it is coded
+					tileReader = new RawTileReader(imageFile, imageGeometry[0], imageGeometry[1], imageGeometry[2], imageGeometry[3], imageGeometry[4], sampleOrder);
+				}else if(imageBuffers == null){
+					image = new LoadFile(imageFile, imageGeometry[0], imageGeometry[1], imageGeometry[2], imageGeometry[3], imageGeometry[4], imageGeometry[5] == 0 ? false: true, sampleOrder);
+				}else{
+					imageBuffer = imageBuffers.get(imageGeometry[0], imageGeometry[1], imageGeometry[2]);
+					image = new LoadFile(imageBuffer);
+					image.setSignedPixels(imageGeometry[3], imageGeometry[0]);
+					image.rawLoad(imageFile, imageGeometry[0], imageGeometry[1], imageGeometry[2], LoadFile.getClass(imageGeometry[3]), imageGeometry[4], imageGeometry[5] == 0 ? false: true, sampleOrder);
+				}
 			}else{
 				image = new LoadFile(imageFile);	
 			}
 		}catch(Exception e){
 			System.err.println("IMAGE LOADING ERROR: " + e.getMessage());
-			System.exit(2);
+			if(imageBuffer != null){
+				imageBuffers.release(imageBuffer);
+			}
+			return(2);
+		}
+		if(metrics != null){
+			metrics.stop("load");
+			metrics.add("bytes.in", new File(imageFile).length());
 		}
 		
 		//Get arguments from parser
@@ -143,71 +193,125 @@ public class TERcode{
 		int test3d = argsParser.getTest3d();
 		int spectralWTLevels = argsParser.getSpectralWTLevels();
 		int spectralWTType = argsParser.getSpectralWTType();
+		boolean lowMemory = argsParser.getLowMemory();
+		int threads = argsParser.getThreads();
 		
 		//TER coder
-		Coder idcCoder = new Coder(image.getImage(), image.getTypes(), image.getRGBComponents());
-		
-		if (pixelBitDepth == null){
-			pixelBitDepth=image.getPixelBitDepth();
-		}
-		if (signedPixels==null){
-			signedPixels=image.getSignedPixels();
+		float[][][] imageSamples = null;
+		Coder idcCoder = null;
+		if(tileReader != null){
+			idcCoder = new Coder(tileReader, argsParser.getTest3dTileRows(), imageGeometry[5] == 0 ? false: true);
+			if (pixelBitDepth == null){
+				pixelBitDepth=tileReader.getPixelBitDepth();
+			}
+			if (signedPixels==null){
+				signedPixels=tileReader.getSignedPixels();
+			}
+		}else{
+			imageSamples = image.getImage();
+			idcCoder = new Coder(imageSamples, image.getTypes(), image.getRGBComponents());
+			
+			if (pixelBitDepth == null){
+				pixelBitDepth=image.getPixelBitDepth();
+			}
+			if (signedPixels==null){
+				signedPixels=image.getSignedPixels();
+			}
 		}
 		image = null;
-		System.gc(); //Free image load memory
-		try{
-			idcCoder.setParameters( outputFile , 
-					outputFileType, 
-					imageExtensionType,
-					WTType,
-					WTLevels,
-					WTOrder,
-					customWtFlag,
-					customWeight,
-					part2Flag,
-					part3Flag,
-					part4Flag,
-					segByteLimit,
-					DCStop,
-					bitPlaneStop,
-					stageStop,
-					useFill,
-					blocksPerSegment,
-					optDCSelect,
-					optACSelect,
-					signedPixels,
-					transposeImg,
-					codeWordLength,
-					pixelBitDepth,
-					gaggleDCSize, gaggleACSize,
-					idDC, idAC, desiredDistortion,
-					distortionMeasure, entropyAC,
-					resolutionLevels, compressionFactor,
-					CVerbose,bps,
-					truncationPoints,adjustHeaderParameters,
-					progressionOrder, 
-					LSType, LSComponents, LSSubsValues,
-					coefficientsApproximationTypes,
-					targetBytes, bpppb,
-					numberOfLayers,layerCreationType,
-					layerSizeType, layerBytes, 
-					test3d, spectralWTLevels, spectralWTType
-			);
-		}catch(Exception e){
-			e.printStackTrace();
-			System.err.println("TERcoder PARAMETERS ERROR: " + e.getMessage());
-			System.exit(3);
+		if(imageBuffers == null){
+			System.gc(); //Free image load memory
+		}
+		long codeStart = System.nanoTime();
+		if(times != null){
+			times[0] = codeStart - loadStart;
 		}
 		try{
-			idcCoder.run();
-		}catch(Exception e){
-			e.printStackTrace();
-			System.err.println("TERcoder RUNNING ERROR: " + e.getMessage());
-			System.exit(4);
+			try{
+				idcCoder.setParameters( outputFile , 
+						outputFileType, 
+						imageExtensionType,
+						WTType,
+						WTLevels,
+						WTOrder,
+						customWtFlag,
+						customWeight,
+						part2Flag,
+						part3Flag,
+						part4Flag,
+						segByteLimit,
+						DCStop,
+						bitPlaneStop,
+						stageStop,
+						useFill,
+						blocksPerSegment,
+						optDCSelect,
+						optACSelect,
+						signedPixels,
+						transposeImg,
+						codeWordLength,
+						pixelBitDepth,
+						gaggleDCSize, gaggleACSize,
+						idDC, idAC, desiredDistortion,
+						distortionMeasure, entropyAC,
+						resolutionLevels, compressionFactor,
+						CVerbose,bps,
+						truncationPoints,adjustHeaderParameters,
+						progressionOrder, 
+						LSType, LSComponents, LSSubsValues,
+						coefficientsApproximationTypes,
+						targetBytes, bpppb,
+						numberOfLayers,layerCreationType,
+						layerSizeType, layerBytes, 
+						test3d, spectralWTLevels, spectralWTType,
+						lowMemory, threads
+				);
+			}catch(Exception e){
+				e.printStackTrace();
+				System.err.println("TERcoder PARAMETERS ERROR: " + e.getMessage());
+				return(3);
+			}
+			idcCoder.setMetrics(metrics);
+			try{
+				idcCoder.run();
+			}catch(Exception e){
+				e.printStackTrace();
+				System.err.println("TERcoder RUNNING ERROR: " + e.getMessage());
+				return(4);
+			}
+		}finally{
+			//The image buffer goes back to the pool and the tiles are closed whether the image is coded or not
+			if(imageBuffers != null && imageSamples != null){
+				imageBuffers.release(imageSamples);
+			}
+			closeTileReader(tileReader);
+			if(times != null){
+				times[1] = System.nanoTime() - codeStart;
+			}
 		}
-		
-		
+		if(metrics != null){
+			try{
+				metrics.write(argsParser.getMetricsFile());
+			}catch(WarningException e){
+				System.err.println("METRICS WRITING ERROR: " + e.getMessage());
+			}
+		}
+		return(0);
 	}
 	
+	/**
+	 * Closes the reader of an image coded by tiles, if any.
+	 *
+	 * @param tileReader the reader, or null when the image has been loaded in memory
+	 */
+	private static void closeTileReader(RawTileReader tileReader){
+		if(tileReader != null){
+			try{
+				tileReader.close();
+			}catch(WarningException e){
+				System.err.println("IMAGE CLOSING ERROR: " + e.getMessage());
+			}
+		}
+	}
 	
 }
@@ -66,8 +66,8 @@ public class ArgsParserCoder{
 		{"-i", "--inputImage", "{string}", "", "1",
 			"Input image. Valid formats are: pgm, ppm, pbm, jpg, tiff, png, bmp, gif, fpx. If image is raw data file extension must be \".raw\" or \".img\" and \"-g\" parameter is mandatory."
 		},
-		{"-g", "--imageGeometry", "{int int int int boolean}", "", "0",
-			"Geometry of raw image data. Parameters are:\n    1- zSize (number of image components)\n    2- ySize (image height)\n    3- xSize (image width)\n    4- data type. Possible values are:\n \t 0- boolean (1 byte)\n \t 1- unsigned int (1 byte)\n \t 2- unsigned int (2 bytes)\n \t 3- signed int (2 bytes)\n \t 4- signed int (4 bytes)\n \t 5- signed int (8 bytes)\n \t 6- float (4 bytes)\n \t 7- double (8 bytes)\n    5- Byte order (0 if BIG ENDIAN, 1 if LITTLE ENDIAN)\n    6- 1 if 3 first components are RGB, 0 otherwise."
+		{"-g", "--imageGeometry", "{int int int int boolean[ int]}", "", "0",
+			"Geometry of raw image data. Parameters are:\n    1- zSize (number of image components)\n    2- ySize (image height)\n    3- xSize (image width)\n    4- data type. Possible values are:\n \t 0- boolean (1 byte)\n \t 1- unsigned int (1 byte)\n \t 2- unsigned int (2 bytes)\n \t 3- signed int (2 bytes)\n \t 4- signed int (4 bytes)\n \t 5- signed int (8 bytes)\n \t 6- float (4 bytes)\n \t 7- double (8 bytes)\n    5- Byte order (0 if BIG ENDIAN, 1 if LITTLE ENDIAN)\n    6- 1 if 3 first components are RGB, 0 otherwise.\n    7- Sample order (optional). Possible values are:\n \t 0- BSQ, band sequential (default)\n \t 1- BIL, band interleaved by line\n \t 2- BIP, band interleaved by pixel"
 		},
 		{"-o", "--outputFile", "{string}", "same as input with a new extension (see \"-of\" parameter)", "0",
 			"Output image file name (specified without extension)."
@@ -217,6 +217,18 @@ public class ArgsParserCoder{
 		},
 		{"-swt", "--spectralWTType", "{int}", " ", "0",
 			"Discrete wavelet transform type to be applied in the spatial domain."
+		},
+		{"-lm", "--lowMemory", "{boolean}", (TER.TERDefaultValues.lowMemory ? "1": "0") + " ", "0",
+			"Low memory bit plane encoder. The status of the AC components is not stored between bitplanes, it is recomputed from the coefficients each time is needed. It saves about 0.8 KB of heap per 8x8 block (about 3 GB for a 4096x65536 channel) while the bit plane encoder runs at a similar speed. The produced file is identical. Value is a boolean: 0 indicates NO and 1 indicates YES."
+		},
+		{"-nt", "--threads", "{int}", TER.TERDefaultValues.threads + " ", "0",
+			"Number of threads used to code the gaggles of a segment in parallel. The produced file does not depend on this value. 0 uses as many threads as available processors and 1 codes the gaggles sequentially."
+		},
+		{"-t3r", "--test3dTileRows", "{int}", TER.TERDefaultValues.test3dTileRows + " ", "0",
+			"Number of rows of the tiles used to code an image with the 1D + 2D hybrid DWT (-t3 1) without loading it in memory. The image is read tile by tile, each tile holding these rows of all the components, and the spectrally transformed image is kept in a temporary file that is coded component by component, so that memory is bounded by one tile and one component. The produced file is identical. Only plain raw images whose width and height are multiple of 2^WTLevels, and that are not transposed, can be coded by tiles. 0 loads the whole image in memory."
+		},
+		{"-mf", "--metricsFile", "{string}", " ", "0",
+			"File where the metrics of the compression are written: wall time, CPU time and allocated bytes of each stage (and of each component and segment in the bit plane encoder), bytes read and written, packets written, bits produced for each bitplane and peak heap. The metrics are written in CSV if the file name ends with \".csv\" and in JSON otherwise. If not specified, metrics are not collected."
 		}
 		/*,
 		{"-dm", "--distortionMeasure", "{int[ int[ int[ ...]]]}", TER.TERDefaultValues.distortionMeasure+" ", "0",
@@ -283,6 +295,10 @@ public class ArgsParserCoder{
 	int test3d = 0;
 	int spectralWTLevels = 0;
 	int spectralWTType = 0;
+	boolean lowMemory = TERDefaultValues.lowMemory;
+	int threads = TERDefaultValues.threads;
+	int test3dTileRows = TERDefaultValues.test3dTileRows;
+	String metricsFile = null;
 	
 	 /**
 	  * Class constructor that receives the arguments string and initializes all the arguments
@@ -330,7 +346,10 @@ public class ArgsParserCoder{
 						}
 						break;
 					case  2: //-g  --imageGeometry
-						imageGeometry = parseIntegerArray(options, 6);
+						imageGeometry = parseIntegerArray(options);
+						if(imageGeometry.length != 6 && imageGeometry.length != 7){
+							throw new Exception("Argument \"" + options[0] + "\" takes 6 or 7 options. Try \"-h\" to display help.");
+						}
 						break;
 					case  3: //-o  --outputFile
 						outputFile = parseString(options);
@@ -478,6 +497,18 @@ public class ArgsParserCoder{
 					case  51://-swt --spectralWTType
 						spectralWTType = parseIntegerPositive(options);
 						break;
+					case  52://-lm --lowMemory
+						lowMemory = parseBoolean(options);
+						break;
+					case  53://-nt --threads
+						threads = parseIntegerPositive(options);
+						break;
+					case  54://-t3r --test3dTileRows
+						test3dTileRows = parseIntegerPositive(options);
+						break;
+					case  55://-mf --metricsFile
+						metricsFile = parseString(options);
+						break;
 					/*case  33: //-dm --distortionMeasure
 						distortionMeasure = parseIntegerArray(options);
 						break;				
@@ -871,6 +902,18 @@ public class ArgsParserCoder{
 	public int getSpectralWTType(){
 		return this.spectralWTType;
 	}
+	public boolean getLowMemory(){
+		return this.lowMemory;
+	}
+	public int getThreads(){
+		return this.threads;
+	}
+	public int getTest3dTileRows(){
+		return this.test3dTileRows;
+	}
+	public String getMetricsFile(){
+		return this.metricsFile;
+	}
 	
 	////////////////////////////
 	//// HELP DOCUMENT /////////
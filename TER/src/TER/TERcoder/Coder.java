@@ -28,6 +28,7 @@
 package TER.TERcoder;
 
 import TER.TERCommon.ConversionTools;
+import TER.TERCommon.Metrics;
 import TER.TERCommon.ParameterTools;
 import TER.TERcoder.SegmentCoder.*;
 import TER.TERcoder.Weighting.*;
@@ -37,10 +38,21 @@ import TER.TERDefaultValues;
 
 import GiciAnalysis.ImageStatistical;
 import GiciException.*;
+import GiciFile.RawBandWriter;
+import GiciFile.RawTileReader;
 import GiciImageExtension.*;
 import GiciTransform.*;
 import GiciStream.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 
 
 
@@ -148,6 +160,13 @@ public class Coder{
 	 * 
 	 */
 	int outputFileType;
+
+	/**
+	 * Stream where the coded bitstream is written instead of {@link #outputFile}.
+	 * <p>
+	 * Null writes the coded bitstream to {@link #outputFile}.
+	 */
+	OutputStream outputStream = null;
 	
 	/**
 	 * Definition in {@link GiciImageExtension.ImageExtension#imageExtensionType}
@@ -322,6 +341,13 @@ public class Coder{
 	 */
 	boolean[] CVerbose = null;
 	
+	/**
+	 * Metrics of the compression stages and counters of the produced bitstream (see {@link #setMetrics}).
+	 * <p>
+	 * Null if metrics are not collected.
+	 */
+	Metrics metrics = null;
+	
 	/**
 	 * Defintion in {@link TER.TERcoder.WriteFile.RecommendedInterleaving#truncationPoints}
 	 */
@@ -381,6 +407,37 @@ public class Coder{
 	boolean headerMinMax = true;
 	float minValue, maxValue;
 	
+	/**
+	 * Definition in {@link TER.TERcoder.SegmentCoder.SegmentCode2D#lowMemory}
+	 */
+	boolean lowMemory = TERDefaultValues.lowMemory;
+	
+	/**
+	 * Definition in {@link TER.TERcoder.SegmentCoder.SegmentCode2D#threads}
+	 */
+	int threads = TERDefaultValues.threads;
+	
+	/**
+	 * Reader of the image when it is coded by tiles, so that the whole image is never held in memory.
+	 * <p>
+	 * Null when the image is given in memory.
+	 */
+	RawTileReader tileReader = null;
+	
+	/**
+	 * Number of rows of the tiles read by {@link #tileReader}. Each tile holds these rows of all the components.
+	 * <p>
+	 * Positive values allowed, only used when the image is coded by tiles.
+	 */
+	int tileRows;
+	
+	/**
+	 * Temporary raw file that holds the spectrally transformed image when it is coded by tiles.
+	 * <p>
+	 * Null when there is no temporary file.
+	 */
+	File coefficientsFile = null;
+	
 	/**
 	 * Constructor of TERcoder. It receives original image and some information about it.
 	 *
@@ -405,6 +462,32 @@ public class Coder{
 		xOriginalSize = imageSamplesFloat[0][0].length;
 	}
 	
+	/**
+	 * Constructor of TERcoder for images coded by tiles, that are read from a raw file while they are coded instead
+	 * of being held in memory. Only the 1D + 2D hybrid DWT (test3d 1) is available for these images: the level shift
+	 * and the spectral DWT are applied tile by tile and then each component is spatially transformed and coded,
+	 * so that memory is bounded by one tile and one component (besides the coded bitstreams).
+	 *
+	 * @param tileReader reader of the image, closed once the image has been read
+	 * @param tileRows definition in {@link #tileRows}
+	 * @param RGBComponents definition in this class
+	 */
+	public Coder(RawTileReader tileReader, int tileRows, boolean RGBComponents){
+		this.tileReader = tileReader;
+		this.tileRows = tileRows;
+		this.cTypes = tileReader.getTypes();
+		this.RGBComponents = RGBComponents;
+		
+		// Size set
+		zSize = tileReader.getZSize();
+		ySize = tileReader.getYSize();
+		xSize = tileReader.getXSize();
+		
+		zOriginalSize = zSize;
+		yOriginalSize = ySize;
+		xOriginalSize = xSize;
+	}
+	
 		 
 	/**
 	 * Set the parameters used to perform the compression and check validity. If a parameter is not initialized, this class initalizes it with default values.
@@ -457,6 +540,8 @@ public class Coder{
 	 * @param test3d
 	 * @param spectralWTLevels
 	 * @param spectralWTType
+	 * @param lowMemory definition in {@link TER.TERcoder.SegmentCoder.SegmentCode2D#lowMemory}
+	 * @param threads definition in {@link TER.TERcoder.SegmentCoder.SegmentCode2D#threads}
 	 * 
 	 * 
 	 * @throws ParameterException when an invalid or unrecognized exception is detected it will be thrown
@@ -506,31 +591,44 @@ public class Coder{
 			int[] targetBytes, float[] bpppb,
 			int numberOfLayers, int layerCreationType,
 			int layerSizeType, int layerBytes[],
-			int test3d, int spectralWTLevels, int spectralWTType
+			int test3d, int spectralWTLevels, int spectralWTType,
+			boolean lowMemory, int threads
 	) throws ParameterException{
 		///////////////////////////////////////
-		CropChannels cc = new CropChannels(imageSamplesFloat);
 		//this.cropType = outputFileType;
 		this.cropType = 0;
-		cc.setParameters(this.cropType);
-		
-		try{
-			imageSamplesFloat = cc.run();
-		} catch (ErrorException e){
-			throw new ParameterException("Some problem appeared while cropping the image");
+		if (tileReader!=null){
+			//Images coded by tiles are never cropped
+			if (test3d!=1){
+				throw new ParameterException("Images coded by tiles can only be transformed with the 1D + 2D hybrid DWT (test3d 1).");
+			}
+			if (tileRows<=0){
+				throw new ParameterException("The number of rows of the tiles must be positive.");
+			}
+		} else {
+			CropChannels cc = new CropChannels(imageSamplesFloat);
+			cc.setParameters(this.cropType);
+			
+			try{
+				imageSamplesFloat = cc.run();
+			} catch (ErrorException e){
+				throw new ParameterException("Some problem appeared while cropping the image");
+			}
+			
+			removeBand = cc.getRemoveBand();
+			cc = null;
+			//Size set
+			zSize = imageSamplesFloat.length;
+			ySize = imageSamplesFloat[0].length;
+			xSize = imageSamplesFloat[0][0].length;
 		}
-		
-		removeBand = cc.getRemoveBand();
-		cc = null;
-		//Size set
-		zSize = imageSamplesFloat.length;
-		ySize = imageSamplesFloat[0].length;
-		xSize = imageSamplesFloat[0][0].length;
 		////////////////////////////////////////////////
 		
 		this.test3d = test3d;
 		this.spectralWTLevels = spectralWTLevels;
 		this.spectralWTType = spectralWTType;
+		this.lowMemory = lowMemory;
+		this.threads = threads;
 		
 		parametersSet = true;
 		
@@ -560,7 +658,8 @@ public class Coder{
 			// else coding must be stopped
 		} else if (outputFileType==1){
 			//this.outputFile += ".ter";
-			if (headerMinMax){
+			if (headerMinMax && tileReader==null){
+				//images coded by tiles compute it when they are read
 				ImageStatistical is = new ImageStatistical(imageSamplesFloat);
 				double tmp[] = is.getTotalMinMax();
 				minValue = (int) Math.round(tmp[0]);
@@ -790,6 +889,10 @@ public class Coder{
 		if(!parametersSet){
 			throw new ParameterException("TERcoder cannot run if parameters are not set.");
 		}
+		//Checked before coding, since the stream is only known when running
+		if(outputStream != null && targetBytes.length > 1){
+			throw new ParameterException("Only one target bytes value can be coded to a stream.");
+		}
 		if (CVerbose[0]){
 			showTimeMemory("IMAGE LOAD. STARTING COMPRESSION...");
 		}
@@ -797,9 +900,195 @@ public class Coder{
 		if(CVerbose[1]){
 			showArguments();
 		}
+		startStage("coder");
+		startStage("transform");
+		RawTileReader coefficients = null;
+		if (tileReader!=null){
+			coefficients = forwardSpectralTiles();
+		} else {
+			forwardTransform();
+		}
+		stopStage("transform");
+		
+		// Bit Plane Encoder
+		int blockInSegment[][][] = null;
+		try{
+			TER.TERcoder.SegmentCoder.SegmentConstruct sc = new TER.TERcoder.SegmentCoder.SegmentConstruct();
+			sc.setParameters(blocksPerSegment, WTLevels, xOriginalSize, yOriginalSize);
+			blockInSegment = sc.run();
+			sc = null;
+		} catch (Exception e){
+			//The temporary coefficients are deleted, as they are when the bit plane encoder finishes
+			if (coefficients!=null){
+				closeCoefficients(coefficients);
+			}
+			throw e;
+		}
+		//System.gc();
+		
+		BitStream sortingAC[][][][][] = new BitStream[zSize][][][][];
+		BitStream initialCodedDC[][][] = new BitStream[zSize][][];
+		BitStream codedBitDepthACBlock[][][] = new BitStream[zSize][][];
+		BitStream refinementDC[][][][] = new BitStream[zSize][][][];
+		BitStream recommendedRefinementAC[][][][][][] = null;
+		BitStream terRefinementAC[][][][][] = null;
+		if (progressionOrder>=1){
+			terRefinementAC = new BitStream[zSize][][][][];
+		} else {
+			recommendedRefinementAC = new BitStream[zSize][][][][][];
+		}
+		
+		int bitDepthDC[][] = new int[zSize][];
+		int bitDepthAC[][] = new int[zSize][];
+		int bitDepthACBlock[][][][] = new int[zSize][][][];
+		
+		//The gaggles of all the segments are coded in the same pool
+		int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		ExecutorService gagglePool = workers > 1 ? Executors.newFixedThreadPool(workers) : null;
+		startStage("bpe");
+		try{
+			for(int z=0;z<zSize;z++){
+				int segmentsPerChannel = blocksPerSegment[z].length;
+			
+				float[][] coefficientsBand = imageSamplesFloat!=null ? imageSamplesFloat[z] : null;
+				if (coefficients!=null){
+					startStage("spatialTransform");
+					coefficientsBand = forwardSpatialBand(coefficients, z);
+					stopStage("spatialTransform");
+				}
+				startStage("bpe.band." + z);
+				SegmentCode2D sc2d = new SegmentCode2D(coefficientsBand);
+				sc2d.setChannel(z);
+				sc2d.setGagglePool(gagglePool);
+				sc2d.setParameters(WTLevels[z], WTType[z], resolutionLevels[z], customWtFlag[z], customWeight[z], 
+						optDCSelect[z], optACSelect[z], 
+						gaggleDCSize[z], gaggleACSize[z], idDC[z], idAC[z], DCStop[z], bitPlaneStop[z], stageStop[z],
+						segByteLimit[z], desiredDistortion[z], distortionMeasure[z], entropyAC[z], progressionOrder, lowMemory, threads);
+				sortingAC[z] = new BitStream[segmentsPerChannel][][][];
+				initialCodedDC[z] = new BitStream[segmentsPerChannel][];
+				codedBitDepthACBlock[z] = new BitStream[segmentsPerChannel][];
+				refinementDC[z] = new BitStream[segmentsPerChannel][][];
+				if (progressionOrder>=1){
+					terRefinementAC[z] = new BitStream[segmentsPerChannel][][][];
+				} else {
+					recommendedRefinementAC[z] = new BitStream[segmentsPerChannel][][][][];
+				}
+				bitDepthDC[z] = new int[segmentsPerChannel];
+				bitDepthAC[z] = new int[segmentsPerChannel];
+				bitDepthACBlock[z] = new int[segmentsPerChannel][][];
+				for(int segment=0 ; segment < segmentsPerChannel ; segment++){
+				
+					startStage("bpe.band." + z + ".segment." + segment);
+					sc2d.run(blockInSegment[z][segment], segment);
+				
+					initialCodedDC[z][segment] = sc2d.getInitialCodedDC();
+					refinementDC[z][segment] = sc2d.getRefinementDC();
+				
+					codedBitDepthACBlock[z][segment] = sc2d.getCodedBitDepthACBlock();
+				
+					sortingAC[z][segment] = sc2d.getSortingAC();
+					if (progressionOrder>=1){
+						terRefinementAC[z][segment] = sc2d.getTerRefinementAC();
+					} else {
+						recommendedRefinementAC[z][segment] = sc2d.getRecommendedRefinementAC();
+					}
+				
+					bitDepthDC[z][segment] =  sc2d.getBitDepthDC();
+					bitDepthAC[z][segment] =  sc2d.getBitDepthAC();
+					bitDepthACBlock[z][segment] = sc2d.getBitDepthACBlock();
+					stopStage("bpe.band." + z + ".segment." + segment);
+					if (metrics!=null){
+						countBitplaneBits(initialCodedDC[z][segment], refinementDC[z][segment], sortingAC[z][segment],
+								recommendedRefinementAC==null ? null : recommendedRefinementAC[z][segment],
+								terRefinementAC==null ? null : terRefinementAC[z][segment]);
+					}
+				}
+			
+				DCStop[z] = sc2d.getDCStop();
+				sc2d = null;
+				stopStage("bpe.band." + z);
+			
+				if (CVerbose[0]){
+					showTimeMemory("BIT PLANE ENCODER : Band "+z+"...");
+				}
+				//Idea to reduce memory requirements.
+				//imageSamplesFloat[z] = null;
+				//System.gc();
+			}
+		} finally {
+			if (gagglePool!=null){
+				gagglePool.shutdown();
+			}
+			if (coefficients!=null){
+				closeCoefficients(coefficients);
+			}
+		}
+		stopStage("bpe");
+		
+		this.imageSamplesFloat = null;
+		//System.gc();
+		
+		for (int k=0;k<targetBytes.length;k++){
+			String outTmp = null;
+			WriteFile wf = createWriteFile();
+			if (targetBytes.length>1){
+				
+				float bpppb = ConversionTools.getBpppbFromTargetBytes(zOriginalSize,yOriginalSize,xOriginalSize,targetBytes[k]);
+				outTmp = outputFile+"-bpppb_"+getBpppbDecimals(bpppb);
+				
+			} else {
+				outTmp = this.outputFile;
+			}
+			wf.setParameters(outTmp, outputFileType, progressionOrder,
+					cropType,removeBand,zOriginalSize,
+					zSize,yOriginalSize,		
+					initialCodedDC, codedBitDepthACBlock, 
+					refinementDC, sortingAC, recommendedRefinementAC, terRefinementAC,
+					bitDepthDC, bitDepthAC, part2Flag, part3Flag, part4Flag, 
+					imageExtensionType, padRows, transposeImg,LSType, LSComponents, LSSubsValues, 
+					segByteLimit, DCStop, bitPlaneStop, stageStop, useFill, 
+					blocksPerSegment, optDCSelect, optACSelect,
+					WTType, signedPixels, pixelBitDepth, xOriginalSize,
+					codeWordLength, customWtFlag, customWeight,
+					truncationPoints, adjustHeaderParameters, resolutionLevels,
+					WTLevels, WTOrder,
+					gaggleDCSize,gaggleACSize,idDC,idAC,entropyAC,
+					targetBytes[k], numberOfLayers, layerCreationType,
+					layerSizeType,layerBytes,headerMinMax, minValue, maxValue);
+			if(outputStream != null){
+				wf.setOutputStream(outputStream);
+			}
+			startStage("write");
+			wf.run();
+			stopStage("write");
+			if (metrics!=null){
+				metrics.add("bytes.out", wf.getBytesWritten());
+				metrics.add("packets.written", wf.getPacketsWritten());
+			}
+			
+			wf = null;
+			if (targetBytes.length>1){
+				System.gc();
+			}
+			if (CVerbose[0]){
+				showTimeMemory("INTERLEAVING AND SAVING FILE...");
+			}
+		}
+		stopStage("coder");
+
+	}
+
+	/**
+	 * Applies to the whole image the transforms that precede the bit plane encoder: transposition, level shift,
+	 * image extension, wavelet transform, weighting and coefficients approximation.
+	 *
+	 * @throws Exception when something goes wrong and compression must be stopped
+	 */
+	private void forwardTransform() throws Exception{
 		//Transpose Image
 		boolean needTranspose = TransposeImage.needTranspose(this.transposeImg);
 		if (needTranspose){
+			startStage("transpose");
 			TransposeImage ti = new TransposeImage(imageSamplesFloat);
 			ti.setParameters(transposeImg);
 			imageSamplesFloat = ti.run();
@@ -807,19 +1096,29 @@ public class Coder{
 			this.yOriginalSize = imageSamplesFloat[0].length;
 			ti = null;
 			//System.gc();
+			stopStage("transpose");
 			if (CVerbose[0]){
 				showTimeMemory("IMAGE TRANSPOSE...");
 			}
 		}
 	
+		boolean needExtension = ImageExtension.needImageExtension(imageExtensionType,WTLevels,xSize,ySize,zSize);
+		
         //LEVEL SHIFT
 		if (LSType!=0){
+			startStage("levelShift");
 			LevelShift ls = new LevelShift(imageSamplesFloat);
 			ls.setParameters(LSType, TERDefaultValues.integerToBooleanComponents(LSComponents,zSize,true), LSSubsValues, pixelBitDepth);
-			imageSamplesFloat = ls.run();
-			LSSubsValues = ls.getSubsValues();
+			if ( needExtension ){
+				//the shift is applied by the image extension, which copies the whole image anyway
+				LSSubsValues = ls.computeSubsValues();
+			} else {
+				imageSamplesFloat = ls.run();
+				LSSubsValues = ls.getSubsValues();
+			}
 			//Free unused memory
 			ls = null;
+			stopStage("levelShift");
 			//Show statistics
 			if (CVerbose[0]){
 				showTimeMemory("LEVEL SHIFT");
@@ -827,20 +1126,25 @@ public class Coder{
 		}
 		
 		//Image Extension
-		boolean needExtension = ImageExtension.needImageExtension(imageExtensionType,WTLevels,xSize,ySize,zSize);
 		if ( needExtension ){
+			startStage("imageExtension");
 			ImageExtension ie = new ImageExtension(imageSamplesFloat);
 			ie.setParameters(imageExtensionType, WTLevels);
+			if (LSType!=0){
+				ie.setLevelShift(LSSubsValues);
+			}
 			imageSamplesFloat = ie.run();
 			padRows = ie.getPadRows();
 			//Free unused memory
 			ie = null;
 			//System.gc();
+			stopStage("imageExtension");
 			if (CVerbose[0]){
 				showTimeMemory("IMAGE EXTENSION...");
 			}
 		} 
 	
+		startStage("forwardDWT");
 		if (test3d == 0){
 			//Forward Wavelet Transform
 			ForwardWaveletTransform fwt = new ForwardWaveletTransform(imageSamplesFloat);
@@ -888,153 +1192,429 @@ public class Coder{
 				showTimeMemory("FORWARD WAVELET TRANSFORM...");
 			}
 		}
+		stopStage("forwardDWT");
 		//System.gc();
 		
 		// Weighting
 		boolean needWeighting = ForwardWeighting.setWeightingNeed(customWtFlag,WTType,zSize);
+		boolean needApproximation = CoefficientsApproximation.TERsetApproximationNeed(coefficientsApproximationTypes);
 		if (needWeighting){
+			startStage("weighting");
 			ForwardWeighting wg = new ForwardWeighting(imageSamplesFloat);
 			wg.setParameters(customWtFlag,WTType,WTLevels,customWeight);
+			if (needApproximation){
+				//coefficients are approximated by the weighting stage while they are in cache
+				wg.setApproximationTypes(coefficientsApproximationTypes);
+			}
 			imageSamplesFloat = wg.run();
 			wg = null;
 			//System.gc();
+			stopStage("weighting");
 			if (CVerbose[0]){
 				showTimeMemory("WEIGHTING...");
 			}
 		}
 
 		// Coefficients Approximantion
-		boolean needApproximation = CoefficientsApproximation.TERsetApproximationNeed(coefficientsApproximationTypes);
-		if (needApproximation){
+		if (needApproximation && !needWeighting){
+			startStage("coefficientsApproximation");
 			CoefficientsApproximation ca = new CoefficientsApproximation(imageSamplesFloat);
 			ca.setParameters(coefficientsApproximationTypes);
 			imageSamplesFloat=ca.run();
+			stopStage("coefficientsApproximation");
 			if (CVerbose[0]){
 				showTimeMemory("COEFFICIENTS APPROXIMATION...");
 			}
 		}
-		
-		// Bit Plane Encoder
-		TER.TERcoder.SegmentCoder.SegmentConstruct sc = new TER.TERcoder.SegmentCoder.SegmentConstruct();
-		sc.setParameters(blocksPerSegment, WTLevels, xOriginalSize, yOriginalSize);
-		int blockInSegment[][][] = sc.run();
-		sc = null;
-		//System.gc();
-		
-		BitStream sortingAC[][][][][] = new BitStream[zSize][][][][];
-		BitStream initialCodedDC[][][] = new BitStream[zSize][][];
-		BitStream codedBitDepthACBlock[][][] = new BitStream[zSize][][];
-		BitStream refinementDC[][][][] = new BitStream[zSize][][][];
-		BitStream recommendedRefinementAC[][][][][][] = null;
-		BitStream terRefinementAC[][][][][] = null;
-		if (progressionOrder>=1){
-			terRefinementAC = new BitStream[zSize][][][][];
-		} else {
-			recommendedRefinementAC = new BitStream[zSize][][][][][];
+	}
+
+	/**
+	 * Applies the level shift and the spectral DWT of the 1D + 2D hybrid DWT tile by tile, reading the image from
+	 * {@link #tileReader}. Each tile holds {@link #tileRows} rows of all the components, which is all the spectral DWT
+	 * needs since it transforms each pixel independently. The transformed tiles are stored in a temporary raw file
+	 * that is read back component by component by {@link #forwardSpatialBand}.
+	 *
+	 * @return reader of the temporary file that holds the spectrally transformed image
+	 *
+	 * @throws Exception when the image cannot be coded by tiles or something goes wrong and compression must be stopped
+	 */
+	private RawTileReader forwardSpectralTiles() throws Exception{
+		if (TransposeImage.needTranspose(transposeImg)){
+			throw new ParameterException("Images coded by tiles cannot be transposed.");
+		}
+		if (ImageExtension.needImageExtension(imageExtensionType,WTLevels,xSize,ySize,zSize)){
+			throw new ParameterException("The width and height of images coded by tiles must be multiple of 2^WTLevels.");
 		}
 		
-		int bitDepthDC[][] = new int[zSize][];
-		int bitDepthAC[][] = new int[zSize][];
-		int bitDepthACBlock[][][][] = new int[zSize][][][];
-		
-		for(int z=0;z<zSize;z++){
-			int segmentsPerChannel = blocksPerSegment[z].length;
-			
-			SegmentCode2D sc2d = new SegmentCode2D(imageSamplesFloat[z]);
-			sc2d.setParameters(WTLevels[z], WTType[z], resolutionLevels[z], customWtFlag[z], customWeight[z], 
-					optDCSelect[z], optACSelect[z], 
-					gaggleDCSize[z], gaggleACSize[z], idDC[z], idAC[z], DCStop[z], bitPlaneStop[z], stageStop[z],
-					segByteLimit[z], desiredDistortion[z], distortionMeasure[z], entropyAC[z], progressionOrder);
-			sortingAC[z] = new BitStream[segmentsPerChannel][][][];
-			initialCodedDC[z] = new BitStream[segmentsPerChannel][];
-			codedBitDepthACBlock[z] = new BitStream[segmentsPerChannel][];
-			refinementDC[z] = new BitStream[segmentsPerChannel][][];
-			if (progressionOrder>=1){
-				terRefinementAC[z] = new BitStream[segmentsPerChannel][][][];
-			} else {
-				recommendedRefinementAC[z] = new BitStream[segmentsPerChannel][][][][];
+		//Statistics of the image, read tile by tile
+		boolean needMinMax = outputFileType==1 && headerMinMax;
+		boolean shiftedComponents[] = TERDefaultValues.integerToBooleanComponents(LSComponents,zSize,true);
+		int tileLSType = LSType;
+		if (needMinMax || LSType==2 || LSType==3){
+			double statistics[][] = scanTiles();
+			if (needMinMax){
+				double totalMinMax[] = {Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+				for(int z=0;z<zSize;z++){
+					totalMinMax[0] = Math.min(totalMinMax[0], statistics[z][0]);
+					totalMinMax[1] = Math.max(totalMinMax[1], statistics[z][1]);
+				}
+				minValue = (int) Math.round(totalMinMax[0]);
+				maxValue = (int) Math.round(totalMinMax[1]);
 			}
-			bitDepthDC[z] = new int[segmentsPerChannel];
-			bitDepthAC[z] = new int[segmentsPerChannel];
-			bitDepthACBlock[z] = new int[segmentsPerChannel][][];
-			for(int segment=0 ; segment < segmentsPerChannel ; segment++){
-				
-				sc2d.run(blockInSegment[z][segment], segment);
-				
-				initialCodedDC[z][segment] = sc2d.getInitialCodedDC();
-				refinementDC[z][segment] = sc2d.getRefinementDC();
+			if (LSType==2 || LSType==3){
+				//values are computed as in LevelShift and then given as specific values
+				for(int z=0;z<zSize;z++){
+					double value = LSType==2 ? (statistics[z][0] + statistics[z][1]) / 2 : statistics[z][2] / (xSize*ySize);
+					LSSubsValues[z] = shiftedComponents[z] ? (int) Math.round(value) : 0;
+				}
+				tileLSType = 4;
+			}
+		}
+		
+		startStage("spectralDWT");
+		//The file is deleted when the coefficients are closed, or here if they cannot be written
+		coefficientsFile = File.createTempFile("TERcoder", ".raw");
+		RawBandWriter coefficientsWriter = new RawBandWriter(coefficientsFile.getPath());
+		try{
+			coefficientsWriter.open(new int[]{zSize, ySize, xSize, 6, 0, 0});
+			float[][][] tile = null;
+			for(int yStart=0;yStart<ySize;yStart+=tileRows){
+				int yEnd = Math.min(yStart+tileRows, ySize);
+				tile = tileReader.read(0, zSize, yStart, yEnd, tile);
 				
-				codedBitDepthACBlock[z][segment] = sc2d.getCodedBitDepthACBlock();
+				//LEVEL SHIFT
+				if (LSType!=0){
+					LevelShift ls = new LevelShift(tile);
+					ls.setParameters(tileLSType, shiftedComponents, LSSubsValues, pixelBitDepth);
+					tile = ls.run();
+					LSSubsValues = ls.getSubsValues();
+					ls = null;
+				}
 				
-				sortingAC[z][segment] = sc2d.getSortingAC();
-				if (progressionOrder>=1){
-					terRefinementAC[z][segment] = sc2d.getTerRefinementAC();
-				} else {
-					recommendedRefinementAC[z][segment] = sc2d.getRecommendedRefinementAC();
+				//Spectral Wavelet Transform
+				ForwardDWTCore fwt = new ForwardDWTCore(tile);
+				int zSubBandSize = zSize;
+				for(int level=0;level<spectralWTLevels;level++){
+					fwt.setParameters(spectralWTType,2,0,zSubBandSize-1,0,yEnd-yStart-1,0,xSize-1);
+					fwt.run();
+					zSubBandSize = zSubBandSize / 2 + zSubBandSize % 2;
 				}
+				tile = fwt.getImageSamples();
+				fwt = null;
 				
-				bitDepthDC[z][segment] =  sc2d.getBitDepthDC();
-				bitDepthAC[z][segment] =  sc2d.getBitDepthAC();
-				bitDepthACBlock[z][segment] = sc2d.getBitDepthACBlock();
+				coefficientsWriter.writeRows(yStart, tile);
 			}
-			
-			DCStop[z] = sc2d.getDCStop();
-			sc2d = null;
-			
-			if (CVerbose[0]){
-				showTimeMemory("BIT PLANE ENCODER : Band "+z+"...");
+		} catch (Exception e){
+			coefficientsWriter.close();
+			coefficientsFile.delete();
+			tileReader.close();
+			throw e;
+		}
+		RawTileReader coefficients = null;
+		try{
+			coefficientsWriter.close();
+			tileReader.close();
+			coefficients = new RawTileReader(coefficientsFile.getPath(), zSize, ySize, xSize, 6, 0, 0);
+		} catch (Exception e){
+			coefficientsFile.delete();
+			throw e;
+		}
+		stopStage("spectralDWT");
+		if (CVerbose[0]){
+			showTimeMemory("SPECTRAL WAVELET TRANSFORM...");
+		}
+		return coefficients;
+	}
+	
+	/**
+	 * Reads the image tile by tile computing the minimum, maximum and sum of the samples of each component, as
+	 * {@link GiciAnalysis.ImageStatistical} does for the whole image.
+	 *
+	 * @return the statistics of each component, index meaning [z][0 - minimum, 1 - maximum, 2 - sum]
+	 *
+	 * @throws WarningException when the image cannot be read
+	 */
+	private double[][] scanTiles() throws WarningException{
+		double statistics[][] = new double[zSize][3];
+		for(int z=0;z<zSize;z++){
+			statistics[z][0] = Float.POSITIVE_INFINITY;
+			statistics[z][1] = Float.NEGATIVE_INFINITY;
+		}
+		float[][][] tile = null;
+		for(int yStart=0;yStart<ySize;yStart+=tileRows){
+			int yEnd = Math.min(yStart+tileRows, ySize);
+			tile = tileReader.read(0, zSize, yStart, yEnd, tile);
+			for(int z=0;z<zSize;z++){
+				for(int y=0;y<yEnd-yStart;y++){
+					for(int x=0;x<xSize;x++){
+						float sample = tile[z][y][x];
+						if (sample<statistics[z][0]){
+							statistics[z][0] = sample;
+						}
+						if (sample>statistics[z][1]){
+							statistics[z][1] = sample;
+						}
+						statistics[z][2] += sample;
+					}
+				}
 			}
-			//Idea to reduce memory requirements.
-			//imageSamplesFloat[z] = null;
-			//System.gc();
 		}
+		return statistics;
+	}
+	
+	/**
+	 * Reads one component of the spectrally transformed image and applies to it the spatial DWT of the 1D + 2D hybrid
+	 * DWT, the weighting and the coefficients approximation.
+	 *
+	 * @param coefficients reader of the temporary file that holds the spectrally transformed image
+	 * @param z the component
+	 * @return the coefficients of the component, ready for the bit plane encoder
+	 *
+	 * @throws Exception when something goes wrong and compression must be stopped
+	 */
+	private float[][] forwardSpatialBand(RawTileReader coefficients, int z) throws Exception{
+		float[][][] band = coefficients.read(z, z+1, 0, ySize, null);
 		
-		this.imageSamplesFloat = null;
-		//System.gc();
+		//Spatial Wavelet Transform, as done by ForwardNonPyramidal3D
+		ForwardDWTCore fwt = new ForwardDWTCore(band);
+		int ySubBandSize = ySize;
+		int xSubBandSize = xSize;
+		for(int level=0;level<WTLevels[0];level++){
+			fwt.setParameters(WTType[0],0,0,0,0,ySubBandSize-1,0,xSubBandSize-1);
+			fwt.run();
+			fwt.setParameters(WTType[0],1,0,0,0,ySubBandSize-1,0,xSubBandSize-1);
+			fwt.run();
+			xSubBandSize = xSubBandSize / 2 + xSubBandSize % 2;
+			ySubBandSize = ySubBandSize / 2 + ySubBandSize % 2;
+		}
+		band = fwt.getImageSamples();
+		fwt = null;
 		
-		for (int k=0;k<targetBytes.length;k++){
-			String outTmp = null;
-			WriteFile wf = new WriteFile();
-			if (targetBytes.length>1){
-				
-				float bpppb = ConversionTools.getBpppbFromTargetBytes(zOriginalSize,yOriginalSize,xOriginalSize,targetBytes[k]);
-				outTmp = outputFile+"-bpppb_"+getBpppbDecimals(bpppb);
-				
-			} else {
-				outTmp = this.outputFile;
+		// Weighting
+		boolean needWeighting = ForwardWeighting.setWeightingNeed(customWtFlag,WTType,zSize);
+		boolean needApproximation = CoefficientsApproximation.TERsetApproximationNeed(coefficientsApproximationTypes);
+		if (needWeighting){
+			ForwardWeighting wg = new ForwardWeighting(band);
+			wg.setParameters(new int[]{customWtFlag[z]}, new int[]{WTType[z]}, new int[]{WTLevels[z]}, new float[][]{customWeight[z]});
+			if (needApproximation){
+				wg.setApproximationTypes(new int[]{coefficientsApproximationTypes[z]});
 			}
-			wf.setParameters(outTmp, outputFileType, progressionOrder,
-					cropType,removeBand,zOriginalSize,
-					zSize,yOriginalSize,		
-					initialCodedDC, codedBitDepthACBlock, 
-					refinementDC, sortingAC, recommendedRefinementAC, terRefinementAC,
-					bitDepthDC, bitDepthAC, part2Flag, part3Flag, part4Flag, 
-					imageExtensionType, padRows, transposeImg,LSType, LSComponents, LSSubsValues, 
-					segByteLimit, DCStop, bitPlaneStop, stageStop, useFill, 
-					blocksPerSegment, optDCSelect, optACSelect,
-					WTType, signedPixels, pixelBitDepth, xOriginalSize,
-					codeWordLength, customWtFlag, customWeight,
-					truncationPoints, adjustHeaderParameters, resolutionLevels,
-					WTLevels, WTOrder,
-					gaggleDCSize,gaggleACSize,idDC,idAC,entropyAC,
-					targetBytes[k], numberOfLayers, layerCreationType,
-					layerSizeType,layerBytes,headerMinMax, minValue, maxValue);
-			wf.run();
-			
-			wf = null;
-			if (targetBytes.length>1){
-				System.gc();
+			band = wg.run();
+			wg = null;
+		}
+		
+		// Coefficients Approximantion
+		if (needApproximation && !needWeighting){
+			CoefficientsApproximation ca = new CoefficientsApproximation(band);
+			ca.setParameters(new int[]{coefficientsApproximationTypes[z]});
+			band = ca.run();
+		}
+		return band[0];
+	}
+	
+	/**
+	 * Closes and deletes the temporary file that holds the spectrally transformed image.
+	 *
+	 * @param coefficients reader of the temporary file
+	 *
+	 * @throws WarningException when the file cannot be closed
+	 */
+	private void closeCoefficients(RawTileReader coefficients) throws WarningException{
+		try{
+			coefficients.close();
+		} finally {
+			coefficientsFile.delete();
+			coefficientsFile = null;
+		}
+	}
+	
+	/**
+	 * Runs the TER coder writing the coded bitstream to a stream instead of the output file, so that nothing is
+	 * written to disk. The output file given in {@link #setParameters} is ignored and the stream is not closed.
+	 *
+	 * @param outputStream stream where the coded bitstream is written
+	 *
+	 * @throws Exception when something goes wrong and compression must be stopped
+	 */
+	public void run(OutputStream outputStream) throws Exception{
+		this.outputStream = outputStream;
+		try{
+			run();
+		}finally{
+			this.outputStream = null;
+		}
+	}
+
+	/**
+	 * Runs the TER coder writing the coded bitstream to a channel (see {@link #run(OutputStream)}).
+	 *
+	 * @param outputChannel channel where the coded bitstream is written
+	 *
+	 * @throws Exception when something goes wrong and compression must be stopped
+	 */
+	public void run(WritableByteChannel outputChannel) throws Exception{
+		run(Channels.newOutputStream(outputChannel));
+	}
+
+	/**
+	 * Runs the TER coder writing the coded bitstream to a buffer, from its position (see {@link #run(OutputStream)}).
+	 * The position of the buffer is left after the coded bitstream.
+	 *
+	 * @param outputBuffer buffer where the coded bitstream is written
+	 *
+	 * @throws Exception when something goes wrong and compression must be stopped, or the bitstream does not fit in the buffer
+	 */
+	public void run(final ByteBuffer outputBuffer) throws Exception{
+		run(new OutputStream(){
+			public void write(int b) throws IOException{
+				if(!outputBuffer.hasRemaining()){
+					throw new IOException("Coded bitstream does not fit in the buffer.");
+				}
+				outputBuffer.put((byte) b);
 			}
-			if (CVerbose[0]){
-				showTimeMemory("INTERLEAVING AND SAVING FILE...");
+			public void write(byte[] b, int off, int len) throws IOException{
+				if(outputBuffer.remaining() < len){
+					throw new IOException("Coded bitstream does not fit in the buffer.");
+				}
+				outputBuffer.put(b, off, len);
 			}
-		}
+		});
+	}
 
+	/**
+	 * Creates the writer of the encoded file. Subclasses may return their own writer to keep the coded segments once
+	 * the bit plane encoder has finished (i.e. to time the writer alone).
+	 *
+	 * @return a writer whose parameters have not been set
+	 */
+	protected WriteFile createWriteFile(){
+		return new WriteFile();
 	}
-	
+
 	private float getBpppbDecimals(float bpppb){
 		return Math.round(bpppb*1000)/(float)1000;
 	}
+	/**
+	 * Collects the metrics of the compression in the given object: the wall time, CPU time and allocated bytes of
+	 * each stage ("coder"; "transform" with its stages; "bpe" with "bpe.band.z" and "bpe.band.z.segment.s"; "write"),
+	 * the bits produced by the bit plane encoder for each bitplane ("bits.bitplane.b"), and the bytes and packets
+	 * written ("bytes.out", "packets.written").
+	 *
+	 * @param metrics definition in {@link #metrics}
+	 */
+	public void setMetrics(Metrics metrics){
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Starts a stage in {@link #metrics}, if they are collected.
+	 *
+	 * @param stage name of the stage
+	 */
+	private void startStage(String stage){
+		if (metrics!=null){
+			metrics.start(stage);
+		}
+	}
+
+	/**
+	 * Stops a stage in {@link #metrics}, if they are collected.
+	 *
+	 * @param stage name of the stage
+	 */
+	private void stopStage(String stage){
+		if (metrics!=null){
+			metrics.stop(stage);
+		}
+	}
+
+	/**
+	 * Adds to {@link #metrics} the bits produced by the bit plane encoder for each bitplane of a segment. The bits of
+	 * the initial coding of the DC components are not related to a bitplane and are counted in "bits.initialCoding".
+	 *
+	 * @param initialCodedDC initial coding of the DC components of each gaggle
+	 * @param refinementDC refinement of the DC components, index meaning [gaggle][bitPlane]
+	 * @param sortingAC significance of the AC components, index meaning [gaggle][bitPlane][resolutionLevel]
+	 * @param recommendedRefinementAC refinement of the AC components, index meaning [gaggle][bitPlane][block][resolutionLevel] (null when not used)
+	 * @param terRefinementAC refinement of the AC components, index meaning [gaggle][bitPlane][resolutionLevel] (null when not used)
+	 */
+	private void countBitplaneBits(BitStream initialCodedDC[], BitStream refinementDC[][], BitStream sortingAC[][][],
+			BitStream recommendedRefinementAC[][][][], BitStream terRefinementAC[][][]){
+		if (initialCodedDC!=null){
+			for(int gaggle=0;gaggle<initialCodedDC.length;gaggle++){
+				if (initialCodedDC[gaggle]!=null){
+					metrics.add("bits.initialCoding", initialCodedDC[gaggle].getNumBits());
+				}
+			}
+		}
+		long bits[] = new long[0];
+		if (refinementDC!=null){
+			for(int gaggle=0;gaggle<refinementDC.length;gaggle++){
+				if (refinementDC[gaggle]!=null){
+					for(int bitPlane=0;bitPlane<refinementDC[gaggle].length;bitPlane++){
+						bits = addBits(bits, bitPlane, new BitStream[]{refinementDC[gaggle][bitPlane]});
+					}
+				}
+			}
+		}
+		if (sortingAC!=null){
+			for(int gaggle=0;gaggle<sortingAC.length;gaggle++){
+				for(int bitPlane=0;bitPlane<sortingAC[gaggle].length;bitPlane++){
+					bits = addBits(bits, bitPlane, sortingAC[gaggle][bitPlane]);
+				}
+			}
+		}
+		if (terRefinementAC!=null){
+			for(int gaggle=0;gaggle<terRefinementAC.length;gaggle++){
+				if (terRefinementAC[gaggle]!=null){
+					for(int bitPlane=0;bitPlane<terRefinementAC[gaggle].length;bitPlane++){
+						bits = addBits(bits, bitPlane, terRefinementAC[gaggle][bitPlane]);
+					}
+				}
+			}
+		}
+		if (recommendedRefinementAC!=null){
+			for(int gaggle=0;gaggle<recommendedRefinementAC.length;gaggle++){
+				if (recommendedRefinementAC[gaggle]!=null){
+					for(int bitPlane=0;bitPlane<recommendedRefinementAC[gaggle].length;bitPlane++){
+						for(int block=0;block<recommendedRefinementAC[gaggle][bitPlane].length;block++){
+							bits = addBits(bits, bitPlane, recommendedRefinementAC[gaggle][bitPlane][block]);
+						}
+					}
+				}
+			}
+		}
+		for(int bitPlane=0;bitPlane<bits.length;bitPlane++){
+			if (bits[bitPlane]>0){
+				metrics.add("bits.bitplane." + bitPlane, bits[bitPlane]);
+			}
+		}
+	}
+
+	/**
+	 * Adds the bits of some streams to the bits of one bitplane.
+	 *
+	 * @param bits bits of each bitplane
+	 * @param bitPlane the bitplane
+	 * @param streams the streams (null streams are skipped)
+	 * @return the bits of each bitplane, enlarged when the bitplane does not fit
+	 */
+	private static long[] addBits(long bits[], int bitPlane, BitStream streams[]){
+		if (streams!=null){
+			for(int stream=0;stream<streams.length;stream++){
+				if (streams[stream]!=null){
+					if (bitPlane>=bits.length){
+						long enlargedBits[] = new long[bitPlane+1];
+						System.arraycopy(bits, 0, enlargedBits, 0, bits.length);
+						bits = enlargedBits;
+					}
+					bits[bitPlane] += streams[stream].getNumBits();
+				}
+			}
+		}
+		return bits;
+	}
+
 	//////////////////////////////////////////////
 	//FUNCTIONS TO SHOW SOME VERBOSE INFORMATION//
 	//////////////////////////////////////////////
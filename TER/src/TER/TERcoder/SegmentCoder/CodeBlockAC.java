@@ -121,11 +121,9 @@ public class CodeBlockAC {
 	boolean parametersSet = false;
 
 	/**
-	 * Stores for each of the entropy coder options the number of bits required to encode the gaggle. 
-	 * <p>
-	 * Negative values are not allowed. 
+	 * Definition in {@link EncodeGaggleAC#symbolHistogram}
 	 */
-	int codeLength[] = null;
+	int symbolHistogram[] = null;
 
 	/**
 	 * Definition in {@link TER.TERcoder.Coder#imageSamplesFloat}
@@ -190,12 +188,12 @@ public class CodeBlockAC {
 	 * @param distortion {@link #distortion}
 	 * @param Ds {@link #Ds}
 	 * @param D {@link #D}
-	 * @param codeLength {@link #codeLength}
+	 * @param symbolHistogram {@link #symbolHistogram}
 	 */
 	public void setParameters(int WTLevels, int resolutionLevels,
 			int blockNumber, byte[][][][] blockStatus,
 			int bitDepthAC_Block, int entropyAC, int[] BP,
-			DistortionCompute distortion, byte Ds, byte[] D, int[] codeLength) {
+			DistortionCompute distortion, byte Ds, byte[] D, int[] symbolHistogram) {
 
 		this.BP = BP;
 		this.bitDepthAC_Block = bitDepthAC_Block;
@@ -251,13 +249,10 @@ public class CodeBlockAC {
 		
 		
 		if (this.entropyCode==1){
-			if (codeLength != null) {
-				this.codeLength = codeLength;
+			if (symbolHistogram != null) {
+				this.symbolHistogram = symbolHistogram;
 			} else {
-				this.codeLength = new int[9];
-				for (int k = 0; k < 9; k++) {
-					this.codeLength[k] = 0;
-				}
+				this.symbolHistogram = new int[3 << 4];
 			}
 		}
 
@@ -861,68 +856,15 @@ public class CodeBlockAC {
 	}
 
 	/**
-	 * This function computes the lenght that would use any of the entropy encoding options.
+	 * This function adds the symbol of the word to the histogram from which the length of any of the entropy encoding options is computed.
 	 * 
 	 * @param word contains a word that has been encoded
 	 * @param context indicates the kind of word to be encoded, i.e. the lenght and the encoding pass
 	 */
 	private void updateLengthEntropyEncoder(int word, byte context) {
-		int symbol = 0;
-		int length = 0;
-		int PDF2MapperGeneral[] = { 0, 2, 1, 3 };
-		int PDF3MapperGeneral[] = { 1, 4, 0, 5, 2, 6, 3, 7 };
-		int PDF3MapperImpossibleValue[] = {/*-1*/7, 3, 0, 4, 1, 5, 2, 6 }; // 000 is impossible
-		int PDF4MapperGeneral[] = { 10, 1, 3, 6, 2, 5, 9, 12, 0, 8, 7, 13, 4, 14, 11, 15 };
-		int PDF4MapperImpossibleValue[] = {/*-1*/15, 1, 3, 6, 2, 5, 9, 11, 0, 8, 7, 12, 4, 13, 10, 14 }; // 0000 is impossible
-
-		switch (context) {
-		case (byte) 64: // 1-bit significance word
-			symbol = word;
-			length = 1;
-			break;
-		case (byte) 65: // 2-bit significance word
-			symbol = PDF2MapperGeneral[word];
-			length = 2;
-			break;
-		case (byte) 66: // 3-bit significance word, 000 impossible value
-			symbol = PDF3MapperImpossibleValue[word];
-			length = 3;
-			break;
-		case (byte) 67: // 3-bit significance word, general case (any value is possible)
-			symbol = PDF3MapperGeneral[word];
-			length = 3;
-			break;
-		case (byte) 68: // 4-bit significance word, 0000 impossible value
-			symbol = PDF4MapperImpossibleValue[word];
-			length = 4;
-			break;
-		case (byte) 69: // 4-bit significance word, general case (any value is possible)
-			symbol = PDF4MapperGeneral[word];
-			length = 4;
-			break;
-		default:
-			symbol = word;
-		}
-
-		int lengthOfTwoBitsVariableLenghtCode_Option0[] = { 1, 2, 3, 3 };
-		int lengthOfThreeBitsVariableLenghtCode_Option0[] = { 1, 2, 3, 5, 5, 5, 6, 6 };
-		int lengthOfThreeBitsVariableLenghtCode_Option1[] = { 2, 2, 3, 3, 4, 4, 4, 4 };
-		int lengthOfFourBitsVariableLenghtCode_Option0[] = { 1, 2, 3, 4, 7, 7, 7, 7, 8, 8, 8, 8, 8, 8, 8, 8 };
-		int lengthOfFourBitsVariableLenghtCode_Option1[] = { 2, 2, 3, 3, 4, 4, 6, 6, 6, 6, 6, 6, 7, 7, 7, 7 };
-		int lengthOfFourBitsVariableLenghtCode_Option2[] = { 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 5, 5, 5, 5 };
-
-		if (length == 2) {
-			this.codeLength[0] += lengthOfTwoBitsVariableLenghtCode_Option0[symbol];
-			this.codeLength[1] += 2;// uncoded option
-		} else if (length == 3) {
-			this.codeLength[2] += lengthOfThreeBitsVariableLenghtCode_Option0[symbol];
-			this.codeLength[3] += lengthOfThreeBitsVariableLenghtCode_Option1[symbol];
-			this.codeLength[4] += 3;// uncoded option
-		} else if (length == 4) {
-			this.codeLength[5] += lengthOfFourBitsVariableLenghtCode_Option0[symbol];
-			this.codeLength[6] += lengthOfFourBitsVariableLenghtCode_Option1[symbol];
-			this.codeLength[7] += lengthOfFourBitsVariableLenghtCode_Option2[symbol];
-			this.codeLength[8] += 4;
+		int length = EncodeGaggleAC.getLength(context);
+		if (length >= 2) {
+			symbolHistogram[((length - 2) << 4) + EncodeGaggleAC.mapIntoSymbol(word, context)]++;
 		}
 	}
 
@@ -1082,8 +1024,8 @@ public class CodeBlockAC {
 		return this.refinementAC;
 	}
 
-	public int[] getCodeLength() {
-		return this.codeLength;
+	public int[] getSymbolHistogram() {
+		return this.symbolHistogram;
 	}
 
 }
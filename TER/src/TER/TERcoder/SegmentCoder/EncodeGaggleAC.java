@@ -30,6 +30,7 @@ package TER.TERcoder.SegmentCoder;
 import GiciException.ParameterException;
 import GiciStream.BitStream;
 import GiciStream.ByteStream;
+import TER.TERCommon.Events.GaggleEncoded;
 
 
 
@@ -87,9 +88,12 @@ public class EncodeGaggleAC{
 	int ids[] = null;
 	
 	/**
-	 * Definition in {@link CodeBlockAC#codeLength}
+	 * Histogram of the symbols of the 2, 3 and 4 bit words of the gaggle, from which the length of each entropy code option is computed.
+	 * symbolHistogram[((wordLength - 2) << 4) + symbol]
+	 * <p>
+	 * Negative values are not allowed.
 	 */
-	int codeLength[] = null;
+	int symbolHistogram[] = null;
 	
 	/**
 	 * Indicates for each length (2,3 or 4) the entropy code option that has been chosen.
@@ -106,6 +110,12 @@ public class EncodeGaggleAC{
 	 */
 	int[] codeIdLength = {1,2,2};
 	
+	/**
+	 * Position of the gaggle, index meaning [0 - channel, 1 - segment, 2 - gaggle, 3 - bitplane]. Only used to identify
+	 * the gaggles in the recorded events.
+	 */
+	int position[] = new int[4];
+	
 	/**
 	 * Constructor of EncodeGaggleAC.
 	 */
@@ -118,11 +128,11 @@ public class EncodeGaggleAC{
 	 * 
 	 * @param sortingACGaggle definition in {@link #sortingACGaggle}
 	 * @param entropyAC definition in {@link #entropyAC}
-	 * @param codeLength definition in {@link CodeBlockAC#codeLength}
+	 * @param symbolHistogram definition in {@link #symbolHistogram}
 	 * @param resolutionLevels definition in {@link #resolutionLevels}
 	 */
 	public void setParameters(ByteStream sortingACGaggle[][][][],
-			int entropyAC, int codeLength[], int resolutionLevels){
+			int entropyAC, int symbolHistogram[], int resolutionLevels){
 		
 		this.sortingACGaggle = sortingACGaggle;
 
@@ -130,11 +140,26 @@ public class EncodeGaggleAC{
 
 		this.resolutionLevels = resolutionLevels;
 		
-		this.codeLength = codeLength;
+		this.symbolHistogram = symbolHistogram;
 		
 		parametersSet = true;
 	}
 	
+	/**
+	 * Sets the position of the gaggle that is coded, which is recorded in its {@link GaggleEncoded} event.
+	 * 
+	 * @param channel component of the gaggle
+	 * @param segment segment of the gaggle
+	 * @param gaggle index of the gaggle in the segment
+	 * @param bitplane coded bitplane
+	 */
+	public void setPosition(int channel, int segment, int gaggle, int bitplane){
+		position[0] = channel;
+		position[1] = segment;
+		position[2] = gaggle;
+		position[3] = bitplane;
+	}
+	
 	/**
 	 * Performs entropy coding.
 	 * 
@@ -147,6 +172,8 @@ public class EncodeGaggleAC{
 		if(!parametersSet){
 			throw new ParameterException("EntropyCoder cannot run if parameters are not set.");
 		}
+		GaggleEncoded event = new GaggleEncoded();
+		event.begin();
 		
 		if (entropyAC ==0){
 			rawACEncoding();
@@ -156,7 +183,21 @@ public class EncodeGaggleAC{
 			System.out.println("\n Not implemented yet");
 		}
 
-		
+		if (event.shouldCommit()){
+			event.channel = position[0];
+			event.segment = position[1];
+			event.gaggle = position[2];
+			event.bitplane = position[3];
+			event.blocks = sortingACGaggle.length;
+			long bits = 0;
+			for(int rLevel=0;encodedGaggle!=null && rLevel<encodedGaggle.length;rLevel++){
+				if (encodedGaggle[rLevel]!=null){
+					bits += encodedGaggle[rLevel].getNumBits();
+				}
+			}
+			event.bytes = (bits + 7) / 8;
+			event.commit();
+		}
 		
 		return encodedGaggle;
 	}
@@ -183,8 +224,8 @@ public class EncodeGaggleAC{
 		
 		for(int k=0; k<3 ; k++){
 			ids[k] = -1;
-			setIdSelection();
-		}	
+		}
+		setIdSelection();
 		for (int rLevel=0 ; rLevel <= this.resolutionLevels  ; rLevel++){
 			for (int block = 0 ; block< blocksInGaggle; block++ ){
 				if (sortingACGaggle!=null){
@@ -290,18 +331,47 @@ public class EncodeGaggleAC{
 		
 	}
 	
-	private int twoBitsVariablelengthCode_Option0[] = {1,1,1,0};
-	private int lengthOfTwoBitsVariablelengthCode_Option0[] = {1,2,3,3};
-	private int threeBitsVariablelengthCode_Option0[] = {1,1,1,0,1,2,6,7};
-	private int lengthOfThreeBitsVariablelengthCode_Option0[] = {1,2,3,5,5,5,6,6};
-	private int threeBitsVariablelengthCode_Option1[] = {2,3,2,3,2,3,0,1};
-	private int lengthOfThreeBitsVariablelengthCode_Option1[] = {2,2,3,3,4,4,4,4};
-	private int fourBitsVariablelengthCode_Option0[] = {1,1,1,1,0,1,2,3,8,9,10,11,12,13,14,15};
-	private int lengthOfFourBitsVariablelengthCode_Option0[] = {1,2,3,4,7,7,7,7,8,8,8,8,8,8,8,8};
-	private int fourBitsVariablelengthCode_Option1[] = {2,3,2,3,2,3,0,1,2,3,4,5,12,13,14,15};
-	private int lengthOfFourBitsVariablelengthCode_Option1[] = {2,2,3,3,4,4,6,6,6,6,6,6,7,7,7,7};
-	private int fourBitsVariablelengthCode_Option2[] = {4,5,6,7,4,5,6,7,4,5,6,7,0,1,2,3};
-	private int lengthOfFourBitsVariablelengthCode_Option2[] = {3,3,3,3,4,4,4,4,5,5,5,5,5,5,5,5};
+	private static final int twoBitsVariablelengthCode_Option0[] = {1,1,1,0};
+	private static final int lengthOfTwoBitsVariablelengthCode_Option0[] = {1,2,3,3};
+	private static final int threeBitsVariablelengthCode_Option0[] = {1,1,1,0,1,2,6,7};
+	private static final int lengthOfThreeBitsVariablelengthCode_Option0[] = {1,2,3,5,5,5,6,6};
+	private static final int threeBitsVariablelengthCode_Option1[] = {2,3,2,3,2,3,0,1};
+	private static final int lengthOfThreeBitsVariablelengthCode_Option1[] = {2,2,3,3,4,4,4,4};
+	private static final int fourBitsVariablelengthCode_Option0[] = {1,1,1,1,0,1,2,3,8,9,10,11,12,13,14,15};
+	private static final int lengthOfFourBitsVariablelengthCode_Option0[] = {1,2,3,4,7,7,7,7,8,8,8,8,8,8,8,8};
+	private static final int fourBitsVariablelengthCode_Option1[] = {2,3,2,3,2,3,0,1,2,3,4,5,12,13,14,15};
+	private static final int lengthOfFourBitsVariablelengthCode_Option1[] = {2,2,3,3,4,4,6,6,6,6,6,6,7,7,7,7};
+	private static final int fourBitsVariablelengthCode_Option2[] = {4,5,6,7,4,5,6,7,4,5,6,7,0,1,2,3};
+	private static final int lengthOfFourBitsVariablelengthCode_Option2[] = {3,3,3,3,4,4,4,4,5,5,5,5,5,5,5,5};
+	
+	/**
+	 * Codewords of each code option packed as (codeword << 8) | codewordLength.
+	 * packedCodes[wordLength - 2][codeOption][symbol]
+	 */
+	private static final int packedCodes[][][] = {
+		{packCodes(twoBitsVariablelengthCode_Option0, lengthOfTwoBitsVariablelengthCode_Option0)},
+		{packCodes(threeBitsVariablelengthCode_Option0, lengthOfThreeBitsVariablelengthCode_Option0),
+			packCodes(threeBitsVariablelengthCode_Option1, lengthOfThreeBitsVariablelengthCode_Option1)},
+		{packCodes(fourBitsVariablelengthCode_Option0, lengthOfFourBitsVariablelengthCode_Option0),
+			packCodes(fourBitsVariablelengthCode_Option1, lengthOfFourBitsVariablelengthCode_Option1),
+			packCodes(fourBitsVariablelengthCode_Option2, lengthOfFourBitsVariablelengthCode_Option2)}
+	};
+	
+	/**
+	 * Packs a code table and its length table into a single table.
+	 * 
+	 * @param codes codeword of each symbol
+	 * @param lengths length of the codeword of each symbol
+	 * 
+	 * @return for each symbol (codeword << 8) | codewordLength
+	 */
+	private static int[] packCodes(int codes[], int lengths[]){
+		int packed[] = new int[codes.length];
+		for(int symbol=0; symbol<codes.length; symbol++){
+			packed[symbol] = (codes[symbol] << 8) | lengths[symbol];
+		}
+		return packed;
+	}
 	
 	/**
 	 * This function adds a symbol to the resulting entropy encoded bit stream 
@@ -313,37 +383,16 @@ public class EncodeGaggleAC{
 	private void putSymbol(int symbol, int length, int rLevel){
 		
 		if(length>=2){	
-			
-			if(this.ids[length-2]==-1){
-				int idLength = codeIdLength[length-2];
-				ids[length-2] = idSelection[length-2];
-				encodedGaggle[rLevel].addBits(ids[length-2],idLength);
+			int lengthIndex = length-2;
+			if(this.ids[lengthIndex]==-1){
+				ids[lengthIndex] = idSelection[lengthIndex];
+				encodedGaggle[rLevel].addBits(ids[lengthIndex],codeIdLength[lengthIndex]);
 			}
 
-			if(ids[length-2]!=noCodeId[length-2]){
-				if(length == 2){
-					length = lengthOfTwoBitsVariablelengthCode_Option0[symbol];
-					symbol = twoBitsVariablelengthCode_Option0[symbol];
-				} else if(length == 3){
-					if(ids[length-2]==0){
-						length = lengthOfThreeBitsVariablelengthCode_Option0[symbol];
-						symbol = threeBitsVariablelengthCode_Option0[symbol];
-					} else if (ids[length-2]==1){
-						length = lengthOfThreeBitsVariablelengthCode_Option1[symbol];
-						symbol = threeBitsVariablelengthCode_Option1[symbol];
-					}	
-				} else if (length == 4){
-					if(ids[length-2]==0){
-						length = lengthOfFourBitsVariablelengthCode_Option0[symbol];
-						symbol = fourBitsVariablelengthCode_Option0[symbol];
-					} else if (ids[length-2]==1){
-						length = lengthOfFourBitsVariablelengthCode_Option1[symbol];
-						symbol = fourBitsVariablelengthCode_Option1[symbol];
-					} else if (ids[length-2]==2){
-						length = lengthOfFourBitsVariablelengthCode_Option2[symbol];
-						symbol = fourBitsVariablelengthCode_Option2[symbol];
-					}
-				}
+			if(ids[lengthIndex]!=noCodeId[lengthIndex]){
+				int code = packedCodes[lengthIndex][ids[lengthIndex]][symbol];
+				symbol = code >>> 8;
+				length = code & 0xff;
 			}
 		} else if (length<0){
 				length = -length;
@@ -355,36 +404,33 @@ public class EncodeGaggleAC{
 	
 	
 	/**
-	 * Sets the code option for the 2, 3 and 4 length symbols. The selection is based in the data contained in {@link CodeBlockAC#codeLength}.
+	 * Sets the code option for the 2, 3 and 4 length symbols. The length of each option is the dot product of 
+	 * {@link #symbolHistogram} with the codeword lengths of the option, and the shortest one is chosen (the no code 
+	 * option is kept in case of tie).
 	 */
 	private void setIdSelection(){
-		if(this.codeLength!=null){
-			//First we select the option for two length symbols
-			if(this.codeLength[0]<this.codeLength[1]){
-				this.idSelection[0]=0;
-			} else {
-				this.idSelection[0]=1;
-			}
-			//Then we select the option for three length symbols
-			int min = this.codeLength[4];
-			int codeId=3;
-			for(int k=2; k<4; k++){
-				if (this.codeLength[k]<min){
-					min=this.codeLength[k];
-					codeId=k-2;
+		if(this.symbolHistogram!=null){
+			for(int lengthIndex=0; lengthIndex<3; lengthIndex++){
+				int numSymbols = 1 << (lengthIndex+2);
+				int offset = lengthIndex << 4;
+				int min = 0;
+				for(int symbol=0; symbol<numSymbols; symbol++){
+					min += symbolHistogram[offset+symbol];
 				}
-			}
-			this.idSelection[1]=codeId;
-			//Finally we select the option for four length symbols
-			min = this.codeLength[8];
-			codeId=3;
-			for(int k=5; k<8; k++){
-				if (this.codeLength[k]<min){
-					min=this.codeLength[k];
-					codeId=k-5;
+				min *= lengthIndex+2;
+				int codeId = noCodeId[lengthIndex];
+				for(int option=0; option<packedCodes[lengthIndex].length; option++){
+					int optionLength = 0;
+					for(int symbol=0; symbol<numSymbols; symbol++){
+						optionLength += symbolHistogram[offset+symbol] * (packedCodes[lengthIndex][option][symbol] & 0xff);
+					}
+					if (optionLength<min){
+						min=optionLength;
+						codeId=option;
+					}
 				}
+				this.idSelection[lengthIndex]=codeId;
 			}
-			this.idSelection[2]=codeId;
 		} else {// in this case NoCode option is selected
 			this.idSelection[0]=1;
 			this.idSelection[1]=3;
@@ -392,6 +438,12 @@ public class EncodeGaggleAC{
 		}
 	}
 
+	private static final int PDF2MapperGeneral[] = {0,2,1,3};
+	private static final int PDF3MapperGeneral[] = {1,4,0,5,2,6,3,7};
+	private static final int PDF3MapperImpossibleValue[] = {/*-1*/7,3,0,4,1,5,2,6}; // 000 is impossible
+	private static final int PDF4MapperGeneral[] = {10,1,3,6,2,5,9,12,0,8,7,13,4,14,11,15};
+	private static final int PDF4MapperImpossibleValue[] = {/*-1*/15,1,3,6,2,5,9,11,0,8,7,12,4,13,10,14}; // 0000 is impossible (if 3 levels are applied)
+	
 	/**
 	 * Determines the symbol that corresponds to the word and the context given
 	 * 
@@ -400,13 +452,8 @@ public class EncodeGaggleAC{
 	 * 
 	 * @return the symbol that correspond to the given word with the given context
 	 */
-	private int mapIntoSymbol(int word, byte context){
+	static int mapIntoSymbol(int word, byte context){
 		int symbol = 0;
-		int PDF2MapperGeneral[] = {0,2,1,3};
-		int PDF3MapperGeneral[] = {1,4,0,5,2,6,3,7};
-		int PDF3MapperImpossibleValue[] = {/*-1*/7,3,0,4,1,5,2,6}; // 000 is impossible
-		int PDF4MapperGeneral[] = {10,1,3,6,2,5,9,12,0,8,7,13,4,14,11,15};
-		int PDF4MapperImpossibleValue[] = {/*-1*/15,1,3,6,2,5,9,11,0,8,7,12,4,13,10,14}; // 0000 is impossible (if 3 levels are applied)
 		
 		switch(context){
 		case (byte) 64: // 1-bit significance word
@@ -440,7 +487,7 @@ public class EncodeGaggleAC{
 	 * 
 	 * @return the length of the encoded word, for sign word the length is expressed with a negative number
 	 */
-	private int getLength(byte context){
+	static int getLength(byte context){
 		int length = 0;
 		switch(context){
 		case (byte) 64: // 1-bit significance word
@@ -31,32 +31,27 @@ import GiciException.*;
 import GiciStream.*;
 
 /**
- * This class codes as many bitplanes of a block of AC components as the user
- * requires. Usage example:<br>
+ * This class codes a bitplane of a block of AC components without keeping the status of each
+ * component between bitplanes. The status that {@link CodeBlockAC} stores in its blockStatus array
+ * is recomputed from the magnitude of the coefficients each time it is needed, so that only Ds and D
+ * (4 bytes per block) must be kept by the caller. The produced streams are identical to the ones
+ * produced by {@link CodeBlockAC}. Usage example:<br>
  * &nbsp; construct<br>
  * &nbsp; setParameters<br>
  * &nbsp; run<br>
  * &nbsp; get functions<br>
  * 
  * @author Group on Interactive Coding of Images (GICI)
- * @version 1.04
+ * @version 1.2
  */
 
 public class LowMemoryCodeBlock {
 
-	int byteBuff = 4;
-	
-	/**
-	 * This array contains the significance of a block in a bitplane. It is structured as follows:
-	 *  codedBitPlaneBlock[bit plane][resolution level][family][coding pass]
-	 */
-	BitStream[][][][] codedBlock = null;
-
 	/**
-	 * This array contains the contexts of the significance of a block in a bitplane. It is structured as follows:
-	 *  blockBitPlaneContexts[bit plane][resolution level][family][coding pass]
+	 * This array contains the significance (and its contexts if needed) of a block in a bitplane. It is structured as follows:
+	 *  stream[resolution level][family][coding pass]
 	 */
-	ByteStream[][][][] blockContexts = null;
+	ByteStream[][][] sortingAC = null;
 
 	/**
 	 * Determines, for each block, the number of bits needed to represent the
@@ -70,37 +65,28 @@ public class LowMemoryCodeBlock {
 	int resolutionLevels;
 
 	/**
-	 * Indicates if the obtained code stream is going to be entropy encoded.
+	 * Indicates how the obtained code stream is going to be entropy encoded.
 	 */
-	boolean entropyCode;
+	int entropyCode;
 
 	/**
 	 * This array contains the refinement bits of the block in a bit plane. It is structured as follows:
-	 * 	refinementAC[bit plane][level of resolution]
+	 * 	refinementAC[level of resolution]
 	 */
-	BitStream refinementAC[][] = null;
+	BitStream refinementAC[] = null;
 
+	/**
+	 * Definition in {@link SegmentCode2D#distortion}
+	 */
+	DistortionCompute distortion;
 
 	/**
-	 * Indicate whether the descendants (all the components except the parents) are or have been significant.
-	 * Valid values are:<br>
-	 *   <ul>
-	 *     <li> 0 -  Descendants are not significant
-	 *     <li> 1 -  Descendant become significant at this bitplane
-	 *     <li> 2 -  Descendant have been found significant in previous bitplanes
-	 *   </ul>
+	 * Definition in {@link CodeBlockAC#Ds}
 	 */
 	byte Ds;
 
 	/**
-	 * Indicate whether the descendants (all the components except the parents) are or have been significant for each of the families.
-	 * That means, D[i] indicate the significance of the descendant in the family 'i'.
-	 * Valid values are:<br>
-	 *   <ul>
-	 *     <li> 0 -  Descendants are not significant
-	 *     <li> 1 -  Descendant become significant at this bitplane
-	 *     <li> 2 -  Descendant have been found significant in previous bitplanes
-	 *   </ul>
+	 * Definition in {@link CodeBlockAC#D}
 	 */
 	byte D[] = null;
 
@@ -119,29 +105,22 @@ public class LowMemoryCodeBlock {
 	boolean parametersSet = false;
 
 	/**
-	 * Stores for each of the entropy coder options the number of bits required to encode the gaggle. 
-	 * <p>
-	 * Negative values are not allowed. 
+	 * Definition in {@link EncodeGaggleAC#symbolHistogram}
 	 */
-	int codeLength[][] = null;
+	int symbolHistogram[] = null;
 
 	/**
 	 * Definition in {@link TER.TERcoder.Coder#imageSamplesFloat}
 	 */
-	float[][][] imageSamples = null;
+	float[][] imageSamples = null;
 
 	/**
 	 * Definition in {@link GiciTransform.ForwardWaveletTransform#WTLevels} 
 	 */
-	int[] WTLevels = null;
-
-	/**
-	 * Indicates the channel where the block belongs
-	 */
-	int channel;
+	int WTLevels;
 
 	/**
-	 * Indicates the position of the gaggle inside the channel
+	 * Indicates the position of the block inside the channel
 	 */
 	int blockNumber;
 
@@ -160,23 +139,24 @@ public class LowMemoryCodeBlock {
 	 */
 	byte significantPiramid[][] = null;
 
+	/**
+	 * Indicates whether the decrease of the distortion must be computed in order to stop coding process at a given point. 
+	 */
+	boolean computeDistortion = false;
+
 	/**
 	 * Constructor that receives the values of the block to be further encoded.
 	 * 
 	 * @param imageSamples {@link TER.TERcoder.Coder#imageSamplesFloat}
 	 * @param resolutionLevels {@link SegmentCode2D#resolutionLevels}
 	 */
-	public LowMemoryCodeBlock(float[][][] imageSamples, int[] resolutionLevels) {
+	public LowMemoryCodeBlock(float[][] imageSamples, int resolutionLevels) {
 
 		this.imageSamples = imageSamples;
-		int maxResolutionLevels = resolutionLevels[0];
-		for (int k = 0; k < resolutionLevels.length; k++) {
-			if (maxResolutionLevels < resolutionLevels[k]) {
-				maxResolutionLevels = resolutionLevels[k];
-			}
-		}
-		significantPiramid = new byte[maxResolutionLevels][3];
-
+		this.resolutionLevels = resolutionLevels;
+		significantPiramid = new byte[resolutionLevels][3];
+		xInit = new int[resolutionLevels][3];
+		yInit = new int[resolutionLevels][3];
 	}
 
 	
@@ -185,59 +165,67 @@ public class LowMemoryCodeBlock {
 	 * 
 	 * @param WTLevels definition in {@link GiciTransform.ForwardWaveletTransform#WTLevels}
 	 * @param resolutionLevels definition in {@link SegmentCode2D#resolutionLevels}
-	 * @param channel definition in {@link #channel}
 	 * @param blockNumber definition in {@link #blockNumber}
 	 * @param bitDepthAC_Block definition in {@link #bitDepthAC_Block}
 	 * @param entropyAC definition in {@link EncodeGaggleAC#entropyAC}
 	 * @param BP definition in {@link #BP}
+	 * @param distortion {@link #distortion}
+	 * @param Ds {@link #Ds}
+	 * @param D {@link #D}
+	 * @param symbolHistogram {@link #symbolHistogram}
 	 */
-	public void setParameters(int[] WTLevels, int resolutionLevels,	int channel, int blockNumber,
-			int bitDepthAC_Block, int entropyAC, int[] BP) {
+	public void setParameters(int WTLevels, int resolutionLevels,
+			int blockNumber, int bitDepthAC_Block, int entropyAC, int[] BP,
+			DistortionCompute distortion, byte Ds, byte[] D, int[] symbolHistogram) {
 
 		this.BP = BP;
 		this.bitDepthAC_Block = bitDepthAC_Block;
-		this.resolutionLevels = resolutionLevels;
+		this.distortion = distortion;
+		this.Ds = Ds;
+		this.D = D;
 
 		this.WTLevels = WTLevels;
 		this.blockNumber = blockNumber;
-		this.channel = channel;
+		if (resolutionLevels != this.resolutionLevels) {
+			this.resolutionLevels = resolutionLevels;
+			significantPiramid = new byte[resolutionLevels][3];
+			xInit = new int[resolutionLevels][3];
+			yInit = new int[resolutionLevels][3];
+		}
 
-		int xSize = imageSamples[channel][0].length;
-		int ySize = imageSamples[channel].length;
+		int xSize = imageSamples[0].length;
+		int ySize = imageSamples.length;
 
-		int xSubBandSize = ((int) xSize >> WTLevels[channel]);
-		int ySubBandSize = ((int) ySize >> WTLevels[channel]);
+		int xSubBandSize = ((int) xSize >> WTLevels);
 
 		int x0 = blockNumber % xSubBandSize;
 		int y0 = blockNumber / xSubBandSize;
 
-		this.xInit = new int[resolutionLevels][3];
-		this.yInit = new int[resolutionLevels][3];
-		for (int generation = 0; generation < resolutionLevels; generation++) {
-			int sizeResolutionLevel = ((int) 1 << generation);
-			xSubBandSize = ((int) xSize >> (WTLevels[channel] - generation));
-			ySubBandSize = ((int) ySize >> (WTLevels[channel] - generation));
+		for (int rLevel = 0; rLevel < resolutionLevels; rLevel++) {
+			int sizeResolutionLevel = ((int) 1 << rLevel);
+			xSubBandSize = ((int) xSize >> (WTLevels - rLevel));
+			int ySubBandSize = ((int) ySize >> (WTLevels - rLevel));
 			// family 0. Corresponding to HL subband
-			// (xInit,yInit) value where the block at the subband HL starts
-			xInit[generation][0] = x0 * sizeResolutionLevel + xSubBandSize;
-			yInit[generation][0] = y0 * sizeResolutionLevel;
+			xInit[rLevel][0] = x0 * sizeResolutionLevel + xSubBandSize;
+			yInit[rLevel][0] = y0 * sizeResolutionLevel;
 
 			// family 1. Corresponding to LH subband
-			// (xInit,yInit) value where the block at the subband LH starts
-			xInit[generation][1] = x0 * sizeResolutionLevel;
-			yInit[generation][1] = y0 * sizeResolutionLevel + ySubBandSize;
+			xInit[rLevel][1] = x0 * sizeResolutionLevel;
+			yInit[rLevel][1] = y0 * sizeResolutionLevel + ySubBandSize;
 
 			// family 2. Corresponding to HH subband
-			// (xInit,yInit) value where the block at the subband HH starts
-			xInit[generation][2] = x0 * sizeResolutionLevel + xSubBandSize;
-			yInit[generation][2] = y0 * sizeResolutionLevel + ySubBandSize;
-
+			xInit[rLevel][2] = x0 * sizeResolutionLevel + xSubBandSize;
+			yInit[rLevel][2] = y0 * sizeResolutionLevel + ySubBandSize;
 		}
 
-		if (entropyAC == 0) {// no entropy code is requires, thus no information about contexts is needed to be created
-			this.entropyCode = false;
-		} else {
-			this.entropyCode = true;
+		this.entropyCode = entropyAC;
+
+		if (this.entropyCode==1){
+			if (symbolHistogram != null) {
+				this.symbolHistogram = symbolHistogram;
+			} else {
+				this.symbolHistogram = new int[3 << 4];
+			}
 		}
 
 		parametersSet = true;
@@ -246,131 +234,55 @@ public class LowMemoryCodeBlock {
 	/**
 	 * Runs the block coder algorithm
 	 * 
-	 * @param startBitPlane indicates the bitplane where the encoder must begin
-	 * @param endBitPlane indicates the bitplane where the encoder must stop
-	 * @param codeLength {@link #codeLength}
+	 * @param bitPlane indicates the bitplane that must be coded
+	 * 
+	 * @return an array the stream of the coded block for the given bitplane structured as follows:
+	 * 	 [level of resolution (parents, children,...)][subband or family][coding pass] 
 	 * 
 	 * @throws Exception when something goes wrong and block coding must be stopped
 	 */
-	public void run(int startBitPlane, int endBitPlane, int[][] codeLength) throws Exception {
+	public ByteStream[][][] run(int bitPlane) throws Exception {
 		// If parameters are not set run cannot be executed
 		if (!parametersSet) {
 			throw new ParameterException(
-					"CodeBlockAC cannot run if parameters are not set.");
-		}
-		
-		initDAndDs(startBitPlane);
-		if (entropyCode) {
-			this.codeLength = codeLength;
-		}
-		
-		
-		initCodedBlock(startBitPlane, endBitPlane);
-		initBlockContexts(startBitPlane, endBitPlane);
-		if (bitDepthAC_Block>0){
-			refinementAC = new BitStream[bitDepthAC_Block-1][resolutionLevels];
-		}
-		this.codeLength = codeLength;
-		
-		for(int bitPlane=startBitPlane;bitPlane>=endBitPlane;bitPlane--){
-			
-			significanceCoding(bitPlane);
-			
-			if (bitPlane<this.bitDepthAC_Block-1){
-				refinementCoding(bitPlane);
-			}
-			
+					"LowMemoryCodeBlock cannot run if parameters are not set.");
 		}
-		
-		this.significantPiramid = null;
-		this.D = null;
-		xInit = null;
-		yInit = null;
-	}
 
-	private void initDAndDs(int bitPlane){
-		int families = 3;
-		D = new byte[families];
+		initStreams(bitPlane);
+		significanceCoding(bitPlane);
+		refinementCoding(bitPlane);
 		
-		if (bitPlane == this.bitDepthAC_Block-1){
-			// this is the first bitPlane
-			Ds = 0;
-			for (int subband=0;subband<families;subband++){
-				D[subband]=0;
-			}
-		} else {
-			int threshold = ((int) 1 << (bitPlane));// 2^(bitPlane)
-			Ds = 0;
-			int componentMagnitude = 0;
-			for (int subband = 0; subband < families; subband++) {
-				D[subband]=0;
-				for (int rLevel = 1; rLevel < resolutionLevels; rLevel++) {
-					//parents are not involved in the values of Ds and D
-					int sizeResolutionLevel = (int) 1 << rLevel;	
-					for (int y = 0; y < sizeResolutionLevel; y++) {
-						for (int x = 0; x < sizeResolutionLevel; x++) {
-							componentMagnitude = Math.round(imageSamples[channel][yInit[rLevel][subband] + y][xInit[rLevel][subband] + x]);
-							if (componentMagnitude<0){
-								componentMagnitude = -componentMagnitude;
-							}
-							if (componentMagnitude>=2*threshold){//The component has been found significant in previous bitplanes
-								D[subband] = 2;
-								//maximum value has been found, it has no sense keep on searching
-								x=sizeResolutionLevel;
-								y=sizeResolutionLevel;
-								rLevel=resolutionLevels;
-								
-							}
-						}
-					}
-				}
-				if (D[subband]>Ds){
-					Ds=D[subband];
-				}
-			}
-		}
-	}
-	
-	private byte getStatus(int rLevel, int subband, int y, int x, int bitPlane, int threshold){
-		byte status = 0;
-		if (bitPlaneOfZeros(rLevel, subband, bitPlane)){
-			status = -1;
-		} else {
-			int componentMagnitude = Math.round(imageSamples[channel][yInit[rLevel][subband] + y][xInit[rLevel][subband] + x]);
-			if (componentMagnitude<0){
-				componentMagnitude = -componentMagnitude;
-			}
-			if (componentMagnitude>=threshold){
-				if (componentMagnitude < 2*threshold){
-					status = 1;
-				} else {
-					status = 2;
-				}
-			} else {
-				status = 0;
-			}
-		}
-		return status;
+		parametersSet = false;
+		return this.sortingAC;
 	}
-	
+
 	/**
-	 * This function indicates if the bits of the coefficients are necessarily zero due to the subband scaling operation
+	 * Computes the status that {@link CodeBlockAC} would have stored for a component at the beginning
+	 * of the significance coding of the given bitplane.
 	 * 
-	 * @param rLevel indicates the resolution level of the subband to be encoded
-	 * @param subband determines the subband once is known the resolution level 
+	 * @param rLevel indicates the resolution level of the component
+	 * @param subband determines the subband once is known the resolution level
+	 * @param y row of the component inside the subband of the block
+	 * @param x column of the component inside the subband of the block
 	 * @param bitPlane indicates the bitplane that is being encoded
 	 * 
-	 * @return a boolean that indicates if the coefficients of this subband should be taken into account for significance encoding purposes
+	 * @return -1 if the bitplane is necessarily zero, 0 if the component is not significant, 
+	 * 1 if it becomes significant in this bitplane and 2 if it was found significant in previous bitplanes
 	 */
-	private boolean bitPlaneOfZeros(int rLevel, int subband, int bitPlane) {
-		boolean zeros;
-		int subbandNumber = (3 * rLevel) + subband + 1;
-		if (BP[subbandNumber] > bitPlane) {
-			zeros = true;
-		} else {
-			zeros = false;
+	private byte getStatus(int rLevel, int subband, int y, int x, int bitPlane){
+		if (bitPlaneOfZeros(rLevel, subband, bitPlane)){
+			return -1;
+		}
+		int component = (int) imageSamples[yInit[rLevel][subband] + y][xInit[rLevel][subband] + x];
+		if (component < 0){
+			component = -component;
+		}
+		if ((component >> bitPlane) == 0){
+			return 0;
+		} else if ((component >> bitPlane) == 1){
+			return 1;
 		}
-		return zeros;
+		return 2;
 	}
 
 	/**
@@ -382,20 +294,24 @@ public class LowMemoryCodeBlock {
 		int families = 3;
 		int threshold = ((int) 1 << bitPlane);// 2^bitPlane
 
-		// fisrt, we look for the subbands that must be encoded and signal the components
-		// that become significant in this bitPlane
-		//int component;
+		// fisrt, we look for the subbands that must be encoded
 		byte status;
-		
 		for (int rLevel = 0; rLevel < resolutionLevels; rLevel++) {
 			int sizeResolutionLevel = (int) 1 << rLevel;
 			for (int subband = 0; subband < families; subband++) {
 				significantPiramid[rLevel][subband] = -1;
+				if (bitPlaneOfZeros(rLevel, subband, bitPlane)) {
+					continue;
+				}
 				for (int y = 0; y < sizeResolutionLevel; y++) {
 					for (int x = 0; x < sizeResolutionLevel; x++) {
-						status = getStatus(rLevel,subband,y,x,bitPlane, threshold);
-						if (status > significantPiramid[rLevel][subband]){
-							significantPiramid[rLevel][subband] = status; 
+						status = getStatus(rLevel, subband, y, x, bitPlane);
+						if (status == 1 && computeDistortion) {
+							int component = (int) imageSamples[yInit[rLevel][subband] + y][xInit[rLevel][subband] + x];
+							distortion.improvedValue(0, component < 0 ? -threshold : threshold, component);
+						}
+						if (status > significantPiramid[rLevel][subband]) {
+							significantPiramid[rLevel][subband] = status;
 						}
 					}
 				}
@@ -421,62 +337,41 @@ public class LowMemoryCodeBlock {
 		int signs = 0;
 		int signsLength = 0;
 		int significanceLength = 0;
-		
 		for (int subband = 0; subband < families; subband++) {
-			status = getStatus(0,subband,0,0,bitPlane, threshold);
-			if (status == 1	&& !bitPlaneOfZeros(0, subband, bitPlane)) {
+			status = getStatus(0, subband, 0, 0, bitPlane);
+			if (status == 1) {
 				significanceLength++;
 				significance = (significance << 1) + 1;
 				// now the sign is encoded
 				signsLength++;
 				signs = signs << 1;
-				if (imageSamples[channel][yInit[0][subband]][xInit[0][subband]] < 0) {
+				if (imageSamples[yInit[0][subband]][xInit[0][subband]] < 0) {
 					signs++;
 				}
-			} else if (status == 0 && !bitPlaneOfZeros(0, subband, bitPlane)) {
+			} else if (status == 0) {
 				significanceLength++;
 				significance = significance << 1;
 			}
 		}
+
 		// the signs are encoded together after the significant parents
 		if (significanceLength > 0) {
-			codedBlock[bitPlane][0][0][0].addBits(significance,
-					significanceLength);
-			if (entropyCode) {
-				blockContexts[bitPlane][0][0][0].addByte(getContext(0,significanceLength, false));
-				updateLengthEntropyEncoder(significance, getContext(0,significanceLength, false),bitPlane);
-			}
-		}
-		// the signs are encoded together just after the significant parents
-		if (signsLength > 0) {
-			codedBlock[bitPlane][0][0][0].addBits(signs, signsLength);
-
-			if (entropyCode) {
-				blockContexts[bitPlane][0][0][0].addByte(getContext(1,signsLength, false));
+			updateStreams(0,0,0,significance,significanceLength,-1,false);
+			if (signsLength > 0) {
+				updateStreams(0,0,0,signs,signsLength,1,false);
 			}
 		}
-
+		
+		//parents have been encoded, here only transition words are encoded
 		for (int rLevel = 1; rLevel < resolutionLevels; rLevel++) {
-			// descendants are encoded
 			if (rLevel == 1) {// Ds is set and encoded if needed
-				if (Ds == 0) {
-					// There are no significant descendants
-					// Ds = 0;
-					codedBlock[bitPlane][1][0][0].addBit(0);
-					if (entropyCode) {
-						blockContexts[bitPlane][1][0][0].addByte(getContext(0, 1,false));
-					}
-				} else if (Ds == 1) {
-					// Some of the descendants become significant in this
-					// bitplane
-					// then Ds is set to one
-					codedBlock[bitPlane][1][0][0].addBit(1);
-					if (entropyCode) {
-						blockContexts[bitPlane][1][0][0].addByte(getContext(0, 1,false));
+				if (Ds == 0 || Ds==1) {
+					updateStreams(rLevel,0,0,Ds,1,-2,false);
+					if (Ds == 1) {
+						// Descendants become significant in this bitplane
+						Ds = 2;
 					}
-					Ds = 2;
-				} // else { The descendants have become significant in
-					// previous bitplanes and Ds equals 2;}
+				}
 			}
 			
 			if (Ds > 0) {
@@ -485,47 +380,33 @@ public class LowMemoryCodeBlock {
 				for (int subband = 0; subband < families; subband++) {
 					if (rLevel == 1) {
 						if ((significantPiramid[rLevel][subband] == 2 || D[subband] == 2)&& !bitPlaneOfZeros(this.resolutionLevels - 1,	subband, bitPlane)) {
-							// this subband has become significant in previous bitplanes the subband must be encoded
-							// since it has significant components in this or previous bitplanes, or has significant
-							// descendants.
 							if (!bitPlaneOfZeros(rLevel, subband, bitPlane)) {
 								codeSquare(bitPlane, rLevel, subband);
 							}
-							
 						} else if (significantPiramid[rLevel][subband] == 1) {
-							// the piramid has significant components or significant descendants it is the first time this subband is encoded
-							codedBlock[bitPlane][rLevel + 1][subband][0].addBit(1);
-							if (entropyCode) {
-								blockContexts[bitPlane][rLevel + 1][subband][0].addByte(getContext(0, 1, false));
+							updateStreams(rLevel,subband,0,1,1,0,false);
+							if (entropyCode==1) {
 								Di = (Di << 1) + 1;
 								DiLength++;
 							}
-							
 							if (!bitPlaneOfZeros(rLevel, subband, bitPlane)) {
 								codeSquare(bitPlane, rLevel, subband);
 							}
 							D[subband] = 2;
-							
 						} else if ((significantPiramid[rLevel][subband] == 0 || D[subband] == 0) && !bitPlaneOfZeros(this.resolutionLevels - 1,	subband, bitPlane)) {
-							codedBlock[bitPlane][rLevel + 1][subband][0].addBit(0);
-							if (entropyCode) {
-								blockContexts[bitPlane][rLevel + 1][subband][0].addByte(getContext(0, 1, false));
+							updateStreams(rLevel,subband,0,0,1,0,false);
+							if (entropyCode==1) {							
 								Di = (Di << 1);
 								DiLength++;
 							}
 						}
 					} else if ((D[subband] == 2) && !bitPlaneOfZeros(this.resolutionLevels - 1,	subband, bitPlane)) {
-						// The prevoius resolution level has been encoded
 						if (significantPiramid[rLevel][subband] == 2 && !bitPlaneOfZeros(rLevel, subband, bitPlane)) {
-							// this subband has become significant in previous bitplanes the subband must be encoded
-							// since it has significant components in this or previous bitplanes, or has significant descendants.
 							codeSquare(bitPlane, rLevel, subband);
 						} else if ((significantPiramid[rLevel][subband] == 0 || significantPiramid[rLevel][subband] == 1) && !bitPlaneOfZeros(rLevel, subband, bitPlane)) {
-							codedBlock[bitPlane][rLevel + 1][subband][0].addBit(significantPiramid[rLevel][subband]);
-							if (entropyCode) {
-								blockContexts[bitPlane][rLevel + 1][subband][0].addByte(getContext(0, 1, false));
-								Di = (Di << 1)
-								+ significantPiramid[rLevel][subband];
+							updateStreams(rLevel,subband,0,significantPiramid[rLevel][subband],1,0,false);
+							if (entropyCode==1) {	
+								Di = (Di << 1) + significantPiramid[rLevel][subband];
 								DiLength++;
 							}
 							if (significantPiramid[rLevel][subband] > 0) {
@@ -534,16 +415,16 @@ public class LowMemoryCodeBlock {
 						}
 					}
 				}
-				if (entropyCode) {
+				if (entropyCode==1) {
 					if (DiLength == 1) {
-						updateLengthEntropyEncoder(Di, (byte) 64, bitPlane);
+						updateLengthEntropyEncoder(Di, (byte) 64);
 					} else if (DiLength == 2) {
-						updateLengthEntropyEncoder(Di, (byte) 65, bitPlane);// in this case the context is 65
+						updateLengthEntropyEncoder(Di, (byte) 65);
 					} else if (DiLength == 3) {
 						if (rLevel == 1) {
-							updateLengthEntropyEncoder(Di, (byte) 66, bitPlane);// in this case the context is 66 ( 000 impossible value)
+							updateLengthEntropyEncoder(Di, (byte) 66);
 						} else {
-							updateLengthEntropyEncoder(Di, (byte) 67, bitPlane);// in this case the context is 67
+							updateLengthEntropyEncoder(Di, (byte) 67);
 						}
 					}
 				}
@@ -551,6 +432,19 @@ public class LowMemoryCodeBlock {
 		}
 	}
 
+	/**
+	 * This function indicates if the bits of the coefficients are necessarily zero due to the subband scaling operation
+	 * 
+	 * @param rLevel indicates the resolution level of the subband to be encoded
+	 * @param subband determines the subband once is known the resolution level 
+	 * @param bitPlane indicates the bitplane that is being encoded
+	 * 
+	 * @return a boolean that indicates if the coefficients of this subband should be taken into account for significance encoding purposes
+	 */
+	private boolean bitPlaneOfZeros(int rLevel, int subband, int bitPlane) {
+		return BP[(3 * rLevel) + subband + 1] > bitPlane;
+	}
+
 	/**
 	 * This function create the words needed to encode each of the squares (subbands) contained in a block.
 	 * 	 
@@ -562,32 +456,19 @@ public class LowMemoryCodeBlock {
 
 		int numberOfComponents = (int) (1 << (rLevel * 2)); // 2^(rLevel*2);
 		int numberOfInitialWords = numberOfComponents / 4;
+		// [word][0] word, [word][1] length of the word, [word][2] signs, [word][3] length of the signs 
 		int initialWords[][] = new int[numberOfInitialWords][4];
-		int ySize = (int) 1 << rLevel;
-		int xSize = (int) 1 << rLevel;
-
-		// in the position [x][0] is stored the word x,
-		// while in the position [x][1] is stored the lenght of the word x
-		// and the position [x][2] is stored the sign of the significant pixels
-		// the position [x][3] is stored the lenght of the sign bits
-		for (int word = 0; word < numberOfInitialWords; word++) {
-			initialWords[word][0] = 0;
-			initialWords[word][1] = 0;
-			initialWords[word][2] = 0;
-			initialWords[word][3] = 0;
-		}
+		int size = (int) 1 << rLevel;
 
-		byte status = 0;
-		int threshold = ((int) 1 << bitPlane);// 2^bitPlane 
-		for (int y = 0; y < ySize; y++) {
-			for (int x = 0; x < xSize; x++) {
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
 				int currentWord = 0;
 				for (int k = 1; k < rLevel; k++) {
 					int quadrantSide = (int) 1 << (rLevel - k);
 					int subQuadrant = (x % (2 * quadrantSide)) / quadrantSide + 2 * ((y % (2 * quadrantSide)) / quadrantSide);
 					currentWord += subQuadrant * (quadrantSide * quadrantSide)	/ 4;
 				}
-				status = getStatus(rLevel,subband,y,x,bitPlane, threshold);
+				byte status = getStatus(rLevel, subband, y, x, bitPlane);
 				if (status == 0) {
 					// the component is not significant
 					initialWords[currentWord][0] = (int) initialWords[currentWord][0] << 1;
@@ -599,396 +480,188 @@ public class LowMemoryCodeBlock {
 					// the sign is encoded
 					initialWords[currentWord][2] = (int) initialWords[currentWord][2] << 1;
 					initialWords[currentWord][3]++;
-					// if (getComponent(rLevel,subband,y,x) < 0) {
-					if (imageSamples[channel][yInit[rLevel][subband] + y][xInit[rLevel][subband] + x] < 0) {
-						// the component is negative
+					if (imageSamples[yInit[rLevel][subband] + y][xInit[rLevel][subband] + x] < 0) {
 						initialWords[currentWord][2]++;
 					}
-				}// else {...} the coefficient has been encoded before or not
-					// need to be encoded
-
+				}
 			}
 		}
 
 		for (int pass = rLevel; pass > 0; pass--) {
-			// the pass (0) where the significance of the subband and its
-			// descendants is stated, has been done before
-			initialWords = codeWords(initialWords, bitPlane, rLevel, subband,pass);
+			initialWords = codeWords(initialWords, rLevel, subband, pass);
 		}
-		initialWords = null;
 	}
 	
 	/**
 	 * Given a set of words or transition words it encodes it for a given pass. It also computes the words required for the previous pass
 	 * 
 	 * @param initialWords contains the set of words to be encoded
-	 * @param bitPlane indicates the bitplane that is being encoded
 	 * @param rLevel indicates the resolution level of the subband to be encoded
 	 * @param subband determines the subband once is known the resolution level
 	 * @param pass indicates the coding pass that is being encoded
 	 * 
 	 * @return the set of words required for encoding next pass
 	 */
-	private int[][] codeWords(int[][] initialWords, int bitPlane, int rLevel, int subband, int pass) {
+	private int[][] codeWords(int[][] initialWords, int rLevel, int subband, int pass) {
 		int size = initialWords.length;
 		int nextWords[][] = null;
+		int signifanceStage = 0;
+		if (pass == rLevel){// we are coding components
+			signifanceStage=-1;
+		}
 		if (size > 1) {
 			nextWords = new int[size / 4][4];
-			for (int k = 0; k < size / 4; k++) {
-				nextWords[k][0] = 0;
-				nextWords[k][1] = 0;
-				nextWords[k][2] = 0;
-				nextWords[k][3] = 0;
-			}
-			for (int word = 0; word < size; word++) {
-				if (initialWords[word][1] > 0) {
-					// the word has positive lenght
-					if (initialWords[word][1] == 4) {
-						// the word has four 'letters', then if the set is significant,
-						// it is the first time that word is encoded and the previous quadrant
-						// must have a one to signal that this is the fisrt significant bitPlane
-						// otherwise the set is insignificant, then the previous subdivision
-						// of the quadrant must signal the insignificance
-						nextWords[word / 4][0] = nextWords[word / 4][0] << 1;
-						nextWords[word / 4][1]++;
-						if (initialWords[word][0] != 0) {
-							// there are significant components that must be signaled in the previous quadrant
-							nextWords[word / 4][0]++;
-							codedBlock[bitPlane][rLevel + 1][subband][pass] .addBits(initialWords[word][0], initialWords[word][1]);
-
-							// context must be set
-							if (entropyCode) {
-								blockContexts[bitPlane][rLevel + 1][subband][pass] .addByte(getContext(0, initialWords[word][1], true));
-								updateLengthEntropyEncoder( initialWords[word][0], getContext(0, initialWords[word][1], true), bitPlane);
-							}
-							if (initialWords[word][3] > 0) {// there are sign bits
-								codedBlock[bitPlane][rLevel + 1][subband][pass] .addBits(initialWords[word][2], initialWords[word][3]);
-
-								if (entropyCode) {
-									blockContexts[bitPlane][rLevel + 1][subband][pass].addByte(getContext(1, initialWords[word][3], false));
-								}
-							}
-
-						} // else { ... } nothing must be encoded since there are not significant components
-					} else if (initialWords[word][1] > 0) {
-						// the word has between one and three 'letters' the previous quadrant has been encoded in previous bitPlanes
-						codedBlock[bitPlane][rLevel + 1][subband][pass].addBits(initialWords[word][0], initialWords[word][1]);
-
-						// context must be set
-						if (entropyCode) {
-							blockContexts[bitPlane][rLevel + 1][subband][pass].addByte(getContext(0, initialWords[word][1], false));
-							updateLengthEntropyEncoder(initialWords[word][0], getContext(0, initialWords[word][1], false), bitPlane);
+			for (int wordIndex = 0; wordIndex < size; wordIndex++) {
+				if (initialWords[wordIndex][1] == 4) {
+					// first time the word is encoded, the previous quadrant signals its significance
+					nextWords[wordIndex / 4][0] = nextWords[wordIndex / 4][0] << 1;
+					nextWords[wordIndex / 4][1]++;
+					if (initialWords[wordIndex][0] != 0) {
+						nextWords[wordIndex / 4][0]++;
+						updateStreams(rLevel,subband,pass,initialWords[wordIndex][0],initialWords[wordIndex][1],signifanceStage,true);
+						if (initialWords[wordIndex][3] > 0) {// there are sign bits
+							updateStreams(rLevel,subband,pass,initialWords[wordIndex][2],initialWords[wordIndex][3],1,false);
 						}
-						if (initialWords[word][3] > 0) {// there are sign bits
-							codedBlock[bitPlane][rLevel + 1][subband][pass] .addBits(initialWords[word][2], initialWords[word][3]);
-
-							if (entropyCode) {
-								blockContexts[bitPlane][rLevel + 1][subband][pass] .addByte(getContext(1, initialWords[word][3], false));
-							}
-						}
-
 					}
-				}
-
-			}
-		} else if (initialWords[0][1] > 0) {
-			// the word has positive lenght, here is possible to encode four zeros in the fisrt resolution Level
-
-			codedBlock[bitPlane][rLevel + 1][subband][pass].addBits(initialWords[0][0], initialWords[0][1]);
-			// the context must be set
-			if (entropyCode) {
-				if (rLevel == 1) {
-					blockContexts[bitPlane][rLevel + 1][subband][pass].addByte(getContext(0, initialWords[0][1], false));
-					updateLengthEntropyEncoder(initialWords[0][0], getContext(0, initialWords[0][1], false), bitPlane);
-				} else {
-					if (initialWords[0][1] == 4) {
-						blockContexts[bitPlane][rLevel + 1][subband][pass].addByte(getContext(0, initialWords[0][1], true));
-						updateLengthEntropyEncoder(initialWords[0][0],getContext(0, initialWords[0][1], true), bitPlane);
-					} else {
-						blockContexts[bitPlane][rLevel + 1][subband][pass].addByte(getContext(0, initialWords[0][1],false));
-						updateLengthEntropyEncoder(initialWords[0][0],getContext(0, initialWords[0][1], false), bitPlane);
+				} else if (initialWords[wordIndex][1] > 0) {
+					// the previous quadrant has been encoded in previous bitPlanes
+					updateStreams(rLevel,subband,pass,initialWords[wordIndex][0],initialWords[wordIndex][1],signifanceStage,false);
+					if (initialWords[wordIndex][3] > 0) {// there are sign bits
+						updateStreams(rLevel,subband,pass,initialWords[wordIndex][2],initialWords[wordIndex][3],1,false);	
 					}
 				}
 			}
+		} else if (initialWords[0][1] > 0) {
+			boolean impossiblePattern = rLevel != 1 && initialWords[0][1] == 4;
+			updateStreams(rLevel,subband,pass,initialWords[0][0],initialWords[0][1],signifanceStage,impossiblePattern);
 			if (initialWords[0][3] > 0) {// there are sign bits
-
-				codedBlock[bitPlane][rLevel + 1][subband][pass].addBits(initialWords[0][2], initialWords[0][3]);
-				if (entropyCode) {
-					blockContexts[bitPlane][rLevel + 1][subband][pass].addByte(getContext(1, initialWords[0][3], false));
-				}
+				updateStreams(rLevel,subband,pass,initialWords[0][2],initialWords[0][3],1,false);			
 			}
 		}
-		initialWords = null;
 		return nextWords;
 	}
 
 	/**
-	 * Perform the refinement of the components of the block for the given bitPlane
+	 * Definition in {@link CodeBlockAC#updateStreams}
+	 */
+	private void updateStreams(int rLevel,int subband, int pass, int word, int length, int stage, boolean impossiblePattern){
+		if (stage==2){//refinement
+			this.refinementAC[rLevel].addBit(word);
+			return;
+		}
+		int rLevelAux = rLevel;
+		if (rLevel>0 && stage!=-2){
+			rLevelAux= rLevel+1; 
+		} 
+		if (entropyCode==0){
+			sortingAC[rLevelAux][subband][pass].addByte((byte)length);
+			sortingAC[rLevelAux][subband][pass].addByte((byte)word);				
+		} else if (entropyCode==1) {
+			byte context = getRecommededContext(stage, length, impossiblePattern);
+			sortingAC[rLevelAux][subband][pass].addByte(context);
+			sortingAC[rLevelAux][subband][pass].addByte((byte)word);
+			if (stage<1 && length>1){
+				updateLengthEntropyEncoder(word,context);
+			}
+		} 
+	}
+
+	/**
+	 * Perform the refinement of the components of the block for the given bitPlane. Components are 
+	 * visited in the same order as {@link CodeBlockAC#refinementCoding}.
 	 * 
 	 * @param bitPlane indicates the bitplane that is being encoded
 	 */
 	public void refinementCoding(int bitPlane) {
 		int families = 3;
-		int threshold = ((int) 1 << bitPlane);// 2^bitPlane
-		byte status;
-		
-		int refinedValue;
+		this.refinementAC = new BitStream[resolutionLevels];
 		for (int rLevel = 0; rLevel < resolutionLevels; rLevel++) {
-			refinementAC[bitPlane][rLevel] = new BitStream(byteBuff*8);
+			refinementAC[rLevel] = new BitStream((rLevel+1)*8);
 			int sizeResolutionLevel = (int) 1 << rLevel;
-
 			for (int subband = 0; subband < families; subband++) {
+				if (bitPlaneOfZeros(rLevel, subband, bitPlane)) {
+					continue;
+				}
 				if (rLevel != 2) {
-					for (int y = 0; y < sizeResolutionLevel; y++) {
-						for (int x = 0; x < sizeResolutionLevel; x++) {
-							status = getStatus(rLevel,subband,y,x,bitPlane, threshold);
-							if (status == 2 && !bitPlaneOfZeros(rLevel, subband, bitPlane)) {
-								// the coefficient has been found significant in previous bitplanes, and should be refined.
-
-								refinedValue = Math.round(imageSamples[channel][yInit[rLevel][subband]+ y][xInit[rLevel][subband] + x]);
-								if (refinedValue < 0) {
-									if ((-refinedValue & threshold) != 0) {
-										if (rLevel != 0) {
-											this.refinementAC[bitPlane][rLevel].addBit(1);
-										} else {
-											this.refinementAC[bitPlane][rLevel].addBit(1);
-										}
-									} else {
-										if (rLevel != 0) {
-											this.refinementAC[bitPlane][rLevel].addBit(0);
-										} else {// parents are refined together
-											this.refinementAC[bitPlane][rLevel].addBit(0);
-										}
-									}
-								} else {
-									if ((refinedValue & threshold) != 0) {
-										if (rLevel != 0) {
-											this.refinementAC[bitPlane][rLevel].addBit(1);
-										} else {
-											this.refinementAC[bitPlane][rLevel].addBit(1);
-										}
-									} else {
-										if (rLevel != 0) {
-											this.refinementAC[bitPlane][rLevel].addBit(0);
-										} else {// parents are refined together
-											this.refinementAC[bitPlane][rLevel].addBit(0);
-										}
-									}
-								}
-							} 
-						}
-					}
+					refineSquare(rLevel, subband, 0, sizeResolutionLevel, 0, sizeResolutionLevel, bitPlane);
 				} else {
-					for (int y = 0; y < 2; y++) {
-						for (int x = 0; x < 2; x++) {
-							status = getStatus(rLevel,subband,y,x,bitPlane, threshold);
-							if (status == 2 && !bitPlaneOfZeros(rLevel, subband, bitPlane)) {
-								// the coefficient has been found significant in previous bitplanes, and should be refined.
-								refinedValue = Math.round(imageSamples[channel][yInit[rLevel][subband] + y][xInit[rLevel][subband] + x]);
-								if (refinedValue < 0) {
-									if (((-refinedValue) & threshold) != 0) {
-										this.refinementAC[bitPlane][rLevel].addBit(1);
-									} else {
-										this.refinementAC[bitPlane][rLevel].addBit(0);
-									}
-								} else {
-									if ((refinedValue & threshold) != 0) {
-										this.refinementAC[bitPlane][rLevel].addBit(1);
-									} else {
-										this.refinementAC[bitPlane][rLevel].addBit(0);
-									}
-								}
-							} 
-						}
-					}
-					for (int y = 0; y < 2; y++) {
-						for (int x = 2; x < 4; x++) {
-							status = getStatus(rLevel,subband,y,x,bitPlane, threshold);
-							if (status == 2 && !bitPlaneOfZeros(rLevel, subband, bitPlane)) {
-								// the coefficient has been found significant in previous bitplanes, and should be refined.
-								refinedValue = Math.round(imageSamples[channel][yInit[rLevel][subband] + y][xInit[rLevel][subband] + x]);
-								if (refinedValue < 0) {
-									if (((-refinedValue) & threshold) != 0) {
-										this.refinementAC[bitPlane][rLevel].addBit(1);
-									} else {
-										this.refinementAC[bitPlane][rLevel].addBit(0);
-									}
-								} else {
-									if ((refinedValue & threshold) != 0) {
-										this.refinementAC[bitPlane][rLevel].addBit(1);
-									} else {
-										this.refinementAC[bitPlane][rLevel].addBit(0);
-									}
-								}
-							} 
-						}
-					}
-					for (int y = 2; y < 4; y++) {
-						for (int x = 0; x < 2; x++) {
-							status = getStatus(rLevel,subband,y,x,bitPlane, threshold);
-							if (status == 2 && !bitPlaneOfZeros(rLevel, subband, bitPlane)) {
-								// the coefficient has been found significant in previous bitplanes, and should be refined.
-								refinedValue = Math.round(imageSamples[channel][yInit[rLevel][subband] + y][xInit[rLevel][subband] + x]);
-								if (refinedValue < 0) {
-									if (((-refinedValue) & threshold) != 0) {
-										this.refinementAC[bitPlane][rLevel].addBit(1);
-									} else {
-										this.refinementAC[bitPlane][rLevel].addBit(0);
-									}
-								} else {
-									if ((refinedValue & threshold) != 0) {
-										this.refinementAC[bitPlane][rLevel].addBit(1);
-									} else {
-										this.refinementAC[bitPlane][rLevel].addBit(0);
-									}
-								}
-							} 
-						}
-					}
-					for (int y = 2; y < 4; y++) {
-						for (int x = 2; x < 4; x++) {
-							status = getStatus(rLevel,subband,y,x,bitPlane, threshold);
-							if (status == 2 && !bitPlaneOfZeros(rLevel, subband, bitPlane)) {
-								// the coefficient has been found significant in previous bitplanes, and should be refined.
-								refinedValue = Math.round(imageSamples[channel][yInit[rLevel][subband] + y][xInit[rLevel][subband] + x]);
-								if (refinedValue < 0) {
-									if (((-refinedValue) & threshold) != 0) {
-										this.refinementAC[bitPlane][rLevel].addBit(1);
-									} else {
-										this.refinementAC[bitPlane][rLevel].addBit(0);
-									}
-								} else {
-									if ((refinedValue & threshold) != 0) {
-										this.refinementAC[bitPlane][rLevel].addBit(1);
-									} else {
-										this.refinementAC[bitPlane][rLevel].addBit(0);
-									}
-								}
-							} 
-						}
-					}
-
+					refineSquare(rLevel, subband, 0, 2, 0, 2, bitPlane);
+					refineSquare(rLevel, subband, 0, 2, 2, 4, bitPlane);
+					refineSquare(rLevel, subband, 2, 4, 0, 2, bitPlane);
+					refineSquare(rLevel, subband, 2, 4, 2, 4, bitPlane);
 				}
 			}
 		}
 	}
 
 	/**
-	 * This function computes the lenght that would use any of the entropy encoding options.
+	 * Refines the components of a square of a subband that were found significant in previous bitplanes.
 	 * 
-	 * @param word contains a word that has been encoded
-	 * @param context indicates the kind of word to be encoded, i.e. the lenght and the encoding pass
+	 * @param rLevel indicates the resolution level of the subband
+	 * @param subband determines the subband once is known the resolution level
+	 * @param yBegin first row of the square
+	 * @param yEnd row where the square ends (not included)
+	 * @param xBegin first column of the square
+	 * @param xEnd column where the square ends (not included)
+	 * @param bitPlane indicates the bitplane that is being encoded
 	 */
-	private void updateLengthEntropyEncoder(int word, byte context, int bitPlane) {
-		int symbol = 0;
-		int length = 0;
-		int PDF2MapperGeneral[] = { 0, 2, 1, 3 };
-		int PDF3MapperGeneral[] = { 1, 4, 0, 5, 2, 6, 3, 7 };
-		int PDF3MapperImpossibleValue[] = {/*-1*/7, 3, 0, 4, 1, 5, 2, 6 }; // 000 is impossible
-		int PDF4MapperGeneral[] = { 10, 1, 3, 6, 2, 5, 9, 12, 0, 8, 7, 13, 4, 14, 11, 15 };
-		int PDF4MapperImpossibleValue[] = {/*-1*/15, 1, 3, 6, 2, 5, 9, 11, 0, 8, 7, 12, 4, 13, 10, 14 }; // 0000 is impossible
-
-		switch (context) {
-		case (byte) 64: // 1-bit significance word
-			symbol = word;
-			length = 1;
-			break;
-		case (byte) 65: // 2-bit significance word
-			symbol = PDF2MapperGeneral[word];
-			length = 2;
-			break;
-		case (byte) 66: // 3-bit significance word, 000 impossible value
-			symbol = PDF3MapperImpossibleValue[word];
-			length = 3;
-			break;
-		case (byte) 67: // 3-bit significance word, general case (any value is possible)
-			symbol = PDF3MapperGeneral[word];
-			length = 3;
-			break;
-		case (byte) 68: // 4-bit significance word, 0000 impossible value
-			symbol = PDF4MapperImpossibleValue[word];
-			length = 4;
-			break;
-		case (byte) 69: // 4-bit significance word, general case (any value is possible)
-			symbol = PDF4MapperGeneral[word];
-			length = 4;
-			break;
-		default:
-			symbol = word;
-		}
-
-		int lengthOfTwoBitsVariableLenghtCode_Option0[] = { 1, 2, 3, 3 };
-		int lengthOfThreeBitsVariableLenghtCode_Option0[] = { 1, 2, 3, 5, 5, 5, 6, 6 };
-		int lengthOfThreeBitsVariableLenghtCode_Option1[] = { 2, 2, 3, 3, 4, 4, 4, 4 };
-		int lengthOfFourBitsVariableLenghtCode_Option0[] = { 1, 2, 3, 4, 7, 7, 7, 7, 8, 8, 8, 8, 8, 8, 8, 8 };
-		int lengthOfFourBitsVariableLenghtCode_Option1[] = { 2, 2, 3, 3, 4, 4, 6, 6, 6, 6, 6, 6, 7, 7, 7, 7 };
-		int lengthOfFourBitsVariableLenghtCode_Option2[] = { 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 5, 5, 5, 5 };
-
-		if (length == 2) {
-			this.codeLength[bitPlane][0] += lengthOfTwoBitsVariableLenghtCode_Option0[symbol];
-			this.codeLength[bitPlane][1] += 2;// uncoded option
-		} else if (length == 3) {
-			this.codeLength[bitPlane][2] += lengthOfThreeBitsVariableLenghtCode_Option0[symbol];
-			this.codeLength[bitPlane][3] += lengthOfThreeBitsVariableLenghtCode_Option1[symbol];
-			this.codeLength[bitPlane][4] += 3;// uncoded option
-		} else if (length == 4) {
-			this.codeLength[bitPlane][5] += lengthOfFourBitsVariableLenghtCode_Option0[symbol];
-			this.codeLength[bitPlane][6] += lengthOfFourBitsVariableLenghtCode_Option1[symbol];
-			this.codeLength[bitPlane][7] += lengthOfFourBitsVariableLenghtCode_Option2[symbol];
-			this.codeLength[bitPlane][8] += 4;
+	private void refineSquare(int rLevel, int subband, int yBegin, int yEnd, int xBegin, int xEnd, int bitPlane){
+		int threshold = ((int) 1 << bitPlane);// 2^bitPlane
+		for (int y = yBegin; y < yEnd; y++) {
+			for (int x = xBegin; x < xEnd; x++) {
+				int refinedValue = (int) (imageSamples[yInit[rLevel][subband] + y][xInit[rLevel][subband] + x]);
+				int magnitudeRefinedValue = refinedValue < 0 ? -refinedValue : refinedValue;
+				if ((magnitudeRefinedValue >> bitPlane) > 1) {
+					// the coefficient has been found significant in previous bitplanes, and should be refined.
+					updateStreams(rLevel,subband,0,(magnitudeRefinedValue & threshold) != 0 ? 1 : 0,1,2,false);
+					if (computeDistortion) {
+						int previousApproximation = (refinedValue / (threshold * 2)) * (threshold * 2);
+						int currentApproximation = (refinedValue / threshold) * threshold;
+						distortion.improvedValue( previousApproximation, currentApproximation, refinedValue);
+					}
+				}
+			}
 		}
 	}
 
-
-
 	/**
-	 * Initialize the bit streams used to store the significance block
+	 * Definition in {@link CodeBlockAC#updateLengthEntropyEncoder}
 	 */
-	private void initCodedBlock(int startBitPlane, int endBitPlane) {
-		codedBlock = new BitStream[bitDepthAC_Block][resolutionLevels + 1][][];
-		for(int bitPlane=startBitPlane;bitPlane>=endBitPlane; bitPlane--){
-			for (int rLevel = 0; rLevel <= resolutionLevels; rLevel++) {
-				int codingACPasses = rLevel + 1;
-				int families = 3;
-				if (rLevel == 0) {
-					codingACPasses = 2;
-					families = 1;// the three parents are encoded together
-				} else if (rLevel == 1) {
-					codingACPasses = 1;
-					families = 1;
-				} // else {... the values initially set are taken}
-				codedBlock[bitPlane][rLevel] = new BitStream[families][codingACPasses];
-				for (int subband = 0; subband < families; subband++) {
-					codedBlock[bitPlane][rLevel][subband] = new BitStream[codingACPasses];
-					for (int pass = 0; pass < codingACPasses; pass++) {
-						codedBlock[bitPlane][rLevel][subband][pass] = new BitStream(byteBuff*8);
-					}
-				}
-			}
+	private void updateLengthEntropyEncoder(int word, byte context) {
+		int length = EncodeGaggleAC.getLength(context);
+		if (length >= 2) {
+			symbolHistogram[((length - 2) << 4) + EncodeGaggleAC.mapIntoSymbol(word, context)]++;
 		}
 	}
 
 	/**
-	 * Initialize the byte streams used to store the contexts of the encoded words to be further entropy encoded.
+	 * Initialize the byte streams used to store the significance block and to store the 
+	 * the contexts of the encoded words to be further entropy encoded.
+	 * 
+	 * @param bitPlane indicates the bitplane that is going to be encoded
 	 */
-	private void initBlockContexts(int startBitPlane, int endBitPlane) {
-		blockContexts = new ByteStream[bitDepthAC_Block][resolutionLevels + 1][][];
-		for(int bitPlane=startBitPlane;bitPlane>=endBitPlane; bitPlane--){
-			for (int rLevel = 0; rLevel <= resolutionLevels; rLevel++) {
-				int codingACPasses = rLevel + 1;
-				int families = 3;
-				if (rLevel == 0) {
-					families = 1;
-					codingACPasses = 2;
-				} else if (rLevel == 1) {
-					codingACPasses = 1;
-					families = 1;
-				} // else {... the values initially set are taken
-				blockContexts[bitPlane][rLevel] = new ByteStream[families][codingACPasses];
-				for (int subband = 0; subband < families; subband++) {
-					blockContexts[bitPlane][rLevel][subband] = new ByteStream[codingACPasses];
-					for (int pass = 0; pass < codingACPasses; pass++) {
-						blockContexts[bitPlane][rLevel][subband][pass] = new ByteStream(byteBuff);
+	private void initStreams(int bitPlane) {
+		sortingAC = new ByteStream[resolutionLevels + 1][][];
+		
+		for (int rLevel = 0; rLevel <= resolutionLevels; rLevel++) {
+			int codingACPasses = rLevel + 1;
+			int families = 3;
+			int rLevelAux = rLevel-1;
+			if (rLevel == 0) {
+				codingACPasses = 2;
+				families = 1;// the three parents are encoded together
+				rLevelAux = 0;
+			} else if (rLevel == 1) {
+				codingACPasses = 1;
+				families = 1;
+				rLevelAux = 1;
+			}
+			sortingAC[rLevel] = new ByteStream[families][codingACPasses];
+			for (int subband = 0; subband < families; subband++) {
+				sortingAC[rLevel][subband][0] = new ByteStream(8);
+				if (!bitPlaneOfZeros(rLevelAux,subband, bitPlane)){
+					for (int pass = 1; pass < codingACPasses; pass++) {
+						sortingAC[rLevel][subband][pass] = new ByteStream((pass+1)*8);
 					}
 				}
 			}
@@ -996,71 +669,42 @@ public class LowMemoryCodeBlock {
 	}
 
 	/**
-	 * This function indicates which context correspond to each coded word given its stage, lentgh, ... 
-	 * 
-	 * @param stage indicates if the word corresponds to the significance encoding, the sign encoding or the refinement.
-	 *            <ul>
-	 *            <li> 0- significance
-	 *            <li> 1- sign
-	 *            <li> 2- refinement
-	 *            </ul>
-	 * @param length indicates the lenght of the word to be encoded. Valid values are between 1 and 4.
-	 * @param impossiblePattern indicates if all zeros value if possible.
-	 * 
-	 * @return a byte that contains the context for entropy encoding the word.
+	 * Definition in {@link CodeBlockAC#getRecommededContext}
 	 */
-	public byte getContext(int stage, int length, boolean impossiblePattern) {
+	public byte getRecommededContext(int stage, int length, boolean impossiblePattern) {
 		byte context = 0;
-		if (stage == 0) {// this context corresponds to the significance encoding
-			if (length == 1) {
-				context = (byte) 64; // 1-bit significance word
-			} else if (length == 2) {
-				context = (byte) 65; // 2-bit significance word
-			} else if (length == 3) {
-				if (impossiblePattern) {
-					context = (byte) 66; // 3-bit significance word (000 impossible value)
-					// Not used due the structure used to store the coded data
-				} else {
-					context = (byte) 67; // 3-bit significance word (any value is possible)
-				}
-			} else if (length == 4) {
-				if (impossiblePattern) {
-					context = (byte) 68; // 4-bit significance word (0000 impossible value)
-				} else {
-					context = (byte) 69; // 4-bit significance word (any value is possible)
-				}
-			}
-		} else if (stage == 1) { // this context corresponds to the sign encoding
+		if (stage <= 0 ) {// significance encoding
 			if (length == 1) {
-				context = (byte) 70; // 1-bit sign word
+				context = (byte) 64;
 			} else if (length == 2) {
-				context = (byte) 71; // 2-bit sign word
+				context = (byte) 65;
 			} else if (length == 3) {
-				context = (byte) 72; // 3-bit sign word
+				context = impossiblePattern ? (byte) 66 : (byte) 67;
 			} else if (length == 4) {
-				context = (byte) 73; // 4-bit sign word
+				context = impossiblePattern ? (byte) 68 : (byte) 69;
 			}
-		} else { // this context corresponds to the refinement
+		} else if (stage == 1) { // sign encoding
+			context = (byte) (69 + length);
+		} else { // refinement
 			context = (byte) 74;
 		}
-
 		return context;
 	}
 
-	public BitStream[][][] getCodeBlock(int bitPlane){
-		return codedBlock[bitPlane];
+	public byte[] getD() {
+		return D;
 	}
-	
-	public ByteStream[][][] getBlockContexts(int bitPlane) {
-		return blockContexts[bitPlane];
+
+	public byte getDs() {
+		return Ds;
 	}
 
-	public BitStream[] getRefinementAC(int bitPlane) {
-		return this.refinementAC[bitPlane];
+	public BitStream[] getRefinementAC() {
+		return this.refinementAC;
 	}
 
-	public int[][] getCodeLength() {
-		return codeLength;
+	public int[] getSymbolHistogram() {
+		return this.symbolHistogram;
 	}
 
 }
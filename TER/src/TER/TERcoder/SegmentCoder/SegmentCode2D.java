@@ -28,8 +28,15 @@
 package TER.TERcoder.SegmentCoder;
 
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import GiciException.*;
 import GiciStream.*;
+import TER.TERCommon.Events.SegmentEncoded;
 
 /**
  * This class encode the segment according to the given parameters. Usage example:<br>
@@ -277,6 +284,38 @@ public class SegmentCode2D{
 	 */
 	int progressionOrder;
 	
+	/**
+	 * Indicates whether the AC components are coded with {@link LowMemoryCodeBlock} instead of {@link CodeBlockAC}.
+	 * <p>
+	 * When true, the status of each component is recomputed from its magnitude at each bitplane instead of being
+	 * stored for the whole segment, and only Ds and D are kept for each block.
+	 */
+	boolean lowMemory = false;
+	
+	/**
+	 * Number of threads used to code the gaggles of a segment.
+	 * <p>
+	 * 0 means as many threads as available processors and 1 means that gaggles are coded sequentially. The
+	 * produced streams do not depend on this value.
+	 */
+	int threads = 0;
+	
+	/**
+	 * Pool where the gaggles of the segments are coded when more than one thread is used. It is shared by all the
+	 * segments coded with this object (and by the components of a coding, see {@link TER.TERcoder.Coder}), and it is
+	 * not shut down by this class.
+	 * <p>
+	 * Null creates a pool for each segment, which is only suitable for a few large segments.
+	 */
+	ExecutorService gagglePool = null;
+	
+	/**
+	 * Component of the image that is coded, only used to identify the segments in the recorded events.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	int channel = 0;
+	
 	/**
 	 * Constructor that receives the transformed image 
 	 *
@@ -312,12 +351,14 @@ public class SegmentCode2D{
 	 * @param distortionMeasure definition in {@link #distortion}
 	 * @param entropyAC definition in {@link EncodeGaggleAC#entropyAC}
 	 * @param progressionOrder definition in {@link TER.TERcoder.WriteFile.WriteFile#progressionOrder}
+	 * @param lowMemory definition in {@link #lowMemory}
+	 * @param threads definition in {@link #threads}
 	 */
 	public void setParameters(int WTLevels, int WTType, int resolutionLevels, int customWtFlag, float[] customWeight,
 			int[] optDCSelect, int[] optACSelect, int[] gaggleDCSize, int[] gaggleACSize,
 			int[] idDC, int[] idAC, int[] DCStop, int[] bitPlaneStop, int[] stageStop,
 			int[] segByteLimit, float desiredDistortion, int distortionMeasure, int[] entropyAC,
-			int progressionOrder){
+			int progressionOrder, boolean lowMemory, int threads){
 		
 		this.WTLevels = WTLevels;
 		this.WTType = WTType;
@@ -339,6 +380,8 @@ public class SegmentCode2D{
 		this.distortionMeasure = distortionMeasure;		
 		this.entropyAC = entropyAC;
 		this.progressionOrder = progressionOrder;
+		this.lowMemory = lowMemory;
+		this.threads = threads;
 		parametersSet = true;
 		
 	}
@@ -357,10 +400,13 @@ public class SegmentCode2D{
 			throw new ParameterException("SegmentCode2D cannot run if parameters are not set.");
 		}
 
+		SegmentEncoded event = new SegmentEncoded();
+		event.begin();
 		this.blockInSegment = blockInSegment;
 		blocksPerSegment = blockInSegment.length;
 		this.segmentId = segmentId;
 		long remainingBits = segByteLimit[segmentId]*8;
+		int codedBitPlanes = 0;
 		
 		if (computeDistortion){
 			distortion = new DistortionCompute(distortionMeasure,0);
@@ -425,94 +471,62 @@ public class SegmentCode2D{
 			// from the highest bitplane to the lowest bitplane, each block is encoded (if required)
 			
 			
-			byte segmentStatus[][][][][][] = initSegmentStatus(); 
+			byte segmentStatus[][][][][][] = null;
+			if (!lowMemory){
+				segmentStatus = initSegmentStatus();
+			}
 			byte Ds[][] = initDs();
 			byte D[][][] = initD();
 			initRefinementAC();
 			
 			sortingAC = new BitStream[numberOfGaggles][bitDepthAC][];
-			EncodeGaggleAC entropyGaggle= new EncodeGaggleAC();
 			
-			CodeBlockAC codeACs = new CodeBlockAC(imageSamples,resolutionLevels);
-			for(int bitplane = bitDepthAC-1 ; bitplane >= bitPlaneStop[segmentId] && remainingBits>0; bitplane-- ){
-				if (bitplane>=BP[0] && bitplane<quantizedDCBitPlanes){
-					refineDCs(DCs, bitplane);
-					for(int gaggle=0;gaggle<refinementDC.length;gaggle++){
-						if (refinementDC[gaggle][bitplane]!=null){
-							remainingBits -= refinementDC[gaggle][bitplane].getNumBits();
-						}
-					}
+			// each worker has its own coders, gaggles are shared among workers in an interleaved way
+			int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+			if (workers > numberOfGaggles){
+				workers = numberOfGaggles;
+			}
+			EncodeGaggleAC entropyGaggle[] = new EncodeGaggleAC[workers];
+			CodeBlockAC codeACs[] = new CodeBlockAC[workers];
+			LowMemoryCodeBlock lowMemoryACs[] = new LowMemoryCodeBlock[workers];
+			for(int worker=0; worker<workers; worker++){
+				entropyGaggle[worker] = new EncodeGaggleAC();
+				if (lowMemory){
+					lowMemoryACs[worker] = new LowMemoryCodeBlock(imageSamples,resolutionLevels);
+				} else {
+					codeACs[worker] = new CodeBlockAC(imageSamples,resolutionLevels);
 				}
-				for(int gaggle=0 ; gaggle<numberOfGaggles ; gaggle++){
-					ByteStream sortingACGaggle[][][][] = new ByteStream[gaggleACSize[segmentId]][][][];
-					int codeLengthGaggle[] = null;
-
-					BitStream refinementGaggle[][] = null;
-					if 	(progressionOrder>=1){				
-						refinementGaggle = new BitStream[gaggleACSize[segmentId]][];
-					}
-					for(int block=gaggle*gaggleACSize[segmentId];  block<(gaggle+1)*gaggleACSize[segmentId] && block<blocksPerSegment ; block++){
-						if( bitDepthACBlock[block] > bitplane ){// in other case is not needed to encode the bitPlane
-							int blockInGaggle = block % gaggleACSize[segmentId];
-							
-							codeACs.setParameters(WTLevels, resolutionLevels, blockInSegment[block],
-									segmentStatus[gaggle][blockInGaggle],bitDepthACBlock[block],
-									entropyAC[segmentId],BP,distortion, 
-									Ds[gaggle][blockInGaggle], D[gaggle][blockInGaggle], codeLengthGaggle);
-							sortingACGaggle[blockInGaggle] = codeACs.run(bitplane);
-							
-							segmentStatus[gaggle][blockInGaggle] = codeACs.getBlockStatus();
-							Ds[gaggle][blockInGaggle] = codeACs.getDs();
-							D[gaggle][blockInGaggle] = codeACs.getD();
-							if (bitplane<bitDepthAC-1){
-								if (progressionOrder>=1){
-									refinementGaggle[blockInGaggle] = codeACs.getRefinementAC();
-								} else {
-									recommendedRefinementAC[gaggle][bitplane][blockInGaggle] = codeACs.getRefinementAC();
-								}
+			}
+			ExecutorService segmentPool = null;
+			if (workers > 1 && gagglePool == null){
+				segmentPool = Executors.newFixedThreadPool(workers);
+			}
+			try{
+				for(int bitplane = bitDepthAC-1 ; bitplane >= bitPlaneStop[segmentId] && remainingBits>0; bitplane-- ){
+					codedBitPlanes++;
+					if (bitplane>=BP[0] && bitplane<quantizedDCBitPlanes){
+						refineDCs(DCs, bitplane);
+						for(int gaggle=0;gaggle<refinementDC.length;gaggle++){
+							if (refinementDC[gaggle][bitplane]!=null){
+								remainingBits -= refinementDC[gaggle][bitplane].getNumBits();
 							}
-							
-							if(entropyAC[segmentId]==1){
-								codeLengthGaggle = codeACs.getCodeLength();							
-							} 
-							
-						}
-					}
-					if (this.entropyAC[segmentId]<2){
-						//Here is entropy encoded the gaggle
-						entropyGaggle.setParameters(sortingACGaggle,
-								entropyAC[segmentId],codeLengthGaggle,resolutionLevels);
-						sortingAC[gaggle][bitplane]=entropyGaggle.run();
-						
-						for (int rLevel =0; rLevel<sortingAC[gaggle][bitplane].length ; rLevel++){
-							remainingBits -= sortingAC[gaggle][bitplane][rLevel].getNumBits();
 						}
-						//memory is freed
-						
-					} 
-					// here is interleaved the refinement bits of the gaggle (if required)
-					if (bitplane<bitDepthAC-1 && progressionOrder>=1){
-							for(int rLevel=0;rLevel<resolutionLevels;rLevel++){
-								terRefinementAC[gaggle][bitplane][rLevel] = new BitStream((rLevel+1)*8*gaggleACSize[segmentId]);
-								for(int block=0;block<refinementGaggle.length;block++){
-									if (refinementGaggle[block]!=null){
-										terRefinementAC[gaggle][bitplane][rLevel].addBitStream(refinementGaggle[block][rLevel]);
-									}
-								}		
-							}					
 					}
-					refinementGaggle = null;
-					codeLengthGaggle = null;
-					sortingACGaggle = null;
-					
+					remainingBits -= codeGaggles(workers <= 1 ? null : segmentPool != null ? segmentPool : gagglePool, workers,
+							numberOfGaggles, bitplane, BP, segmentStatus, Ds, D, codeACs, lowMemoryACs, entropyGaggle);
+				}
+			} finally {
+				if (segmentPool != null){
+					segmentPool.shutdown();
 				}
-				
 			}
 			segmentStatus = null;
 			D = null;
 			Ds = null;
 			codeACs = null;
+			lowMemoryACs = null;
 			entropyGaggle = null;
+			segmentPool = null;
 			
 			
 		} else {
@@ -522,7 +536,221 @@ public class SegmentCode2D{
 		distortion = null;
 		DCs = null;
 		//System.gc();
+		
+		if (event.shouldCommit()){
+			event.channel = channel;
+			event.segment = segmentId;
+			event.blocks = blocksPerSegment;
+			event.bitplanes = codedBitPlanes;
+			event.bytes = (getCodedBits() + 7) / 8;
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Counts the bits produced for the last coded segment.
+	 * 
+	 * @return the number of bits of all the streams of the segment
+	 */
+	private long getCodedBits(){
+		long codedBits = getNumBits(initialCodedDC) + getNumBits(codedBitDepthACBlock);
+		if (refinementDC!=null){
+			for(int gaggle=0;gaggle<refinementDC.length;gaggle++){
+				codedBits += getNumBits(refinementDC[gaggle]);
+			}
+		}
+		for(int gaggle=0;sortingAC!=null && gaggle<sortingAC.length;gaggle++){
+			for(int bitplane=0;bitplane<sortingAC[gaggle].length;bitplane++){
+				codedBits += getNumBits(sortingAC[gaggle][bitplane]);
+			}
+		}
+		for(int gaggle=0;terRefinementAC!=null && gaggle<terRefinementAC.length;gaggle++){
+			for(int bitplane=0;terRefinementAC[gaggle]!=null && bitplane<terRefinementAC[gaggle].length;bitplane++){
+				codedBits += getNumBits(terRefinementAC[gaggle][bitplane]);
+			}
+		}
+		for(int gaggle=0;recommendedRefinementAC!=null && gaggle<recommendedRefinementAC.length;gaggle++){
+			for(int bitplane=0;recommendedRefinementAC[gaggle]!=null && bitplane<recommendedRefinementAC[gaggle].length;bitplane++){
+				for(int block=0;block<recommendedRefinementAC[gaggle][bitplane].length;block++){
+					codedBits += getNumBits(recommendedRefinementAC[gaggle][bitplane][block]);
+				}
+			}
+		}
+		return codedBits;
+	}
+	
+	/**
+	 * @param streams some streams (null streams are skipped)
+	 * @return the number of bits of the streams
+	 */
+	private static long getNumBits(BitStream streams[]){
+		long numBits = 0;
+		if (streams!=null){
+			for(int stream=0;stream<streams.length;stream++){
+				if (streams[stream]!=null){
+					numBits += streams[stream].getNumBits();
+				}
+			}
+		}
+		return numBits;
+	}
 
+	/**
+	 * Codes one bitplane of all the gaggles of the segment. When a pool is given, worker w codes the gaggles
+	 * w, w + workers, w + 2*workers, ... Each gaggle only writes its own entries of {@link #sortingAC}, 
+	 * {@link #terRefinementAC}, {@link #recommendedRefinementAC} and of the segment status, so the result 
+	 * does not depend on the number of workers.
+	 * 
+	 * @param gagglePool pool where the workers are run, null to code the gaggles in the calling thread
+	 * @param workers number of workers, the length of the coder arrays
+	 * @param numberOfGaggles number of AC gaggles of the segment
+	 * @param bitplane bitplane to be coded
+	 * @param BP definition in {@link CodeBlockAC#BP}
+	 * @param segmentStatus status of the AC components of each block, null in low memory mode
+	 * @param Ds definition in {@link CodeBlockAC#Ds} for each block
+	 * @param D definition in {@link CodeBlockAC#D} for each block
+	 * @param codeACs block coder of each worker
+	 * @param lowMemoryACs low memory block coder of each worker
+	 * @param entropyGaggle entropy coder of each worker
+	 * 
+	 * @return the number of bits of the sorting passes that have been coded
+	 * 
+	 * @throws Exception when something goes wrong and segment encoding must be stopped
+	 */
+	private long codeGaggles(ExecutorService gagglePool, final int workers, final int numberOfGaggles, final int bitplane, final int[] BP,
+			final byte segmentStatus[][][][][][], final byte Ds[][], final byte D[][][],
+			final CodeBlockAC codeACs[], final LowMemoryCodeBlock lowMemoryACs[], final EncodeGaggleAC entropyGaggle[]) throws Exception{
+		long codedBits = 0;
+		if (gagglePool == null){
+			for(int gaggle=0 ; gaggle<numberOfGaggles ; gaggle++){
+				codedBits += codeGaggle(gaggle, bitplane, BP, segmentStatus, Ds, D, codeACs[0], lowMemoryACs[0], entropyGaggle[0]);
+			}
+		} else {
+			Future<?> codedGaggles[] = new Future<?>[workers];
+			final long codedBitsGaggle[] = new long[numberOfGaggles];
+			for(int worker=0; worker<workers; worker++){
+				final int workerId = worker;
+				codedGaggles[worker] = gagglePool.submit(new Callable<Object>(){
+					public Object call() throws Exception{
+						for(int gaggle=workerId ; gaggle<numberOfGaggles ; gaggle+=workers){
+							codedBitsGaggle[gaggle] = codeGaggle(gaggle, bitplane, BP, segmentStatus, Ds, D,
+									codeACs[workerId], lowMemoryACs[workerId], entropyGaggle[workerId]);
+						}
+						return null;
+					}
+				});
+			}
+			for(int worker=0; worker<workers; worker++){
+				try{
+					codedGaggles[worker].get();
+				}catch(ExecutionException e){
+					if (e.getCause() instanceof Exception){
+						throw (Exception) e.getCause();
+					}
+					throw e;
+				}
+			}
+			for(int gaggle=0 ; gaggle<numberOfGaggles ; gaggle++){
+				codedBits += codedBitsGaggle[gaggle];
+			}
+		}
+		return codedBits;
+	}
+	
+	/**
+	 * Codes one bitplane of a gaggle of AC blocks.
+	 * 
+	 * @param gaggle number of the gaggle in the segment
+	 * @param bitplane bitplane to be coded
+	 * @param BP definition in {@link CodeBlockAC#BP}
+	 * @param segmentStatus status of the AC components of each block, null in low memory mode
+	 * @param Ds definition in {@link CodeBlockAC#Ds} for each block
+	 * @param D definition in {@link CodeBlockAC#D} for each block
+	 * @param codeACs block coder used when not in low memory mode
+	 * @param lowMemoryACs block coder used in low memory mode
+	 * @param entropyGaggle entropy coder of the gaggle
+	 * 
+	 * @return the number of bits of the sorting passes that have been coded
+	 * 
+	 * @throws Exception when something goes wrong and segment encoding must be stopped
+	 */
+	private long codeGaggle(int gaggle, int bitplane, int[] BP, byte segmentStatus[][][][][][], byte Ds[][], byte D[][][],
+			CodeBlockAC codeACs, LowMemoryCodeBlock lowMemoryACs, EncodeGaggleAC entropyGaggle) throws Exception{
+		long codedBits = 0;
+		ByteStream sortingACGaggle[][][][] = new ByteStream[gaggleACSize[segmentId]][][][];
+		int symbolHistogramGaggle[] = null;
+
+		BitStream refinementGaggle[][] = null;
+		if 	(progressionOrder>=1){				
+			refinementGaggle = new BitStream[gaggleACSize[segmentId]][];
+		}
+		for(int block=gaggle*gaggleACSize[segmentId];  block<(gaggle+1)*gaggleACSize[segmentId] && block<blocksPerSegment ; block++){
+			if( bitDepthACBlock[block] > bitplane ){// in other case is not needed to encode the bitPlane
+				int blockInGaggle = block % gaggleACSize[segmentId];
+				
+				BitStream refinementBlock[] = null;
+				if (lowMemory){
+					lowMemoryACs.setParameters(WTLevels, resolutionLevels, blockInSegment[block],
+							bitDepthACBlock[block], entropyAC[segmentId], BP, distortion,
+							Ds[gaggle][blockInGaggle], D[gaggle][blockInGaggle], symbolHistogramGaggle);
+					sortingACGaggle[blockInGaggle] = lowMemoryACs.run(bitplane);
+					
+					Ds[gaggle][blockInGaggle] = lowMemoryACs.getDs();
+					D[gaggle][blockInGaggle] = lowMemoryACs.getD();
+					refinementBlock = lowMemoryACs.getRefinementAC();
+					if(entropyAC[segmentId]==1){
+						symbolHistogramGaggle = lowMemoryACs.getSymbolHistogram();
+					}
+				} else {
+					codeACs.setParameters(WTLevels, resolutionLevels, blockInSegment[block],
+							segmentStatus[gaggle][blockInGaggle],bitDepthACBlock[block],
+							entropyAC[segmentId],BP,distortion, 
+							Ds[gaggle][blockInGaggle], D[gaggle][blockInGaggle], symbolHistogramGaggle);
+					sortingACGaggle[blockInGaggle] = codeACs.run(bitplane);
+					
+					segmentStatus[gaggle][blockInGaggle] = codeACs.getBlockStatus();
+					Ds[gaggle][blockInGaggle] = codeACs.getDs();
+					D[gaggle][blockInGaggle] = codeACs.getD();
+					refinementBlock = codeACs.getRefinementAC();
+					if(entropyAC[segmentId]==1){
+						symbolHistogramGaggle = codeACs.getSymbolHistogram();							
+					} 
+				}
+				if (bitplane<bitDepthAC-1){
+					if (progressionOrder>=1){
+						refinementGaggle[blockInGaggle] = refinementBlock;
+					} else {
+						recommendedRefinementAC[gaggle][bitplane][blockInGaggle] = refinementBlock;
+					}
+				}
+				
+			}
+		}
+		if (this.entropyAC[segmentId]<2){
+			//Here is entropy encoded the gaggle
+			entropyGaggle.setParameters(sortingACGaggle,
+					entropyAC[segmentId],symbolHistogramGaggle,resolutionLevels);
+			entropyGaggle.setPosition(channel, segmentId, gaggle, bitplane);
+			sortingAC[gaggle][bitplane]=entropyGaggle.run();
+			
+			for (int rLevel =0; rLevel<sortingAC[gaggle][bitplane].length ; rLevel++){
+				codedBits += sortingAC[gaggle][bitplane][rLevel].getNumBits();
+			}
+			//memory is freed
+			
+		} 
+		// here is interleaved the refinement bits of the gaggle (if required)
+		if (bitplane<bitDepthAC-1 && progressionOrder>=1){
+				for(int rLevel=0;rLevel<resolutionLevels;rLevel++){
+					terRefinementAC[gaggle][bitplane][rLevel] = new BitStream((rLevel+1)*8*gaggleACSize[segmentId]);
+					for(int block=0;block<refinementGaggle.length;block++){
+						if (refinementGaggle[block]!=null){
+							terRefinementAC[gaggle][bitplane][rLevel].addBitStream(refinementGaggle[block][rLevel]);
+						}
+					}		
+				}					
+		}
+		return codedBits;
 	}
 
 	/**
@@ -889,6 +1117,20 @@ public class SegmentCode2D{
 	//// GET FUNCTIONS //////////
 	/////////////////////////////
 	
+	/**
+	 * @param channel definition in {@link #channel}
+	 */
+	public void setChannel(int channel){
+		this.channel = channel;
+	}
+	
+	/**
+	 * @param gagglePool definition in {@link #gagglePool}
+	 */
+	public void setGagglePool(ExecutorService gagglePool){
+		this.gagglePool = gagglePool;
+	}
+	
 	public BitStream[] getInitialCodedDC(){
 		return initialCodedDC;
 	}
@@ -28,6 +28,7 @@
 package TER.TERcoder.Weighting;
 
 import GiciException.*;
+import GiciTransform.CoefficientsApproximation;
 
 /**
  * This class receives an image and weights the specified components.<br>
@@ -92,6 +93,12 @@ public class ForwardWeighting{
 	 */
 	int[] WTLevels = null ;
 	
+	/**
+	 * Approximation applied to the coefficients of each channel right after weighting them, null if no 
+	 * approximation is required. Definition in {@link GiciTransform.CoefficientsApproximation#approximationTypes}
+	 */
+	int[] approximationTypes = null;
+	
 	/**
 	 * To know if parameters are set.
 	 * <p>
@@ -200,6 +207,15 @@ public class ForwardWeighting{
 	public float[][] getCustomWeight(){
 		return(this.customWeight);
 	}
+	
+	/**
+	 * Makes the weighting stage also approximate the coefficients, so that no other pass over the image is needed.
+	 * 
+	 * @param approximationTypes definition in {@link #approximationTypes}
+	 */
+	public void setApproximationTypes(int[] approximationTypes){
+		this.approximationTypes = approximationTypes;
+	}
 
 	/**
 	 * States if weighting is needed according to the user specifications
@@ -362,46 +378,55 @@ public class ForwardWeighting{
 					}
 					//Apply Weigths for each subband
 					for(int currentLevel = 0; currentLevel < WTLevels[z]; currentLevel++){
-						float weight;
-				
 						//Residual Subband
 						if ( currentLevel == 0 ){ 
-								weight = getWeight(currentLevel*3+0,z);
-								for(int y = 0; y < ySubBandSize[currentLevel]; y++){
-										for(int x = 0; x < xSubBandSize[currentLevel]; x++){
-												imageSamples[z][y][x] *= weight;  
-										}
-								}
+								weightSubband(z, 0, ySubBandSize[currentLevel], 0, xSubBandSize[currentLevel], 
+										getWeight(currentLevel*3+0,z));
 						}
 				
 						//HL subband
-						weight = getWeight(currentLevel*3+1,z);
-						for(int y = 0; y < ySubBandSize[currentLevel]; y++){
-								for(int x = xSubBandSize[currentLevel] ; x < xSubBandSize[currentLevel+1] ; x++){
-									imageSamples[z][y][x] *= weight;  
-								}	
-						}
+						weightSubband(z, 0, ySubBandSize[currentLevel], xSubBandSize[currentLevel], xSubBandSize[currentLevel+1], 
+								getWeight(currentLevel*3+1,z));
 				
 						//LH subband
-						weight = getWeight(currentLevel*3+2,z);
-						for(int y = ySubBandSize[currentLevel] ; y < ySubBandSize[currentLevel+1]; y++){
-								for(int x = 0; x < xSubBandSize[currentLevel] ; x++){
-									imageSamples[z][y][x] *= weight;  
-								}
-						}
+						weightSubband(z, ySubBandSize[currentLevel], ySubBandSize[currentLevel+1], 0, xSubBandSize[currentLevel], 
+								getWeight(currentLevel*3+2,z));
 				
 						//HH subband
-						weight = getWeight(currentLevel*3+3,z);
-						for(int y = ySubBandSize[currentLevel]; y < ySubBandSize[currentLevel+1]; y++){
-								for(int x = xSubBandSize[currentLevel]; x < xSubBandSize[currentLevel+1]; x++){
-										imageSamples[z][y][x] *= weight;  
-								}
-						}
+						weightSubband(z, ySubBandSize[currentLevel], ySubBandSize[currentLevel+1], xSubBandSize[currentLevel], xSubBandSize[currentLevel+1], 
+								getWeight(currentLevel*3+3,z));
+					}
+			} else if (approximationTypes != null){
+					for(int y = 0; y < ySize; y++){
+						CoefficientsApproximation.approximate(imageSamples[z][y], 0, xSize, approximationTypes[z]);
 					}
 			}
 		}
 		//Return the weighted image
 		return(imageSamples);
 	}
+	
+	/**
+	 * Multiplies the coefficients of a subband by its weight and, if required, approximates them while each row is 
+	 * still in cache.
+	 * 
+	 * @param z channel of the subband
+	 * @param yStart first row of the subband
+	 * @param yEnd row following the last one of the subband
+	 * @param xStart first column of the subband
+	 * @param xEnd column following the last one of the subband
+	 * @param weight weight of the subband
+	 */
+	private void weightSubband(int z, int yStart, int yEnd, int xStart, int xEnd, float weight){
+		for(int y = yStart; y < yEnd; y++){
+			float row[] = imageSamples[z][y];
+			for(int x = xStart; x < xEnd; x++){
+				row[x] *= weight;
+			}
+			if (approximationTypes != null){
+				CoefficientsApproximation.approximate(row, xStart, xEnd, approximationTypes[z]);
+			}
+		}
+	}
 
 }
@@ -313,9 +313,11 @@ public class RecommendedOrder{
 	/**
 	 * Creates the encoded file according with the progression given by the user
 	 * 
+	 * @param fileOut stream where the segments are written
+	 *
 	 * @throws Exception when something goes wrong and segments cannot be written
 	 */
-	public void run(RandomAccessFile fileOut) throws Exception{
+	public void run(OutputStream fileOut) throws Exception{
 		//If parameters are not set run cannot be executed
 		if(!parametersSet){
 			throw new ParameterException("Segments cannot be writen if parameters are not set.");
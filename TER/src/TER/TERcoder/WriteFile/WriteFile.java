@@ -31,6 +31,7 @@ import GiciStream.*;
 import GiciException.*;
 import TER.TERCommon.GetMax;
 import TER.TERCommon.ParameterTools;
+import TER.TERCommon.Events.PacketWritten;
 
 import java.io.*;
 
@@ -134,7 +135,33 @@ public class WriteFile{
 	int layerSizeType;
 	int layerBytes[] = null;
 	
-	RandomAccessFile fOut = null;
+	/**
+	 * Stream where the encoded file is written.
+	 * <p>
+	 * Only used while running.
+	 */
+	OutputStream fOut = null;
+
+	/**
+	 * Stream given by the user to write the encoded file in, instead of {@link #outputFile}. It is not closed.
+	 * <p>
+	 * Null writes the encoded file to {@link #outputFile}.
+	 */
+	OutputStream outputStream = null;
+	
+	/**
+	 * Number of bytes of the encoded file written by the last run.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	long bytesWritten = 0;
+	
+	/**
+	 * Number of packets written by the last run. Files in the recommended order have no packets.
+	 * <p>
+	 * Only positive values allowed.
+	 */
+	int packetsWritten = 0;
 	
 	/**
 	 * Constructor of WriteFile
@@ -246,6 +273,15 @@ public class WriteFile{
 		
 		parametersSet = true;
 	}
+
+	/**
+	 * Sets a stream where the encoded file is written instead of the output file, so that no file is written.
+	 *
+	 * @param outputStream definition in {@link #outputStream}
+	 */
+	public void setOutputStream(OutputStream outputStream){
+		this.outputStream = outputStream;
+	}
 	
 	/**
 	 * Creates the encoded file according with the progression given by the user
@@ -259,13 +295,19 @@ public class WriteFile{
 		}
 		try{
 			
-			File newFile = new File(this.outputFile);
-			if(newFile.exists()){
-				newFile.delete();
-				newFile.createNewFile();
-			}
-			
-			fOut = new RandomAccessFile(newFile, "rw");
+			final OutputStream out = outputStream != null ? outputStream : new BufferedOutputStream(new FileOutputStream(this.outputFile));
+			bytesWritten = 0;
+			packetsWritten = 0;
+			fOut = new FilterOutputStream(out){
+				public void write(int b) throws IOException{
+					out.write(b);
+					bytesWritten++;
+				}
+				public void write(byte[] b, int off, int len) throws IOException{
+					out.write(b, off, len);
+					bytesWritten += len;
+				}
+			};
 			
 			if (outputFileType == 0){
 				writeRecommendedFile(0);
@@ -307,7 +349,11 @@ public class WriteFile{
 				throw new ParameterException("Unknown file type.");
 			}
 			
-			fOut.close();
+			if(outputStream != null){
+				fOut.flush();
+			}else{
+				fOut.close();
+			}
 			fOut = null;
 		} catch(IOException e){
 			throw new ErrorException(e.toString());
@@ -356,9 +402,7 @@ public class WriteFile{
 						if (rLevel<streams[z][segment].length){
 							if (streams[z][segment][rLevel]!=null){
 								for(int gaggle = 0;gaggle<streams[z][segment][rLevel].length;gaggle++){
-									int packetLength = layersOffset[z][segment][rLevel][gaggle][layer+1] - layersOffset[z][segment][rLevel][gaggle][layer];
-									writePacketHeader(packetLength);
-									fOut.write(streams[z][segment][rLevel][gaggle],layersOffset[z][segment][rLevel][gaggle][layer],packetLength);
+									writePacket(streams, layersOffset, z, segment, rLevel, gaggle, layer);
 								}
 							} 
 						}
@@ -379,9 +423,7 @@ public class WriteFile{
 						if (rLevel<streams[z][segment].length){
 							if (streams[z][segment][rLevel]!=null){
 								for(int gaggle = 0;gaggle<streams[z][segment][rLevel].length;gaggle++){
-									int packetLength = layersOffset[z][segment][rLevel][gaggle][layer+1] - layersOffset[z][segment][rLevel][gaggle][layer];
-									writePacketHeader(packetLength);
-									fOut.write(streams[z][segment][rLevel][gaggle],layersOffset[z][segment][rLevel][gaggle][layer],packetLength);
+									writePacket(streams, layersOffset, z, segment, rLevel, gaggle, layer);
 								}
 							} 
 						}
@@ -406,9 +448,7 @@ public class WriteFile{
 								if (streams[z][segment][rLevel]!=null){
 									if (gaggle<streams[z][segment][rLevel].length){
 										for(int layer = 0;layer<numberOfLayers;layer++){
-											int packetLength = layersOffset[z][segment][rLevel][gaggle][layer+1] - layersOffset[z][segment][rLevel][gaggle][layer];
-											writePacketHeader(packetLength);
-											fOut.write(streams[z][segment][rLevel][gaggle],layersOffset[z][segment][rLevel][gaggle][layer],packetLength);
+											writePacket(streams, layersOffset, z, segment, rLevel, gaggle, layer);
 										}
 									} 
 								}
@@ -433,9 +473,7 @@ public class WriteFile{
 						for(int rLevel=0;rLevel<streams[z][segment].length;rLevel++){
 							if (gaggle<streams[z][segment][rLevel].length){
 								for(int layer = 0;layer<numberOfLayers;layer++){
-									int packetLength = layersOffset[z][segment][rLevel][gaggle][layer+1] - layersOffset[z][segment][rLevel][gaggle][layer];
-									writePacketHeader(packetLength);
-									fOut.write(streams[z][segment][rLevel][gaggle],layersOffset[z][segment][rLevel][gaggle][layer],packetLength);
+									writePacket(streams, layersOffset, z, segment, rLevel, gaggle, layer);
 								}
 							}
 						} 
@@ -455,9 +493,7 @@ public class WriteFile{
 					for(int rLevel=0;rLevel<streams[z][segment].length;rLevel++){
 						if (gaggle<streams[z][segment][rLevel].length){
 							for(int layer = 0;layer<numberOfLayers;layer++){
-								int packetLength = layersOffset[z][segment][rLevel][gaggle][layer+1] - layersOffset[z][segment][rLevel][gaggle][layer];
-								writePacketHeader(packetLength);
-								fOut.write(streams[z][segment][rLevel][gaggle],layersOffset[z][segment][rLevel][gaggle][layer],packetLength);
+								writePacket(streams, layersOffset, z, segment, rLevel, gaggle, layer);
 							}
 						}
 					} 
@@ -486,6 +522,36 @@ public class WriteFile{
 		return mainHeaderLength;
 	}
 
+	/**
+	 * Writes a packet, its header followed by its data, and records it in a {@link PacketWritten} event.
+	 * 
+	 * @param streams data of each gaggle, index meaning [z][segment][rLevel][gaggle][byte]
+	 * @param layersOffset position of each layer in the data of each gaggle, index meaning [z][segment][rLevel][gaggle][layer]
+	 * @param z component of the packet
+	 * @param segment segment of the packet
+	 * @param rLevel resolution level of the packet
+	 * @param gaggle gaggle of the packet
+	 * @param layer layer of the packet
+	 * 
+	 * @throws IOException when the packet cannot be written
+	 */
+	private void writePacket(byte[][][][][] streams, int[][][][][] layersOffset, int z, int segment, int rLevel, int gaggle, int layer) throws IOException{
+		PacketWritten event = new PacketWritten();
+		event.begin();
+		int packetLength = layersOffset[z][segment][rLevel][gaggle][layer+1] - layersOffset[z][segment][rLevel][gaggle][layer];
+		writePacketHeader(packetLength);
+		fOut.write(streams[z][segment][rLevel][gaggle],layersOffset[z][segment][rLevel][gaggle][layer],packetLength);
+		if (event.shouldCommit()){
+			event.channel = z;
+			event.segment = segment;
+			event.resolutionLevel = rLevel;
+			event.gaggle = gaggle;
+			event.layer = layer;
+			event.bytes = packetLength;
+			event.commit();
+		}
+	}
+
 	private void writePacketHeader(int value) throws IOException{
 		int numBytes = (value!=0) ? (int)Math.ceil(Math.log(value+1)/Math.log(2D)) : 1;
 		numBytes =  ( (int) Math.ceil( numBytes/7D ) );	
@@ -504,5 +570,20 @@ public class WriteFile{
 			}		
 		}
 		fOut.write(packetHeader,0,numBytes);
+		packetsWritten++;
+	}
+	
+	/**
+	 * @return definition in {@link #bytesWritten}
+	 */
+	public long getBytesWritten(){
+		return bytesWritten;
+	}
+	
+	/**
+	 * @return definition in {@link #packetsWritten}
+	 */
+	public int getPacketsWritten(){
+		return packetsWritten;
 	}
 }
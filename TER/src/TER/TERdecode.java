@@ -27,10 +27,15 @@
  */
 package TER;
 
+import GiciException.WarningException;
+import GiciFile.RawBandWriter;
 import GiciFile.SaveFile;
+import TER.TERCommon.Metrics;
 import TER.TERdecoder.ArgsParserDecoder;
 import TER.TERdecoder.Decoder;
 
+import java.io.File;
+
 
 /**
  * Main class of TERDecode application. TERDecode is a decoder of the Recommended Standard CCSDS 122.0-B-1 Blue Book.
@@ -99,6 +104,9 @@ public class TERdecode{
 		int spectralWTType = argsParser.getSpectralWTType();
 		
 		Decoder terDecoder = new Decoder(inputFile);
+		//Metrics are collected only when they are written
+		Metrics metrics = argsParser.getMetricsFile() != null ? new Metrics() : null;
+		terDecoder.setMetrics(metrics);
 		int[] pixelBitDepth = null;
 		
 		try{
@@ -122,17 +130,30 @@ public class TERdecode{
 		}
 		
 		try{
+			if(RawBandWriter.isSupported(imageFile)){
+				//Raw images are written component by component while they are decoded
+				terDecoder.run(new RawBandWriter(imageFile));
+				writeMetrics(metrics, argsParser.getMetricsFile(), inputFile, imageFile);
+				return;
+			}
 			float[][][] image = terDecoder.run();
 			if (imageGeometry==null){
 				imageGeometry = terDecoder.getImageGeometry();
 			}
 			try{
+				if(metrics != null){
+					metrics.start("save");
+				}
 				SaveFile.SaveFileByExtension(image,imageFile,imageGeometry);
+				if(metrics != null){
+					metrics.stop("save");
+				}
 			} catch(Exception e){
 				e.printStackTrace();
 				System.err.println("Gici SaveFile ERROR: " + e.getMessage());
 				System.exit(4);
 			}
+			writeMetrics(metrics, argsParser.getMetricsFile(), inputFile, imageFile);
 		}catch(Exception e){
 			e.printStackTrace();
 			System.err.println("TERdecoder RUNNING ERROR: " + e.getMessage());
@@ -141,4 +162,24 @@ public class TERdecode{
 		
 		
 	}
+
+	/**
+	 * Writes the metrics of the decoding, adding the bytes read and written.
+	 *
+	 * @param metrics the metrics (null if they are not collected)
+	 * @param metricsFile file where the metrics are written
+	 * @param inputFile the encoded file
+	 * @param imageFile the recovered image file
+	 */
+	private static void writeMetrics(Metrics metrics, String metricsFile, String inputFile, String imageFile){
+		if(metrics != null){
+			metrics.add("bytes.in", new File(inputFile).length());
+			metrics.add("bytes.out", new File(imageFile).length());
+			try{
+				metrics.write(metricsFile);
+			}catch(WarningException e){
+				System.err.println("METRICS WRITING ERROR: " + e.getMessage());
+			}
+		}
+	}
 }
@@ -111,7 +111,10 @@ public class ArgsParserDecoder{
 			"Discrete wavelet transform type to be applied in the spatial domain."
 		},
 		{"-rp", "--rangeRecoveredPixels", "{boolean}", TER.TERDefaultValues.rangeRecoveredPixels + " ", "0",
-			"A boolean that indicates if recovered pixels must be ranged and rounded or not."}	
+			"A boolean that indicates if recovered pixels must be ranged and rounded or not."},
+		{"-mf", "--metricsFile", "{string}", " ", "0",
+			"File where the metrics of the decoding are written: wall time, CPU time and allocated bytes of each stage (and of each component and segment in the bit plane decoder), bytes read and written and peak heap. The metrics are written in CSV if the file name ends with \".csv\" and in JSON otherwise. If not specified, metrics are not collected."
+		}
 	};
 
 	//ARGUMENTS VARIABLES
@@ -132,6 +135,7 @@ public class ArgsParserDecoder{
 	int test3d = 0;
 	int spectralWTLevels = 0;
 	int spectralWTType = 0;
+	String metricsFile = null;
 	
 	/**
 	 * Class constructor that receives the arguments string and initializes all the arguments.
@@ -223,6 +227,9 @@ public class ArgsParserDecoder{
 					case  17://"-rp", "--rangeRecoveredPixels", "{boolean}"
 						rangeRecoveredPixels = parseBoolean(options);
 						break;	
+					case  18://-mf --metricsFile
+						metricsFile = parseString(options);
+						break;
 					}
 				}else{
 					throw new Exception("Argument \"" + args[argNum] + "\" repeated.");
@@ -519,6 +526,9 @@ public class ArgsParserDecoder{
 	public int getSpectralWTType(){
 		return this.spectralWTType;
 	}
+	public String getMetricsFile(){
+		return this.metricsFile;
+	}
 	////////////////////////////
 	//// HELP DOCUMENT /////////
 	////////////////////////////
@@ -36,6 +36,21 @@ public class ACEntropyDecoder{
 	
 	ReadBufferedStream encodedStream[] = null;
 	byte packetStream[][][][][] = null;
+	
+	/**
+	 * Position of the data of each gaggle in its array of packetStream, index meaning [channel][segment][rLevel][gaggle].
+	 * <p>
+	 * Null when each gaggle has its own array.
+	 */
+	int packetOffset[][][][] = null;
+	
+	/**
+	 * Number of bytes of the data of each gaggle, index meaning [channel][segment][rLevel][gaggle].
+	 * <p>
+	 * Null when each gaggle has its own array.
+	 */
+	int packetLength[][][][] = null;
+	
 	int currentLayer[] = null;
 
 	/**
@@ -73,6 +88,19 @@ public class ACEntropyDecoder{
 		this.packetStream = packetStream;
 	}
 	
+	/**
+	 * Constructor for packets given as slices of arrays, so that the data of the gaggles is not copied.
+	 * 
+	 * @param packetStream array that contains the data of each gaggle, index meaning [channel][segment][rLevel][gaggle]
+	 * @param packetOffset position of the data of each gaggle in its array
+	 * @param packetLength number of bytes of the data of each gaggle
+	 */
+	public ACEntropyDecoder(byte packetStream[][][][][], int packetOffset[][][][], int packetLength[][][][]){
+		this.packetStream = packetStream;
+		this.packetOffset = packetOffset;
+		this.packetLength = packetLength;
+	}
+	
 	
 	public void setParameters(int channel, int segment, int gaggle,
 			int resolutionLevels, int entropyAC) throws Exception{
@@ -86,7 +114,12 @@ public class ACEntropyDecoder{
 		encodedStream = new ReadBufferedStream[resolutionLevels-1];
 		for(int generation=0; generation<resolutionLevels-1;generation++){
 			if (packetStream[channel][segment][generation+1][gaggle]!=null){
-				encodedStream[generation] = new ReadBufferedStream(packetStream[channel][segment][generation+1][gaggle]);
+				if (packetOffset!=null){
+					encodedStream[generation] = new ReadBufferedStream(packetStream[channel][segment][generation+1][gaggle],
+							packetOffset[channel][segment][generation+1][gaggle], packetLength[channel][segment][generation+1][gaggle]);
+				} else {
+					encodedStream[generation] = new ReadBufferedStream(packetStream[channel][segment][generation+1][gaggle]);
+				}
 			}
 		}
 		
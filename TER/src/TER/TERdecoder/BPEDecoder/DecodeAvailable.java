@@ -27,8 +27,15 @@
  */
 package TER.TERdecoder.BPEDecoder;
 
+import java.util.Arrays;
+
 import GiciException.*;
+import GiciFile.ImageBufferPool;
 import GiciImageExtension.ImageExtension;
+import GiciTransform.InverseWaveletTransform;
+import TER.TERCommon.Metrics;
+import TER.TERCommon.Events.PacketDecoded;
+import TER.TERdecoder.ReadFile.ReadFile;
 
 public class DecodeAvailable{
 	
@@ -63,13 +70,93 @@ public class DecodeAvailable{
 	int bitDepthAC[][] = null;
 	
 	byte packet[][][][][] = null;
+
+	/**
+	 * Position of the data of each gaggle in its array of packet, index meaning [z][segment][rLevel][gaggle].
+	 * <p>
+	 * Null when each gaggle has its own array.
+	 */
+	int packetOffset[][][][] = null;
+
+	/**
+	 * Number of bytes of the data of each gaggle, index meaning [z][segment][rLevel][gaggle].
+	 * <p>
+	 * Null when each gaggle has its own array.
+	 */
+	int packetLength[][][][] = null;
+
+	/**
+	 * Reader of the encoded stream that gives the packets of each component when it is decoded.
+	 * <p>
+	 * Null when all the packets are given in the constructor.
+	 */
+	ReadFile packetSource = null;
+
+	/**
+	 * Size of the coefficients of each component, index meaning [z][0 height, 1 width].
+	 * <p>
+	 * Set with the parameters, components are only allocated when they are decoded.
+	 */
+	int bandSizes[][] = null;
 	
 	int completionMode[];
 	float gammaValue[] = null;
 	
+	/**
+	 * Coefficients needed to recover a region of each component, index meaning [z][rLevel][0 yStart, 1 yEnd, 2 xStart,
+	 * 3 xEnd] (see {@link InverseWaveletTransform#getRegionSupport}).
+	 * <p>
+	 * Null when the whole image is recovered. Null for the components whose blocks are all recovered.
+	 */
+	int regionSupport[][][] = null;
+	
+	/**
+	 * Number of AC blocks that have been only parsed, since none of their coefficients are needed.
+	 */
+	int skippedBlocks = 0;
+	
+	/**
+	 * Pool where the image of the recovered coefficients is taken from.
+	 * <p>
+	 * Null when the image is allocated for each run.
+	 */
+	ImageBufferPool imageBuffers = null;
+	
+	/**
+	 * Metrics where the decoding time of each component ("bpd.band.z") and segment ("bpd.band.z.segment.s") is
+	 * accumulated.
+	 * <p>
+	 * Null if metrics are not collected.
+	 */
+	Metrics metrics = null;
+	
 	public DecodeAvailable(byte packet[][][][][]){
 		this.packet = packet;
 	}
+
+	/**
+	 * Constructor for packets given as slices of arrays (see {@link ReadFile#setPacketSlices}), so that the data of the
+	 * gaggles is decoded without copying it.
+	 *
+	 * @param packet array that contains the data of each gaggle, index meaning [z][segment][rLevel][gaggle]
+	 * @param packetOffset position of the data of each gaggle in its array
+	 * @param packetLength number of bytes of the data of each gaggle
+	 */
+	public DecodeAvailable(byte packet[][][][][], int packetOffset[][][][], int packetLength[][][][]){
+		this.packet = packet;
+		this.packetOffset = packetOffset;
+		this.packetLength = packetLength;
+	}
+
+	/**
+	 * Constructor that reads the packets of each component only when the component is decoded. The packets of each
+	 * component are released once it is decoded, so that the whole encoded stream is never held in memory.
+	 *
+	 * @param packetSource reader of the encoded stream, already run, that gives the packets of each component
+	 */
+	public DecodeAvailable(ReadFile packetSource){
+		this.packetSource = packetSource;
+	}
 	
 	public void setParameters(int zSize, int  yOriginalSize, int xOriginalSize,
 			int imageExtensionType[], 
@@ -105,6 +192,11 @@ public class DecodeAvailable{
 		this.gammaValue = gammaValue;
 		
 		this.recoveredImage = new float[zSize][][];
+		if (packetSource!=null){
+			this.packet = new byte[zSize][][][][];
+		}
+		this.bandSizes = new int[zSize][2];
+		this.regionSupport = null;
 		
 		int nonDecodedResolutionLevels[] = new int[zSize];
 		for(int z=0;z<zSize;z++){
@@ -128,79 +220,119 @@ public class DecodeAvailable{
 				
 				int extendedySize = ((yOriginalSize + linesToAdd)>> nonDecodedResolutionLevels[z]) ;
 				int extendedxSize = ((xOriginalSize + columnsToAdd)>> nonDecodedResolutionLevels[z]);
-				this.recoveredImage[z] = new float[extendedySize][extendedxSize];
+				bandSizes[z][0] = extendedySize;
+				bandSizes[z][1] = extendedxSize;
 			}
 		} else {
 			for(int z=0;z<zSize;z++){
 				int extendedySize = ((yOriginalSize)>> nonDecodedResolutionLevels[z]) ;
 				int extendedxSize = ((xOriginalSize)>> nonDecodedResolutionLevels[z]);
-				this.recoveredImage[z] = new float[extendedySize][extendedxSize];
+				bandSizes[z][0] = extendedySize;
+				bandSizes[z][1] = extendedxSize;
 			}
 		}
 		
 		parametersSet = true;
 	}
 	
+	/**
+	 * Sets a region of the image that is recovered by the inverse transform (see
+	 * {@link InverseWaveletTransform#setRegion}), so that the AC blocks that have no coefficient in its support are
+	 * only parsed. Must be called after the parameters are set.
+	 *
+	 * @param region the region as {yStart, yEnd, xStart, xEnd}
+	 * @param WTOrder order of the transform of each component
+	 */
+	public void setRegion(int region[], int WTOrder[]){
+		regionSupport = new int[zSize][][];
+		for(int z=0;z<zSize;z++){
+			//blocks only match the subbands of the 2D transform
+			if (WTType[z]!=0 && WTOrder[z]!=2 && region[1]<=bandSizes[z][0] && region[3]<=bandSizes[z][1]){
+				regionSupport[z] = InverseWaveletTransform.getRegionSupport(bandSizes[z][0], bandSizes[z][1], WTLevels[z], WTOrder[z], region);
+			}
+		}
+	}
+	
+	/**
+	 * Sets a pool where the image of the recovered coefficients is taken from when all the components have the same
+	 * size, so that the memory of previous images is reused.
+	 *
+	 * @param imageBuffers definition in {@link #imageBuffers}
+	 */
+	public void setImageBufferPool(ImageBufferPool imageBuffers){
+		this.imageBuffers = imageBuffers;
+	}
+	
+	/**
+	 * @param metrics definition in {@link #metrics}
+	 */
+	public void setMetrics(Metrics metrics){
+		this.metrics = metrics;
+	}
+	
 	public float[][][] run() throws Exception{
 		if(!parametersSet){
 			throw new ParameterException("Decode Available cannot run if parameters are not properly set.");
 		}
+		skippedBlocks = 0;
+		float pooledImage[][][] = null;
+		if (imageBuffers!=null && zSize>0){
+			pooledImage = imageBuffers.get(zSize, bandSizes[0][0], bandSizes[0][1]);
+			for(int z=0;z<zSize && pooledImage!=null;z++){
+				if (bandSizes[z][0]!=bandSizes[0][0] || bandSizes[z][1]!=bandSizes[0][1]){
+					imageBuffers.release(pooledImage);
+					pooledImage = null;
+				}
+			}
+		}
+		if (pooledImage!=null){
+			//coefficients that are not decoded must be 0
+			for(int z=0;z<zSize;z++){
+				for(int y=0;y<bandSizes[z][0];y++){
+					Arrays.fill(pooledImage[z][y], 0F);
+				}
+				recoveredImage[z] = pooledImage[z];
+			}
+		} else {
+			for(int z=0;z<zSize;z++){
+				recoveredImage[z] = new float[bandSizes[z][0]][bandSizes[z][1]];
+			}
+		}
 		
 		//packet[channel][segment][rLevel][gaggle][layer][]
-		if (packet!=null){
+		if (packetSource!=null){
+			//Packets are read when each component is decoded and released afterwards
 			DecodeGaggleDC dc = new DecodeGaggleDC(recoveredImage);
+			ACEntropyDecoder ea = new ACEntropyDecoder(packet);
+			DecodeGaggleAC ac = new DecodeGaggleAC(recoveredImage);
 			for(int z=0;z<zSize;z++){
-				if (resolutionLevels[z]>0){
-					//DC components are decoded
-					if (packet[z]!=null){
-						for(int segment=0;segment<blocksPerSegment[z].length;segment++){
-							if (packet[z][segment]!=null){							
-								if (packet[z][segment][0]!=null){
-									for(int gaggle=0;gaggle<packet[z][segment][0].length;gaggle++){
-										if (packet[z][segment][0][gaggle]!=null){
-											dc.setParameters(packet[z][segment][0][gaggle],
-													z, segment, gaggle,
-													gaggleSize[z][segment][0][gaggle], gaggleSizeDC[z][segment],
-													bitDepthDC[z][segment], bitDepthAC[z][segment],
-													blocksPerSegment[z],
-													resolutionLevels[z], BP[z][0],
-													completionMode[z], gammaValue[z]);
-											dc.run();						
-										}
-									}
-								}
-							}
-							
-						}
-					}
-				}
+				startStage("bpd.band." + z);
+				packet[z] = packetSource.getPackets(z);
+				decodeDC(dc, z);
+				decodeAC(ea, ac, z);
+				packet[z] = null;
+				stopStage("bpd.band." + z);
+			}
+			dc = null;
+			ea = null;
+			ac = null;
+		} else if (packet!=null){
+			DecodeGaggleDC dc = new DecodeGaggleDC(recoveredImage);
+			for(int z=0;z<zSize;z++){
+				startStage("bpd.band." + z);
+				decodeDC(dc, z);
+				stopStage("bpd.band." + z);
 			}
 			this.recoveredImage = dc.getRecoveredImage();
 			dc = null;
 			
-			ACEntropyDecoder ea = new ACEntropyDecoder(packet);
+			ACEntropyDecoder ea = new ACEntropyDecoder(packet, packetOffset, packetLength);
 			DecodeGaggleAC ac = new DecodeGaggleAC(recoveredImage);
 			
 			for(int z=0;z<zSize;z++){
-				if (resolutionLevels[z]>=1){
-					if (packet[z]!=null){
-						for(int segment=0;segment<blocksPerSegment[z].length;segment++){
-							if (packet[z][segment]!=null && packet[z][segment].length>1){							
-								for(int gaggle=0;gaggle<packet[z][segment][1].length;gaggle++){						
-									//AC components must be decoded
-									ea.setParameters(z,segment,gaggle,resolutionLevels[z],entropyAC[z][segment]);
-									ac.setParameters(ea,
-											z, segment,gaggle,
-											gaggleSize[z][segment][1][gaggle], gaggleSizeAC[z][segment],
-											bitDepthAC[z][segment],
-											blocksPerSegment[z], WTLevels[z],
-											resolutionLevels[z], BP[z],gammaValue[z]);
-									ac.run();
-								}
-							}
-						}
-					}
-				}
+				startStage("bpd.band." + z);
+				decodeAC(ea, ac, z);
+				stopStage("bpd.band." + z);
 			}
 			recoveredImage = ac.getRecoveredImage();
 			
@@ -209,6 +341,188 @@ public class DecodeAvailable{
 		}
 		return recoveredImage;
 	}
+
+	/**
+	 * Decodes only one component, so that components can be decoded one by one without holding the whole image.
+	 * The packets of the component are released once it is decoded.
+	 *
+	 * @param z the component
+	 * @return the decoded coefficients of the component
+	 *
+	 * @throws Exception when the packets cannot be decoded
+	 */
+	public float[][] run(int z) throws Exception{
+		if(!parametersSet){
+			throw new ParameterException("Decode Available cannot run if parameters are not properly set.");
+		}
+		recoveredImage[z] = new float[bandSizes[z][0]][bandSizes[z][1]];
+		startStage("bpd.band." + z);
+		if (packetSource!=null){
+			packet[z] = packetSource.getPackets(z);
+		}
+		if (packet!=null){
+			decodeDC(new DecodeGaggleDC(recoveredImage), z);
+			decodeAC(new ACEntropyDecoder(packet, packetOffset, packetLength), new DecodeGaggleAC(recoveredImage), z);
+			packet[z] = null;
+		}
+		stopStage("bpd.band." + z);
+		float[][] band = recoveredImage[z];
+		recoveredImage[z] = null;
+		return band;
+	}
+
+	/**
+	 * Decodes the DC components of one component.
+	 *
+	 * @param dc decoder of the DC gaggles
+	 * @param z the component
+	 *
+	 * @throws Exception when the packets cannot be decoded
+	 */
+	private void decodeDC(DecodeGaggleDC dc, int z) throws Exception{
+		if (resolutionLevels[z]>0){
+			//DC components are decoded
+			if (packet[z]!=null){
+				for(int segment=0;segment<blocksPerSegment[z].length;segment++){
+					if (metrics!=null){
+						metrics.start("bpd.band." + z + ".segment." + segment);
+					}
+					if (packet[z][segment]!=null){							
+						if (packet[z][segment][0]!=null){
+							for(int gaggle=0;gaggle<packet[z][segment][0].length;gaggle++){
+								if (packet[z][segment][0][gaggle]!=null){
+									PacketDecoded event = new PacketDecoded();
+									event.begin();
+									int offset = 0;
+									int length = packet[z][segment][0][gaggle].length;
+									if (packetOffset!=null){
+										offset = packetOffset[z][segment][0][gaggle];
+										length = packetLength[z][segment][0][gaggle];
+									}
+									dc.setParameters(packet[z][segment][0][gaggle], offset, length,
+											z, segment, gaggle,
+											gaggleSize[z][segment][0][gaggle], gaggleSizeDC[z][segment],
+											bitDepthDC[z][segment], bitDepthAC[z][segment],
+											blocksPerSegment[z],
+											resolutionLevels[z], BP[z][0],
+											completionMode[z], gammaValue[z]);
+									dc.run();						
+									if (event.shouldCommit()){
+										event.channel = z;
+										event.segment = segment;
+										event.gaggle = gaggle;
+										event.ac = false;
+										event.bytes = length;
+										event.commit();
+									}
+								}
+							}
+						}
+					}
+					if (metrics!=null){
+						metrics.stop("bpd.band." + z + ".segment." + segment);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decodes the AC components of one component.
+	 *
+	 * @param ea entropy decoder of the AC packets
+	 * @param ac decoder of the AC gaggles
+	 * @param z the component
+	 *
+	 * @throws Exception when the packets cannot be decoded
+	 */
+	private void decodeAC(ACEntropyDecoder ea, DecodeGaggleAC ac, int z) throws Exception{
+		if (resolutionLevels[z]>=1){
+			if (packet[z]!=null){
+				for(int segment=0;segment<blocksPerSegment[z].length;segment++){
+					if (metrics!=null){
+						metrics.start("bpd.band." + z + ".segment." + segment);
+					}
+					if (packet[z][segment]!=null && packet[z][segment].length>1){							
+						for(int gaggle=0;gaggle<packet[z][segment][1].length;gaggle++){						
+							//AC components must be decoded
+							PacketDecoded event = new PacketDecoded();
+							event.begin();
+							ea.setParameters(z,segment,gaggle,resolutionLevels[z],entropyAC[z][segment]);
+							ac.setParameters(ea,
+									z, segment,gaggle,
+									gaggleSize[z][segment][1][gaggle], gaggleSizeAC[z][segment],
+									bitDepthAC[z][segment],
+									blocksPerSegment[z], WTLevels[z],
+									resolutionLevels[z], BP[z],gammaValue[z]);
+							ac.setRegionSupport(regionSupport==null ? null : regionSupport[z]);
+							ac.run();
+							skippedBlocks += ac.getSkippedBlocks();
+							if (event.shouldCommit()){
+								event.channel = z;
+								event.segment = segment;
+								event.gaggle = gaggle;
+								event.ac = true;
+								event.bytes = getACBytes(z, segment, gaggle);
+								event.skippedBlocks = ac.getSkippedBlocks();
+								event.commit();
+							}
+						}
+					}
+					if (metrics!=null){
+						metrics.stop("bpd.band." + z + ".segment." + segment);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Counts the bytes of the AC packets of a gaggle.
+	 *
+	 * @param z the component
+	 * @param segment the segment
+	 * @param gaggle the gaggle
+	 * @return the bytes of the packets of all the AC resolution levels of the gaggle
+	 */
+	private long getACBytes(int z, int segment, int gaggle){
+		long bytes = 0;
+		for(int rLevel=1;rLevel<packet[z][segment].length;rLevel++){
+			if (packet[z][segment][rLevel]!=null && gaggle<packet[z][segment][rLevel].length && packet[z][segment][rLevel][gaggle]!=null){
+				bytes += packetLength!=null ? packetLength[z][segment][rLevel][gaggle] : packet[z][segment][rLevel][gaggle].length;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Starts a stage in {@link #metrics}, if they are collected.
+	 *
+	 * @param stage name of the stage
+	 */
+	private void startStage(String stage){
+		if (metrics!=null){
+			metrics.start(stage);
+		}
+	}
+
+	/**
+	 * Stops a stage in {@link #metrics}, if they are collected.
+	 *
+	 * @param stage name of the stage
+	 */
+	private void stopStage(String stage){
+		if (metrics!=null){
+			metrics.stop(stage);
+		}
+	}
+	
+	/**
+	 * @return definition in {@link #skippedBlocks}
+	 */
+	public int getSkippedBlocks(){
+		return skippedBlocks;
+	}
 	
 	public void setGaggleSize(){
 		gaggleSize = new int[zSize][][][];
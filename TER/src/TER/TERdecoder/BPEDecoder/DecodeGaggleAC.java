@@ -67,6 +67,19 @@ public class DecodeGaggleAC{
 	
 	int WTLevels;
 	
+	/**
+	 * Coefficients of the channel that are needed, for each resolution level as {yStart, yEnd, xStart, xEnd} (see
+	 * {@link GiciTransform.InverseWaveletTransform#getRegionSupport}).
+	 * <p>
+	 * Null when all the blocks are needed. Blocks out of them are only parsed.
+	 */
+	int regionSupport[][] = null;
+	
+	/**
+	 * Number of blocks of the gaggle that have been only parsed in the last run.
+	 */
+	int skippedBlocks = 0;
+	
 	public DecodeGaggleAC(float recoveredImage[][][]){
 		this.recoveredImage = recoveredImage;
 	}
@@ -103,6 +116,14 @@ public class DecodeGaggleAC{
 		parametersSet = true;
 	}
 	
+	/**
+	 * Sets the coefficients that are needed, so that the blocks that have none of them are only parsed.
+	 * 
+	 * @param regionSupport definition in {@link #regionSupport}
+	 */
+	public void setRegionSupport(int regionSupport[][]){
+		this.regionSupport = regionSupport;
+	}
 	
 	public void run() throws Exception {
 		//If parameters are not set run cannot be executed
@@ -116,8 +137,14 @@ public class DecodeGaggleAC{
 		idcAC.setParameters(gaggleSize, 0, bitDepthAC, gaggleSizeAC, gaggleSize, BP[0], false,0);
 		bitDepthAC_block = idcAC.run(entropyDecoder.getLayerParents());
 		
-		
-		
+		boolean parseOnly[] = new boolean[gaggleSize];
+		skippedBlocks = 0;
+		for(int block=0;block<gaggleSize;block++){
+			parseOnly[block] = !isNeeded(block);
+			if (parseOnly[block]){
+				skippedBlocks++;
+			}
+		}
 		
 		// if the decoding has been succesfull we continue the decoding process
 		if (!idcAC.getAbnormalTermination()){
@@ -145,7 +172,7 @@ public class DecodeGaggleAC{
 								dac.setParameters(entropyDecoder, blockStatus[block], 
 										WTLevels, rLevel, BP,
 										xInit, yInit, channel,
-										gammaValue,minusHalf);
+										gammaValue,minusHalf,parseOnly[block]);
 								try{
 									dac.run(bitplane,significantPiramid[block],Ds[block],D[block]);
 								} catch (EOFException e){
@@ -172,7 +199,7 @@ public class DecodeGaggleAC{
 							if (completedRefinementPass[rLevel]){
 								setInitBlock(block,rLevel-1);
 								rac.setParameters(entropyDecoder,blockStatus[block],WTLevels,rLevel,
-										BP,xInit,yInit,channel,gammaValue,minusHalf);
+										BP,xInit,yInit,channel,gammaValue,minusHalf,parseOnly[block]);
 								try{
 									rac.run(bitplane);
 								} catch (EOFException e){
@@ -197,6 +224,30 @@ public class DecodeGaggleAC{
 		parametersSet = false;//parameters must be update before running again the class
 	}
 	
+	/**
+	 * Indicates whether some coefficient of a block is needed (see {@link #regionSupport}).
+	 * 
+	 * @param block the block in the gaggle
+	 * @return true if the block must be recovered
+	 */
+	private boolean isNeeded(int block){
+		if (regionSupport == null){
+			return true;
+		}
+		int xSize = recoveredImage[channel][0].length;
+		int generalBlockPosition = gaggleSizeAC*gaggle + block;
+		int x0 = generalBlockPosition % ((int) xSize >> WTLevels);
+		int y0 = generalBlockPosition / ((int) xSize >> WTLevels);
+		for(int generation=0;generation<regionSupport.length;generation++){
+			int sizeResolutionLevel = ((int) 1 << generation);
+			if (y0 * sizeResolutionLevel < regionSupport[generation][1] && (y0 + 1) * sizeResolutionLevel > regionSupport[generation][0]
+					&& x0 * sizeResolutionLevel < regionSupport[generation][3] && (x0 + 1) * sizeResolutionLevel > regionSupport[generation][2]){
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	private void setInitBlock(int block, int generation){
 		
 		if (xInit == null){
@@ -285,4 +336,11 @@ public class DecodeGaggleAC{
 	public float[][][] getRecoveredImage(){
 		return recoveredImage;
 	}
+	
+	/**
+	 * @return definition in {@link #skippedBlocks}
+	 */
+	public int getSkippedBlocks(){
+		return skippedBlocks;
+	}
 }
\ No newline at end of file
@@ -77,7 +77,31 @@ public class DecodeGaggleDC{
 			int resolutionLevels, int bp,
 			int completionMode, float gammaValue) throws Exception{
 		
-		encodedStream = new ReadBufferedStream(byteStream);
+		setParameters(byteStream, 0, byteStream.length,
+				channel, segment, gaggle,
+				gaggleSize, gaggleSizeDC,
+				bitDepthDC, bitDepthAC,
+				blocksPerSegment,
+				resolutionLevels, bp,
+				completionMode, gammaValue);
+	}
+	
+	/**
+	 * Sets the parameters to decode a gaggle whose data is a slice of an array, so that the data is not copied.
+	 * 
+	 * @param byteStream array that contains the data of the gaggle
+	 * @param offset position of the data of the gaggle in byteStream
+	 * @param length number of bytes of the data of the gaggle
+	 */
+	public void setParameters(byte byteStream[], int offset, int length,
+			int channel, int segment, int gaggle,
+			int gaggleSize, int gaggleSizeDC,
+			int bitDepthDC, int bitDepthAC,
+			int blocksPerSegment[],
+			int resolutionLevels, int bp,
+			int completionMode, float gammaValue) throws Exception{
+		
+		encodedStream = new ReadBufferedStream(byteStream, offset, length);
 				
 		this.channel = channel;
 		this.segment = segment;
@@ -69,7 +69,13 @@ public class DecodeGenerationAC{
 	
 	ACEntropyDecoder entropyDecoder = null;
 	
-
+	/**
+	 * Indicates that the block is only parsed: its words are read and its status is kept, since they give the length
+	 * of the following words, but the values of its coefficients are not recovered.
+	 * <p>
+	 * True for blocks whose coefficients are not needed, otherwise false.
+	 */
+	boolean parseOnly = false;
 	
 	public DecodeGenerationAC(float recoveredImage[][][]){
 		this.recoveredImage = recoveredImage;
@@ -81,7 +87,7 @@ public class DecodeGenerationAC{
 							int WTLevels, int resolutionLevel,
 							int BP[],
 							int xInit[], int yInit[], int channel,
-							float gamma, boolean minusHalf){
+							float gamma, boolean minusHalf, boolean parseOnly){
 	
 		this.entropyDecoder = entropyDecoder;
 		
@@ -96,6 +102,7 @@ public class DecodeGenerationAC{
 		this.xInit = xInit;
 		this.yInit = yInit;
 		this.channel = channel;
+		this.parseOnly = parseOnly;
 		
 		if (blockStatus != null){
 			this.blockStatus = blockStatus;
@@ -618,6 +625,9 @@ public class DecodeGenerationAC{
 	}
 	
 	private void setValue(int family, int y, int x, float value){
+		if (parseOnly){
+			return;
+		}
 		recoveredImage[channel][yInit[family]+ y][xInit[family] + x] = value;
 	}
 	
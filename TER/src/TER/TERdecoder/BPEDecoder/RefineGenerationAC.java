@@ -57,6 +57,11 @@ public class RefineGenerationAC{
 	float gamma;
 	boolean minusHalf;
 	
+	/**
+	 * Definition in {@link DecodeGenerationAC#parseOnly}
+	 */
+	boolean parseOnly = false;
+	
 	public RefineGenerationAC(float recoveredImage[][][]){
 		this.recoveredImage = recoveredImage;
 		
@@ -67,7 +72,7 @@ public class RefineGenerationAC{
 			int WTLevels, int resolutionLevel,
 			int BP[],
 			int xInit[], int yInit[], int channel,
-			float gamma, boolean minusHalf){
+			float gamma, boolean minusHalf, boolean parseOnly){
 		
 		this.entropyDecoder = entropyDecoder;
 		
@@ -84,7 +89,7 @@ public class RefineGenerationAC{
 		this.xInit = xInit;
 		this.yInit = yInit;
 		this.channel = channel;
-		
+		this.parseOnly = parseOnly;
 		
 		parametersSet = true;
 	}
@@ -197,6 +202,9 @@ public class RefineGenerationAC{
 	}
 	
 	private void setRefinedValue(int family, int y, int x, int refinementBit, float gammaT, float previousGammaT){
+		if (parseOnly){
+			return;
+		}
 		
 		if (recoveredImage[channel][yInit[family]+ y][xInit[family] + x] > 0){
 			recoveredImage[channel][yInit[family]+ y][xInit[family] + x] += - previousGammaT + threshold*refinementBit + gammaT;
@@ -28,8 +28,13 @@
 package TER.TERdecoder;
 
 import GiciException.*;
+import GiciFile.ImageBandWriter;
 import GiciImageExtension.*;
 import GiciTransform.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 
 
@@ -38,6 +43,7 @@ import TER.TERdecoder.ReadFile.*;
 import TER.TERDefaultValues;
 import TER.TERdecoder.Weighting.*;
 
+import TER.TERCommon.Metrics;
 import TER.TERCommon.ParameterTools;
 import TER.TERcoder.Weighting.*;
 
@@ -106,6 +112,20 @@ public class Decoder{
 	 * 
 	 */
 	int inputFileType;
+
+	/**
+	 * Encoded bitstream given in memory, decoded instead of {@link #inputFile}.
+	 * <p>
+	 * Null decodes {@link #inputFile}.
+	 */
+	byte[] encodedBytes = null;
+
+	/**
+	 * Writer of the recovered components, used to write each component as soon as it is recovered.
+	 * <p>
+	 * Null returns the whole recovered image.
+	 */
+	ImageBandWriter bandWriter = null;
 	
 	/**
 	 * Characteristics of the output image to be saved
@@ -270,6 +290,13 @@ public class Decoder{
 	 */
 	boolean[] CVerbose = null;
 	
+	/**
+	 * Metrics of the decoding stages (see {@link #setMetrics}).
+	 * <p>
+	 * Null if metrics are not collected.
+	 */
+	Metrics metrics = null;
+	
 	/**
 	 * Definition in {@link TER.TERdecoder.SegmentDecoder.SegmentDecode2D#gammaValue}
 	 */
@@ -324,6 +351,73 @@ public class Decoder{
 
 		
 	}
+
+	/**
+	 * Constructor of TERdecoder for a bitstream held in memory, so that nothing is read from disk.
+	 *
+	 * @param encodedBytes the encoded bitstream
+	 * @param inputFileType 0 for a bitstream of the Recommendation (".rec" files), 1 for a TER bitstream (".ter" files)
+	 */
+	public Decoder(byte[] encodedBytes, int inputFileType){
+		this.encodedBytes = encodedBytes;
+		this.inputFileType = inputFileType;
+	}
+
+	/**
+	 * Constructor of TERdecoder for a bitstream read from a stream until its end. The stream is not closed.
+	 *
+	 * @param encodedStream stream with the encoded bitstream
+	 * @param inputFileType 0 for a bitstream of the Recommendation (".rec" files), 1 for a TER bitstream (".ter" files)
+	 *
+	 * @throws IOException when the stream cannot be read
+	 */
+	public Decoder(InputStream encodedStream, int inputFileType) throws IOException{
+		this(readFully(encodedStream), inputFileType);
+	}
+
+	/**
+	 * Constructor of TERdecoder for a bitstream held in the remaining bytes of a buffer. The position of the buffer
+	 * is not modified.
+	 *
+	 * @param encodedBuffer buffer with the encoded bitstream
+	 * @param inputFileType 0 for a bitstream of the Recommendation (".rec" files), 1 for a TER bitstream (".ter" files)
+	 */
+	public Decoder(ByteBuffer encodedBuffer, int inputFileType){
+		this(getBytes(encodedBuffer), inputFileType);
+	}
+
+	/**
+	 * Reads a stream until its end.
+	 *
+	 * @param stream the stream
+	 * @return the bytes read
+	 *
+	 * @throws IOException when the stream cannot be read
+	 */
+	static byte[] readFully(InputStream stream) throws IOException{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[64 * 1024];
+		int bytesRead;
+		while((bytesRead = stream.read(buffer)) >= 0){
+			bytes.write(buffer, 0, bytesRead);
+		}
+		return(bytes.toByteArray());
+	}
+
+	/**
+	 * Gets the remaining bytes of a buffer, sharing its array when the buffer wraps a whole array.
+	 *
+	 * @param buffer the buffer
+	 * @return the remaining bytes of the buffer
+	 */
+	static byte[] getBytes(ByteBuffer buffer){
+		if(buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.limit() == buffer.array().length){
+			return(buffer.array());
+		}
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return(bytes);
+	}
 	
 	/**
 	 * Set the parameters used to perform the TER decoder and check validity. If a parameter is not initialized, this class initalizes it with default values.
@@ -365,11 +459,11 @@ public class Decoder{
 		this.spectralWTType = spectralWTType;
 		this.rangeRecoveredPixels = rangeRecoveredPixels;
 		
-		if (inputFile.endsWith(".rec")){
+		if (encodedBytes != null ? inputFileType == 0 : inputFile.endsWith(".rec")){
 			this.inputFileType = 0;
 			this.zSize = 1;
 			this.zOriginalSize = 1;
-		} else if (inputFile.endsWith(".ter")){
+		} else if (encodedBytes != null ? inputFileType == 1 : inputFile.endsWith(".ter")){
 			this.inputFileType = 1;
 		} else {
 			//this.inputFileType = 1;
@@ -413,7 +507,7 @@ public class Decoder{
 	/**
 	 * Runs the TER decoder algorithm to compress the image.
 	 * 
-	 * @return the recovered image
+	 * @return the recovered image (null when its components have been written one by one, see {@link #run(ImageBandWriter)})
 	 * 
 	 * @throws Exception  when something goes wrong and deconding must be stopped
 	 */
@@ -426,10 +520,12 @@ public class Decoder{
 		if (CVerbose[0]){
 			showTimeMemory("STARTING DECODING...");
 		}
+		startStage("decoder");
+		startStage("bpd");
 		
 		int xSizes[] = null;
 		
-		ReadBufferedStream encodedStream = new ReadBufferedStream(this.inputFile);
+		ReadBufferedStream encodedStream = encodedBytes != null ? new ReadBufferedStream(encodedBytes) : new ReadBufferedStream(this.inputFile);
 		
 		if (this.inputFileType == 0) {	
 			zSize = 1;
@@ -545,24 +641,33 @@ public class Decoder{
 				
 				
 				
+				//Only the position of the packets is read here, the packets of each component are read when it is decoded
 				ReadFile rf = new ReadFile(encodedStream);
 				rf.setParameters(zSize, progressionOrder, layers, 
 						WTLevels, blocksPerSegment, gaggleSizeDC, gaggleSizeAC);
+				rf.setLazyPackets(true);
 				rf.run();
-				byte byteStream[][][][][] = rf.getPackets(); 
 				
 				this.resolutionLevels = new int[zSize];
 				for(int z=0;z<zSize;z++){
 					resolutionLevels[z] = WTLevels[z] + 1 ;
 				}
 				
-				DecodeAvailable decode = new DecodeAvailable(byteStream);
+				DecodeAvailable decode = new DecodeAvailable(rf);
+				decode.setMetrics(metrics);
 				decode.setParameters(zSize, yOriginalSize,xOriginalSize,
 						imageExtensionType, WTType, WTLevels,resolutionLevels,
 						customWtFlag,customWeight,
 						blocksPerSegment,gaggleSizeDC,gaggleSizeAC, entropyAC,
 						bitDepthDC, bitDepthAC,
 						completionMode, gammaValue);
+				if (bandWriter!=null && test3d==0){
+					//Components are decoded, recovered and written one by one
+					decodeBands(decode, xSizes);
+					stopStage("bpd");
+					stopStage("decoder");
+					return null;
+				}
 				imageSamplesFloat = decode.run();
 				
 				
@@ -570,34 +675,153 @@ public class Decoder{
 			th = null;
 		}
 		encodedStream = null;
+		stopStage("bpd");
 		
 		System.gc();
 		if (CVerbose[0]){
 			showTimeMemory("BIT PLANE DECODER...");
 		}
 		
+		startStage("reconstruct");
+		imageSamplesFloat = reconstruct(imageSamplesFloat, null, xSizes);
+		stopStage("reconstruct");
+		
+		if (CVerbose[1]){
+			 showArguments();
+		}
+		
+		
+		AddChannels ac = new AddChannels(imageSamplesFloat,zOriginalSize);
+		ac.setParameters(addType,removedBand);
+		imageSamplesFloat = ac.run();
+		
+		if(imageGeometry==null){
+			imageGeometry = computeImageGeometry(imageSamplesFloat.length, imageSamplesFloat[0].length, imageSamplesFloat[0][0].length);
+		}
+		stopStage("decoder");
+		return imageSamplesFloat;
+
+		
+	}
+
+	/**
+	 * Runs the TER decoder writing each component as soon as it is recovered, instead of returning the whole image.
+	 * When the components are transformed independently (without 3D transforms) and the file has a TER progression
+	 * order other than 0, each component is decoded, recovered, written and freed before decoding the next one, so
+	 * that only one component and its packets are held in memory. Otherwise the whole image is recovered
+	 * and then written component by component.
+	 *
+	 * @param bandWriter writer of the recovered components, opened with the image geometry and closed by this method
+	 *
+	 * @throws Exception  when something goes wrong and deconding must be stopped
+	 */
+	public void run(ImageBandWriter bandWriter) throws Exception{
+		this.bandWriter = bandWriter;
+		try{
+			float[][][] image = run();
+			if (image!=null){
+				bandWriter.open(imageGeometry);
+				for(int z=0;z<image.length;z++){
+					bandWriter.write(z, image[z]);
+				}
+			}
+		}finally{
+			this.bandWriter = null;
+			bandWriter.close();
+		}
+	}
+
+	/**
+	 * Decodes, recovers and writes the components one by one to {@link #bandWriter}. Removed components are written
+	 * with zeros as done by {@link AddChannels}.
+	 *
+	 * @param decode decoder of the packets
+	 * @param xSizes width of the decoded components
+	 *
+	 * @throws Exception when something goes wrong and decoding must be stopped
+	 */
+	void decodeBands(DecodeAvailable decode, int[] xSizes) throws Exception{
+		int outputBands = addType==1 ? zOriginalSize : zSize;
+		int zDecoded = 0;
+		int ySize = 0, xSize = 0;
+		for(int z=0;z<outputBands;z++){
+			if (addType==1 && removedBand[z]){
+				continue;
+			}
+			float[][][] band = reconstruct(new float[][][]{decode.run(zDecoded)}, new int[]{zDecoded}, xSizes);
+			if (zDecoded==0){
+				ySize = band[0].length;
+				xSize = band[0][0].length;
+				if (imageGeometry==null){
+					imageGeometry = computeImageGeometry(outputBands, ySize, xSize);
+				}
+				bandWriter.open(imageGeometry);
+			}
+			bandWriter.write(z, band[0]);
+			zDecoded++;
+			if (CVerbose[0]){
+				showTimeMemory("COMPONENT " + z + " RECOVERED AND SAVED...");
+			}
+		}
+		if (addType==1){
+			float[][] removed = new float[ySize][xSize];
+			for(int z=0;z<outputBands;z++){
+				if (removedBand[z]){
+					bandWriter.write(z, removed);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Recovers the image samples from the decoded coefficients: inverse weighting, inverse wavelet transform, image
+	 * de-extension, transposition, level unshift and range recovering.
+	 *
+	 * @param imageSamplesFloat decoded coefficients of the components
+	 * @param bands indices of the given components among the decoded ones, to recover some components alone (null if all the components are given)
+	 * @param xSizes width of the decoded components
+	 * @return the recovered components
+	 *
+	 * @throws Exception when something goes wrong and decoding must be stopped
+	 */
+	float[][][] reconstruct(float[][][] imageSamplesFloat, int[] bands, int[] xSizes) throws Exception{
+		//Memory and verbose statistics are only handled when the whole image is recovered
+		boolean wholeImage = bands == null;
+		int[] WTType = select(this.WTType, bands);
+		int[] WTLevels = select(this.WTLevels, bands);
+		int[] WTOrder = select(this.WTOrder, bands);
+		int[] customWtFlag = select(this.customWtFlag, bands);
+		float[][] customWeight = select(this.customWeight, bands);
+
 		//Weighting
-		boolean needWeighting = ForwardWeighting.setWeightingNeed(customWtFlag,WTType,zSize);
+		boolean needWeighting = ForwardWeighting.setWeightingNeed(customWtFlag,WTType,imageSamplesFloat.length);
 		if (needWeighting){
+			startStage("inverseWeighting");
 			InverseWeighting iwg = new InverseWeighting(imageSamplesFloat);
 			iwg.setParameters(customWtFlag,WTType,WTLevels,customWeight);
 			imageSamplesFloat = iwg.run();
 			iwg = null;
-			System.gc();
-			if (CVerbose[0]){
-				showTimeMemory("WEIGHTING...");
+			stopStage("inverseWeighting");
+			if (wholeImage){
+				System.gc();
+				if (CVerbose[0]){
+					showTimeMemory("WEIGHTING...");
+				}
 			}
 		}
 		
+		startStage("inverseDWT");
 		if (test3d==0){
 //			Inverse Wavelet transform
 			InverseWaveletTransform iwt = new InverseWaveletTransform(imageSamplesFloat);
 			iwt.setParameters(WTType,WTLevels,WTOrder);
 			imageSamplesFloat = iwt.run();
 			iwt = null;
-			System.gc();
-			if (CVerbose[0]){
-				showTimeMemory("INVERSE WAVELET TRANSFORM...");
+			if (wholeImage){
+				System.gc();
+				if (CVerbose[0]){
+					showTimeMemory("INVERSE WAVELET TRANSFORM...");
+				}
 			}
 		} else if (test3d==1){
 			//1D+2D non pyramidal Wavelet Transform
@@ -637,72 +861,90 @@ public class Decoder{
 			}
 		}
 		
+		stopStage("inverseDWT");
+		
 		boolean threeLevels = true;
-		for(int k=0;k<WTLevels.length;k++){
-			if(WTLevels[k]!=3){
+		for(int k=0;k<this.WTLevels.length;k++){
+			if(this.WTLevels[k]!=3){
 				threeLevels= false;
 			}
 		}
 		if ( !threeLevels && padRows==null ){
 			if (this.imageGeometry!=null){
-				padRows = ImageDeExtension.computePadRows(zSize,imageGeometry[1], imageExtensionType, WTLevels);
+				padRows = ImageDeExtension.computePadRows(zSize,imageGeometry[1], imageExtensionType, this.WTLevels);
 			} else {//the user does not know the original size
-				padRows = ImageDeExtension.computePadRows(zSize,imageSamplesFloat[0].length, imageExtensionType, WTLevels);
+				padRows = ImageDeExtension.computePadRows(zSize,imageSamplesFloat[0].length, imageExtensionType, this.WTLevels);
 			}
 		}
+		int[] padRows = select(this.padRows, bands);
+		int[] imageWidth = select(this.imageWidth, bands);
+		xSizes = select(xSizes, bands);
 		boolean needDeExtension = ImageDeExtension.needDeExtension(padRows,imageWidth,xSizes);
 		//Image DeExtension
 		if (needDeExtension){
+			startStage("imageDeExtension");
 			ImageDeExtension ide = new ImageDeExtension(imageSamplesFloat);
-			ide.setParameters(imageWidth,this.padRows);
+			ide.setParameters(imageWidth,padRows);
 			imageSamplesFloat = ide.run();
 			//Free unused memory
 			ide = null;
-			System.gc();
-			if (CVerbose[0]){
-				showTimeMemory("IMAGE EXTENSION...");
+			stopStage("imageDeExtension");
+			if (wholeImage){
+				System.gc();
+				if (CVerbose[0]){
+					showTimeMemory("IMAGE EXTENSION...");
+				}
 			}
 		}
 		
 		//Transpose Image
-		boolean needTranspose = TransposeImage.needTranspose(this.transposeImg);
+		int[] transposeImg = select(this.transposeImg, bands);
+		boolean needTranspose = TransposeImage.needTranspose(transposeImg);
 		if (needTranspose){
+			startStage("transpose");
 			TransposeImage ti = new TransposeImage(imageSamplesFloat);
 			ti.setParameters(transposeImg);
 			imageSamplesFloat = ti.run();
 			ti = null;
-			System.gc();
-			if (CVerbose[0]){
-				showTimeMemory("IMAGE TRANSPOSE...");
+			stopStage("transpose");
+			if (wholeImage){
+				System.gc();
+				if (CVerbose[0]){
+					showTimeMemory("IMAGE TRANSPOSE...");
+				}
 			}
 		}
 		
+		int[] pixelBitDepth = select(this.pixelBitDepth, bands);
 		//Level Unshift
 		if (LSType!=0){
+			startStage("levelUnshift");
 			LevelUnshift ls = new LevelUnshift(imageSamplesFloat);
-			ls.setParameters(LSType, LSComponents, LSSubsValues, pixelBitDepth);
+			ls.setParameters(LSType, select(LSComponents, bands), select(LSSubsValues, bands), pixelBitDepth);
 			imageSamplesFloat = ls.run();
 			//Free unused memory
 			ls = null;
+			stopStage("levelUnshift");
 			//Show statistics
-			if (CVerbose[0]){
+			if (wholeImage && CVerbose[0]){
 				showTimeMemory("LEVEL UNSHIFT");
 			}
 		}
 		
 		if (rangeRecoveredPixels){
+			int[] signedPixels = select(this.signedPixels, bands);
 			
 			for(int z=0; z<imageSamplesFloat.length ; z++){
 				int ySize = imageSamplesFloat[z].length;
 				int xSize = imageSamplesFloat[z][0].length;
 				
 				if (!headerMinMax){
-					maxValue = (int) (1<<this.pixelBitDepth[z]) - 1;
+					maxValue = (int) (1<<pixelBitDepth[z]) - 1;
 					minValue = 0;
 					
 					if (signedPixels[z]==1){
-						maxValue = (int) (1<<(this.pixelBitDepth[z]-1)) - 1;
-						minValue = - (int) (1<<(this.pixelBitDepth[z]-1));
+						maxValue = (int) (1<<(pixelBitDepth[z]-1)) - 1;
+						minValue = - (int) (1<<(pixelBitDepth[z]-1));
 					} 
 					
 				}
@@ -721,38 +963,91 @@ public class Decoder{
 			}
 			
 		}
-		
-		if (CVerbose[1]){
-			 showArguments();
-		}
-		
-		
-		AddChannels ac = new AddChannels(imageSamplesFloat,zOriginalSize);
-		ac.setParameters(addType,removedBand);
-		imageSamplesFloat = ac.run();
-		
-		if(imageGeometry==null){
-			imageGeometry = new int[6];
-			imageGeometry[0] = imageSamplesFloat.length;
-			imageGeometry[1] = imageSamplesFloat[0].length;
-			imageGeometry[2] = imageSamplesFloat[0][0].length;
-			int sampleType = 0;
-			for(int k=0;k<pixelBitDepth.length;k++){
-				if (sampleType<pixelBitDepth[k]){
-					sampleType = pixelBitDepth[k];
-				}
-			}
-			if(sampleType%8==0){
-				sampleType = sampleType/8;
-			} else {
-				sampleType = (sampleType/8) + 1;
+		return imageSamplesFloat;
+	}
+
+	/**
+	 * Computes the geometry of the recovered image when it is not given by the user. The data type is the
+	 * smallest number of bytes that holds the bit depth of all the components.
+	 *
+	 * @param zSize number of components of the recovered image
+	 * @param ySize height of the recovered image
+	 * @param xSize width of the recovered image
+	 * @return the image geometry (zSize, ySize, xSize, data type, byte order and RGB)
+	 */
+	int[] computeImageGeometry(int zSize, int ySize, int xSize){
+		int[] imageGeometry = new int[6];
+		imageGeometry[0] = zSize;
+		imageGeometry[1] = ySize;
+		imageGeometry[2] = xSize;
+		int sampleType = 0;
+		for(int k=0;k<pixelBitDepth.length;k++){
+			if (sampleType<pixelBitDepth[k]){
+				sampleType = pixelBitDepth[k];
 			}
-			imageGeometry[3] = sampleType; 
-			imageGeometry[4] = 0;	
 		}
-		return imageSamplesFloat;
+		if(sampleType%8==0){
+			sampleType = sampleType/8;
+		} else {
+			sampleType = (sampleType/8) + 1;
+		}
+		imageGeometry[3] = sampleType; 
+		imageGeometry[4] = 0;	
+		return imageGeometry;
+	}
 
-		
+	/**
+	 * Selects the values of some components from a parameter given for each component.
+	 *
+	 * @param parameter values of each component (may be null)
+	 * @param bands indices of the selected components (null selects all the components)
+	 * @return the values of the selected components
+	 */
+	static int[] select(int[] parameter, int[] bands){
+		if (parameter==null || bands==null){
+			return parameter;
+		}
+		int[] selected = new int[bands.length];
+		for(int k=0;k<bands.length;k++){
+			selected[k] = parameter[bands[k]];
+		}
+		return selected;
+	}
+
+	/**
+	 * Selects the values of some components from a parameter given for each component.
+	 *
+	 * @param parameter values of each component (may be null)
+	 * @param bands indices of the selected components (null selects all the components)
+	 * @return the values of the selected components
+	 */
+	static boolean[] select(boolean[] parameter, int[] bands){
+		if (parameter==null || bands==null){
+			return parameter;
+		}
+		boolean[] selected = new boolean[bands.length];
+		for(int k=0;k<bands.length;k++){
+			selected[k] = parameter[bands[k]];
+		}
+		return selected;
+	}
+
+	/**
+	 * Selects the values of some components from a parameter given for each component.
+	 *
+	 * @param parameter values of each component (may be null)
+	 * @param bands indices of the selected components (null selects all the components)
+	 * @return the values of the selected components
+	 */
+	static float[][] select(float[][] parameter, int[] bands){
+		if (parameter==null || bands==null){
+			return parameter;
+		}
+		float[][] selected = new float[bands.length][];
+		for(int k=0;k<bands.length;k++){
+			selected[k] = parameter[bands[k]];
+		}
+		return selected;
 	}
 
 	////////////////////////////////
@@ -762,6 +1057,40 @@ public class Decoder{
 		return imageGeometry;
 	}
 	
+	/**
+	 * Collects the metrics of the decoding in the given object: the wall time, CPU time and allocated bytes of each
+	 * stage ("decoder"; "bpd", which reads and decodes the packets, with "bpd.band.z" and "bpd.band.z.segment.s" for
+	 * files in TER progression orders other than 0; "reconstruct" with its stages). When the components are written
+	 * one by one they are also recovered within "bpd".
+	 *
+	 * @param metrics definition in {@link #metrics}
+	 */
+	public void setMetrics(Metrics metrics){
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Starts a stage in {@link #metrics}, if they are collected.
+	 *
+	 * @param stage name of the stage
+	 */
+	private void startStage(String stage){
+		if (metrics!=null){
+			metrics.start(stage);
+		}
+	}
+
+	/**
+	 * Stops a stage in {@link #metrics}, if they are collected.
+	 *
+	 * @param stage name of the stage
+	 */
+	private void stopStage(String stage){
+		if (metrics!=null){
+			metrics.stop(stage);
+		}
+	}
+	
 	
 	//////////////////////////////////////////////
 	//FUNCTIONS TO SHOW SOME VERBOSE INFORMATION//
@@ -44,6 +44,17 @@ public class ReadBufferedStream extends BufferedDataInputStream{
 		super(source);
 	}
 	
+	/**
+	 * Reads a part of an array without copying it.
+	 * 
+	 * @param source the array
+	 * @param offset position of the first byte to be read
+	 * @param length number of bytes that can be read
+	 */
+	public ReadBufferedStream(byte source[], int offset, int length) throws Exception{
+		super(source, offset, length);
+	}
+	
 	public boolean getBit() throws Exception {
 		boolean bit;
 		if (bytePossition<0){
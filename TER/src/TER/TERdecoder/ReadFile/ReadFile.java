@@ -68,7 +68,49 @@ public class ReadFile{
 		
 	byte packet[][][][][] = null;
 	int layersOffset[][][][][] = null;
-	
+
+	/**
+	 * To know if the packets are read only when the packets of a component are requested.
+	 * <p>
+	 * True indicates that run only records the position of the packets, otherwise all the packets are read by run.
+	 */
+	boolean lazyPackets = false;
+
+	/**
+	 * Position in the stream of the data of each packet, index meaning [z][segment][rLevel][gaggle][layer].
+	 * <p>
+	 * Only used when the packets are loaded lazily.
+	 */
+	long packetPosition[][][][][] = null;
+
+	/**
+	 * Number of bytes of each packet available in the stream, index meaning [z][segment][rLevel][gaggle][layer].
+	 * <p>
+	 * Only used when the packets are loaded lazily, 0 for the packets not found in the stream.
+	 */
+	int packetBytes[][][][][] = null;
+
+	/**
+	 * Array read by the stream when the packets are given as slices of it.
+	 * <p>
+	 * Null when each packet is copied to its own array.
+	 */
+	byte sliceSource[] = null;
+
+	/**
+	 * Position of the data of each gaggle in its array, index meaning [z][segment][rLevel][gaggle].
+	 * <p>
+	 * Only used when the packets are given as slices.
+	 */
+	int packetOffset[][][][] = null;
+
+	/**
+	 * Number of bytes of the data of each gaggle, index meaning [z][segment][rLevel][gaggle].
+	 * <p>
+	 * Only used when the packets are given as slices.
+	 */
+	int packetLength[][][][] = null;
+
 	long initialPositionEncodedStream;	
 	ReadBufferedStream encodedStream = null;
 	
@@ -145,6 +187,9 @@ public class ReadFile{
 		} else{
 			throw new WarningException("Not implemented yet!!");
 		}
+		if (sliceSource!=null){
+			slicePackets();
+		}
 	}
 	
 	private void updateLayersOffset(){
@@ -204,15 +249,9 @@ public class ReadFile{
 					for(int z=0;z<zSize;z++){
 						for(int segment=0;segment<blocksPerSegment[z].length;segment++){
 							if (rLevel<= WTLevels[z]){
-								for(int gaggle = 0;gaggle<packet[z][segment][rLevel].length;gaggle++){			
+								for(int gaggle = 0;gaggle<layersOffset[z][segment][rLevel].length;gaggle++){			
 									int packetLength = packetHeader.readPacketHeader();	
-									if (encodedStream.getRemaniningBytes()>=packetLength){
-										encodedStream.readFully(packet[z][segment][rLevel][gaggle],
-												layersOffset[z][segment][rLevel][gaggle][layer],packetLength);
-									} else {
-										encodedStream.readFully(packet[z][segment][rLevel][gaggle],
-												layersOffset[z][segment][rLevel][gaggle][layer],(int)encodedStream.getRemaniningBytes());
-									}
+									readPacket(z, segment, rLevel, gaggle, layer, packetLength);
 								}
 							}
 						}
@@ -262,15 +301,9 @@ public class ReadFile{
 					for(int z=0;z<zSize;z++){
 						for(int segment=0;segment<blocksPerSegment[z].length;segment++){
 							if (rLevel<= WTLevels[z]){
-								for(int gaggle = 0;gaggle<packet[z][segment][rLevel].length;gaggle++){			
+								for(int gaggle = 0;gaggle<layersOffset[z][segment][rLevel].length;gaggle++){			
 									int packetLength = packetHeader.readPacketHeader();
-									if (encodedStream.getRemaniningBytes()>=packetLength){
-										encodedStream.readFully(packet[z][segment][rLevel][gaggle],
-												layersOffset[z][segment][rLevel][gaggle][layer],packetLength);
-									}else {
-										encodedStream.readFully(packet[z][segment][rLevel][gaggle],
-												layersOffset[z][segment][rLevel][gaggle][layer],(int)encodedStream.getRemaniningBytes());
-									}
+									readPacket(z, segment, rLevel, gaggle, layer, packetLength);
 								}
 							}
 						}
@@ -336,13 +369,7 @@ public class ReadFile{
 										if (gaggle<layersOffset[z][segment][rLevel].length){										
 											for(int layer = 0;layer<numLayers;layer++){
 												int packetLength = packetHeader.readPacketHeader();
-												if (encodedStream.getRemaniningBytes()>=packetLength){
-													encodedStream.readFully(packet[z][segment][rLevel][gaggle],
-															layersOffset[z][segment][rLevel][gaggle][layer],packetLength);
-												}else {
-													encodedStream.readFully(packet[z][segment][rLevel][gaggle],
-															layersOffset[z][segment][rLevel][gaggle][layer],(int)encodedStream.getRemaniningBytes());
-												}
+												readPacket(z, segment, rLevel, gaggle, layer, packetLength);
 											}
 										}
 									}
@@ -400,13 +427,7 @@ public class ReadFile{
 								for(int layer = 0;layer<numLayers;layer++){
 									if (gaggle<layersOffset[z][segment][rLevel].length){
 										int packetLength = packetHeader.readPacketHeader();
-										if (encodedStream.getRemaniningBytes()>=packetLength){
-											encodedStream.readFully(packet[z][segment][rLevel][gaggle],
-													layersOffset[z][segment][rLevel][gaggle][layer],packetLength);
-										}else {
-											encodedStream.readFully(packet[z][segment][rLevel][gaggle],
-													layersOffset[z][segment][rLevel][gaggle][layer],(int)encodedStream.getRemaniningBytes());
-										}
+										readPacket(z, segment, rLevel, gaggle, layer, packetLength);
 									}
 								}
 							}
@@ -459,13 +480,7 @@ public class ReadFile{
 							for(int layer = 0;layer<numLayers;layer++){
 								if (gaggle<layersOffset[z][segment][rLevel].length){
 									int packetLength = packetHeader.readPacketHeader();								
-									if (encodedStream.getRemaniningBytes()>=packetLength){
-										encodedStream.readFully(packet[z][segment][rLevel][gaggle],
-												layersOffset[z][segment][rLevel][gaggle][layer],packetLength);
-									}else {
-										encodedStream.readFully(packet[z][segment][rLevel][gaggle],
-												layersOffset[z][segment][rLevel][gaggle][layer],(int)encodedStream.getRemaniningBytes());
-									}
+									readPacket(z, segment, rLevel, gaggle, layer, packetLength);
 								}
 							}
 						}
@@ -479,24 +494,163 @@ public class ReadFile{
 	
 	private void initPackets(){
 		packet = new byte[zSize][][][][];
-		for(int z=0;z<zSize;z++){	
-			packet[z] = new byte[blocksPerSegment[z].length][][][];
+		if (lazyPackets || sliceSource!=null){
+			packetPosition = new long[zSize][][][][];
+			packetBytes = new int[zSize][][][][];
+			for(int z=0;z<zSize;z++){
+				packetPosition[z] = new long[blocksPerSegment[z].length][WTLevels[z]+1][][];
+				packetBytes[z] = new int[blocksPerSegment[z].length][WTLevels[z]+1][][];
+				for(int segment=0;segment<blocksPerSegment[z].length;segment++){
+					for(int rLevel=0;rLevel<WTLevels[z]+1;rLevel++){
+						packetPosition[z][segment][rLevel] = new long[layersOffset[z][segment][rLevel].length][numLayers];
+						packetBytes[z][segment][rLevel] = new int[layersOffset[z][segment][rLevel].length][numLayers];
+					}
+				}
+			}
+		} else {
+			for(int z=0;z<zSize;z++){
+				packet[z] = initPackets(z);
+			}
+		}
+	}
+	
+	/**
+	 * Allocates the packets of one component, with enough room for all the layers of each gaggle.
+	 *
+	 * @param z the component
+	 * @return the packets of the component, index meaning [segment][rLevel][gaggle][]
+	 */
+	private byte[][][][] initPackets(int z){
+		byte channelPacket[][][][] = new byte[blocksPerSegment[z].length][][][];
+		for(int segment=0;segment<blocksPerSegment[z].length;segment++){
+			channelPacket[segment] = new byte[WTLevels[z]+1][][];
+			for(int rLevel=0;rLevel<WTLevels[z]+1;rLevel++){
+				if (rLevel==0){
+					int gaggleNum = GaggleUtilities.getGagglesPerSegment(z,segment,gaggleSizeDC[z][segment],blocksPerSegment);
+					channelPacket[segment][rLevel] = new byte[gaggleNum][];
+				} else {
+					int gaggleNum = GaggleUtilities.getGagglesPerSegment(z,segment,gaggleSizeAC[z][segment],blocksPerSegment);
+					channelPacket[segment][rLevel] = new byte[gaggleNum][];
+				}
+				for(int gaggle = 0;gaggle<layersOffset[z][segment][rLevel].length;gaggle++){
+					channelPacket[segment][rLevel][gaggle] = new byte[layersOffset[z][segment][rLevel][gaggle][numLayers]];
+				}
+			}
+		}
+		return channelPacket;
+	}
+	
+	/**
+	 * Reads the data of a packet whose header has just been read. When the packets are loaded lazily, only the position
+	 * of the data is recorded and the data is skipped. A packet truncated at the end of the stream keeps the available bytes.
+	 *
+	 * @param z the component
+	 * @param segment the segment
+	 * @param rLevel the resolution level
+	 * @param gaggle the gaggle
+	 * @param layer the quality layer
+	 * @param packetLength length of the packet given by its header
+	 *
+	 * @throws Exception when the stream cannot be read
+	 */
+	private void readPacket(int z, int segment, int rLevel, int gaggle, int layer, int packetLength) throws Exception{
+		int length = packetLength;
+		if (encodedStream.getRemaniningBytes()<packetLength){
+			length = (int)encodedStream.getRemaniningBytes();
+		}
+		if (lazyPackets || sliceSource!=null){
+			long position = encodedStream.getPos();
+			packetPosition[z][segment][rLevel][gaggle][layer] = position;
+			packetBytes[z][segment][rLevel][gaggle][layer] = length;
+			encodedStream.seek(position + length);
+		} else {
+			encodedStream.readFully(packet[z][segment][rLevel][gaggle],
+					layersOffset[z][segment][rLevel][gaggle][layer],length);
+		}
+	}
+	
+	/**
+	 * Gives the packets as slices of the array read by the stream. The gaggles whose layers are contiguous and complete
+	 * in the array are not copied. The other gaggles (whose layers are separated by the headers of other packets or
+	 * cut by the end of the stream) are copied to their own array, padded with zeros as when the packets are read.
+	 */
+	private void slicePackets(){
+		packetOffset = new int[zSize][][][];
+		packetLength = new int[zSize][][][];
+		for(int z=0;z<zSize;z++){
+			packet[z] = new byte[blocksPerSegment[z].length][WTLevels[z]+1][][];
+			packetOffset[z] = new int[blocksPerSegment[z].length][WTLevels[z]+1][];
+			packetLength[z] = new int[blocksPerSegment[z].length][WTLevels[z]+1][];
 			for(int segment=0;segment<blocksPerSegment[z].length;segment++){
-				packet[z][segment] = new byte[WTLevels[z]+1][][];
 				for(int rLevel=0;rLevel<WTLevels[z]+1;rLevel++){
-					if (rLevel==0){
-						int gaggleNum = GaggleUtilities.getGagglesPerSegment(z,segment,gaggleSizeDC[z][segment],blocksPerSegment);
-						packet[z][segment][rLevel] = new byte[gaggleNum][];
-					} else {
-						int gaggleNum = GaggleUtilities.getGagglesPerSegment(z,segment,gaggleSizeAC[z][segment],blocksPerSegment);
-						packet[z][segment][rLevel] = new byte[gaggleNum][];
-					}
-					for(int gaggle = 0;gaggle<packet[z][segment][rLevel].length;gaggle++){
-						packet[z][segment][rLevel][gaggle] = new byte[layersOffset[z][segment][rLevel][gaggle][numLayers]];
+					int gaggleNum = layersOffset[z][segment][rLevel].length;
+					packet[z][segment][rLevel] = new byte[gaggleNum][];
+					packetOffset[z][segment][rLevel] = new int[gaggleNum];
+					packetLength[z][segment][rLevel] = new int[gaggleNum];
+					for(int gaggle = 0;gaggle<gaggleNum;gaggle++){
+						int gaggleLength = layersOffset[z][segment][rLevel][gaggle][numLayers];
+						long start = -1;
+						long end = -1;
+						boolean contiguous = true;
+						for(int layer = 0;layer<numLayers && contiguous;layer++){
+							int length = packetBytes[z][segment][rLevel][gaggle][layer];
+							if (length>0){
+								long position = packetPosition[z][segment][rLevel][gaggle][layer];
+								if (start<0){
+									start = position;
+								} else if (position!=end){
+									contiguous = false;
+								}
+								end = position + length;
+							}
+						}
+						if (contiguous && start>=0 && end-start==gaggleLength){
+							packet[z][segment][rLevel][gaggle] = sliceSource;
+							packetOffset[z][segment][rLevel][gaggle] = (int) start;
+						} else {
+							byte gagglePacket[] = new byte[gaggleLength];
+							for(int layer = 0;layer<numLayers;layer++){
+								int length = packetBytes[z][segment][rLevel][gaggle][layer];
+								if (length>0){
+									System.arraycopy(sliceSource, (int) packetPosition[z][segment][rLevel][gaggle][layer],
+											gagglePacket, layersOffset[z][segment][rLevel][gaggle][layer], length);
+								}
+							}
+							packet[z][segment][rLevel][gaggle] = gagglePacket;
+						}
+						packetLength[z][segment][rLevel][gaggle] = gaggleLength;
 					}
 				}
 			}
-		}	
+		}
+		packetPosition = null;
+		packetBytes = null;
+	}
+	
+	//////////////////////////
+	///// SET FUNCTIONS //////
+	//////////////////////////
+	
+	/**
+	 * Sets whether the packets are loaded lazily. When set, run only records where the data of each packet is
+	 * in the stream, and the packets of each component are read by {@link #getPackets(int)}. The stream must be
+	 * kept open until all the components have been read.
+	 *
+	 * @param lazyPackets true to read the packets of a component only when they are requested
+	 */
+	public void setLazyPackets(boolean lazyPackets){
+		this.lazyPackets = lazyPackets;
+	}
+	
+	/**
+	 * Sets that the packets are given as slices of the array read by the stream instead of being copied, see
+	 * {@link #getPacketOffsets()} and {@link #getPacketLengths()}. The array must not be modified while the packets
+	 * are used.
+	 *
+	 * @param sliceSource the array read by the stream
+	 */
+	public void setPacketSlices(byte sliceSource[]){
+		this.sliceSource = sliceSource;
 	}
 	
 	//////////////////////////
@@ -507,7 +661,58 @@ public class ReadFile{
 		return packet;
 	}
 	
+	/**
+	 * Gets the packets of one component. When the packets are loaded lazily they are read from the stream in each call
+	 * and no reference to them is kept, so they are released as soon as the caller drops them.
+	 *
+	 * @param z the component
+	 * @return the packets of the component, index meaning [segment][rLevel][gaggle][], with the layers of each gaggle
+	 * concatenated
+	 *
+	 * @throws Exception when the stream cannot be read
+	 */
+	public byte[][][][] getPackets(int z) throws Exception{
+		if (!lazyPackets){
+			return packet[z];
+		}
+		byte channelPacket[][][][] = initPackets(z);
+		for(int segment=0;segment<blocksPerSegment[z].length;segment++){
+			for(int rLevel=0;rLevel<WTLevels[z]+1;rLevel++){
+				for(int gaggle = 0;gaggle<layersOffset[z][segment][rLevel].length;gaggle++){
+					for(int layer = 0;layer<numLayers;layer++){
+						int length = packetBytes[z][segment][rLevel][gaggle][layer];
+						if (length>0){
+							long position = packetPosition[z][segment][rLevel][gaggle][layer];
+							if (encodedStream.getPos()!=position){
+								encodedStream.seek(position);
+							}
+							encodedStream.readFully(channelPacket[segment][rLevel][gaggle],
+									layersOffset[z][segment][rLevel][gaggle][layer],length);
+						}
+					}
+				}
+			}
+		}
+		return channelPacket;
+	}
+	
+	/**
+	 * @return the position of the data of each gaggle in its array of {@link #getPackets()}, index meaning
+	 * [z][segment][rLevel][gaggle], or null when each gaggle has its own array
+	 */
+	public int[][][][] getPacketOffsets(){
+		return packetOffset;
+	}
+	
+	/**
+	 * @return the number of bytes of the data of each gaggle in its array of {@link #getPackets()}, index meaning
+	 * [z][segment][rLevel][gaggle], or null when each gaggle has its own array
+	 */
+	public int[][][][] getPacketLengths(){
+		return packetLength;
+	}
+	
 	public int[][][][][] getLayersOffset(){
 		return layersOffset;
 	}
-}
\ No newline at end of file
+}